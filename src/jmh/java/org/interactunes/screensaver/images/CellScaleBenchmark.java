@@ -0,0 +1,82 @@
+package org.interactunes.screensaver.images;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales a bundled cover to the cell size of the album grid on a 1080 pixel high screen, for every grid size the
+ * settings offer. This is the work an {@link org.interactunes.screensaver.panels.AlbumImageCell} does when it is
+ * resized. A fresh scaler is used for every invocation, since the cache of the shared scaler would otherwise turn
+ * every scale after the first into a lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class CellScaleBenchmark {
+
+    private static final int SCREEN_HEIGHT = 1080;
+    private static final int CELL_GAP = 2;
+    private static final String COVER = "images/albums/Coldplay - Parachutes.jpeg";
+
+    @Param({"2", "3", "4", "5", "6"})
+    public int gridSize;
+
+    private Image cover;
+    private int cellSize;
+    private ImageScaler scaler;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        try (InputStream inputStream = CellScaleBenchmark.class.getClassLoader().getResourceAsStream(COVER)) {
+            if (inputStream == null) {
+                throw new IOException("Missing cover " + COVER);
+            }
+            cover = ImageIO.read(inputStream);
+        }
+        cellSize = (SCREEN_HEIGHT - CELL_GAP * (gridSize - 1)) / gridSize;
+    }
+
+    @Setup(Level.Invocation)
+    public void createScaler() {
+        scaler = new ImageScaler();
+    }
+
+    @Benchmark
+    public BufferedImage scaleToCell() {
+        return scaler.getScaledImage(cover, cellSize);
+    }
+
+    @Benchmark
+    public Image smoothScaleToCell() {
+        // The scaling the cells used before the progressive scaler, forced to completion for a fair comparison.
+        Image scaled = cover.getScaledInstance(cellSize, cellSize, Image.SCALE_SMOOTH);
+        BufferedImage image = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.drawImage(scaled, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}
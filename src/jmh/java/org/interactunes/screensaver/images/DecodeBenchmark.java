@@ -0,0 +1,78 @@
+package org.interactunes.screensaver.images;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Decodes the bundled album covers, in full with {@link ImageIO#read(InputStream)} and subsampled close to the cell
+ * size with {@link ImageDecoder}. Every invocation decodes the next cover, so the result is the mean over all covers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+    @Param({"180", "360"})
+    public int targetSize;
+
+    private List<byte[]> covers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, URISyntaxException {
+        URL albums = DecodeBenchmark.class.getClassLoader().getResource("images/albums");
+        if (albums == null) {
+            throw new IOException("Bundled albums not found");
+        }
+        covers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(albums.toURI()))) {
+            for (Path file : files.sorted().toList()) {
+                covers.add(Files.readAllBytes(file));
+            }
+        }
+    }
+
+    // Always decodes in full, so its results are the same for every target size.
+    @Benchmark
+    public BufferedImage imageIoRead() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(nextCover()));
+    }
+
+    @Benchmark
+    public BufferedImage subsampledDecode() throws IOException {
+        return ImageDecoder.getInstance().decode(nextCover(), targetSize);
+    }
+
+    private byte[] nextCover() {
+        byte[] cover = covers.get(next);
+        next = (next + 1) % covers.size();
+        return cover;
+    }
+}
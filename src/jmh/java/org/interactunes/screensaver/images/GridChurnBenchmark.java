@@ -0,0 +1,146 @@
+package org.interactunes.screensaver.images;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces the scaled images of a full album grid one cell at a time, as the image change timer does, and paints the
+ * whole grid, keeping the scaled pixels either on the heap or in a {@link PixelStore}. Run with {@code -prof gc} to
+ * compare the garbage collection counts and times, e.g. {@code gradle jmh --args="GridChurn -prof gc"}.
+ * <p>
+ * The benchmarks run headless and paint into an image, so the stored cells take the path that copies their pixels on
+ * every paint. On screen they are painted from a {@link java.awt.image.VolatileImage} instead, which is not measured
+ * here.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx512m"})
+@State(Scope.Thread)
+public class GridChurnBenchmark {
+
+    private static final int SCREEN_HEIGHT = 1080;
+    private static final int CELL_GAP = 2;
+
+    @Param({"3", "6"})
+    public int gridSize;
+
+    private BufferedImage cover;
+    private int cellSize;
+    private PixelStore pixelStore;
+    private BufferedImage[] heapCells;
+    private StoredImage[] storedCells;
+    private int nextCell;
+    private BufferedImage screen;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cellSize = (SCREEN_HEIGHT - CELL_GAP * (gridSize - 1)) / gridSize;
+        cover = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = cover.createGraphics();
+        try {
+            graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, cellSize, cellSize, Color.BLUE));
+            graphics.fillRect(0, 0, cellSize, cellSize);
+        } finally {
+            graphics.dispose();
+        }
+        screen = new BufferedImage(SCREEN_HEIGHT, SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        pixelStore = new PixelStore(256L * 1024 * 1024);
+        int cellCount = gridSize * gridSize;
+        heapCells = new BufferedImage[cellCount];
+        storedCells = new StoredImage[cellCount];
+        for (int i = 0; i < cellCount; i++) {
+            heapCells[i] = scale();
+            storedCells[i] = pixelStore.store(scale());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (StoredImage storedCell : storedCells) {
+            storedCell.release();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage replaceHeapCell() {
+        BufferedImage scaled = scale();
+        heapCells[nextCell()] = scaled;
+        return scaled;
+    }
+
+    @Benchmark
+    public StoredImage replaceStoredCell() {
+        int cell = nextCell();
+        storedCells[cell].release();
+        storedCells[cell] = pixelStore.store(scale());
+        return storedCells[cell];
+    }
+
+    @Benchmark
+    public BufferedImage paintHeapGrid() {
+        Graphics2D graphics = screen.createGraphics();
+        try {
+            for (int i = 0; i < heapCells.length; i++) {
+                graphics.drawImage(heapCells[i], cellX(i), cellY(i), null);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return screen;
+    }
+
+    @Benchmark
+    public BufferedImage paintStoredGrid() {
+        Graphics2D graphics = screen.createGraphics();
+        try {
+            for (int i = 0; i < storedCells.length; i++) {
+                storedCells[i].paint(graphics, cellX(i), cellY(i), cellSize, cellSize);
+            }
+        } finally {
+            graphics.dispose();
+        }
+        return screen;
+    }
+
+    private int cellX(int cell) {
+        return cell % gridSize * (cellSize + CELL_GAP);
+    }
+
+    private int cellY(int cell) {
+        return cell / gridSize * (cellSize + CELL_GAP);
+    }
+
+    private int nextCell() {
+        nextCell = (nextCell + 1) % heapCells.length;
+        return nextCell;
+    }
+
+    private BufferedImage scale() {
+        // Stands in for the last pass of the scaler, which draws into a new image of the cell size.
+        BufferedImage scaled = new BufferedImage(cellSize, cellSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.drawImage(cover, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,90 @@
+package org.interactunes.screensaver.services;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracts the image URLs from recorded search responses: a Discogs database search, with the streaming reader the
+ * service uses and with the JSON tree it used before, and a LastFM album search, with the JSON tree the service uses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResponseParseBenchmark {
+
+    private static final String DISCOGS_RESPONSE = "discogs/search-response.json";
+    private static final String LASTFM_RESPONSE = "lastfm/album-search-response.json";
+
+    private byte[] discogsResponse;
+    private byte[] lastFmResponse;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        discogsResponse = readResource(DISCOGS_RESPONSE);
+        lastFmResponse = readResource(LASTFM_RESPONSE);
+    }
+
+    @Benchmark
+    public DiscogsSearchPage discogsStreaming() throws IOException {
+        return DiscogsSearchResponseReader.readPage(new ByteArrayInputStream(discogsResponse));
+    }
+
+    @Benchmark
+    public List<String> discogsTree() {
+        JSONArray results = new JSONObject(new String(discogsResponse, StandardCharsets.UTF_8)).getJSONArray("results");
+        List<String> urls = new ArrayList<>(results.length());
+        for (int i = 0; i < results.length(); i++) {
+            String url = results.getJSONObject(i).optString("cover_image");
+            if (!url.isBlank()) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    @Benchmark
+    public List<String> lastFmTree() {
+        JSONObject results = new JSONObject(new String(lastFmResponse, StandardCharsets.UTF_8)).getJSONObject("results");
+        JSONArray albums = results.getJSONObject("albummatches").getJSONArray("album");
+        List<String> urls = new ArrayList<>(albums.length());
+        for (int i = 0; i < albums.length(); i++) {
+            JSONArray images = albums.getJSONObject(i).getJSONArray("image");
+            String url = images.getJSONObject(images.length() - 1).getString("#text");
+            if (!url.isBlank()) {
+                urls.add(url);
+            }
+        }
+        return urls;
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = SearchResponseParseBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return inputStream.readAllBytes();
+        }
+    }
+}
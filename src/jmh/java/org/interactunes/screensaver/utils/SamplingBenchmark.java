@@ -0,0 +1,67 @@
+package org.interactunes.screensaver.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Picks the first {@code needed} elements of a random order of {@code size} elements, the way the services pick the
+ * covers to show: by drawing indexes with {@link IndexSampler} and by shuffling a boxed list, as they did before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SamplingBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    @Param({"16"})
+    public int needed;
+
+    private IndexSampler sampler;
+    private List<Integer> boxed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sampler = new IndexSampler(42);
+        boxed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boxed.add(i);
+        }
+    }
+
+    @Benchmark
+    public void indexSampler(Blackhole blackhole) {
+        sampler.reset(size);
+        for (int i = 0; i < needed; i++) {
+            blackhole.consume(sampler.next());
+        }
+    }
+
+    @Benchmark
+    public void collectionsShuffle(Blackhole blackhole) {
+        Collections.shuffle(boxed);
+        for (int i = 0; i < needed; i++) {
+            blackhole.consume(boxed.get(i));
+        }
+    }
+}
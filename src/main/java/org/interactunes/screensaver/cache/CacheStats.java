@@ -0,0 +1,86 @@
+package org.interactunes.screensaver.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit, miss and eviction counters of the {@link CoverArtCache}.
+ */
+public class CacheStats {
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    void recordMemoryHit() {
+        memoryHits.incrementAndGet();
+    }
+
+    void recordDiskHit() {
+        diskHits.incrementAndGet();
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    void recordMemoryEviction() {
+        memoryEvictions.incrementAndGet();
+    }
+
+    void recordDiskEviction() {
+        diskEvictions.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of lookups served from the in-memory cache.
+     *
+     * @return The number of memory hits.
+     */
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Gets the number of lookups served from the disk cache.
+     *
+     * @return The number of disk hits.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Gets the number of lookups that had to be fetched from the network.
+     *
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of images evicted from the in-memory cache.
+     *
+     * @return The number of memory evictions.
+     */
+    public long getMemoryEvictions() {
+        return memoryEvictions.get();
+    }
+
+    /**
+     * Gets the number of files evicted from the disk cache.
+     *
+     * @return The number of disk evictions.
+     */
+    public long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache stats: memory hits=" + getMemoryHits() + ", disk hits=" + getDiskHits() + ", misses=" +
+                getMisses() + ", memory evictions=" + getMemoryEvictions() + ", disk evictions=" + getDiskEvictions();
+    }
+}
@@ -0,0 +1,145 @@
+package org.interactunes.screensaver.cache;
+
+import lombok.Getter;
+import org.interactunes.screensaver.images.ImageDecoder;
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A two-tier cache of cover art keyed by URL. Decoded images are kept in a size-bounded in-memory LRU cache and the raw
+ * encoded bytes are kept in an on-disk cache, so repeated covers cost neither a download nor, while they are in
+ * memory, a decode. Covers that are on disk survive restarts.
+ * <p>
+ * Images are decoded with subsampling close to the size the grid currently displays them at. If the grid has grown
+ * since an image was decoded, the cached image is too small and it is decoded again from the disk cache.
+ */
+public class CoverArtCache {
+
+    private static final long DEFAULT_MEMORY_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_DISK_BYTES = 256L * 1024 * 1024;
+    private static final Path DEFAULT_DIRECTORY = Path.of(System.getProperty("user.home"), ".interactunes", "cache", "covers");
+
+    private static CoverArtCache instance;
+
+    private final Logger logger = Logger.getLogger(CoverArtCache.class.getName());
+
+    @Getter
+    private final CacheStats stats;
+    private final MemoryImageCache memoryCache;
+    private final DiskByteCache diskCache;
+
+    /**
+     * Fetches the encoded bytes of a URL on a cache miss.
+     */
+    @FunctionalInterface
+    public interface ByteFetcher {
+
+        /**
+         * Fetches the encoded bytes.
+         *
+         * @param url The URL.
+         * @return The bytes.
+         * @throws IOException If an I/O error occurs.
+         */
+        byte[] fetch(String url) throws IOException;
+    }
+
+    /**
+     * Creates a new cover art cache.
+     *
+     * @param directory   The directory of the disk cache, or null to only cache in memory.
+     * @param memoryBytes The maximum approximate number of bytes held by decoded images in memory.
+     * @param diskBytes   The maximum total size of the files in the disk cache.
+     */
+    public CoverArtCache(Path directory, long memoryBytes, long diskBytes) {
+        stats = new CacheStats();
+        memoryCache = new MemoryImageCache(memoryBytes, stats);
+
+        DiskByteCache diskCache = null;
+        if (directory != null) {
+            try {
+                diskCache = new DiskByteCache(directory, diskBytes, stats);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, () -> "Failed to open disk cache at " + directory + ", caching in memory only. Error: " + e.getMessage());
+            }
+        }
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Gets the cache shared by the services, creating it on first use.
+     *
+     * @return The shared cache.
+     */
+    public static synchronized CoverArtCache getInstance() {
+        if (instance == null) {
+            instance = new CoverArtCache(DEFAULT_DIRECTORY, DEFAULT_MEMORY_BYTES, DEFAULT_DISK_BYTES);
+            instance.registerMetrics(MetricsRegistry.getInstance());
+        }
+        return instance;
+    }
+
+    /**
+     * Registers the hit, miss and eviction counters of the cache as gauges named {@code cache.*}.
+     *
+     * @param registry The registry.
+     */
+    public void registerMetrics(MetricsRegistry registry) {
+        registry.gauge("cache.memory.hits", stats::getMemoryHits);
+        registry.gauge("cache.disk.hits", stats::getDiskHits);
+        registry.gauge("cache.misses", stats::getMisses);
+        registry.gauge("cache.memory.evictions", stats::getMemoryEvictions);
+        registry.gauge("cache.disk.evictions", stats::getDiskEvictions);
+    }
+
+    /**
+     * Gets the image for the URL. The in-memory cache is checked first, then the disk cache, and only if both miss
+     * are the bytes fetched with the fetcher. Fetched bytes are stored on disk and the decoded image in memory.
+     *
+     * @param url     The URL of the image.
+     * @param fetcher The fetcher used on a miss.
+     * @return The image or null if the bytes could not be decoded.
+     * @throws IOException If the fetcher fails.
+     */
+    public BufferedImage get(String url, ByteFetcher fetcher) throws IOException {
+        int targetSize = ImageScaler.getInstance().getRequestedSize();
+        BufferedImage image = memoryCache.get(url);
+        if (image != null && Math.min(image.getWidth(), image.getHeight()) >= targetSize) {
+            stats.recordMemoryHit();
+            return image;
+        }
+
+        byte[] bytes = diskCache != null ? diskCache.get(url) : null;
+        if (bytes != null) {
+            image = decode(bytes, targetSize);
+            if (image != null) {
+                stats.recordDiskHit();
+                memoryCache.put(url, image);
+                return image;
+            }
+        }
+
+        stats.recordMiss();
+        bytes = fetcher.fetch(url);
+        image = decode(bytes, targetSize);
+        if (image == null) {
+            // Do not cache responses that are not images, e.g. error pages.
+            return null;
+        }
+        if (diskCache != null) {
+            diskCache.put(url, bytes);
+        }
+        memoryCache.put(url, image);
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] bytes, int targetSize) throws IOException {
+        return ImageDecoder.getInstance().decode(bytes, targetSize);
+    }
+}
@@ -0,0 +1,195 @@
+package org.interactunes.screensaver.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of raw encoded bytes. Each entry is stored as a file named after the SHA-256 hash of its key. The
+ * cache is bounded by the total size of the files and evicts the least recently used files first; the last access
+ * time is kept in the file modification time so that it survives restarts.
+ */
+public class DiskByteCache {
+
+    private static final String FILE_SUFFIX = ".bin";
+
+    private final Logger logger = Logger.getLogger(DiskByteCache.class.getName());
+
+    private final Path directory;
+    private final long maxBytes;
+    private final CacheStats stats;
+    private final LinkedHashMap<String, Long> fileSizes;
+
+    private long currentBytes;
+
+    /**
+     * Creates a new disk cache. Files already in the directory are indexed, oldest first, so they can be served and
+     * evicted as if they had been written by this instance.
+     *
+     * @param directory The directory to store the files in. Created if it does not exist.
+     * @param maxBytes  The maximum total size of the files.
+     * @param stats     The stats to record evictions in.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public DiskByteCache(Path directory, long maxBytes, CacheStats stats) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+        fileSizes = new LinkedHashMap<>(16, 0.75f, true);
+
+        Files.createDirectories(directory);
+        indexExistingFiles();
+    }
+
+    /**
+     * Reads the bytes stored for the key and marks the entry as most recently used.
+     *
+     * @param key The key.
+     * @return The bytes or null if nothing is stored for the key.
+     */
+    public byte[] get(String key) {
+        String fileName = fileNameOf(key);
+        synchronized (this) {
+            if (fileSizes.get(fileName) == null) {
+                return null;
+            }
+        }
+        Path file = directory.resolve(fileName);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return bytes;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to read cached file " + file + ". Error: " + e.getMessage());
+            synchronized (this) {
+                Long size = fileSizes.remove(fileName);
+                if (size != null) {
+                    currentBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Stores the bytes for the key, evicting the least recently used files if the cache is over its budget.
+     *
+     * @param key   The key.
+     * @param bytes The bytes.
+     */
+    public void put(String key, byte[] bytes) {
+        if (bytes.length > maxBytes) {
+            return;
+        }
+        String fileName = fileNameOf(key);
+        Path file = directory.resolve(fileName);
+        Path tempFile = null;
+        try {
+            // Write to a temporary file first so that readers never see a partially written entry.
+            tempFile = Files.createTempFile(directory, fileName, ".tmp");
+            Files.write(tempFile, bytes);
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to write cached file " + file + ". Error: " + e.getMessage());
+            return;
+        } finally {
+            // Only left behind if the write or the move failed.
+            deleteTempFile(tempFile);
+        }
+
+        List<String> evicted = new ArrayList<>();
+        synchronized (this) {
+            Long previous = fileSizes.put(fileName, (long) bytes.length);
+            if (previous != null) {
+                currentBytes -= previous;
+            }
+            currentBytes += bytes.length;
+
+            Iterator<Map.Entry<String, Long>> iterator = fileSizes.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                currentBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                iterator.remove();
+                stats.recordDiskEviction();
+            }
+        }
+        for (String evictedFileName : evicted) {
+            try {
+                Files.deleteIfExists(directory.resolve(evictedFileName));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, () -> "Failed to delete evicted file " + evictedFileName + ". Error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gets the total size of the cached files.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    /**
+     * Gets the number of cached files.
+     *
+     * @return The number of files.
+     */
+    public synchronized int size() {
+        return fileSizes.size();
+    }
+
+    private void indexExistingFiles() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted(Comparator.comparing(DiskByteCache::lastModified))
+                    .toList();
+        }
+        for (Path file : files) {
+            long size = Files.size(file);
+            fileSizes.put(file.getFileName().toString(), size);
+            currentBytes += size;
+        }
+        logger.log(Level.INFO, () -> "Indexed " + files.size() + " cached files in " + directory + ".");
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void deleteTempFile(Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to delete temporary file " + tempFile + ". Error: " + e.getMessage());
+        }
+    }
+
+    private static String fileNameOf(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash) + FILE_SUFFIX;
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.interactunes.screensaver.cache;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory least-recently-used cache of decoded images. The cache is bounded by the approximate number of bytes
+ * held by the image rasters rather than by the number of images, since covers vary a lot in resolution.
+ */
+public class MemoryImageCache {
+
+    private final LinkedHashMap<String, BufferedImage> images;
+    private final long maxBytes;
+    private final CacheStats stats;
+
+    private long currentBytes;
+
+    /**
+     * Creates a new in-memory image cache.
+     *
+     * @param maxBytes The maximum approximate number of bytes held by the cached images.
+     * @param stats    The stats to record evictions in.
+     */
+    public MemoryImageCache(long maxBytes, CacheStats stats) {
+        this.maxBytes = maxBytes;
+        this.stats = stats;
+        images = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the image for the key and marks it as most recently used.
+     *
+     * @param key The key.
+     * @return The image or null if the image is not cached.
+     */
+    public synchronized BufferedImage get(String key) {
+        return images.get(key);
+    }
+
+    /**
+     * Puts the image into the cache, evicting the least recently used images if the cache is over its budget. Images
+     * larger than the whole budget are not cached.
+     *
+     * @param key   The key.
+     * @param image The image.
+     */
+    public synchronized void put(String key, BufferedImage image) {
+        long size = sizeOf(image);
+        if (size > maxBytes) {
+            return;
+        }
+        BufferedImage previous = images.put(key, image);
+        if (previous != null) {
+            currentBytes -= sizeOf(previous);
+        }
+        currentBytes += size;
+
+        Iterator<Map.Entry<String, BufferedImage>> iterator = images.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, BufferedImage> eldest = iterator.next();
+            currentBytes -= sizeOf(eldest.getValue());
+            iterator.remove();
+            stats.recordMemoryEviction();
+        }
+    }
+
+    /**
+     * Gets the approximate number of bytes held by the cached images.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    /**
+     * Gets the number of cached images.
+     *
+     * @return The number of images.
+     */
+    public synchronized int size() {
+        return images.size();
+    }
+
+    static long sizeOf(BufferedImage image) {
+        int bytesPerPixel = Math.max(1, image.getColorModel().getPixelSize() / 8);
+        return (long) image.getWidth() * image.getHeight() * bytesPerPixel;
+    }
+}
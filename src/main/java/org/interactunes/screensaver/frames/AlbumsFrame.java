@@ -1,11 +1,29 @@
 package org.interactunes.screensaver.frames;
 
 import lombok.Getter;
-import lombok.Setter;
+import org.interactunes.screensaver.AppLauncher;
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.http.HostStats;
+import org.interactunes.screensaver.http.HttpTransport;
+import org.interactunes.screensaver.images.ImagePrefetcher;
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.images.PrefetchedImage;
+import org.interactunes.screensaver.logging.AsyncLogHandler;
+import org.interactunes.screensaver.metrics.Counter;
+import org.interactunes.screensaver.metrics.EdtStallMonitor;
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+import org.interactunes.screensaver.metrics.MetricsSnapshotWriter;
+import org.interactunes.screensaver.panels.AlbumGridCanvas;
+import org.interactunes.screensaver.panels.AlbumGridResizeCoordinator;
 import org.interactunes.screensaver.panels.AlbumImageCell;
+import org.interactunes.screensaver.panels.IAlbumCell;
+import org.interactunes.screensaver.services.AsyncAlbumCoverArtService;
 import org.interactunes.screensaver.services.DiscogsAlbumCoverArtService;
 import org.interactunes.screensaver.services.IAlbumCoverArtService;
 import org.interactunes.screensaver.services.LocalAlbumCoverArtService;
+import org.interactunes.screensaver.utils.CancellationScope;
+import org.interactunes.screensaver.utils.DotEnvInstance;
 import org.interactunes.screensaver.utils.IShowable;
 import org.interactunes.screensaver.utils.UtilMethods;
 
@@ -15,11 +33,19 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
 
 /**
  * A frame that displays album cover art.
@@ -36,15 +62,38 @@ public class AlbumsFrame implements IShowable {
     private static final int SETTINGS_FONT_SIZE = 16;
     private static final int LOADING_FONT_SIZE = 36;
     private static final int DEFAULT_IMAGE_CHANGE_INTERVAL_MS = 2000;
-    private static final int MAX_LOGS = 16;
+    private static final int MAX_LOGS = 4096;
+    private static final int DEFAULT_PREFETCH_DEPTH = 4;
+    private static final int PREFETCH_WORKER_COUNT = 2;
+    private static final int RESIZE_SETTLE_DELAY_MS = 150;
+    private static final Duration EDT_PROBE_INTERVAL = Duration.ofMillis(100);
+    private static final Duration EDT_STALL_THRESHOLD = Duration.ofMillis(100);
+    private static final Duration METRICS_SNAPSHOT_INTERVAL = Duration.ofSeconds(10);
+    private static final String METRICS_SNAPSHOT_FILE_KEY = "METRICS_SNAPSHOT_FILE";
+    private static final int LOG_QUEUE_CAPACITY = 4096;
+    private static final Duration LOG_REPEAT_WINDOW = Duration.ofSeconds(10);
+    private static final String LOG_FILE_KEY = "LOG_FILE";
+    private static final int LOG_FILE_LIMIT_BYTES = 5 * 1024 * 1024;
+    private static final int LOG_FILE_COUNT = 3;
+    private static final Image PLACEHOLDER_IMAGE = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
 
     private final Logger logger = Logger.getLogger(AlbumsFrame.class.getName());
+    private final Logger appLogger = Logger.getLogger(AppLauncher.class.getPackageName());
 
     private final JFrame frame;
     private final JPanel albumGridPanel;
+    private final AlbumGridCanvas albumGridCanvas;
     private final SettingsFrame settingsFrame;
     private final LogFrame logFrame;
+    private final AsyncLogHandler logHandler;
+    private final MetricsFrame metricsFrame;
+    private final EdtStallMonitor edtStallMonitor;
+    private final MetricsSnapshotWriter metricsSnapshotWriter;
+    private final LatencyHistogram tickLatency;
+    private final Counter emptyTicks;
     private final Timer imageChangeTimer;
+    private final ImagePrefetcher imagePrefetcher;
+    private final AlbumGridResizeCoordinator resizeCoordinator;
 
     private final JLabel loadingLabel;
     private final JPanel loadingPanel;
@@ -53,25 +102,51 @@ public class AlbumsFrame implements IShowable {
     private final LocalAlbumCoverArtService localAlbumCoverArtService;
     @Getter
     private final DiscogsAlbumCoverArtService discogsAlbumCoverArtService;
+    private final AsyncAlbumCoverArtService localAsyncService;
+    private final AsyncAlbumCoverArtService discogsAsyncService;
 
-    private List<AlbumImageCell> albumImageCells;
+    // Holds the loads that fill the grid, which are cancelled together when the grid is reset or reconfigured.
+    private CancellationScope gridLoads;
+
+    private List<IAlbumCell> albumImageCells;
 
-    @Setter
     @Getter
-    private boolean usingLocalAlbums;
+    private volatile boolean usingLocalAlbums;
 
     @Getter
     private int gridRowCount;
 
+    @Getter
+    private boolean paintedGrid;
+
     private boolean updating;
+    private int gridGeneration;
 
     /**
      * Create a new instance of the AlbumsFrame class.
      */
     public AlbumsFrame() {
+        logFrame = new LogFrame(MAX_LOGS);
+        logHandler = createLogHandler();
+        appLogger.setUseParentHandlers(false);
+        appLogger.addHandler(logHandler);
+
         usingLocalAlbums = true;
         localAlbumCoverArtService = new LocalAlbumCoverArtService();
         discogsAlbumCoverArtService = new DiscogsAlbumCoverArtService();
+        localAsyncService = new AsyncAlbumCoverArtService(localAlbumCoverArtService);
+        discogsAsyncService = new AsyncAlbumCoverArtService(discogsAlbumCoverArtService);
+        gridLoads = new CancellationScope();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.registerMBean();
+        tickLatency = metrics.histogram("grid.tick");
+        emptyTicks = metrics.counter("grid.tick.empty");
+        edtStallMonitor = new EdtStallMonitor(metrics, EDT_PROBE_INTERVAL, EDT_STALL_THRESHOLD);
+        String metricsSnapshotFile = DotEnvInstance.getOptional(METRICS_SNAPSHOT_FILE_KEY, null);
+        metricsSnapshotWriter = metricsSnapshotFile != null
+                ? new MetricsSnapshotWriter(metrics, Path.of(metricsSnapshotFile), METRICS_SNAPSHOT_INTERVAL)
+                : null;
 
         frame = new JFrame();
         frame.setTitle("InteracTunes ScreenSaver - Albums");
@@ -84,15 +159,30 @@ public class AlbumsFrame implements IShowable {
             @Override
             public void componentResized(ComponentEvent e) {
                 super.componentResized(e);
-                resizeAlbumImages();
+                // Resize events come in bursts while the window is dragged, so they are coalesced.
+                int imageSize = getCellImageSize();
+                imagePrefetcher.setTargetSize(imageSize);
+                resizeCoordinator.resize(imageSize);
             }
         });
         frame.addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosed(WindowEvent e) {
+                gridLoads.cancel();
                 settingsFrame.dispose();
                 logFrame.dispose();
+                metricsFrame.dispose();
+                edtStallMonitor.dispose();
+                if (metricsSnapshotWriter != null) {
+                    metricsSnapshotWriter.dispose();
+                }
                 imageChangeTimer.stop();
+                imagePrefetcher.dispose();
+                resizeCoordinator.dispose();
+                albumImageCells.forEach(IAlbumCell::release);
+                appLogger.removeHandler(logHandler);
+                appLogger.setUseParentHandlers(true);
+                logHandler.close();
                 super.windowClosed(e);
             }
         });
@@ -101,17 +191,20 @@ public class AlbumsFrame implements IShowable {
 
         albumGridPanel = new JPanel();
         frame.add(albumGridPanel, BorderLayout.CENTER);
-        albumGridPanel.setLayout(new GridLayout(gridRowCount, gridRowCount, DEFAULT_CELL_GAP, DEFAULT_CELL_GAP));
+        albumGridCanvas = new AlbumGridCanvas(DEFAULT_CELL_GAP);
 
         albumImageCells = new ArrayList<>();
-        repopulateAlbumGrid();
+
+        imagePrefetcher = new ImagePrefetcher(this::loadSingleAlbumImage, DEFAULT_PREFETCH_DEPTH,
+                PREFETCH_WORKER_COUNT, AlbumImageCell.DEFAULT_INIT_SIZE);
+        resizeCoordinator = new AlbumGridResizeCoordinator(() -> albumImageCells, RESIZE_SETTLE_DELAY_MS);
 
         Random random = new Random(System.currentTimeMillis());
         imageChangeTimer = createTimer(random);
         imageChangeTimer.setRepeats(true);
         imageChangeTimer.start();
 
-        JPanel buttonsRow = new JPanel(new GridLayout(1, 2));
+        JPanel buttonsRow = new JPanel(new GridLayout(1, 3));
         frame.add(buttonsRow, BorderLayout.SOUTH);
 
         settingsFrame = new SettingsFrame(this);
@@ -121,13 +214,19 @@ public class AlbumsFrame implements IShowable {
         settingsButton.addActionListener(e -> settingsFrame.show());
         buttonsRow.add(settingsButton);
 
-        logFrame = new LogFrame(MAX_LOGS);
         JButton logButton = new JButton("Logs");
         logButton.setPreferredSize(new Dimension(100, 100));
         logButton.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
         logButton.addActionListener(e -> logFrame.show());
         buttonsRow.add(logButton);
 
+        metricsFrame = new MetricsFrame(metrics);
+        JButton metricsButton = new JButton("Metrics");
+        metricsButton.setPreferredSize(new Dimension(100, 100));
+        metricsButton.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
+        metricsButton.addActionListener(e -> metricsFrame.show());
+        buttonsRow.add(metricsButton);
+
         loadingLabel = new JLabel("Loading...");
         loadingLabel.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(LOADING_FONT_SIZE)));
         loadingLabel.setBackground(Color.BLACK);
@@ -146,6 +245,9 @@ public class AlbumsFrame implements IShowable {
         loadingLabel.setVisible(false);
 
         frame.setGlassPane(loadingPanel);
+
+        imagePrefetcher.start();
+        updateGrid();
     }
 
     @Override
@@ -154,24 +256,17 @@ public class AlbumsFrame implements IShowable {
     }
 
     /**
-     * Add a log to the log frame.
-     *
-     * @param log the log to add
-     */
-    public void addLog(String log) {
-        if (logFrame != null) {
-            logFrame.addLog(log);
-        }
-    }
-
-    /**
-     * Set the number of rows and columns on the album grid.
+     * Set the number of rows and columns on the album grid. The images already on the grid are kept and only the
+     * images for new cells are fetched.
      *
      * @param gridRowCount the number of rows and columns on the album grid
      */
     void setGridRowCount(int gridRowCount) {
+        if (this.gridRowCount == gridRowCount) {
+            return;
+        }
         this.gridRowCount = gridRowCount;
-        updateGrid();
+        reconfigureGrid(false);
     }
 
     private void setUpdating(boolean updating) {
@@ -181,22 +276,94 @@ public class AlbumsFrame implements IShowable {
     }
 
     /**
-     * Update the album grid. Repopulates the album grid with new album images. Resizes the album images.
+     * Set whether the album grid is painted by a single component instead of a panel per cell.
+     *
+     * @param paintedGrid true to paint the grid from a single component
+     */
+    void setPaintedGrid(boolean paintedGrid) {
+        if (this.paintedGrid == paintedGrid) {
+            return;
+        }
+        this.paintedGrid = paintedGrid;
+        reconfigureGrid(true);
+    }
+
+    /**
+     * Update the album grid. Repopulates the album grid with new album images in the background and resizes them.
+     * Loads for the grid that are still in flight are cancelled.
      */
     void updateGrid() {
+        CancellationScope scope = resetGridLoads();
         setUpdating(true);
 
-        SwingUtilities.invokeLater(() -> {
-            albumGridPanel.removeAll();
-            albumGridPanel.setLayout(new GridLayout(gridRowCount, gridRowCount, 10, 10));
-            repopulateAlbumGrid();
-            resizeAlbumImages();
+        loadAlbumImagesAsync(getCellCount(), scope).whenComplete((images, error) -> SwingUtilities.invokeLater(() -> {
+            if (scope.isCancelled()) {
+                return;
+            }
+            if (error != null) {
+                logger.log(Level.WARNING, () -> "Failed to load album images. Error: " + error.getMessage());
+            } else {
+                buildAlbumGrid(images);
+                resizeAlbumImages();
+                albumGridPanel.revalidate();
+            }
+            setUpdating(false);
+            frame.repaint();
+        }));
+    }
 
-            SwingUtilities.invokeLater(() -> {
-                setUpdating(false);
-                frame.repaint();
-            });
-        });
+    /**
+     * Set the search query of the Discogs service. The service cancels its searches and downloads for the previous
+     * query, and the images of the previous query that are still being loaded are dropped.
+     *
+     * @param query the search query
+     */
+    void setSearchQuery(String query) {
+        if (query.equals(discogsAlbumCoverArtService.getSearchQuery())) {
+            return;
+        }
+        discogsAlbumCoverArtService.setSearchQuery(query);
+        supersedeLoads();
+    }
+
+    /**
+     * Set whether the album images come from the local library instead of Discogs. The images of the previous service
+     * that are still being loaded are dropped, and the downloads of the Discogs service are cancelled when switching
+     * away from it.
+     *
+     * @param usingLocalAlbums true to use the local library
+     */
+    public void setUsingLocalAlbums(boolean usingLocalAlbums) {
+        if (this.usingLocalAlbums == usingLocalAlbums) {
+            return;
+        }
+        this.usingLocalAlbums = usingLocalAlbums;
+        if (usingLocalAlbums) {
+            discogsAlbumCoverArtService.cancelPendingLoads();
+        }
+        supersedeLoads();
+    }
+
+    /**
+     * Starts a new generation of loads after the source of the images changed. The grid loads in flight are cancelled
+     * and restarted for the new source if the grid was being reset, and the prefetched images are dropped.
+     */
+    private void supersedeLoads() {
+        boolean wasUpdating = updating;
+        resetGridLoads();
+        imagePrefetcher.invalidate();
+        if (wasUpdating) {
+            updateGrid();
+        }
+    }
+
+    private CancellationScope resetGridLoads() {
+        gridLoads.cancel();
+        gridLoads = new CancellationScope();
+        if (updating) {
+            setUpdating(false);
+        }
+        return gridLoads;
     }
 
     /**
@@ -217,29 +384,68 @@ public class AlbumsFrame implements IShowable {
         return imageChangeTimer.getDelay() / 1000;
     }
 
+    /**
+     * Set the number of images kept ready ahead of the image change timer.
+     *
+     * @param depth the number of prefetched images
+     */
+    void setPrefetchDepth(int depth) {
+        imagePrefetcher.setDepth(depth);
+    }
+
+    /**
+     * Get the number of images kept ready ahead of the image change timer.
+     *
+     * @return the number of prefetched images
+     */
+    int getPrefetchDepth() {
+        return imagePrefetcher.getDepth();
+    }
+
+    /**
+     * Creates the handler that passes the records of the app's loggers on to the log frame, the console and, if
+     * {@code LOG_FILE} is set, a rolling log file. The records are passed on by a background thread, so logging never
+     * waits for the console, the file or the EDT.
+     */
+    private AsyncLogHandler createLogHandler() {
+        AsyncLogHandler handler = new AsyncLogHandler(LOG_QUEUE_CAPACITY, LOG_REPEAT_WINDOW);
+        handler.addTarget(logFrame.getLogHandler());
+        handler.addTarget(new ConsoleHandler());
+        String logFile = DotEnvInstance.getOptional(LOG_FILE_KEY, null);
+        if (logFile != null) {
+            try {
+                FileHandler fileHandler = new FileHandler(logFile, LOG_FILE_LIMIT_BYTES, LOG_FILE_COUNT, true);
+                fileHandler.setFormatter(new SimpleFormatter());
+                handler.addTarget(fileHandler);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, () -> "Failed to open log file " + logFile + ". Error: " + e.getMessage());
+            }
+        }
+        return handler;
+    }
+
     private Timer createTimer(Random random) {
         return new Timer(DEFAULT_IMAGE_CHANGE_INTERVAL_MS, e -> {
-            if (updating) {
+            if (updating || albumImageCells.isEmpty()) {
                 return;
             }
 
-            int randomIndex = random.nextInt(albumImageCells.size());
-
-            Image image = loadSingleAlbumImage();
-            if (image == null) {
-                String error = "Failed to load album image.";
-                logger.log(Level.WARNING, error);
-                addLog(error);
-
+            long start = System.nanoTime();
+            // The image is fetched and scaled by the prefetcher's worker threads, so the EDT never blocks here.
+            PrefetchedImage prefetchedImage = imagePrefetcher.poll();
+            if (prefetchedImage == null) {
+                emptyTicks.increment();
+                logger.log(Level.WARNING, "No prefetched album image ready.");
                 return;
             }
 
-            String info = "Replaced image at index " + randomIndex + " with new image.";
-            logger.log(Level.INFO, info);
-            addLog(info);
+            int randomIndex = random.nextInt(albumImageCells.size());
+
+            logger.log(Level.INFO, () -> "Replaced image at index " + randomIndex + " with new image.");
 
-            AlbumImageCell albumImageCell = albumImageCells.get(randomIndex);
-            albumImageCell.setImage(image);
+            IAlbumCell albumImageCell = albumImageCells.get(randomIndex);
+            albumImageCell.setImage(prefetchedImage.original(), prefetchedImage.scaled());
+            tickLatency.recordSince(start);
         });
     }
 
@@ -247,9 +453,129 @@ public class AlbumsFrame implements IShowable {
         return gridRowCount * gridRowCount;
     }
 
-    private void repopulateAlbumGrid() {
+    /**
+     * Adapts the grid to the current row count and kind without throwing away the images that are already decoded.
+     * The cells that still fit are kept along with their scaled images, and only the difference is added or removed.
+     * New cells are first filled from the prefetch buffer and the remaining images are fetched in the background while
+     * placeholder cells are shown. All images are then rescaled for the new cell size on worker threads by the
+     * {@link AlbumGridResizeCoordinator}.
+     *
+     * @param replaceCells True to replace all cells, keeping only their images, as when the kind of grid changes.
+     */
+    private void reconfigureGrid(boolean replaceCells) {
+        // Loads for the previous layout would be dropped anyway.
+        resetGridLoads();
+        int cellCount = getCellCount();
+        int imageSize = getCellImageSize();
+
+        List<PrefetchedImage> addedImages = new ArrayList<>();
+        if (replaceCells || albumImageCells.isEmpty()) {
+            for (int i = 0; i < albumImageCells.size() && i < cellCount; i++) {
+                addedImages.add(new PrefetchedImage(albumImageCells.get(i).getImage(), null, 0));
+            }
+            albumImageCells.forEach(IAlbumCell::release);
+            albumImageCells = new ArrayList<>();
+            setUpGridPanel();
+        }
+        int keptCount = Math.min(albumImageCells.size(), cellCount);
+        int reusedCount = keptCount + addedImages.size();
+
+        while (keptCount + addedImages.size() < cellCount) {
+            PrefetchedImage prefetchedImage = imagePrefetcher.poll();
+            if (prefetchedImage == null) {
+                break;
+            }
+            addedImages.add(prefetchedImage);
+        }
+
+        int firstMissingIndex = keptCount + addedImages.size();
+        int missingCount = cellCount - firstMissingIndex;
+        while (keptCount + addedImages.size() < cellCount) {
+            addedImages.add(new PrefetchedImage(PLACEHOLDER_IMAGE, null, 0));
+        }
+
+        gridGeneration++;
+        if (paintedGrid) {
+            albumImageCells = albumGridCanvas.setRowCount(gridRowCount, addedImages, imageSize);
+        } else {
+            resizeCellPanels(addedImages, imageSize);
+        }
+        // The kept cells are stretched right away, and all cells are scaled for the new size on worker threads.
+        imagePrefetcher.setTargetSize(imageSize);
+        resizeCoordinator.resizeNow(imageSize);
+        albumGridPanel.revalidate();
+        frame.repaint();
+
+        logger.log(Level.INFO, () -> "Reconfigured grid to " + gridRowCount + "x" + gridRowCount + ". Reused " +
+                reusedCount + " images, fetching " + missingCount + " images.");
+
+        if (missingCount > 0) {
+            fetchMissingImages(firstMissingIndex, missingCount);
+        }
+    }
+
+    /**
+     * Removes the panels of the cells beyond the grid and adds panels for the added images after the kept ones.
+     */
+    private void resizeCellPanels(List<PrefetchedImage> addedImages, int imageSize) {
+        int cellCount = getCellCount();
+        List<IAlbumCell> cells = new ArrayList<>(albumImageCells);
+        while (cells.size() > cellCount) {
+            albumGridPanel.remove(cells.size() - 1);
+            cells.remove(cells.size() - 1).release();
+        }
+        for (PrefetchedImage addedImage : addedImages) {
+            AlbumImageCell imageCell = new AlbumImageCell(addedImage, imageSize);
+            cells.add(imageCell);
+            albumGridPanel.add(imageCell.getPanel());
+        }
+        albumGridPanel.setLayout(new GridLayout(gridRowCount, gridRowCount, DEFAULT_CELL_GAP, DEFAULT_CELL_GAP));
+        albumImageCells = cells;
+    }
+
+    private void fetchMissingImages(int firstIndex, int count) {
+        int fetchGeneration = gridGeneration;
+        CancellationScope scope = gridLoads;
+        int imageSize = getCellImageSize();
+        loadAlbumImagesAsync(count, scope).whenComplete((images, error) -> {
+            // Scaled on the loading thread, so that the new cells only have to display them.
+            List<Image> scaledImages = new ArrayList<>();
+            if (images != null && !scope.isCancelled()) {
+                for (Image image : images) {
+                    scaledImages.add(imageSize > 0 ? ImageScaler.getInstance().getScaledImage(image, imageSize) : null);
+                }
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (scope.isCancelled() || fetchGeneration != gridGeneration) {
+                    return;
+                }
+                if (error != null) {
+                    logger.log(Level.WARNING, () -> "Failed to fetch images for new cells. Error: " + error.getMessage());
+                    return;
+                }
+                for (int i = 0; i < images.size() && firstIndex + i < albumImageCells.size(); i++) {
+                    IAlbumCell albumImageCell = albumImageCells.get(firstIndex + i);
+                    // The image change timer may already have replaced the placeholder.
+                    if (albumImageCell.getImage() == PLACEHOLDER_IMAGE) {
+                        albumImageCell.setImage(images.get(i), scaledImages.get(i));
+                    }
+                }
+            });
+        });
+    }
+
+    private void buildAlbumGrid(List<Image> images) {
+        gridGeneration++;
+        // The images are carried over by reference; the scaled pixels of the replaced cells go back to the store.
+        albumImageCells.forEach(IAlbumCell::release);
+        setUpGridPanel();
+
+        if (paintedGrid) {
+            albumImageCells = albumGridCanvas.setImages(images, gridRowCount, AlbumImageCell.DEFAULT_INIT_SIZE);
+            return;
+        }
+
         albumImageCells = new ArrayList<>();
-        List<Image> images = loadAlbumImages(getCellCount());
         for (Image image : images) {
             AlbumImageCell imageCell = new AlbumImageCell(image);
             albumImageCells.add(imageCell);
@@ -257,32 +583,64 @@ public class AlbumsFrame implements IShowable {
         }
     }
 
+    /**
+     * Empties the grid panel and sets it up for the current kind of grid.
+     */
+    private void setUpGridPanel() {
+        albumGridPanel.removeAll();
+        if (paintedGrid) {
+            albumGridPanel.setLayout(new BorderLayout());
+            albumGridPanel.add(albumGridCanvas, BorderLayout.CENTER);
+            albumGridCanvas.setImages(List.of(), gridRowCount, AlbumImageCell.DEFAULT_INIT_SIZE);
+        } else {
+            albumGridPanel.setLayout(new GridLayout(gridRowCount, gridRowCount, DEFAULT_CELL_GAP, DEFAULT_CELL_GAP));
+        }
+    }
+
     private IAlbumCoverArtService getAlbumCoverArtService(boolean usingLocalAlbums) {
         return usingLocalAlbums ? localAlbumCoverArtService : discogsAlbumCoverArtService;
     }
 
-    private List<Image> loadAlbumImages(int amount) {
-        logger.log(Level.INFO, "Loading " + amount + " album images.");
-        addLog("Loading " + amount + " album images.");
-
-        IAlbumCoverArtService albumCoverArtService = getAlbumCoverArtService(usingLocalAlbums);
-        List<Image> images = albumCoverArtService.getAlbumCoverArt(amount);
-
-        // If the amount of images loaded is less than the requested amount, try again with the other service.
-        if (images.size() < amount) {
-            String error = "Failed to load album images using " + albumCoverArtService.getClass().getSimpleName() + ". Falling back to other service.";
-            logger.log(Level.WARNING, error);
-            addLog(error);
-
-            albumCoverArtService = getAlbumCoverArtService(!usingLocalAlbums);
-
-            int remaining = amount - images.size();
-            images.addAll(albumCoverArtService.getAlbumCoverArt(remaining));
-        }
+    private AsyncAlbumCoverArtService getAsyncAlbumCoverArtService(boolean usingLocalAlbums) {
+        return usingLocalAlbums ? localAsyncService : discogsAsyncService;
+    }
 
-        logger.log(Level.INFO, "Loaded " + images.size() + " album images.");
-        addLog("Loaded " + images.size() + " album images.");
-        return images;
+    /**
+     * Loads album images in the background. Every stage of the load is added to the scope, so cancelling the scope
+     * also cancels the fallback to the other service if it has already started.
+     */
+    private CompletableFuture<List<Image>> loadAlbumImagesAsync(int amount, CancellationScope scope) {
+        logger.log(Level.INFO, () -> "Loading " + amount + " album images.");
+
+        boolean local = usingLocalAlbums;
+        AsyncAlbumCoverArtService albumCoverArtService = getAsyncAlbumCoverArtService(local);
+        CompletableFuture<List<Image>> images = scope.track(albumCoverArtService.getAlbumCoverArtAsync(amount))
+                .thenCompose(loadedImages -> {
+                    if (loadedImages.size() >= amount) {
+                        return CompletableFuture.completedFuture(loadedImages);
+                    }
+
+                    // If the amount of images loaded is less than the requested amount, try again with the other service.
+                    logger.log(Level.WARNING, "Failed to load album images using {0}. Falling back to other service.",
+                            albumCoverArtService.getService().getClass().getSimpleName());
+                    int remaining = amount - loadedImages.size();
+                    return scope.track(getAsyncAlbumCoverArtService(!local).getAlbumCoverArtAsync(remaining))
+                            .thenApply(fallbackImages -> {
+                                List<Image> allImages = new ArrayList<>(loadedImages);
+                                allImages.addAll(fallbackImages);
+                                return allImages;
+                            });
+                });
+        return scope.track(images).whenComplete((loadedImages, error) -> {
+            if (loadedImages == null) {
+                return;
+            }
+            logger.log(Level.INFO, () -> "Loaded " + loadedImages.size() + " album images.");
+            logger.log(Level.INFO, () -> CoverArtCache.getInstance().getStats().toString());
+            for (HostStats hostStats : HttpTransport.getInstance().getHostStats()) {
+                logger.log(Level.INFO, hostStats::toString);
+            }
+        });
     }
 
     private Image loadSingleAlbumImage() {
@@ -291,9 +649,8 @@ public class AlbumsFrame implements IShowable {
 
         // If the image is null, try again with the other service.
         if (image == null) {
-            String error = "Failed to load album image using " + albumCoverArtService.getClass().getSimpleName() + ". Falling back to other service.";
-            logger.log(Level.WARNING, error);
-            addLog(error);
+            logger.log(Level.WARNING, "Failed to load album image using {0}. Falling back to other service.",
+                    albumCoverArtService.getClass().getSimpleName());
 
             albumCoverArtService = getAlbumCoverArtService(!usingLocalAlbums);
             image = albumCoverArtService.getRandomAlbumCoverArt();
@@ -308,12 +665,19 @@ public class AlbumsFrame implements IShowable {
             setUpdating(true);
         }
 
-        int cellWidth = albumGridPanel.getWidth() / gridRowCount;
-        int cellHeight = albumGridPanel.getHeight() / gridRowCount;
-        albumImageCells.forEach(albumImageCell -> albumImageCell.resize(cellWidth, cellHeight));
+        int imageSize = getCellImageSize();
+        ImageScaler.getInstance().setRequestedSize(imageSize);
+        albumImageCells.forEach(albumImageCell -> albumImageCell.resize(imageSize, imageSize));
+        imagePrefetcher.setTargetSize(imageSize);
 
         if (!isUpdatingOnStart) {
             setUpdating(false);
         }
     }
+
+    private int getCellImageSize() {
+        int cellWidth = albumGridPanel.getWidth() / gridRowCount;
+        int cellHeight = albumGridPanel.getHeight() / gridRowCount;
+        return Math.min(cellWidth, cellHeight);
+    }
 }
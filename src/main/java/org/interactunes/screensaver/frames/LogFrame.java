@@ -1,40 +1,65 @@
 package org.interactunes.screensaver.frames;
 
+import lombok.Getter;
+import org.interactunes.screensaver.logging.LogEvent;
+import org.interactunes.screensaver.logging.LogRingBuffer;
+import org.interactunes.screensaver.logging.RingBufferHandler;
 import org.interactunes.screensaver.utils.IDisposable;
 import org.interactunes.screensaver.utils.IShowable;
 import org.interactunes.screensaver.utils.UtilMethods;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.LinkedList;
+import java.awt.event.MouseEvent;
+import java.util.logging.Level;
 
 /**
- * A frame that displays the log.
+ * A frame that displays the log. The log is kept in a {@link LogRingBuffer}, so logging from any thread costs the same
+ * regardless of the capacity, and the list is refreshed on the EDT at most once per frame however much is logged.
+ * Records of {@link java.util.logging.Logger}s are added through {@link #getLogHandler()}.
+ * <p>
+ * All rows have the size of a prototype event, so the list never measures the events themselves, which would take
+ * time in proportion to the capacity on every refresh. Events longer than the prototype are cut off and shown in full
+ * in their tooltip.
  */
 public class LogFrame implements IShowable, IDisposable {
 
+    private static final LogEvent PROTOTYPE_EVENT = new LogEvent(0, 0, Level.WARNING, null, "x".repeat(120));
+
     private final JFrame frame;
-    private final DefaultListModel<String> logListModel;
-    private final LinkedList<String> logQueue;
-    private final int maxCapacity;
+    @Getter
+    private final LogRingBuffer logBuffer;
+    private final LogListModel logListModel;
+    @Getter
+    private final RingBufferHandler logHandler;
 
     /**
      * Creates a new log frame.
      *
-     * @param maxCapacity The maximum amount of logs to display before removing the oldest log.
+     * @param maxCapacity The minimum amount of logs to display before overwriting the oldest log, rounded up to a power
+     *                    of two.
      */
     public LogFrame(int maxCapacity) {
-        this.maxCapacity = maxCapacity;
 
         frame = new JFrame("Log");
         frame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
         frame.setMinimumSize(new Dimension(750, 600));
         frame.setLocationRelativeTo(null);
 
-        logListModel = new DefaultListModel<>();
-        logQueue = new LinkedList<>();
-        JList<String> logs = new JList<>(logListModel);
+        logBuffer = new LogRingBuffer(maxCapacity);
+        logListModel = new LogListModel(logBuffer);
+        logHandler = new RingBufferHandler(logBuffer, logListModel::requestRefresh);
+        JList<LogEvent> logs = new JList<>(logListModel) {
+            @Override
+            public String getToolTipText(MouseEvent event) {
+                int index = locationToIndex(event.getPoint());
+                LogEvent logEvent = index < 0 ? null : getModel().getElementAt(index);
+                return logEvent == null ? null : logEvent.toString();
+            }
+        };
         logs.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(12)));
+        // Set after the font, as the prototype is measured right away.
+        logs.setPrototypeCellValue(PROTOTYPE_EVENT);
         logs.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         logs.setLayoutOrientation(JList.VERTICAL);
         logs.setVisibleRowCount(4);
@@ -55,16 +80,23 @@ public class LogFrame implements IShowable, IDisposable {
     }
 
     /**
-     * Adds a log to the log frame.
+     * Adds an info log to the log frame. Safe to call from any thread.
      *
      * @param log The log to add.
      */
     public void addLog(String log) {
-        if (logQueue.size() >= maxCapacity) {
-            String removedLog = logQueue.removeFirst();
-            logListModel.removeElement(removedLog);
-        }
-        logQueue.addLast(log);
-        logListModel.addElement(log);
+        addLog(Level.INFO, null, log);
+    }
+
+    /**
+     * Adds a log to the log frame. Safe to call from any thread.
+     *
+     * @param level   The level of the log.
+     * @param source  The name of the logger or component that logged it, or null.
+     * @param message The message.
+     */
+    public void addLog(Level level, String source, String message) {
+        logBuffer.append(level, source, message);
+        logListModel.requestRefresh();
     }
 }
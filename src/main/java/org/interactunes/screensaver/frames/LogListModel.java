@@ -0,0 +1,110 @@
+package org.interactunes.screensaver.frames;
+
+import org.interactunes.screensaver.logging.LogEvent;
+import org.interactunes.screensaver.logging.LogRingBuffer;
+
+import javax.swing.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A list model that reads the events of a {@link LogRingBuffer} in place instead of copying them. The model only
+ * keeps the range of sequence numbers it currently shows, and catches up with the ring on the EDT when a refresh is
+ * requested. Refreshes are coalesced: however many events are appended, at most one refresh is pending, and refreshes
+ * run at most once per frame.
+ */
+class LogListModel extends AbstractListModel<LogEvent> {
+
+    private static final long serialVersionUID = 1L;
+
+    static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private final LogRingBuffer ring;
+    private final AtomicBoolean refreshPending;
+    private final Timer deferredRefresh;
+
+    // Only touched on the EDT. The model shows the sequence numbers from start (inclusive) to end (exclusive).
+    private long start;
+    private long end;
+    private long lastRefreshNanos;
+
+    /**
+     * Creates a new list model of the ring buffer.
+     *
+     * @param ring The ring buffer.
+     */
+    LogListModel(LogRingBuffer ring) {
+        this.ring = ring;
+        refreshPending = new AtomicBoolean();
+        deferredRefresh = new Timer(0, e -> refresh());
+        deferredRefresh.setRepeats(false);
+        lastRefreshNanos = System.nanoTime() - FRAME_NANOS;
+    }
+
+    /**
+     * Requests the model to catch up with the ring buffer. Safe to call from any thread; does nothing if a refresh is
+     * already pending.
+     */
+    void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::refreshWhenDue);
+        }
+    }
+
+    private void refreshWhenDue() {
+        long sinceLastRefresh = System.nanoTime() - lastRefreshNanos;
+        if (sinceLastRefresh >= FRAME_NANOS) {
+            refresh();
+            return;
+        }
+        deferredRefresh.setInitialDelay((int) TimeUnit.NANOSECONDS.toMillis(FRAME_NANOS - sinceLastRefresh) + 1);
+        deferredRefresh.restart();
+    }
+
+    /**
+     * Catches up with the ring buffer right away. Must be called on the EDT.
+     */
+    void refresh() {
+        // Cleared first, so events appended while catching up request another refresh instead of being missed.
+        refreshPending.set(false);
+        lastRefreshNanos = System.nanoTime();
+
+        long claimed = ring.getNextSequence();
+        long oldest = Math.max(0, claimed - ring.getCapacity());
+        // Events are published out of order by concurrent appends, so the model stops at the first one not yet visible.
+        long newEnd = Math.max(end, oldest);
+        while (newEnd < claimed && ring.get(newEnd) != null) {
+            newEnd++;
+        }
+        long newStart = Math.max(start, Math.min(oldest, newEnd));
+
+        if (newStart > start) {
+            int removed = (int) (Math.min(newStart, end) - start);
+            start = newStart;
+            end = Math.max(end, start);
+            if (removed > 0) {
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+        }
+        if (newEnd > end) {
+            int first = (int) (end - start);
+            end = newEnd;
+            fireIntervalAdded(this, first, (int) (end - start) - 1);
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return (int) (end - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Might be null if the event has been overwritten since the last refresh, which the next refresh removes.
+     */
+    @Override
+    public LogEvent getElementAt(int index) {
+        return ring.get(start + index);
+    }
+}
@@ -0,0 +1,125 @@
+package org.interactunes.screensaver.frames;
+
+import org.interactunes.screensaver.metrics.MetricSample;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+import org.interactunes.screensaver.utils.IDisposable;
+import org.interactunes.screensaver.utils.IShowable;
+import org.interactunes.screensaver.utils.UtilMethods;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.List;
+
+/**
+ * A frame that displays the metrics of a {@link MetricsRegistry} in a table, refreshed every second while the frame is
+ * visible. Durations are in milliseconds.
+ */
+public class MetricsFrame implements IShowable, IDisposable {
+
+    private static final int REFRESH_INTERVAL_MS = 1000;
+    private static final String[] COLUMNS = {"Metric", "Count / Value", "Mean", "p50", "p90", "p99", "p99.9", "Max"};
+    private static final String[] HISTOGRAM_KEYS = {"mean", "p50", "p90", "p99", "p999", "max"};
+
+    private final JFrame frame;
+    private final MetricsRegistry registry;
+    private final MetricsTableModel tableModel;
+    private final Timer refreshTimer;
+
+    /**
+     * Creates a new metrics frame.
+     *
+     * @param registry The registry to display.
+     */
+    public MetricsFrame(MetricsRegistry registry) {
+        this.registry = registry;
+
+        frame = new JFrame("Metrics");
+        frame.setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+        frame.setMinimumSize(new Dimension(750, 600));
+        frame.setLocationRelativeTo(null);
+
+        tableModel = new MetricsTableModel();
+        JTable table = new JTable(tableModel);
+        table.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(12)));
+        table.setRowHeight(table.getFontMetrics(table.getFont()).getHeight() + 4);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+
+        JScrollPane tableScroller = new JScrollPane(table);
+        tableScroller.setPreferredSize(new Dimension(750, 600));
+        frame.add(tableScroller);
+
+        // Only refresh while someone is looking; the snapshot walks every histogram.
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                refreshTimer.stop();
+            }
+        });
+    }
+
+    @Override
+    public void show() {
+        refresh();
+        refreshTimer.start();
+        frame.setVisible(true);
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        frame.dispose();
+    }
+
+    private void refresh() {
+        tableModel.setSamples(registry.snapshot());
+    }
+
+    private static class MetricsTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private List<MetricSample> samples = List.of();
+
+        private void setSamples(List<MetricSample> samples) {
+            this.samples = samples;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return samples.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            MetricSample sample = samples.get(row);
+            if (column == 0) {
+                return sample.name();
+            }
+            if (column == 1) {
+                return switch (sample.type()) {
+                    case COUNTER, HISTOGRAM -> String.format("%d", (long) sample.get("count"));
+                    case GAUGE -> String.format("%.2f", sample.get("value"));
+                };
+            }
+            if (sample.type() != MetricSample.MetricType.HISTOGRAM) {
+                return "";
+            }
+            return String.format("%.2f", sample.get(HISTOGRAM_KEYS[column - 2]));
+        }
+    }
+}
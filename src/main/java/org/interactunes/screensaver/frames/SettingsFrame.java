@@ -16,8 +16,11 @@ public class SettingsFrame implements IShowable, IDisposable {
     private static final int SETTINGS_FONT_SIZE = 16;
     private static final Integer[] GRID_SIZES = {2, 3, 4, 5, 6};
     private static final Integer[] IMAGE_UPDATE_DELAYS = {2, 3, 4, 5};
+    private static final Integer[] PREFETCH_DEPTHS = {1, 2, 4, 8, 16};
     private static final String LOCAL = "Local";
     private static final String DISCOGS = "Discogs";
+    private static final String CELLS_RENDERER = "Cells";
+    private static final String PAINTED_RENDERER = "Painted";
 
     private final Logger logger = Logger.getLogger(SettingsFrame.class.getName());
     private final JFrame settingsFrame;
@@ -42,7 +45,9 @@ public class SettingsFrame implements IShowable, IDisposable {
         settingsFrame.add(settingsPanel);
 
         createGridSizeSetting(settingsPanel, albumsFrame);
+        createRendererSetting(settingsPanel, albumsFrame);
         createImageUpdateSetting(settingsPanel, albumsFrame);
+        createPrefetchDepthSetting(settingsPanel, albumsFrame);
         createServiceSetting(settingsPanel, albumsFrame);
         createQuerySetting(settingsPanel, albumsFrame);
         createResetButton(settingsPanel, albumsFrame);
@@ -76,6 +81,23 @@ public class SettingsFrame implements IShowable, IDisposable {
         parent.add(gridSizeComboBox);
     }
 
+    private void createRendererSetting(JPanel parent, AlbumsFrame albumsFrame) {
+        JLabel rendererLabel = new JLabel("Renderer:");
+        rendererLabel.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
+        JComboBox<String> rendererComboBox = new JComboBox<>(new String[]{CELLS_RENDERER, PAINTED_RENDERER});
+        rendererComboBox.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
+        rendererComboBox.setSelectedItem(albumsFrame.isPaintedGrid() ? PAINTED_RENDERER : CELLS_RENDERER);
+        rendererComboBox.addActionListener(e -> {
+            Object selection = rendererComboBox.getSelectedItem();
+            if (!(selection instanceof String renderer)) {
+                return;
+            }
+            albumsFrame.setPaintedGrid(renderer.equals(PAINTED_RENDERER));
+        });
+        parent.add(rendererLabel);
+        parent.add(rendererComboBox);
+    }
+
     private void createImageUpdateSetting(JPanel parent, AlbumsFrame albumsFrame) {
         JLabel imageUpdateDelayLabel = new JLabel("Image Update Delay (ms):");
         imageUpdateDelayLabel.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
@@ -93,6 +115,23 @@ public class SettingsFrame implements IShowable, IDisposable {
         parent.add(imageUpdateComboBox);
     }
 
+    private void createPrefetchDepthSetting(JPanel parent, AlbumsFrame albumsFrame) {
+        JLabel prefetchDepthLabel = new JLabel("Prefetched Images:");
+        prefetchDepthLabel.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
+        JComboBox<Integer> prefetchDepthComboBox = new JComboBox<>(PREFETCH_DEPTHS);
+        prefetchDepthComboBox.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
+        prefetchDepthComboBox.setSelectedItem(albumsFrame.getPrefetchDepth());
+        prefetchDepthComboBox.addActionListener(e -> {
+            Object selection = prefetchDepthComboBox.getSelectedItem();
+            if (!(selection instanceof Integer depth)) {
+                return;
+            }
+            albumsFrame.setPrefetchDepth(depth);
+        });
+        parent.add(prefetchDepthLabel);
+        parent.add(prefetchDepthComboBox);
+    }
+
     private void createServiceSetting(JPanel parent, AlbumsFrame albumsFrame) {
         JLabel serviceLabel = new JLabel("Service:");
         serviceLabel.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
@@ -120,8 +159,9 @@ public class SettingsFrame implements IShowable, IDisposable {
         queryTextField = new JTextField(albumsFrame.getDiscogsAlbumCoverArtService().getSearchQuery());
         queryTextField.setFont(new Font("Arial", Font.PLAIN, UtilMethods.pointToPixel(SETTINGS_FONT_SIZE)));
         queryTextField.addActionListener(e -> {
-            albumsFrame.getDiscogsAlbumCoverArtService().setSearchQuery(queryTextField.getText());
-            logger.info("Query set to: " + queryTextField.getText());
+            String query = queryTextField.getText();
+            albumsFrame.setSearchQuery(query);
+            logger.info(() -> "Query set to: " + query);
         });
         queryTextField.setVisible(!albumsFrame.isUsingLocalAlbums());
         parent.add(queryLabel);
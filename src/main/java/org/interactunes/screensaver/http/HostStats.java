@@ -0,0 +1,123 @@
+package org.interactunes.screensaver.http;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request, latency and transfer counters of the {@link HttpTransport} for a single host.
+ */
+public class HostStats {
+
+    @Getter
+    private final String host;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    HostStats(String host) {
+        this.host = host;
+    }
+
+    /**
+     * Gets the host of a URL, which is the key the stats and schedulers are recorded under. An explicit port is part of
+     * the key, so servers on different ports of the same machine, such as a local stand-in for an API and its image
+     * host, are kept apart.
+     *
+     * @param url The URL.
+     * @return The host, followed by the port if the URL has one, or the URL itself if it has no host.
+     */
+    public static String hostOf(String url) {
+        try {
+            URI uri = URI.create(url);
+            String host = uri.getHost();
+            if (host == null) {
+                return url;
+            }
+            return uri.getPort() == -1 ? host : host + ":" + uri.getPort();
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    void recordResponse(long latencyNanos, long bytes, boolean wasNotModified) {
+        requests.incrementAndGet();
+        if (wasNotModified) {
+            notModified.incrementAndGet();
+        }
+        bytesReceived.addAndGet(bytes);
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+    }
+
+    void recordFailure() {
+        requests.incrementAndGet();
+        failures.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of requests sent to the host, including failed ones.
+     *
+     * @return The number of requests.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of requests that failed with an I/O error or an error status.
+     *
+     * @return The number of failures.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Gets the number of conditional requests the host answered with 304 Not Modified.
+     *
+     * @return The number of not modified responses.
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Gets the number of body bytes received from the host as transferred, i.e. before decompression.
+     *
+     * @return The number of bytes received.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * Gets the mean time from sending a successful request to having received the whole body.
+     *
+     * @return The mean latency in milliseconds.
+     */
+    public double getMeanLatencyMillis() {
+        long successes = requests.get() - failures.get();
+        return successes == 0 ? 0 : totalLatencyNanos.get() / 1e6 / successes;
+    }
+
+    /**
+     * Gets the longest time from sending a successful request to having received the whole body.
+     *
+     * @return The maximum latency in milliseconds.
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: requests=%d, failures=%d, not modified=%d, received=%d bytes, mean latency=%.1fms, max latency=%.1fms",
+                host, getRequests(), getFailures(), getNotModified(), getBytesReceived(), getMeanLatencyMillis(),
+                getMaxLatencyMillis());
+    }
+}
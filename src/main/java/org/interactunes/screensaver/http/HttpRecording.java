@@ -0,0 +1,213 @@
+package org.interactunes.screensaver.http;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A recording of HTTP responses that can be saved to a directory and replayed by a {@link StubServer}. The
+ * {@link HttpTransport} records the successful responses it receives while a recording is set.
+ * <p>
+ * Responses are keyed by the path and the query of the request URL, with the query parameters sorted and the
+ * credentials left out, so a replay matches the recorded requests regardless of the host, the parameter order and the
+ * API key it is sent with. Credentials are never written to the recording.
+ * <p>
+ * A saved recording is a directory with an {@code index.json} that lists the responses and one file per response
+ * body.
+ */
+public class HttpRecording {
+
+    private static final String INDEX_FILE = "index.json";
+    private static final String BODY_DIRECTORY = "bodies";
+    private static final Set<String> CREDENTIAL_PARAMETERS = Set.of("key", "secret", "api_key", "token");
+
+    private final Map<String, RecordedResponse> responses;
+    private final Set<String> origins;
+
+    /**
+     * A recorded response.
+     *
+     * @param url         The requested URL, without credentials.
+     * @param statusCode  The status code of the response.
+     * @param contentType The content type of the response, or null if it had none.
+     * @param body        The decompressed body.
+     */
+    public record RecordedResponse(String url, int statusCode, String contentType, byte[] body) {
+    }
+
+    /**
+     * Creates a new empty recording.
+     */
+    public HttpRecording() {
+        responses = new LinkedHashMap<>();
+        origins = new LinkedHashSet<>();
+    }
+
+    /**
+     * Gets the key a response for the URL is recorded under: the path, followed by the sorted query parameters without
+     * credentials. Relative URLs, as seen by a server, get the same key as the absolute URL.
+     *
+     * @param url The absolute or relative URL.
+     * @return The key.
+     */
+    public static String keyOf(String url) {
+        URI uri = URI.create(url);
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        List<String> parameters = queryParameters(uri.getRawQuery());
+        Collections.sort(parameters);
+        return parameters.isEmpty() ? path : path + "?" + String.join("&", parameters);
+    }
+
+    /**
+     * Records a response, replacing an earlier response recorded under the same key.
+     *
+     * @param url         The requested URL.
+     * @param statusCode  The status code of the response.
+     * @param contentType The content type of the response, or null if it had none.
+     * @param body        The decompressed body.
+     */
+    public synchronized void record(String url, int statusCode, String contentType, byte[] body) {
+        URI uri = URI.create(url);
+        String redacted = redact(uri);
+        responses.put(keyOf(url), new RecordedResponse(redacted, statusCode, contentType, body));
+        if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+            origins.add(uri.getScheme() + "://" + uri.getRawAuthority());
+        }
+    }
+
+    /**
+     * Finds the response recorded for the URL.
+     *
+     * @param url The absolute or relative URL.
+     * @return The response, or null if none was recorded.
+     */
+    public synchronized RecordedResponse find(String url) {
+        return responses.get(keyOf(url));
+    }
+
+    /**
+     * Gets the recorded responses in the order they were first recorded.
+     *
+     * @return The responses.
+     */
+    public synchronized List<RecordedResponse> getResponses() {
+        return new ArrayList<>(responses.values());
+    }
+
+    /**
+     * Gets the origins, i.e. scheme, host and port, of the recorded URLs. A {@link StubServer} rewrites these in the
+     * bodies it serves, so links between recorded hosts lead to stand-ins as well.
+     *
+     * @return The origins in the order they were first recorded.
+     */
+    public synchronized Set<String> getOrigins() {
+        return new LinkedHashSet<>(origins);
+    }
+
+    /**
+     * Gets the number of recorded responses.
+     *
+     * @return The number of responses.
+     */
+    public synchronized int size() {
+        return responses.size();
+    }
+
+    /**
+     * Saves the recording to a directory, replacing a recording saved there before.
+     *
+     * @param directory The directory, which is created if it does not exist.
+     * @throws IOException If the recording cannot be written.
+     */
+    public synchronized void save(Path directory) throws IOException {
+        Path bodyDirectory = directory.resolve(BODY_DIRECTORY);
+        Files.createDirectories(bodyDirectory);
+        JSONArray entries = new JSONArray();
+        int index = 0;
+        for (RecordedResponse response : responses.values()) {
+            String bodyFile = BODY_DIRECTORY + "/" + index++;
+            Files.write(directory.resolve(bodyFile), response.body());
+            JSONObject entry = new JSONObject();
+            entry.put("url", response.url());
+            entry.put("status", response.statusCode());
+            if (response.contentType() != null) {
+                entry.put("contentType", response.contentType());
+            }
+            entry.put("body", bodyFile);
+            entries.put(entry);
+        }
+        JSONObject recording = new JSONObject();
+        recording.put("origins", new JSONArray(origins));
+        recording.put("responses", entries);
+        Files.writeString(directory.resolve(INDEX_FILE), recording.toString(2), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads a recording saved with {@link #save(Path)}.
+     *
+     * @param directory The directory.
+     * @return The recording.
+     * @throws IOException If the recording cannot be read or is malformed.
+     */
+    public static HttpRecording load(Path directory) throws IOException {
+        HttpRecording recording = new HttpRecording();
+        try {
+            JSONObject index = new JSONObject(Files.readString(directory.resolve(INDEX_FILE), StandardCharsets.UTF_8));
+            JSONArray entries = index.getJSONArray("responses");
+            for (int i = 0; i < entries.length(); i++) {
+                JSONObject entry = entries.getJSONObject(i);
+                byte[] body = Files.readAllBytes(directory.resolve(entry.getString("body")));
+                recording.record(entry.getString("url"), entry.getInt("status"), entry.optString("contentType", null),
+                        body);
+            }
+            // Origins that only appear in bodies, such as image hosts that were never requested, are kept as well.
+            JSONArray origins = index.optJSONArray("origins");
+            if (origins != null) {
+                for (int i = 0; i < origins.length(); i++) {
+                    recording.origins.add(origins.getString(i));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed recording in " + directory, e);
+        }
+        return recording;
+    }
+
+    private static String redact(URI uri) {
+        List<String> parameters = queryParameters(uri.getRawQuery());
+        StringBuilder redacted = new StringBuilder();
+        if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+            redacted.append(uri.getScheme()).append("://").append(uri.getRawAuthority());
+        }
+        redacted.append(uri.getRawPath() == null ? "" : uri.getRawPath());
+        if (!parameters.isEmpty()) {
+            redacted.append('?').append(String.join("&", parameters));
+        }
+        return redacted.toString();
+    }
+
+    private static List<String> queryParameters(String rawQuery) {
+        List<String> parameters = new ArrayList<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        Arrays.stream(rawQuery.split("&"))
+                .filter(parameter -> !parameter.isEmpty())
+                .filter(parameter -> !CREDENTIAL_PARAMETERS.contains(parameter.split("=", 2)[0]))
+                .forEach(parameters::add);
+        return parameters;
+    }
+}
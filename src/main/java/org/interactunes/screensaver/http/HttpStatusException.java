@@ -0,0 +1,29 @@
+package org.interactunes.screensaver.http;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a server answers a request with a status code other than success or not modified.
+ */
+@Getter
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String url;
+    private final int statusCode;
+
+    /**
+     * Creates a new HTTP status exception.
+     *
+     * @param url        The requested URL.
+     * @param statusCode The status code of the response.
+     */
+    public HttpStatusException(String url, int statusCode) {
+        super("HTTP " + statusCode + " for " + HostStats.hostOf(url));
+        this.url = url;
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,420 @@
+package org.interactunes.screensaver.http;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.interactunes.screensaver.utils.DotEnvInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The HTTP transport shared by all services. It wraps a single {@link HttpClient}, so connections are pooled and kept
+ * alive across requests and multiplexed over HTTP/2 where the server supports it. Responses are requested with gzip
+ * compression, every request is bounded by a connect timeout and an overall request timeout, and per-host latency and
+ * transfer counters are kept in {@link HostStats}.
+ * <p>
+ * Responses fetched with {@link #getRevalidated(String)} are kept in a small in-memory cache together with their
+ * {@code ETag}, and later requests for the same URL are sent with {@code If-None-Match}, so an unchanged response costs
+ * a 304 instead of the whole body.
+ * <p>
+ * Requests to hosts with a registered {@link RequestScheduler} are paced and retried by that scheduler according to
+ * their {@link RequestPriority}; requests to other hosts are sent right away.
+ * <p>
+ * While an {@link HttpRecording} is set, every successful response is recorded, so the traffic of a session can be
+ * replayed offline by a {@link StubServer}. The shared transport records to the directory in {@code HTTP_RECORD_DIR}
+ * if it is set and saves the recording on exit.
+ */
+public class HttpTransport {
+
+    private static final String USER_AGENT = "InteracTunesScreenSaver/1.0";
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final long DEFAULT_REVALIDATION_CACHE_BYTES = 16L * 1024 * 1024;
+    private static final String RECORD_DIRECTORY_KEY = "HTTP_RECORD_DIR";
+
+    private static HttpTransport instance;
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final Map<String, HostStats> hostStats;
+    private final Map<String, RequestScheduler> schedulers;
+    private final ValidatedResponseCache validatedResponses;
+
+    /**
+     * The recording the successful responses are added to, or null if responses are not recorded.
+     */
+    @Getter
+    @Setter
+    private volatile HttpRecording recording;
+
+    /**
+     * A response body along with the entity tag and the content type it was served with.
+     */
+    private record ValidatedResponse(String etag, String contentType, byte[] body) {
+    }
+
+    /**
+     * Creates a new HTTP transport.
+     *
+     * @param connectTimeout         The timeout for establishing a connection.
+     * @param requestTimeout         The default timeout for a whole request, from sending it to receiving the body.
+     * @param revalidationCacheBytes The maximum total size of the response bodies kept for revalidation.
+     */
+    public HttpTransport(Duration connectTimeout, Duration requestTimeout, long revalidationCacheBytes) {
+        this.requestTimeout = requestTimeout;
+        hostStats = new ConcurrentHashMap<>();
+        schedulers = new ConcurrentHashMap<>();
+        validatedResponses = new ValidatedResponseCache(revalidationCacheBytes);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "http-transport-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Gets the transport shared by the services, creating it on first use.
+     *
+     * @return The shared transport.
+     */
+    public static synchronized HttpTransport getInstance() {
+        if (instance == null) {
+            instance = new HttpTransport(DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT, DEFAULT_REVALIDATION_CACHE_BYTES);
+            String recordDirectory = DotEnvInstance.getOptional(RECORD_DIRECTORY_KEY);
+            if (recordDirectory != null && !recordDirectory.isBlank()) {
+                instance.recordTo(Path.of(recordDirectory));
+            }
+        }
+        return instance;
+    }
+
+    private void recordTo(Path directory) {
+        HttpRecording sessionRecording = new HttpRecording();
+        recording = sessionRecording;
+        Thread saver = new Thread(() -> {
+            Logger logger = Logger.getLogger(HttpTransport.class.getName());
+            try {
+                sessionRecording.save(directory);
+                logger.log(Level.INFO, () -> "Recorded " + sessionRecording.size() + " responses to " + directory);
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, () -> "Failed to save the HTTP recording. Error: " + e.getMessage());
+            }
+        }, "http-recording-saver");
+        Runtime.getRuntime().addShutdownHook(saver);
+    }
+
+    /**
+     * Fetches the body of the URL on the calling thread, using the default request timeout.
+     *
+     * @param url The URL.
+     * @return The decompressed body.
+     * @throws IOException If the request fails, times out or is answered with an error status.
+     */
+    public byte[] get(String url) throws IOException {
+        return await(getAsync(url, requestTimeout, RequestPriority.VISIBLE));
+    }
+
+    /**
+     * Fetches the body of the URL on the calling thread.
+     *
+     * @param url     The URL.
+     * @param timeout The timeout for the whole request.
+     * @return The decompressed body.
+     * @throws IOException If the request fails, times out or is answered with an error status.
+     */
+    public byte[] get(String url, Duration timeout) throws IOException {
+        return await(getAsync(url, timeout, RequestPriority.VISIBLE));
+    }
+
+    /**
+     * Fetches the body of the URL on the calling thread.
+     *
+     * @param url      The URL.
+     * @param timeout  The timeout for a single attempt of the request.
+     * @param priority The priority of the request if the host is rate limited.
+     * @return The decompressed body.
+     * @throws IOException If the request fails, times out or is answered with an error status.
+     */
+    public byte[] get(String url, Duration timeout, RequestPriority priority) throws IOException {
+        return await(getAsync(url, timeout, priority));
+    }
+
+    /**
+     * Fetches the body of the URL asynchronously. The future fails with an {@link IOException} if the request fails,
+     * times out or is answered with an error status.
+     *
+     * @param url      The URL.
+     * @param timeout  The timeout for a single attempt of the request.
+     * @param priority The priority of the request if the host is rate limited.
+     * @return The future decompressed body.
+     */
+    public CompletableFuture<byte[]> getAsync(String url, Duration timeout, RequestPriority priority) {
+        return send(url, timeout, false, priority);
+    }
+
+    /**
+     * Fetches the body of the URL on the calling thread, revalidating a previously fetched body with its {@code ETag}
+     * instead of downloading it again if the server reports it unchanged.
+     *
+     * @param url The URL.
+     * @return The decompressed body.
+     * @throws IOException If the request fails, times out or is answered with an error status.
+     */
+    public byte[] getRevalidated(String url) throws IOException {
+        return await(getRevalidatedAsync(url, RequestPriority.VISIBLE));
+    }
+
+    /**
+     * Fetches the body of the URL asynchronously, revalidating a previously fetched body with its {@code ETag}.
+     *
+     * @param url      The URL.
+     * @param priority The priority of the request if the host is rate limited.
+     * @return The future decompressed body.
+     * @see #getRevalidated(String)
+     */
+    public CompletableFuture<byte[]> getRevalidatedAsync(String url, RequestPriority priority) {
+        return send(url, requestTimeout, true, priority);
+    }
+
+    /**
+     * Registers a scheduler for the requests to a host, unless one is registered already.
+     *
+     * @param host             The host, with the port if the URLs name one, as returned by {@link HostStats#hostOf}.
+     * @param schedulerFactory Creates the scheduler if none is registered.
+     * @return The scheduler registered for the host.
+     */
+    public RequestScheduler addScheduler(String host, Supplier<RequestScheduler> schedulerFactory) {
+        return schedulers.computeIfAbsent(host, ignored -> schedulerFactory.get());
+    }
+
+    /**
+     * Removes and disposes the scheduler registered for a host, if any. Requests still waiting in it are cancelled.
+     *
+     * @param host The host, with the port if the URLs name one, as returned by {@link HostStats#hostOf}.
+     */
+    public void removeScheduler(String host) {
+        RequestScheduler scheduler = schedulers.remove(host);
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Gets the counters of every host a request has been sent to, ordered by host.
+     *
+     * @return The host stats.
+     */
+    public List<HostStats> getHostStats() {
+        List<HostStats> stats = new ArrayList<>(hostStats.values());
+        stats.sort(Comparator.comparing(HostStats::getHost));
+        return stats;
+    }
+
+    /**
+     * Gets the counters of a single host.
+     *
+     * @param host The host, with the port if the URLs name one, as returned by {@link HostStats#hostOf}.
+     * @return The host stats, or null if no request has been sent to the host.
+     */
+    public HostStats getHostStats(String host) {
+        return hostStats.get(host);
+    }
+
+    private CompletableFuture<byte[]> send(String url, Duration timeout, boolean revalidate, RequestPriority priority) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Invalid URL " + url, e));
+        }
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        ValidatedResponse cached = revalidate ? validatedResponses.get(url) : null;
+        if (cached != null) {
+            request.header("If-None-Match", cached.etag());
+        }
+
+        String host = HostStats.hostOf(url);
+        HostStats stats = hostStats.computeIfAbsent(host, HostStats::new);
+        HttpRequest builtRequest = request.build();
+        AtomicLong start = new AtomicLong();
+        Supplier<CompletableFuture<HttpResponse<byte[]>>> exchange = () -> {
+            start.set(System.nanoTime());
+            // The request timeout only covers the response headers, so the whole exchange is bounded separately.
+            return client.sendAsync(builtRequest, HttpResponse.BodyHandlers.ofByteArray())
+                    .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        };
+        RequestScheduler scheduler = schedulers.get(host);
+        CompletableFuture<HttpResponse<byte[]>> response = scheduler != null
+                ? scheduler.schedule(priority, exchange)
+                : exchange.get();
+        CompletableFuture<byte[]> body = response.handle((completedResponse, error) -> {
+            try {
+                if (error != null) {
+                    throw toIOException(error);
+                }
+                return readResponse(url, completedResponse, cached, revalidate, stats, System.nanoTime() - start.get());
+            } catch (IOException e) {
+                stats.recordFailure();
+                throw new CompletionException(e);
+            }
+        });
+        // Cancellation does not travel upstream by itself, but a request still waiting in a scheduler should not be sent.
+        body.whenComplete((ignored, error) -> {
+            if (body.isCancelled()) {
+                response.cancel(false);
+            }
+        });
+        return body;
+    }
+
+    private byte[] readResponse(String url, HttpResponse<byte[]> response, ValidatedResponse cached, boolean revalidate,
+                                HostStats stats, long latencyNanos) throws IOException {
+        int status = response.statusCode();
+        if (status == 304 && cached != null) {
+            stats.recordResponse(latencyNanos, 0, true);
+            record(url, 200, cached.contentType(), cached.body());
+            return cached.body();
+        }
+        if (status < 200 || status >= 300) {
+            throw new HttpStatusException(url, status);
+        }
+
+        byte[] body = response.body();
+        stats.recordResponse(latencyNanos, body.length, false);
+        byte[] decoded = decode(response.headers(), body);
+        String contentType = response.headers().firstValue("Content-Type").orElse(null);
+        if (revalidate) {
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            if (etag != null) {
+                validatedResponses.put(url, new ValidatedResponse(etag, contentType, decoded));
+            } else {
+                validatedResponses.remove(url);
+            }
+        }
+        record(url, status, contentType, decoded);
+        return decoded;
+    }
+
+    private void record(String url, int status, String contentType, byte[] body) {
+        HttpRecording currentRecording = recording;
+        if (currentRecording != null) {
+            currentRecording.record(url, status, contentType, body);
+        }
+    }
+
+    private static byte[] decode(HttpHeaders headers, byte[] body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity");
+        if (!encoding.equalsIgnoreCase("gzip")) {
+            return body;
+        }
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static IOException toIOException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        if (cause instanceof TimeoutException) {
+            return new HttpTimeoutException("Request timed out");
+        }
+        return new IOException(cause);
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request interrupted");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+    }
+
+    /**
+     * An LRU cache of validated responses, bounded by the total size of the bodies.
+     */
+    private static class ValidatedResponseCache {
+
+        private final long maxBytes;
+        private final LinkedHashMap<String, ValidatedResponse> responses;
+
+        private long bytes;
+
+        private ValidatedResponseCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+            responses = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        private synchronized ValidatedResponse get(String url) {
+            return responses.get(url);
+        }
+
+        private synchronized void put(String url, ValidatedResponse response) {
+            remove(url);
+            if (response.body().length > maxBytes) {
+                return;
+            }
+            responses.put(url, response);
+            bytes += response.body().length;
+            var iterator = responses.values().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().body().length;
+                iterator.remove();
+            }
+        }
+
+        private synchronized void remove(String url) {
+            ValidatedResponse removed = responses.remove(url);
+            if (removed != null) {
+                bytes -= removed.body().length;
+            }
+        }
+    }
+}
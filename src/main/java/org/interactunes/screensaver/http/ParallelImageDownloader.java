@@ -0,0 +1,260 @@
+package org.interactunes.screensaver.http;
+
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.images.ImageDecoder;
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.metrics.Counter;
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+import org.interactunes.screensaver.utils.BlockingIoExecutor;
+import org.interactunes.screensaver.utils.CancellationScope;
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads and decodes images concurrently. At most {@code maxParallelism} downloads run at once, each download is
+ * bounded by a request timeout, and a bulk download returns whatever finished before its deadline while the
+ * remaining downloads are cancelled. If a {@link CoverArtCache} is given, images are looked up in the cache first and
+ * only downloaded on a miss. The requests go through the shared {@link HttpTransport}.
+ * <p>
+ * Cancelling a download interrupts it, which aborts its request, or its decode if the bytes have already arrived.
+ */
+public class ParallelImageDownloader implements IDisposable {
+
+    private final Logger logger = Logger.getLogger(ParallelImageDownloader.class.getName());
+
+    private final ExecutorService executor;
+    private final Duration requestTimeout;
+    private final CoverArtCache cache;
+    private final HttpTransport transport;
+    private final LatencyHistogram downloadLatency;
+    private final Counter downloadFailures;
+
+    /**
+     * Creates a new parallel image downloader without a cache.
+     *
+     * @param maxParallelism The maximum number of downloads running at the same time.
+     * @param requestTimeout The timeout of a single download.
+     */
+    public ParallelImageDownloader(int maxParallelism, Duration requestTimeout) {
+        this(maxParallelism, requestTimeout, null);
+    }
+
+    /**
+     * Creates a new parallel image downloader.
+     *
+     * @param maxParallelism The maximum number of downloads running at the same time.
+     * @param requestTimeout The timeout of a single download.
+     * @param cache          The cache to look images up in before downloading them, or null.
+     */
+    public ParallelImageDownloader(int maxParallelism, Duration requestTimeout, CoverArtCache cache) {
+        this(maxParallelism, requestTimeout, cache, HttpTransport.getInstance());
+    }
+
+    /**
+     * Creates a new parallel image downloader that sends its requests through the given transport.
+     *
+     * @param maxParallelism The maximum number of downloads running at the same time.
+     * @param requestTimeout The timeout of a single download.
+     * @param cache          The cache to look images up in before downloading them, or null.
+     * @param transport      The transport to send the requests through.
+     */
+    public ParallelImageDownloader(int maxParallelism, Duration requestTimeout, CoverArtCache cache,
+                                   HttpTransport transport) {
+        if (maxParallelism < 1) {
+            throw new IllegalArgumentException("Max parallelism must be at least 1");
+        }
+        this.requestTimeout = requestTimeout;
+        this.cache = cache;
+        this.transport = transport;
+        downloadLatency = MetricsRegistry.getInstance().histogram("image.download");
+        downloadFailures = MetricsRegistry.getInstance().counter("image.download.failures");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(maxParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "image-download-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Downloads the images at the given URLs concurrently. Returns once all downloads have finished or the deadline
+     * has passed, whichever comes first. Downloads still running at the deadline are cancelled and failed downloads
+     * are skipped, so the returned list may be shorter than the list of URLs. The images are returned in the order
+     * they finished. The downloads are requested with {@link RequestPriority#VISIBLE}.
+     *
+     * @param urls     The URLs of the images.
+     * @param deadline The maximum time to wait for all downloads.
+     * @return The downloaded images.
+     */
+    public List<Image> downloadAll(List<String> urls, Duration deadline) {
+        return downloadAll(urls, deadline, new CancellationScope());
+    }
+
+    /**
+     * Downloads the images at the given URLs concurrently, like {@link #downloadAll(List, Duration)}, as part of a
+     * scope. Once the scope is cancelled, the downloads still running are cancelled and the method returns right away.
+     *
+     * @param urls     The URLs of the images.
+     * @param deadline The maximum time to wait for all downloads.
+     * @param scope    The scope the downloads belong to.
+     * @return The downloaded images.
+     */
+    public List<Image> downloadAll(List<String> urls, Duration deadline, CancellationScope scope) {
+        List<Image> images = new ArrayList<>();
+        if (urls.isEmpty()) {
+            return images;
+        }
+
+        BlockingQueue<CompletableFuture<Image>> completed = new LinkedBlockingQueue<>();
+        List<CompletableFuture<Image>> futures = new ArrayList<>();
+        for (String url : urls) {
+            CompletableFuture<Image> future = scope.track(downloadAsync(url, RequestPriority.VISIBLE));
+            future.whenComplete((image, error) -> completed.add(future));
+            futures.add(future);
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        try {
+            for (int i = 0; i < urls.size(); i++) {
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                CompletableFuture<Image> future = completed.poll(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS);
+                if (future == null) {
+                    int unfinished = urls.size() - i;
+                    logger.log(Level.WARNING, () -> "Deadline reached with " + unfinished + " downloads unfinished.");
+                    break;
+                }
+                if (future.isCancelled()) {
+                    // The downloads were superseded, so the images would be dropped anyway.
+                    break;
+                }
+                try {
+                    Image image = future.get();
+                    if (image != null) {
+                        images.add(image);
+                    }
+                } catch (ExecutionException e) {
+                    logger.log(Level.WARNING, () -> "Failed to download image. Error: " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            // Cancelling interrupts the workers, which also abandons their requests.
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        return images;
+    }
+
+    /**
+     * Downloads a single image in the background. Cancelling the returned future aborts the download.
+     *
+     * @param url      The URL of the image.
+     * @param priority The priority of the request if the host is rate limited.
+     * @return The future image, which is null if the response could not be decoded.
+     */
+    public CompletableFuture<Image> downloadAsync(String url, RequestPriority priority) {
+        return BlockingIoExecutor.supply(new DownloadTask(url, priority), executor);
+    }
+
+    /**
+     * Downloads a single image with the given priority as part of a scope, waiting for it on the calling thread.
+     *
+     * @param url      The URL of the image.
+     * @param priority The priority of the request if the host is rate limited.
+     * @param scope    The scope the download belongs to.
+     * @return The image or null if the response could not be decoded.
+     * @throws IOException           If an I/O error occurs.
+     * @throws CancellationException If the scope is cancelled before the download finishes.
+     */
+    public Image download(String url, RequestPriority priority, CancellationScope scope) throws IOException {
+        CompletableFuture<Image> future = scope.track(downloadAsync(url, priority));
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Downloads a single image on the calling thread, using the same timeouts as the bulk downloads.
+     *
+     * @param url The URL of the image.
+     * @return The image or null if the response could not be decoded.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Image download(String url) throws IOException {
+        return download(url, RequestPriority.VISIBLE);
+    }
+
+    /**
+     * Downloads a single image on the calling thread with the given priority, using the same timeouts as the bulk
+     * downloads.
+     *
+     * @param url      The URL of the image.
+     * @param priority The priority of the request if the host is rate limited.
+     * @return The image or null if the response could not be decoded.
+     * @throws IOException If an I/O error occurs.
+     */
+    public Image download(String url, RequestPriority priority) throws IOException {
+        return new DownloadTask(url, priority).call();
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+
+    private class DownloadTask implements Callable<Image> {
+
+        private final String url;
+        private final RequestPriority priority;
+
+        private DownloadTask(String url, RequestPriority priority) {
+            this.url = url;
+            this.priority = priority;
+        }
+
+        @Override
+        public Image call() throws IOException {
+            if (cache != null) {
+                return cache.get(url, this::fetchBytes);
+            }
+            return ImageDecoder.getInstance().decode(fetchBytes(url), ImageScaler.getInstance().getRequestedSize());
+        }
+
+        private byte[] fetchBytes(String url) throws IOException {
+            long start = System.nanoTime();
+            try {
+                byte[] bytes = transport.get(url, requestTimeout, priority);
+                downloadLatency.recordSince(start);
+                return bytes;
+            } catch (InterruptedIOException e) {
+                // Cancelled rather than failed.
+                throw e;
+            } catch (IOException e) {
+                downloadFailures.increment();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.interactunes.screensaver.http;
+
+/**
+ * The priority of a request waiting in a {@link RequestScheduler}. Requests of a higher priority are always sent before
+ * requests of a lower priority; requests of the same priority are sent in the order they were made.
+ */
+public enum RequestPriority {
+
+    /**
+     * A request whose result is about to be shown, e.g. the images of a grid being built.
+     */
+    VISIBLE,
+
+    /**
+     * A request made ahead of time in the background, e.g. prefetching images or refilling a URL queue.
+     */
+    PREFETCH
+}
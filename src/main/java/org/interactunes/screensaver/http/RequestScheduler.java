@@ -0,0 +1,371 @@
+package org.interactunes.screensaver.http;
+
+import lombok.Setter;
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Paces the requests to a rate-limited API. Requests wait in a priority queue and are sent by a dispatcher thread as
+ * tokens become available in a token bucket. The rate of the bucket follows the {@code X-Discogs-Ratelimit} headers
+ * of the responses, and the bucket is drained when {@code X-Discogs-Ratelimit-Remaining} reports that the allowance
+ * is used up.
+ * <p>
+ * Responses with status 429 or 5xx are retried with exponential backoff and full jitter, honouring
+ * {@code Retry-After}. Since a 429 means the whole key is throttled, it also pauses every other request until the
+ * backoff has passed.
+ */
+public class RequestScheduler implements IDisposable {
+
+    private static final String RATE_LIMIT_HEADER = "X-Discogs-Ratelimit";
+    private static final String RATE_LIMIT_REMAINING_HEADER = "X-Discogs-Ratelimit-Remaining";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final Duration DEFAULT_RATE_LIMIT_WINDOW = Duration.ofSeconds(60);
+
+    private final Logger logger = Logger.getLogger(RequestScheduler.class.getName());
+
+    private final int burst;
+    private final int maxRetries;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final PriorityQueue<PendingRequest<?>> queue;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final Thread dispatcher;
+    private final AtomicLong sequence;
+    private final AtomicLong retries;
+    private final AtomicInteger inFlight;
+
+    // Guarded by the lock.
+    private double requestsPerSecond;
+    private double tokens;
+    private long lastRefillNanos;
+    private long pausedUntilNanos;
+
+    /**
+     * The window the limit in the {@code X-Discogs-Ratelimit} header applies to.
+     */
+    @Setter
+    private volatile Duration rateLimitWindow = DEFAULT_RATE_LIMIT_WINDOW;
+    private volatile boolean disposed;
+
+    /**
+     * Creates a new request scheduler. The dispatcher thread starts right away.
+     *
+     * @param name              The name of the scheduler, used for the dispatcher thread.
+     * @param requestsPerSecond The initial sustained request rate, until the responses report the actual limit.
+     * @param burst             The maximum number of requests that can be sent at once after being idle.
+     * @param maxRetries        The maximum number of times a throttled or failed request is retried.
+     * @param baseBackoff       The backoff before the first retry; it doubles with every retry.
+     * @param maxBackoff        The maximum backoff before a retry.
+     */
+    public RequestScheduler(String name, double requestsPerSecond, int burst, int maxRetries, Duration baseBackoff,
+                            Duration maxBackoff) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Requests per second must be positive");
+        }
+        if (burst < 1) {
+            throw new IllegalArgumentException("Burst must be at least 1");
+        }
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.maxRetries = maxRetries;
+        this.baseBackoffNanos = baseBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+
+        queue = new PriorityQueue<>(Comparator.<PendingRequest<?>, RequestPriority>comparing(request -> request.priority)
+                .thenComparingLong(request -> request.sequence));
+        lock = new ReentrantLock();
+        changed = lock.newCondition();
+        sequence = new AtomicLong();
+        retries = new AtomicLong();
+        inFlight = new AtomicInteger();
+        tokens = burst;
+        lastRefillNanos = System.nanoTime();
+
+        dispatcher = new Thread(this::dispatchLoop, "request-scheduler-" + name);
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Schedules a request. The request is started once it is the highest priority request waiting and a token is
+     * available, and is started again if it is throttled or fails with a server error.
+     *
+     * @param priority The priority of the request.
+     * @param request  Starts one attempt of the request.
+     * @param <T>      The type of the response body.
+     * @return The future response of the last attempt. Cancelling it before the request is sent removes the request
+     * without using a token, cancelling it afterwards aborts the attempt in flight and any further retries.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> schedule(RequestPriority priority,
+                                                           Supplier<CompletableFuture<HttpResponse<T>>> request) {
+        PendingRequest<T> pendingRequest = new PendingRequest<>(priority, sequence.getAndIncrement(), request);
+        enqueue(pendingRequest);
+        return pendingRequest.result;
+    }
+
+    /**
+     * Gets the current sustained request rate.
+     *
+     * @return The number of requests per second.
+     */
+    public double getRequestsPerSecond() {
+        lock.lock();
+        try {
+            return requestsPerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of requests waiting to be sent.
+     *
+     * @return The number of waiting requests.
+     */
+    public int getQueueLength() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of attempts that were retried because they were throttled or failed with a server error.
+     *
+     * @return The number of retries.
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Gets the number of attempts that have been started and have not completed yet.
+     *
+     * @return The number of attempts in flight.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        dispatcher.interrupt();
+        lock.lock();
+        try {
+            queue.forEach(request -> request.result.cancel(false));
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(PendingRequest<?> request) {
+        lock.lock();
+        try {
+            if (request.result.isDone()) {
+                // Cancelled during the backoff.
+                return;
+            }
+            if (disposed) {
+                request.result.cancel(false);
+                return;
+            }
+            queue.add(request);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!disposed) {
+            PendingRequest<?> request;
+            try {
+                request = takeWhenAllowed();
+            } catch (InterruptedException e) {
+                return;
+            }
+            request.start();
+        }
+    }
+
+    /**
+     * Waits until a request is waiting, the scheduler is not paused and a token is available, then takes the token
+     * and the highest priority request.
+     */
+    private PendingRequest<?> takeWhenAllowed() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                // Requests cancelled while waiting must not use up a token.
+                while (!queue.isEmpty() && queue.peek().result.isDone()) {
+                    queue.poll();
+                }
+
+                long now = System.nanoTime();
+                refill(now);
+                if (queue.isEmpty()) {
+                    changed.await();
+                } else if (now < pausedUntilNanos) {
+                    changed.awaitNanos(pausedUntilNanos - now);
+                } else if (tokens >= 1) {
+                    tokens--;
+                    return queue.poll();
+                } else {
+                    long waitNanos = (long) Math.ceil((1 - tokens) / requestsPerSecond * 1e9);
+                    changed.awaitNanos(Math.max(waitNanos, 1));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * requestsPerSecond);
+        lastRefillNanos = now;
+    }
+
+    private void updateRateLimit(HttpHeaders headers) {
+        int limit = parseNonNegativeInt(headers.firstValue(RATE_LIMIT_HEADER).orElse(null));
+        int remaining = parseNonNegativeInt(headers.firstValue(RATE_LIMIT_REMAINING_HEADER).orElse(null));
+        if (limit <= 0 && remaining < 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            refill(System.nanoTime());
+            if (limit > 0) {
+                // A full bucket can be spent on top of the sustained rate within one window, so it is held back from
+                // the rate to never exceed the limit.
+                requestsPerSecond = Math.max(limit - burst, 1) / (rateLimitWindow.toNanos() / 1e9);
+            }
+            if (remaining >= 0) {
+                // Requests already in flight count against the remaining allowance too, so never add tokens here.
+                tokens = Math.min(tokens, remaining);
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void pause(long delayNanos) {
+        lock.lock();
+        try {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + delayNanos);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long getBackoffNanos(int attempt, HttpHeaders headers) {
+        int retryAfterSeconds = parseNonNegativeInt(headers.firstValue(RETRY_AFTER_HEADER).orElse(null));
+        long exponentialNanos = baseBackoffNanos << Math.min(attempt, 30);
+        long capNanos = exponentialNanos > 0 ? Math.min(maxBackoffNanos, exponentialNanos) : maxBackoffNanos;
+        // Full jitter, so that clients throttled together do not retry together.
+        long jitterNanos = ThreadLocalRandom.current().nextLong(capNanos + 1);
+        if (retryAfterSeconds >= 0) {
+            return TimeUnit.SECONDS.toNanos(retryAfterSeconds) + jitterNanos / 4;
+        }
+        return jitterNanos;
+    }
+
+    private static int parseNonNegativeInt(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(-1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean isRetryable(int statusCode) {
+        return statusCode == 429 || statusCode >= 500;
+    }
+
+    private class PendingRequest<T> {
+
+        private final RequestPriority priority;
+        private final long sequence;
+        private final Supplier<CompletableFuture<HttpResponse<T>>> request;
+        private final CompletableFuture<HttpResponse<T>> result;
+
+        private int attempt;
+
+        private PendingRequest(RequestPriority priority, long sequence,
+                               Supplier<CompletableFuture<HttpResponse<T>>> request) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.request = request;
+            result = new CompletableFuture<>();
+        }
+
+        private void start() {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> attemptFuture;
+            try {
+                attemptFuture = request.get();
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            inFlight.incrementAndGet();
+            // The HTTP client aborts the exchange when its future is cancelled, which frees the connection right away.
+            result.whenComplete((ignored, error) -> {
+                if (result.isCancelled()) {
+                    attemptFuture.cancel(true);
+                }
+            });
+            attemptFuture.whenComplete((response, error) -> {
+                inFlight.decrementAndGet();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                    return;
+                }
+                updateRateLimit(response.headers());
+                int statusCode = response.statusCode();
+                if (!isRetryable(statusCode) || attempt >= maxRetries || result.isDone()) {
+                    result.complete(response);
+                    return;
+                }
+
+                long backoffNanos = getBackoffNanos(attempt, response.headers());
+                attempt++;
+                retries.incrementAndGet();
+                logger.log(Level.INFO, () -> "Request answered with " + statusCode + ", retrying in " +
+                        TimeUnit.NANOSECONDS.toMillis(backoffNanos) + "ms (attempt " + attempt + " of " + maxRetries + ").");
+                if (statusCode == 429) {
+                    pause(backoffNanos);
+                    enqueue(this);
+                } else {
+                    CompletableFuture.delayedExecutor(backoffNanos, TimeUnit.NANOSECONDS).execute(() -> enqueue(this));
+                }
+            });
+        }
+    }
+}
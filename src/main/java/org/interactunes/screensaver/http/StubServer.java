@@ -0,0 +1,378 @@
+package org.interactunes.screensaver.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Getter;
+import lombok.Setter;
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A local HTTP server that stands in for the Discogs and LastFM APIs and their image hosts by replaying an
+ * {@link HttpRecording}. Requests are matched by {@link HttpRecording#keyOf(String)}, so the services only need their
+ * base URL pointed at the server. Requests for images that were not recorded can be answered with fallback images,
+ * which makes a recorded search usable without recording every cover it links to.
+ * <p>
+ * Origins in the served bodies can be rewritten, so that the image URLs in a recorded search lead to another stub
+ * instead of the real image host.
+ * <p>
+ * For load tests the server can inject latency, server errors and throttling. Throttling follows the Discogs API:
+ * requests beyond the limit of the window are answered with 429 and {@code Retry-After}, and every response carries
+ * the {@code X-Discogs-Ratelimit} headers. The faults are drawn from a seeded random generator, so a run can be
+ * reproduced with {@link #setSeed(long)}.
+ */
+public class StubServer implements IDisposable {
+
+    private static final String RATE_LIMIT_HEADER = "X-Discogs-Ratelimit";
+    private static final String RATE_LIMIT_REMAINING_HEADER = "X-Discogs-Ratelimit-Remaining";
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".gif", ".webp"};
+    private static final long DEFAULT_SEED = 1;
+
+    private final Logger logger;
+    private final HttpRecording recording;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Map<String, String> rewrittenOrigins;
+    private final Random random;
+    private final Deque<Long> acceptedRequestTimes;
+    private final AtomicLong requests;
+    private final AtomicLong injectedErrors;
+    private final AtomicLong throttledRequests;
+
+    @Getter
+    private final String baseUrl;
+    private volatile List<byte[]> fallbackImages;
+
+    /**
+     * The fixed delay before every response.
+     */
+    @Getter
+    @Setter
+    private volatile Duration latency = Duration.ZERO;
+    /**
+     * The maximum random delay added to the fixed latency.
+     */
+    @Getter
+    @Setter
+    private volatile Duration latencyJitter = Duration.ZERO;
+    /**
+     * The fraction of requests answered with 503 Service Unavailable, between 0 and 1.
+     */
+    @Getter
+    @Setter
+    private volatile double errorRate;
+    private int rateLimit;
+    private Duration rateLimitWindow = Duration.ofMinutes(1);
+
+    /**
+     * Creates a new stub server on a free port of the loopback address and starts it.
+     *
+     * @param recording The recording to serve.
+     * @throws IOException If the server cannot be started.
+     */
+    public StubServer(HttpRecording recording) throws IOException {
+        this(recording, 0);
+    }
+
+    /**
+     * Creates a new stub server on the loopback address and starts it.
+     *
+     * @param recording The recording to serve.
+     * @param port      The port, or 0 for a free port.
+     * @throws IOException If the server cannot be started.
+     */
+    public StubServer(HttpRecording recording, int port) throws IOException {
+        logger = Logger.getLogger(StubServer.class.getName());
+        this.recording = recording;
+        rewrittenOrigins = new LinkedHashMap<>();
+        random = new Random(DEFAULT_SEED);
+        acceptedRequestTimes = new ArrayDeque<>();
+        requests = new AtomicLong();
+        injectedErrors = new AtomicLong();
+        throttledRequests = new AtomicLong();
+        fallbackImages = List.of();
+
+        InetAddress address = InetAddress.getLoopbackAddress();
+        server = HttpServer.create(new InetSocketAddress(address, port), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://" + address.getHostAddress() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Rewrites an origin in the bodies served from now on, e.g. {@code https://i.discogs.com} to the base URL of a stub
+     * serving the images.
+     *
+     * @param origin      The origin as it appears in the recording.
+     * @param replacement The origin to replace it with.
+     */
+    public synchronized void rewriteOrigin(String origin, String replacement) {
+        rewrittenOrigins.put(origin, replacement);
+    }
+
+    /**
+     * Sets the images that requests for unrecorded image paths are answered with. The same path always gets the same
+     * image.
+     *
+     * @param images The encoded images.
+     */
+    public void setFallbackImages(List<byte[]> images) {
+        fallbackImages = List.copyOf(images);
+    }
+
+    /**
+     * Limits the number of requests accepted within a sliding window. Requests beyond the limit are answered with 429.
+     *
+     * @param limit  The maximum number of requests per window, or 0 for no limit.
+     * @param window The window.
+     */
+    public synchronized void setRateLimit(int limit, Duration window) {
+        rateLimit = limit;
+        rateLimitWindow = window;
+        acceptedRequestTimes.clear();
+    }
+
+    /**
+     * Reseeds the random generator the injected latency and errors are drawn from.
+     *
+     * @param seed The seed.
+     */
+    public synchronized void setSeed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Gets the number of requests received, including throttled and failed ones.
+     *
+     * @return The number of requests.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of requests answered with an injected server error.
+     *
+     * @return The number of errors.
+     */
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * Gets the number of requests answered with 429 because they exceeded the rate limit.
+     *
+     * @return The number of throttled requests.
+     */
+    public long getThrottledRequestCount() {
+        return throttledRequests.get();
+    }
+
+    @Override
+    public void dispose() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            delay();
+
+            long retryAfterMillis = acquire();
+            if (retryAfterMillis > 0) {
+                throttledRequests.incrementAndGet();
+                long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999));
+                exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+                respond(exchange, 429, "text/plain", "Too Many Requests".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                respond(exchange, 503, "text/plain", "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            String requestUrl = exchange.getRequestURI().toString();
+            HttpRecording.RecordedResponse response = recording.find(requestUrl);
+            if (response != null) {
+                respond(exchange, response.statusCode(), response.contentType(),
+                        rewrite(response.contentType(), response.body()));
+                return;
+            }
+            List<byte[]> images = fallbackImages;
+            String path = exchange.getRequestURI().getPath();
+            if (!images.isEmpty() && isImagePath(path)) {
+                byte[] image = images.get(Math.floorMod(path.hashCode(), images.size()));
+                respond(exchange, 200, contentTypeOf(image), image);
+                return;
+            }
+            respond(exchange, 404, "text/plain", "Not Found".getBytes(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.log(Level.FINE, () -> "Failed to answer a request. Error: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void delay() throws InterruptedException {
+        long delayNanos = latency.toNanos();
+        long jitterNanos = latencyJitter.toNanos();
+        if (jitterNanos > 0) {
+            delayNanos += (long) (nextDouble() * jitterNanos);
+        }
+        if (delayNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(delayNanos);
+        }
+    }
+
+    /**
+     * Accepts a request if the rate limit allows it.
+     *
+     * @return 0 if the request is accepted, otherwise the time until it would be accepted in milliseconds.
+     */
+    private synchronized long acquire() {
+        if (rateLimit <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long windowNanos = rateLimitWindow.toNanos();
+        while (!acceptedRequestTimes.isEmpty() && now - acceptedRequestTimes.peekFirst() >= windowNanos) {
+            acceptedRequestTimes.pollFirst();
+        }
+        if (acceptedRequestTimes.size() >= rateLimit) {
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(acceptedRequestTimes.peekFirst() + windowNanos - now));
+        }
+        acceptedRequestTimes.addLast(now);
+        return 0;
+    }
+
+    private synchronized int remainingRequests() {
+        return Math.max(0, rateLimit - acceptedRequestTimes.size());
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        if (contentType != null) {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+        }
+        int limit;
+        synchronized (this) {
+            limit = rateLimit;
+        }
+        if (limit > 0) {
+            exchange.getResponseHeaders().set(RATE_LIMIT_HEADER, Integer.toString(limit));
+            exchange.getResponseHeaders().set(RATE_LIMIT_REMAINING_HEADER, Integer.toString(remainingRequests()));
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    private byte[] rewrite(String contentType, byte[] body) {
+        Map<String, String> rewrites;
+        synchronized (this) {
+            if (rewrittenOrigins.isEmpty()) {
+                return body;
+            }
+            rewrites = new LinkedHashMap<>(rewrittenOrigins);
+        }
+        if (contentType == null || !isText(contentType)) {
+            return body;
+        }
+        String text = new String(body, StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> rewrite : rewrites.entrySet()) {
+            text = text.replace(rewrite.getKey(), rewrite.getValue());
+            // JSON may escape the slashes of the URLs.
+            text = text.replace(rewrite.getKey().replace("/", "\\/"), rewrite.getValue().replace("/", "\\/"));
+        }
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static boolean isText(String contentType) {
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml");
+    }
+
+    private static boolean isImagePath(String path) {
+        String lowerCasePath = path.toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (lowerCasePath.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String contentTypeOf(byte[] image) {
+        if (image.length > 1 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8) {
+            return "image/jpeg";
+        }
+        if (image.length > 0 && (image[0] & 0xff) == 0x89) {
+            return "image/png";
+        }
+        return "application/octet-stream";
+    }
+
+    /**
+     * Serves a saved recording until the process is stopped, with every recorded origin rewritten to the server, so a
+     * single stub stands in for all recorded hosts. Faults are configured with the system properties
+     * {@code stub.latencyMillis}, {@code stub.jitterMillis}, {@code stub.errorRate} and
+     * {@code stub.requestsPerMinute}.
+     *
+     * @param args The recording directory, optionally followed by the port.
+     * @throws IOException If the recording cannot be loaded or the server cannot be started.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: StubServer <recording directory> [port]");
+            System.exit(2);
+        }
+        HttpRecording recording = HttpRecording.load(Path.of(args[0]));
+        StubServer server = new StubServer(recording, args.length > 1 ? Integer.parseInt(args[1]) : 0);
+        for (String origin : recording.getOrigins()) {
+            server.rewriteOrigin(origin, server.getBaseUrl());
+        }
+        server.setLatency(Duration.ofMillis(Long.getLong("stub.latencyMillis", 0)));
+        server.setLatencyJitter(Duration.ofMillis(Long.getLong("stub.jitterMillis", 0)));
+        server.setErrorRate(Double.parseDouble(System.getProperty("stub.errorRate", "0")));
+        server.setRateLimit(Integer.getInteger("stub.requestsPerMinute", 0), Duration.ofMinutes(1));
+        System.out.println("Serving " + recording.size() + " recorded responses at " + server.getBaseUrl());
+    }
+}
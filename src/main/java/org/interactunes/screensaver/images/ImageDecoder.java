@@ -0,0 +1,204 @@
+package org.interactunes.screensaver.images;
+
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Decodes images close to the size they will be displayed at. Instead of decoding every pixel of a large cover and
+ * throwing most of them away when scaling it down, the reader skips rows and columns with source subsampling so that
+ * the decoded image is just large enough for the target size; the precise final scale is still done by the
+ * {@link ImageScaler}. This keeps large covers from allocating full-resolution rasters.
+ * <p>
+ * Image readers are reused per thread, since looking up and instantiating a reader for every image adds up when
+ * decoding many small images.
+ * <p>
+ * Interrupting the decoding thread abandons the decode, also in the middle of reading the image, and the decode fails
+ * with an {@link InterruptedIOException}. This is how cancelled loads stop spending time on images nobody will see.
+ */
+public class ImageDecoder {
+
+    private static final IIOReadProgressListener ABORT_ON_INTERRUPT = new AbortOnInterruptListener();
+
+    private static ImageDecoder instance;
+
+    // Readers are not thread-safe, so every thread keeps its own, one per format it has decoded.
+    private final ThreadLocal<List<ImageReader>> readers;
+    private final LatencyHistogram decodeLatency;
+
+    /**
+     * Creates a new image decoder.
+     */
+    public ImageDecoder() {
+        readers = ThreadLocal.withInitial(ArrayList::new);
+        decodeLatency = MetricsRegistry.getInstance().histogram("image.decode");
+    }
+
+    /**
+     * Gets the decoder shared by the services and the cache, creating it on first use.
+     *
+     * @return The shared decoder.
+     */
+    public static synchronized ImageDecoder getInstance() {
+        if (instance == null) {
+            instance = new ImageDecoder();
+        }
+        return instance;
+    }
+
+    /**
+     * Decodes the encoded image so that both dimensions are at least the target size, if the image is large enough.
+     *
+     * @param bytes      The encoded image.
+     * @param targetSize The size the image will be scaled to, or 0 or less to decode at full resolution.
+     * @return The decoded image or null if the format is not supported.
+     * @throws IOException If the image cannot be decoded.
+     */
+    public BufferedImage decode(byte[] bytes, int targetSize) throws IOException {
+        try (ImageInputStream inputStream = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            return decode(inputStream, targetSize);
+        }
+    }
+
+    /**
+     * Decodes the image file so that both dimensions are at least the target size, if the image is large enough.
+     *
+     * @param path       The image file.
+     * @param targetSize The size the image will be scaled to, or 0 or less to decode at full resolution.
+     * @return The decoded image or null if the format is not supported.
+     * @throws IOException If the file cannot be read or decoded.
+     */
+    public BufferedImage decode(Path path, int targetSize) throws IOException {
+        // Closing the image input stream does not close the stream it wraps.
+        try (InputStream fileStream = Files.newInputStream(path);
+             ImageInputStream inputStream = ImageIO.createImageInputStream(fileStream)) {
+            return decode(inputStream, targetSize);
+        }
+    }
+
+    /**
+     * Gets the subsampling factor that shrinks an image as much as possible while keeping both dimensions at least
+     * the target size.
+     *
+     * @param width      The width of the image.
+     * @param height     The height of the image.
+     * @param targetSize The target size, or 0 or less for no subsampling.
+     * @return The factor, at least 1.
+     */
+    static int getSubsampling(int width, int height, int targetSize) {
+        if (targetSize <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.min(width, height) / targetSize);
+    }
+
+    private BufferedImage decode(ImageInputStream inputStream, int targetSize) throws IOException {
+        if (inputStream == null) {
+            throw new IOException("Cannot create an image input stream");
+        }
+        throwIfInterrupted();
+        ImageReader reader = getReader(inputStream);
+        if (reader == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            reader.setInput(inputStream, true, true);
+            int subsampling = getSubsampling(reader.getWidth(0), reader.getHeight(0), targetSize);
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            BufferedImage image = reader.read(0, param);
+            // An interrupted read is aborted by the listener and returns a partially decoded image.
+            throwIfInterrupted();
+            return image;
+        } finally {
+            decodeLatency.recordSince(start);
+            // Drop the reference to the stream but keep the reader for the next image of the same format.
+            reader.setInput(null);
+        }
+    }
+
+    private ImageReader getReader(ImageInputStream inputStream) throws IOException {
+        List<ImageReader> threadReaders = readers.get();
+        for (ImageReader reader : threadReaders) {
+            if (reader.getOriginatingProvider().canDecodeInput(inputStream)) {
+                return reader;
+            }
+        }
+        Iterator<ImageReader> iterator = ImageIO.getImageReaders(inputStream);
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        ImageReader reader = iterator.next();
+        reader.addIIOReadProgressListener(ABORT_ON_INTERRUPT);
+        threadReaders.add(reader);
+        return reader;
+    }
+
+    private static void throwIfInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Decode cancelled");
+        }
+    }
+
+    /**
+     * Aborts a read as soon as the reader reports progress on an interrupted thread. Readers report their progress on
+     * the thread that is reading.
+     */
+    private static class AbortOnInterruptListener implements IIOReadProgressListener {
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (Thread.currentThread().isInterrupted()) {
+                source.abort();
+            }
+        }
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {
+        }
+
+        @Override
+        public void sequenceComplete(ImageReader source) {
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {
+        }
+
+        @Override
+        public void imageComplete(ImageReader source) {
+        }
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {
+        }
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {
+        }
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {
+        }
+
+        @Override
+        public void readAborted(ImageReader source) {
+        }
+    }
+}
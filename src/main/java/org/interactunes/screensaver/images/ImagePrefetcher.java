@@ -0,0 +1,250 @@
+package org.interactunes.screensaver.images;
+
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps a bounded buffer of decoded and scaled images ready ahead of the consumer. Images are fetched from the
+ * supplier on background worker threads so that the consumer (usually the Swing timer on the EDT) never has to block
+ * on network or disk I/O.
+ * <p>
+ * When the source of the images changes, {@link #invalidate()} starts a new generation: the ready images are dropped,
+ * and so are the images of the previous generation that are still being fetched once they arrive.
+ */
+public class ImagePrefetcher implements IDisposable {
+
+    private static final long EMPTY_RESULT_BACKOFF_MS = 1000;
+
+    private final Logger logger = Logger.getLogger(ImagePrefetcher.class.getName());
+
+    private final Supplier<Image> imageSupplier;
+    private final ExecutorService executor;
+    private final int workerCount;
+    private final Deque<PrefetchedImage> buffer;
+    private final ReentrantLock lock;
+    private final Condition notFull;
+    private final AtomicInteger generation;
+
+    private volatile int depth;
+    private volatile int targetSize;
+    private volatile boolean running;
+
+    /**
+     * Creates a new image prefetcher. The prefetcher does not start fetching until {@link #start()} is called.
+     *
+     * @param imageSupplier The supplier of images. Called on worker threads; may return null if no image is found.
+     * @param depth         The maximum number of images to keep ready in the buffer.
+     * @param workerCount   The number of worker threads fetching images.
+     * @param targetSize    The width and height the images should be scaled to.
+     */
+    public ImagePrefetcher(Supplier<Image> imageSupplier, int depth, int workerCount, int targetSize) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1");
+        }
+        this.imageSupplier = imageSupplier;
+        this.depth = depth;
+        this.workerCount = workerCount;
+        this.targetSize = targetSize;
+
+        buffer = new ArrayDeque<>();
+        lock = new ReentrantLock();
+        notFull = lock.newCondition();
+        generation = new AtomicInteger();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "album-prefetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the worker threads.
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            executor.submit(this::fetchLoop);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        running = false;
+        executor.shutdownNow();
+        clear();
+    }
+
+    /**
+     * Takes the next ready image from the buffer without blocking.
+     *
+     * @return The next ready image or null if the buffer is empty.
+     */
+    public PrefetchedImage poll() {
+        lock.lock();
+        try {
+            PrefetchedImage image = buffer.pollFirst();
+            if (image != null) {
+                notFull.signal();
+            }
+            return image;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all ready images from the buffer. The workers will refill it.
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            buffer.clear();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all ready images from the buffer and drops the images that are still being fetched once they arrive,
+     * e.g. because they come from a source that is no longer shown. The workers will refill the buffer.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        clear();
+    }
+
+    /**
+     * Gets the generation of the images, which changes with every {@link #invalidate()}.
+     *
+     * @return The generation.
+     */
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Gets the number of images currently ready in the buffer.
+     *
+     * @return The number of ready images.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return buffer.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the maximum number of images kept ready in the buffer.
+     *
+     * @return The buffer depth.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Sets the maximum number of images kept ready in the buffer. If the buffer currently holds more images than the
+     * new depth, the oldest images are dropped.
+     *
+     * @param depth The buffer depth.
+     */
+    public void setDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Depth must be at least 1");
+        }
+        lock.lock();
+        try {
+            this.depth = depth;
+            while (buffer.size() > depth) {
+                buffer.pollFirst();
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the width and height that newly fetched images are scaled to. Images already in the buffer keep their old
+     * size and are rescaled by the consumer if needed.
+     *
+     * @param targetSize The target size.
+     */
+    public void setTargetSize(int targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    private void fetchLoop() {
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                awaitCapacity();
+
+                int fetchGeneration = generation.get();
+                Image image = imageSupplier.get();
+                if (image == null) {
+                    Thread.sleep(EMPTY_RESULT_BACKOFF_MS);
+                    continue;
+                }
+
+                // The scaled image is null if the target size changed while scaling; the consumer then rescales it.
+                int size = targetSize;
+                Image scaledImage = size > 0 ? ImageScaler.getInstance().getScaledImage(image, size) : null;
+                offer(new PrefetchedImage(image, scaledImage, size), fetchGeneration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.log(Level.WARNING, () -> "Failed to prefetch album image. Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void awaitCapacity() throws InterruptedException {
+        lock.lock();
+        try {
+            while (buffer.size() >= depth) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void offer(PrefetchedImage image, int fetchGeneration) throws InterruptedException {
+        lock.lock();
+        try {
+            // Another worker may have filled the last slot while this image was being fetched. The generation is checked
+            // under the lock, also after waiting, so a stale image cannot slip in after an invalidation.
+            while (fetchGeneration == generation.get() && buffer.size() >= depth) {
+                notFull.await();
+            }
+            if (fetchGeneration == generation.get()) {
+                buffer.addLast(image);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
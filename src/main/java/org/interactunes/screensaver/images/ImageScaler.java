@@ -0,0 +1,217 @@
+package org.interactunes.screensaver.images;
+
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scales images into square, screen-compatible {@link BufferedImage}s. Downscaling is done progressively in bilinear
+ * passes that at most halve the image each time, which gives results close to {@link Image#SCALE_SMOOTH} at a fraction
+ * of the cost. The most recently used results are cached per source image and target size, so repeatedly asking for the
+ * same size is free, e.g. when the grid settles on a size again or new cells take images the prefetcher already
+ * scaled. The cache holds the scaled images strongly but is limited to a few screens of covers, so most heap copies
+ * that the album grid has copied into the {@link PixelStore} can still be collected while young. The source images are
+ * only referenced weakly, so the cache never keeps a full-size image alive.
+ * <p>
+ * Whenever the requested size changes (e.g. while the window is being resized), scales for other sizes that are still
+ * in flight are abandoned between passes instead of finishing work that would be thrown away.
+ */
+public class ImageScaler {
+
+    private static final long DEFAULT_MAX_CACHED_BYTES = 16L * 1024 * 1024;
+
+    private static ImageScaler instance;
+
+    // Least recently used first.
+    private final LinkedHashMap<CacheKey, BufferedImage> scaledImages;
+    private final long maxCachedBytes;
+    private final AtomicInteger requestedSizeGeneration;
+    private final GraphicsConfiguration graphicsConfiguration;
+    private final LatencyHistogram scaleLatency;
+
+    private volatile int requestedSize;
+    private long cachedBytes;
+
+    /**
+     * Creates a new image scaler with a cache of the default size.
+     */
+    public ImageScaler() {
+        this(DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    /**
+     * Creates a new image scaler.
+     *
+     * @param maxCachedBytes The maximum size of the scaled images kept in the cache, or 0 to cache nothing.
+     */
+    public ImageScaler(long maxCachedBytes) {
+        this.maxCachedBytes = maxCachedBytes;
+        scaledImages = new LinkedHashMap<>(16, 0.75f, true);
+        requestedSizeGeneration = new AtomicInteger();
+        scaleLatency = MetricsRegistry.getInstance().histogram("image.scale");
+        graphicsConfiguration = GraphicsEnvironment.isHeadless() ? null :
+                GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+    }
+
+    /**
+     * Gets the scaler shared by the album grid and the prefetcher, creating it on first use.
+     *
+     * @return The shared scaler.
+     */
+    public static synchronized ImageScaler getInstance() {
+        if (instance == null) {
+            instance = new ImageScaler();
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the size the album grid currently displays images at. Scales in flight for a different size are abandoned.
+     *
+     * @param size The requested size.
+     */
+    public void setRequestedSize(int size) {
+        if (requestedSize != size) {
+            requestedSize = size;
+            requestedSizeGeneration.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the size the album grid currently displays images at.
+     *
+     * @return The requested size, or 0 if no size has been requested yet.
+     */
+    public int getRequestedSize() {
+        return requestedSize;
+    }
+
+    /**
+     * Gets the image scaled to a square of the given size, from the cache if possible.
+     *
+     * @param image The image to scale.
+     * @param size  The width and height of the scaled image.
+     * @return The scaled image, or null if the requested size changed to a different size while scaling.
+     */
+    public BufferedImage getScaledImage(Image image, int size) {
+        BufferedImage cached = getCached(image, size);
+        if (cached != null) {
+            return cached;
+        }
+        long start = System.nanoTime();
+        BufferedImage scaled = scale(image, size);
+        if (scaled != null) {
+            // Abandoned scales are not recorded, so the histogram only holds the cost of scales that were used.
+            scaleLatency.recordSince(start);
+            putCached(image, scaled);
+        }
+        return scaled;
+    }
+
+    private BufferedImage scale(Image image, int size) {
+        int generation = requestedSizeGeneration.get();
+
+        int width = image.getWidth(null);
+        int height = image.getHeight(null);
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+
+        Image current = image;
+        do {
+            if (generation != requestedSizeGeneration.get() && requestedSize != size) {
+                return null;
+            }
+            width = nextPassSize(width, size);
+            height = nextPassSize(height, size);
+
+            BufferedImage next = createCompatibleImage(width, height);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != size || height != size);
+
+        return (BufferedImage) current;
+    }
+
+    private static int nextPassSize(int current, int target) {
+        // Bilinear filtering only samples 2x2 pixels, so halving at most each pass avoids skipping source pixels.
+        if (current > target) {
+            return Math.max(current / 2, target);
+        }
+        return target;
+    }
+
+    private BufferedImage createCompatibleImage(int width, int height) {
+        if (graphicsConfiguration != null) {
+            return graphicsConfiguration.createCompatibleImage(width, height, Transparency.OPAQUE);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private synchronized BufferedImage getCached(Image image, int size) {
+        return scaledImages.get(new CacheKey(image, size));
+    }
+
+    private synchronized void putCached(Image image, BufferedImage scaled) {
+        long bytes = imageBytes(scaled);
+        if (bytes > maxCachedBytes) {
+            return;
+        }
+        BufferedImage previous = scaledImages.put(new CacheKey(image, scaled.getWidth()), scaled);
+        cachedBytes += bytes - (previous == null ? 0 : imageBytes(previous));
+        Iterator<BufferedImage> iterator = scaledImages.values().iterator();
+        while (cachedBytes > maxCachedBytes) {
+            cachedBytes -= imageBytes(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    private static long imageBytes(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * Integer.BYTES;
+    }
+
+    /**
+     * The key of a scaled image. Source images are compared by identity, as images do not override equals. The key of a
+     * collected source image matches no other key and is dropped once it is the least recently used.
+     */
+    private static final class CacheKey {
+
+        private final WeakReference<Image> image;
+        private final int imageHash;
+        private final int size;
+
+        private CacheKey(Image image, int size) {
+            this.image = new WeakReference<>(image);
+            imageHash = System.identityHashCode(image);
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CacheKey key) || size != key.size) {
+                return false;
+            }
+            Image source = image.get();
+            return source != null && source == key.image.get();
+        }
+
+        @Override
+        public int hashCode() {
+            return imageHash * 31 + size;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.interactunes.screensaver.images;
+
+import lombok.Getter;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+import org.interactunes.screensaver.utils.DotEnvInstance;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the pixels of the displayed album images in off-heap memory, so that the grid does not hold large, long-lived
+ * int[] rasters on the heap that every garbage collection has to account for. The pixels live in slabs, direct
+ * buffers whose capacity is rounded up to a size class, and a released slab is pooled and reused for the next image of
+ * the same class. If an image does not fit into the memory budget, the caller keeps it on the heap instead.
+ * <p>
+ * The pixels are only uploaded to the screen or wrapped in a {@link BufferedImage} to be painted, see
+ * {@link StoredImage#paint}. The screen copies are accelerated {@link VolatileImage}s, which are created by the store
+ * and counted against the same budget as the slabs. When a new slab does not fit, the pooled slabs are dropped first
+ * and then the screen copies that were painted the longest time ago, whose images are painted from the slabs instead.
+ * A new screen copy only takes room that is free or pooled, so that copies do not keep replacing each other when they
+ * do not all fit.
+ */
+public class PixelStore {
+
+    /**
+     * The key of the optional memory budget in megabytes.
+     */
+    public static final String BUDGET_KEY = "PIXEL_STORE_BUDGET_MB";
+
+    private static final long DEFAULT_BUDGET_BYTES = 128L * 1024 * 1024;
+    private static final long MIN_SLAB_BYTES = 64 * 1024;
+
+    private static PixelStore instance;
+
+    private final Logger logger = Logger.getLogger(PixelStore.class.getName());
+
+    // Free slabs by capacity.
+    private final Map<Long, ArrayDeque<ByteBuffer>> freeSlabs;
+    // The screen copies of the stored images, least recently painted first.
+    private final LinkedHashMap<StoredImage, Surface> surfaces;
+
+    /**
+     * The maximum number of bytes held by all slabs, in use or pooled, and all screen copies.
+     */
+    @Getter
+    private final long budgetBytes;
+
+    private long reservedBytes;
+    private long usedBytes;
+    private long surfaceBytes;
+    private long rejectedCount;
+
+    /**
+     * Creates a new pixel store.
+     *
+     * @param budgetBytes The maximum number of bytes held by all slabs, in use or pooled, and all screen copies.
+     */
+    public PixelStore(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        freeSlabs = new HashMap<>();
+        surfaces = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets the store shared by the album grid, creating it on first use. Its budget is read from
+     * {@value #BUDGET_KEY} and defaults to 128 MB.
+     *
+     * @return The shared store.
+     */
+    public static synchronized PixelStore getInstance() {
+        if (instance == null) {
+            instance = new PixelStore(readBudgetBytes());
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            registry.gauge("pixels.reserved.bytes", instance::getReservedBytes);
+            registry.gauge("pixels.used.bytes", instance::getUsedBytes);
+            registry.gauge("pixels.surface.bytes", instance::getSurfaceBytes);
+            registry.gauge("pixels.rejected", instance::getRejectedCount);
+        }
+        return instance;
+    }
+
+    /**
+     * Copies the pixels of an image into the store. The alpha channel is dropped, as album covers are opaque.
+     *
+     * @param image The image.
+     * @return The stored image, or null if it does not fit into the budget.
+     */
+    public StoredImage store(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        ByteBuffer slab = allocate((long) width * height * Integer.BYTES);
+        if (slab == null) {
+            return null;
+        }
+        IntBuffer pixels = slab.asIntBuffer();
+        boolean intPixels = image.getType() == BufferedImage.TYPE_INT_RGB ||
+                image.getType() == BufferedImage.TYPE_INT_ARGB;
+        // Copied a row at a time, so that storing an image does not allocate a second heap raster of it.
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            if (intPixels) {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+            } else {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            pixels.put(y * width, row, 0, width);
+        }
+        return new StoredImage(this, slab, width, height);
+    }
+
+    /**
+     * Gets the number of bytes held by all slabs, in use or pooled.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * Gets the number of bytes held by the slabs of stored images that have not been released yet.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of bytes held by the screen copies of the stored images.
+     *
+     * @return The number of bytes.
+     */
+    public synchronized long getSurfaceBytes() {
+        return surfaceBytes;
+    }
+
+    /**
+     * Gets the number of images that did not fit into the budget.
+     *
+     * @return The number of images.
+     */
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Gets the capacity of the slab an image of the given size is stored in. Between two powers of two the classes are
+     * a quarter of the lower power apart, so at most a fifth of a slab is wasted.
+     *
+     * @param bytes The size of the image in bytes.
+     * @return The capacity of the slab.
+     */
+    static long slabCapacity(long bytes) {
+        if (bytes <= MIN_SLAB_BYTES) {
+            return MIN_SLAB_BYTES;
+        }
+        long power = Long.highestOneBit(bytes);
+        long step = power / 4;
+        return (bytes + step - 1) / step * step;
+    }
+
+    /**
+     * Creates the screen copy of an image if it fits into the budget. The copy belongs to the store, which may flush it
+     * at any time to make room for other images; see {@link #holdsSurface}.
+     *
+     * @param image         The image.
+     * @param configuration The configuration of the screen the image is painted on.
+     * @return The screen copy, or null if the screen is not accelerated or the copy does not fit into the budget.
+     */
+    synchronized VolatileImage createSurface(StoredImage image, GraphicsConfiguration configuration) {
+        if (!configuration.getImageCapabilities().isAccelerated()) {
+            releaseSurface(image);
+            return null;
+        }
+        if (!reserveSurface(image, (long) image.getWidth() * image.getHeight() * Integer.BYTES)) {
+            return null;
+        }
+        Surface surface = surfaces.get(image);
+        surface.volatileImage = configuration.createCompatibleVolatileImage(image.getWidth(), image.getHeight(),
+                Transparency.OPAQUE);
+        // Without acceleration the copy would just be another heap raster of the pixels.
+        if (surface.volatileImage == null || !surface.volatileImage.getCapabilities().isAccelerated()) {
+            releaseSurface(image);
+            return null;
+        }
+        return surface.volatileImage;
+    }
+
+    /**
+     * Gets whether the screen copy of an image is still held by the store, and marks it as recently painted.
+     *
+     * @param image The image.
+     * @return False if the image has no screen copy or the store has flushed it.
+     */
+    synchronized boolean holdsSurface(StoredImage image) {
+        return surfaces.get(image) != null;
+    }
+
+    /**
+     * Flushes the screen copy of an image, if it has one.
+     *
+     * @param image The image.
+     */
+    synchronized void releaseSurface(StoredImage image) {
+        Surface surface = surfaces.remove(image);
+        if (surface != null) {
+            surface.flush();
+            surfaceBytes -= surface.bytes;
+        }
+    }
+
+    /**
+     * Reserves the budget for the screen copy of an image, dropping pooled slabs if needed.
+     *
+     * @param image The image.
+     * @param bytes The size of the screen copy.
+     * @return False if the copy does not fit into the budget.
+     */
+    synchronized boolean reserveSurface(StoredImage image, long bytes) {
+        releaseSurface(image);
+        if (!makeRoom(bytes, false)) {
+            return false;
+        }
+        surfaces.put(image, new Surface(bytes));
+        surfaceBytes += bytes;
+        return true;
+    }
+
+    synchronized void release(ByteBuffer slab) {
+        long capacity = slab.capacity();
+        usedBytes -= capacity;
+        freeSlabs.computeIfAbsent(capacity, key -> new ArrayDeque<>()).push(slab);
+    }
+
+    private synchronized ByteBuffer allocate(long bytes) {
+        long capacity = slabCapacity(bytes);
+        ArrayDeque<ByteBuffer> free = freeSlabs.get(capacity);
+        if (free != null && !free.isEmpty()) {
+            usedBytes += capacity;
+            return free.pop();
+        }
+        if (capacity > Integer.MAX_VALUE || !reserve(capacity)) {
+            rejectedCount++;
+            return null;
+        }
+        ByteBuffer slab;
+        try {
+            slab = ByteBuffer.allocateDirect((int) capacity).order(ByteOrder.nativeOrder());
+        } catch (OutOfMemoryError e) {
+            // The budget is larger than the direct memory the JVM allows.
+            reservedBytes -= capacity;
+            rejectedCount++;
+            logger.log(Level.WARNING, () -> "Out of direct memory with " + reservedBytes + " bytes reserved.");
+            return null;
+        }
+        usedBytes += capacity;
+        return slab;
+    }
+
+    private boolean reserve(long capacity) {
+        if (!makeRoom(capacity, true)) {
+            return false;
+        }
+        reservedBytes += capacity;
+        return true;
+    }
+
+    private boolean makeRoom(long bytes, boolean flushSurfaces) {
+        if (reservedBytes + surfaceBytes + bytes <= budgetBytes) {
+            return true;
+        }
+        // Pooled slabs of other classes are dropped first. Their memory is freed once they are collected.
+        for (ArrayDeque<ByteBuffer> free : freeSlabs.values()) {
+            while (!free.isEmpty() && reservedBytes + surfaceBytes + bytes > budgetBytes) {
+                reservedBytes -= free.pop().capacity();
+            }
+        }
+        // Then the screen copies painted the longest time ago, which can be uploaded again from their slabs.
+        Iterator<Surface> iterator = surfaces.values().iterator();
+        while (flushSurfaces && iterator.hasNext() && reservedBytes + surfaceBytes + bytes > budgetBytes) {
+            Surface surface = iterator.next();
+            iterator.remove();
+            surface.flush();
+            surfaceBytes -= surface.bytes;
+        }
+        return reservedBytes + surfaceBytes + bytes <= budgetBytes;
+    }
+
+    /**
+     * The screen copy of a stored image and the bytes reserved for it.
+     */
+    private static final class Surface {
+
+        private final long bytes;
+        private VolatileImage volatileImage;
+
+        private Surface(long bytes) {
+            this.bytes = bytes;
+        }
+
+        private void flush() {
+            if (volatileImage != null) {
+                volatileImage.flush();
+            }
+        }
+    }
+
+    private static long readBudgetBytes() {
+        String budget = DotEnvInstance.getOptional(BUDGET_KEY, null);
+        if (budget == null) {
+            return DEFAULT_BUDGET_BYTES;
+        }
+        try {
+            return Long.parseLong(budget.trim()) * 1024 * 1024;
+        } catch (NumberFormatException e) {
+            Logger.getLogger(PixelStore.class.getName()).log(Level.WARNING,
+                    () -> "Invalid " + BUDGET_KEY + " " + budget + ", using the default budget.");
+            return DEFAULT_BUDGET_BYTES;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.interactunes.screensaver.images;
+
+import java.awt.*;
+
+/**
+ * An image that has been fetched ahead of time along with a copy scaled for the cell size that was current when it
+ * was fetched.
+ *
+ * @param original   The original image as returned by the service.
+ * @param scaled     The image scaled to {@code scaledSize}, or null if it could not be scaled ahead of time.
+ * @param scaledSize The width and height of the scaled image.
+ */
+public record PrefetchedImage(Image original, Image scaled, int scaledSize) {
+}
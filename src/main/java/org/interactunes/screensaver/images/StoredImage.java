@@ -0,0 +1,147 @@
+package org.interactunes.screensaver.images;
+
+import lombok.Getter;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.VolatileImage;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An image whose pixels are kept in a {@link PixelStore}. The pixels must be released explicitly once the image is no
+ * longer displayed, after which painting it does nothing.
+ * <p>
+ * On an accelerated screen, the pixels are uploaded once into a {@link VolatileImage} created by the store, which is
+ * then painted like any accelerated image; they are only uploaded again if the surface loses its contents or the store
+ * flushes it to stay within its budget. When there is no surface, such as when painting into an image, when running
+ * headless or when the budget is used up, the pixels are copied into a heap view on every paint.
+ */
+public class StoredImage {
+
+    private static final int MAX_VIEWS_PER_THREAD = 4;
+    private static final int MAX_RESTORE_ATTEMPTS = 3;
+
+    // The heap images the pixels are copied into for painting, reused per thread and size.
+    private static final ThreadLocal<Map<Long, BufferedImage>> views = ThreadLocal.withInitial(() ->
+            new LinkedHashMap<>(MAX_VIEWS_PER_THREAD, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                    return size() > MAX_VIEWS_PER_THREAD;
+                }
+            });
+
+    private final PixelStore store;
+    private final ByteBuffer slab;
+
+    @Getter
+    private final int width;
+    @Getter
+    private final int height;
+
+    private boolean released;
+    private VolatileImage surface;
+
+    StoredImage(PixelStore store, ByteBuffer slab, int width, int height) {
+        this.store = store;
+        this.slab = slab;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Paints the image, stretched to the given bounds.
+     *
+     * @param g      The graphics to paint with.
+     * @param x      The x coordinate of the image.
+     * @param y      The y coordinate of the image.
+     * @param width  The width to paint the image at.
+     * @param height The height to paint the image at.
+     */
+    public synchronized void paint(Graphics g, int x, int y, int width, int height) {
+        if (released) {
+            return;
+        }
+        GraphicsConfiguration configuration = g instanceof Graphics2D graphics ? graphics.getDeviceConfiguration() : null;
+        if (configuration == null || configuration.getDevice().getType() == GraphicsDevice.TYPE_IMAGE_BUFFER) {
+            g.drawImage(copyToView(), x, y, width, height, null);
+            return;
+        }
+        int attempts = 0;
+        do {
+            if (surface != null && !store.holdsSurface(this)) {
+                // Flushed by the store to make room.
+                surface = null;
+            }
+            int status = surface == null ? VolatileImage.IMAGE_INCOMPATIBLE : surface.validate(configuration);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                surface = store.createSurface(this, configuration);
+                if (surface == null) {
+                    g.drawImage(copyToView(), x, y, width, height, null);
+                    return;
+                }
+                status = VolatileImage.IMAGE_RESTORED;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED) {
+                Graphics2D surfaceGraphics = surface.createGraphics();
+                try {
+                    surfaceGraphics.drawImage(copyToView(), 0, 0, null);
+                } finally {
+                    surfaceGraphics.dispose();
+                }
+            }
+            g.drawImage(surface, x, y, width, height, null);
+        } while (surface.contentsLost() && ++attempts < MAX_RESTORE_ATTEMPTS);
+    }
+
+    /**
+     * Copies the pixels back into a new heap image.
+     *
+     * @return The heap image, or null if the pixels have been released.
+     */
+    public synchronized BufferedImage toBufferedImage() {
+        if (released) {
+            return null;
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            slab.asIntBuffer().get(y * width, row, 0, width);
+            image.getRaster().setDataElements(0, y, width, 1, row);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the pixels to the store. Releasing an image more than once has no effect.
+     */
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            surface = null;
+            store.releaseSurface(this);
+            store.release(slab);
+        }
+    }
+
+    private BufferedImage copyToView() {
+        BufferedImage view = views.get().computeIfAbsent(((long) width << 32) | height,
+                key -> new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        // Taking the array keeps Java2D from caching a copy of the view that would be stale after the next copy.
+        int[] data = ((DataBufferInt) view.getRaster().getDataBuffer()).getData();
+        slab.asIntBuffer().get(0, data, 0, width * height);
+        // Drawing a BufferedImage completes before drawImage returns, so the view can be reused right after.
+        return view;
+    }
+
+    /**
+     * Gets whether the pixels have been returned to the store.
+     *
+     * @return True if the image has been released.
+     */
+    public synchronized boolean isReleased() {
+        return released;
+    }
+}
@@ -0,0 +1,58 @@
+package org.interactunes.screensaver.library;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A library source that reads the images in a zip archive without extracting it. The archive is opened as a zip file
+ * system, so the images are read straight out of the archive when they are decoded.
+ */
+public class ArchiveLibrarySource implements ILibrarySource {
+
+    private final Path archive;
+    private final FileSystem fileSystem;
+
+    /**
+     * Creates a new archive library source and opens the archive.
+     *
+     * @param archive The zip archive.
+     * @throws IOException If the archive cannot be opened.
+     */
+    public ArchiveLibrarySource(Path archive) throws IOException {
+        this.archive = archive;
+        fileSystem = FileSystems.newFileSystem(archive);
+    }
+
+    @Override
+    public String getName() {
+        return archive.toUri().toString();
+    }
+
+    @Override
+    public Path getRoot() {
+        // A zip file system has a single root directory.
+        return fileSystem.getRootDirectories().iterator().next();
+    }
+
+    @Override
+    public Stream<Path> streamImages() throws IOException {
+        return new DirectoryLibrarySource(getRoot()).streamImages();
+    }
+
+    @Override
+    public long getLastModified() throws IOException {
+        return Files.getLastModifiedTime(archive).toMillis();
+    }
+
+    @Override
+    public void dispose() {
+        try {
+            fileSystem.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.interactunes.screensaver.library;
+
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A library source that reads the images in a folder of classpath resources. The folder can be a plain directory,
+ * e.g. when running from an IDE, or a folder inside a JAR, which is opened as a zip file system.
+ */
+public class ClasspathLibrarySource implements ILibrarySource {
+
+    private final String resourcePath;
+    private final Path root;
+    private final Path modifiedPath;
+    private final FileSystem ownedFileSystem;
+
+    /**
+     * Creates a new classpath library source.
+     *
+     * @param resourcePath The path of the resource folder, e.g. {@code images/albums}.
+     * @param classLoader  The class loader to look the folder up with.
+     * @throws IOException If the folder does not exist or cannot be opened.
+     */
+    public ClasspathLibrarySource(String resourcePath, ClassLoader classLoader) throws IOException {
+        this.resourcePath = resourcePath;
+        URL url = classLoader.getResource(resourcePath);
+        if (url == null) {
+            throw new IOException("Resource folder " + resourcePath + " not found");
+        }
+
+        try {
+            if ("jar".equals(url.getProtocol())) {
+                URL jarFileUrl = ((JarURLConnection) url.openConnection()).getJarFileURL();
+                modifiedPath = Path.of(jarFileUrl.toURI());
+                URI jarUri = URI.create("jar:" + jarFileUrl.toURI());
+                FileSystem fileSystem;
+                FileSystem opened = null;
+                try {
+                    opened = FileSystems.newFileSystem(jarUri, Map.of());
+                    fileSystem = opened;
+                } catch (FileSystemAlreadyExistsException e) {
+                    fileSystem = FileSystems.getFileSystem(jarUri);
+                }
+                ownedFileSystem = opened;
+                root = fileSystem.getPath(resourcePath);
+            } else {
+                root = Path.of(url.toURI());
+                modifiedPath = root;
+                ownedFileSystem = null;
+            }
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Cannot open resource folder " + url, e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "classpath:" + resourcePath;
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Stream<Path> streamImages() throws IOException {
+        return new DirectoryLibrarySource(root).streamImages();
+    }
+
+    @Override
+    public long getLastModified() throws IOException {
+        return Files.getLastModifiedTime(modifiedPath).toMillis();
+    }
+
+    @Override
+    public void dispose() {
+        if (ownedFileSystem == null) {
+            return;
+        }
+        try {
+            ownedFileSystem.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
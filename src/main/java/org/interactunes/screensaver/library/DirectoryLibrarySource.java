@@ -0,0 +1,50 @@
+package org.interactunes.screensaver.library;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A library source that reads the images in a directory tree. The directory can be on any file system, including a
+ * zip file system.
+ */
+public class DirectoryLibrarySource implements ILibrarySource {
+
+    private final Path root;
+
+    /**
+     * Creates a new directory library source.
+     *
+     * @param root The root directory of the library.
+     */
+    public DirectoryLibrarySource(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public String getName() {
+        return root.toUri().toString();
+    }
+
+    @Override
+    public Stream<Path> streamImages() throws IOException {
+        // Files.find reuses the attributes read while walking, so there is no extra stat per file.
+        return Files.find(root, Integer.MAX_VALUE,
+                (path, attributes) -> attributes.isRegularFile() && LibrarySources.isImageFile(path));
+    }
+
+    @Override
+    public long getLastModified() throws IOException {
+        return Files.getLastModifiedTime(root).toMillis();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,37 @@
+package org.interactunes.screensaver.library;
+
+import java.nio.file.Path;
+
+/**
+ * A listener for the changes of a {@link LibraryIndex}. The methods are called on the thread of the index, one at a
+ * time, and should return quickly.
+ */
+public interface ILibraryIndexListener {
+
+    /**
+     * Called when an image has been added to the index, either while it is loaded or because a file was created.
+     *
+     * @param image The image file.
+     */
+    void imageAdded(Path image);
+
+    /**
+     * Called when an image has been removed from the index because its file was deleted.
+     *
+     * @param image The image file.
+     */
+    void imageRemoved(Path image);
+
+    /**
+     * Called when the file of an image in the index has been modified.
+     *
+     * @param image The image file.
+     */
+    void imageChanged(Path image);
+
+    /**
+     * Called once when the index has been loaded, from the snapshot if there is one and otherwise by traversing the
+     * sources. Changes found afterwards are reported as they are found.
+     */
+    void indexLoaded();
+}
@@ -0,0 +1,44 @@
+package org.interactunes.screensaver.library;
+
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * A source of local album images, e.g. a directory, a zip archive or a folder of classpath resources.
+ */
+public interface ILibrarySource extends IDisposable {
+
+    /**
+     * Gets a name identifying the source, e.g. its location.
+     *
+     * @return The name.
+     */
+    String getName();
+
+    /**
+     * Gets the directory the images of the source are found under.
+     *
+     * @return The root directory.
+     */
+    Path getRoot();
+
+    /**
+     * Streams the image files of the source. The files are found while the stream is consumed, so the first files are
+     * available long before a large source has been fully traversed. The stream must be closed.
+     *
+     * @return The image files. They can be read with {@link java.nio.file.Files}, even if they are inside an archive.
+     * @throws IOException If the source cannot be read.
+     */
+    Stream<Path> streamImages() throws IOException;
+
+    /**
+     * Gets the time the source was last modified, which is used to find out whether data derived from it is stale.
+     *
+     * @return The last modified time in milliseconds since the epoch.
+     * @throws IOException If the source cannot be read.
+     */
+    long getLastModified() throws IOException;
+}
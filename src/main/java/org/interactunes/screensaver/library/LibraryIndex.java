@@ -0,0 +1,565 @@
+package org.interactunes.screensaver.library;
+
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent index of the images in a set of library sources, kept up to date incrementally.
+ * <p>
+ * The index is saved as a snapshot of the images and directories with their last modified times. On start, the
+ * snapshot is loaded instead of traversing the sources, and only the directories whose last modified time changed
+ * since are listed again. A source without a snapshot is traversed once. While running, the directories on the default
+ * file system are watched with a {@link WatchService}, so created, deleted and modified files are picked up without
+ * listing anything. Directories that cannot be watched, e.g. on some network mounts, are brought up to date on the next
+ * start. A file that is modified in place while the app is not running keeps its old entry until it is modified again.
+ * <p>
+ * All changes are made on a single daemon thread and reported to the {@link ILibraryIndexListener}. The images and the
+ * stamp can be read from any thread.
+ */
+public class LibraryIndex implements IDisposable {
+
+    private static final int MAGIC = 0x49544958; // "ITIX"
+    private static final int VERSION = 1;
+    private static final long SAVE_DELAY_MS = 2000;
+
+    private final Logger logger = Logger.getLogger(LibraryIndex.class.getName());
+
+    private final List<SourceIndex> sourceIndexes;
+    private final Path snapshotFile;
+    private final ILibraryIndexListener listener;
+    private final Thread thread;
+
+    // Only used on the index thread.
+    private final Map<WatchKey, WatchedDirectory> watchedDirectories;
+    private WatchService watchService;
+    private boolean watchFailureLogged;
+    private boolean dirty;
+
+    private volatile long stamp;
+    private volatile boolean disposed;
+
+    /**
+     * Creates a new library index. The index is loaded and watched once {@link #start()} is called.
+     *
+     * @param sources      The library sources.
+     * @param snapshotFile The file the snapshot of the index is saved to.
+     * @param listener     The listener for the changes of the index.
+     */
+    public LibraryIndex(List<ILibrarySource> sources, Path snapshotFile, ILibraryIndexListener listener) {
+        sourceIndexes = new ArrayList<>();
+        for (ILibrarySource source : sources) {
+            sourceIndexes.add(new SourceIndex(source));
+        }
+        this.snapshotFile = snapshotFile;
+        this.listener = listener;
+        watchedDirectories = new HashMap<>();
+        thread = new Thread(this::run, "library-index");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Starts loading and then watching the index in the background.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Gets all images currently in the index.
+     *
+     * @return A copy of the image files.
+     */
+    public List<Path> getImages() {
+        List<Path> images = new ArrayList<>();
+        for (SourceIndex sourceIndex : sourceIndexes) {
+            images.addAll(sourceIndex.images.keySet());
+        }
+        return images;
+    }
+
+    /**
+     * Gets the number of images currently in the index.
+     *
+     * @return The number of images.
+     */
+    public int size() {
+        int size = 0;
+        for (SourceIndex sourceIndex : sourceIndexes) {
+            size += sourceIndex.images.size();
+        }
+        return size;
+    }
+
+    /**
+     * Gets a stamp of the images and their last modified times. The stamp does not depend on the order the images were
+     * found in, so data derived from the index can be checked for staleness by comparing stamps.
+     *
+     * @return The stamp.
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+        thread.interrupt();
+    }
+
+    private void run() {
+        try {
+            if (sourceIndexes.stream().anyMatch(SourceIndex::isWatchable)) {
+                try {
+                    watchService = FileSystems.getDefault().newWatchService();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, () -> "Failed to watch the library, changes are picked up on the next start. Error: " + e.getMessage());
+                }
+            }
+
+            Set<SourceIndex> restored = readSnapshot();
+            for (SourceIndex sourceIndex : sourceIndexes) {
+                if (!restored.contains(sourceIndex)) {
+                    walk(sourceIndex, sourceIndex.root);
+                }
+            }
+            logger.log(Level.INFO, () -> "Loaded " + size() + " album images into the library index.");
+            listener.indexLoaded();
+
+            for (SourceIndex sourceIndex : restored) {
+                revalidate(sourceIndex);
+            }
+            if (dirty) {
+                saveSnapshot();
+            }
+            if (watchService != null) {
+                watch();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Disposed.
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, () -> "Library index failed. Error: " + e.getMessage());
+        } finally {
+            if (dirty) {
+                saveSnapshot();
+            }
+        }
+    }
+
+    private void watch() throws InterruptedException {
+        while (!disposed) {
+            WatchKey key = watchService.poll(SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+            if (key == null) {
+                // Save once the changes have settled rather than after every event.
+                if (dirty) {
+                    saveSnapshot();
+                }
+                continue;
+            }
+
+            WatchedDirectory watched = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (watched == null) {
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost, so compare the whole source against the file system.
+                    revalidate(watched.sourceIndex);
+                    continue;
+                }
+                handleEvent(watched, event.kind(), watched.directory.resolve((Path) event.context()));
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+
+    private void handleEvent(WatchedDirectory watched, WatchEvent.Kind<?> kind, Path path) {
+        SourceIndex sourceIndex = watched.sourceIndex;
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            if (sourceIndex.directories.containsKey(path)) {
+                removeTree(sourceIndex, path);
+            } else {
+                removeImage(sourceIndex, path);
+            }
+            return;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            // Deleted again before the event was handled; the delete event follows.
+            return;
+        }
+        if (attributes.isDirectory()) {
+            if (!sourceIndex.directories.containsKey(path)) {
+                // Directories can be moved in with their content, so the whole tree is traversed.
+                walk(sourceIndex, path);
+            }
+        } else if (attributes.isRegularFile() && LibrarySources.isImageFile(path)) {
+            addImage(sourceIndex, path, attributes.lastModifiedTime().toMillis());
+        }
+    }
+
+    /**
+     * Traverses a directory tree, adding all directories and images in it.
+     */
+    private void walk(SourceIndex sourceIndex, Path start) {
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes) {
+                    // Register before listing, so that files created during the listing are not missed.
+                    watchDirectory(sourceIndex, directory);
+                    putDirectory(sourceIndex, directory, attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile() && LibrarySources.isImageFile(file)) {
+                        addImage(sourceIndex, file, attributes.lastModifiedTime().toMillis());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    logger.log(Level.FINE, () -> "Skipping " + file + ". Error: " + e.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Error scanning library " + start + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Brings a source that was restored from the snapshot up to date by listing the directories that changed since.
+     */
+    private void revalidate(SourceIndex sourceIndex) {
+        if (!Files.isDirectory(sourceIndex.root)) {
+            // Likely an unmounted drive; keep the snapshot rather than forgetting the whole library.
+            logger.log(Level.WARNING, () -> "Library " + sourceIndex.source.getName() + " is not available.");
+            return;
+        }
+
+        for (Map.Entry<Path, Long> entry : new ArrayList<>(sourceIndex.directories.entrySet())) {
+            Path directory = entry.getKey();
+            if (!sourceIndex.directories.containsKey(directory)) {
+                // Removed along with a parent directory.
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(directory, BasicFileAttributes.class);
+            } catch (IOException e) {
+                removeTree(sourceIndex, directory);
+                continue;
+            }
+            if (!attributes.isDirectory()) {
+                removeTree(sourceIndex, directory);
+                continue;
+            }
+            watchDirectory(sourceIndex, directory);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (lastModified != entry.getValue()) {
+                relist(sourceIndex, directory, lastModified);
+            }
+        }
+    }
+
+    /**
+     * Lists a single directory and applies the differences to the index. Adding or removing an entry of a directory
+     * updates its last modified time, but changes further down the tree do not, so only the direct children are
+     * compared; new subdirectories are traversed completely.
+     */
+    private void relist(SourceIndex sourceIndex, Path directory, long lastModified) {
+        putDirectory(sourceIndex, directory, lastModified);
+        Set<Path> children = new HashSet<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path child : entries) {
+                children.add(child);
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    if (!sourceIndex.directories.containsKey(child)) {
+                        walk(sourceIndex, child);
+                    }
+                } else if (attributes.isRegularFile() && LibrarySources.isImageFile(child)) {
+                    addImage(sourceIndex, child, attributes.lastModifiedTime().toMillis());
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Error listing " + directory + ": " + e.getMessage());
+            return;
+        }
+
+        for (Path image : new ArrayList<>(sourceIndex.imagesByDirectory.getOrDefault(directory, Set.of()))) {
+            if (!children.contains(image)) {
+                removeImage(sourceIndex, image);
+            }
+        }
+        for (Path subdirectory : new ArrayList<>(sourceIndex.subdirectories.getOrDefault(directory, Set.of()))) {
+            if (!children.contains(subdirectory)) {
+                removeTree(sourceIndex, subdirectory);
+            }
+        }
+    }
+
+    private void watchDirectory(SourceIndex sourceIndex, Path directory) {
+        if (watchService == null || !sourceIndex.isWatchable()) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedDirectories.put(key, new WatchedDirectory(sourceIndex, directory));
+        } catch (IOException e) {
+            // Most likely the limit of watches was reached; the directory is still indexed.
+            if (!watchFailureLogged) {
+                watchFailureLogged = true;
+                logger.log(Level.WARNING, () -> "Failed to watch " + directory + ", changes in some directories are picked up on the next start. Error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void putDirectory(SourceIndex sourceIndex, Path directory, long lastModified) {
+        Long previous = sourceIndex.directories.put(directory, lastModified);
+        if (previous == null) {
+            addChild(sourceIndex.subdirectories, directory);
+        }
+        if (previous == null || previous != lastModified) {
+            dirty = true;
+        }
+    }
+
+    private void addImage(SourceIndex sourceIndex, Path image, long lastModified) {
+        Long previous = sourceIndex.images.put(image, lastModified);
+        if (previous != null && previous == lastModified) {
+            return;
+        }
+        dirty = true;
+        if (previous == null) {
+            addChild(sourceIndex.imagesByDirectory, image);
+            stamp += entryHash(image, lastModified);
+            listener.imageAdded(image);
+        } else {
+            stamp += entryHash(image, lastModified) - entryHash(image, previous);
+            listener.imageChanged(image);
+        }
+    }
+
+    private void removeImage(SourceIndex sourceIndex, Path image) {
+        Long previous = sourceIndex.images.remove(image);
+        if (previous == null) {
+            return;
+        }
+        dirty = true;
+        removeChild(sourceIndex.imagesByDirectory, image);
+        stamp -= entryHash(image, previous);
+        listener.imageRemoved(image);
+    }
+
+    /**
+     * Removes a directory with everything below it. Only the entries of the tree are visited, not the whole index.
+     */
+    private void removeTree(SourceIndex sourceIndex, Path directory) {
+        sourceIndex.directories.remove(directory);
+        removeChild(sourceIndex.subdirectories, directory);
+        dirty = true;
+        Set<Path> subdirectories = sourceIndex.subdirectories.remove(directory);
+        if (subdirectories != null) {
+            for (Path subdirectory : subdirectories) {
+                removeTree(sourceIndex, subdirectory);
+            }
+        }
+        Set<Path> images = sourceIndex.imagesByDirectory.get(directory);
+        if (images != null) {
+            for (Path image : new ArrayList<>(images)) {
+                removeImage(sourceIndex, image);
+            }
+        }
+    }
+
+    private static void addChild(Map<Path, Set<Path>> children, Path child) {
+        children.computeIfAbsent(child.getParent(), parent -> new HashSet<>()).add(child);
+    }
+
+    private static void removeChild(Map<Path, Set<Path>> children, Path child) {
+        Set<Path> siblings = children.get(child.getParent());
+        if (siblings != null && siblings.remove(child) && siblings.isEmpty()) {
+            children.remove(child.getParent());
+        }
+    }
+
+    /**
+     * Mixes the name and last modified time of an image. The stamp is the sum of the mixes, so it can be updated for
+     * a single change without going over all images.
+     */
+    private static long entryHash(Path image, long lastModified) {
+        long hash = image.toString().hashCode() * 0x9e3779b97f4a7c15L + lastModified;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Reads the snapshot into the sources it has entries for. Entries of sources that are no longer used are skipped.
+     *
+     * @return The sources that were restored.
+     */
+    private Set<SourceIndex> readSnapshot() {
+        Set<SourceIndex> restored = new HashSet<>();
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+                throw new IOException("Unsupported library index snapshot");
+            }
+            int sourceCount = inputStream.readInt();
+            for (int i = 0; i < sourceCount; i++) {
+                String name = inputStream.readUTF();
+                SourceIndex sourceIndex = sourceIndexes.stream()
+                        .filter(candidate -> candidate.source.getName().equals(name))
+                        .findFirst()
+                        .orElse(null);
+                Map<Path, Long> directories = new HashMap<>();
+                Map<Path, Long> images = new HashMap<>();
+                readEntries(inputStream, sourceIndex, directories);
+                readEntries(inputStream, sourceIndex, images);
+                if (sourceIndex != null && restored.add(sourceIndex)) {
+                    directories.forEach((directory, lastModified) -> putDirectory(sourceIndex, directory, lastModified));
+                    images.forEach((image, lastModified) -> addImage(sourceIndex, image, lastModified));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            logger.log(Level.INFO, "No library index snapshot yet.");
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, () -> "Failed to read library index snapshot, scanning the library. Error: " + e.getMessage());
+            for (SourceIndex sourceIndex : restored) {
+                sourceIndex.directories.clear();
+                sourceIndex.subdirectories.clear();
+                for (Path image : new ArrayList<>(sourceIndex.images.keySet())) {
+                    removeImage(sourceIndex, image);
+                }
+            }
+            restored.clear();
+        }
+        // Restoring is not a change that needs saving.
+        dirty = false;
+        return restored;
+    }
+
+    private static void readEntries(DataInputStream inputStream, SourceIndex sourceIndex, Map<Path, Long> entries) throws IOException {
+        int count = inputStream.readInt();
+        for (int i = 0; i < count; i++) {
+            String relativePath = inputStream.readUTF();
+            long lastModified = inputStream.readLong();
+            if (sourceIndex != null) {
+                entries.put(sourceIndex.root.resolve(relativePath), lastModified);
+            }
+        }
+    }
+
+    private void saveSnapshot() {
+        dirty = false;
+        try {
+            Path directory = snapshotFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path tempFile = Files.createTempFile(directory, snapshotFile.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16))) {
+                    outputStream.writeInt(MAGIC);
+                    outputStream.writeInt(VERSION);
+                    outputStream.writeInt(sourceIndexes.size());
+                    for (SourceIndex sourceIndex : sourceIndexes) {
+                        outputStream.writeUTF(sourceIndex.source.getName());
+                        writeEntries(outputStream, sourceIndex, new HashMap<>(sourceIndex.directories));
+                        writeEntries(outputStream, sourceIndex, new HashMap<>(sourceIndex.images));
+                    }
+                }
+                Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to save library index snapshot. Error: " + e.getMessage());
+        }
+    }
+
+    private static void writeEntries(DataOutputStream outputStream, SourceIndex sourceIndex, Map<Path, Long> entries) throws IOException {
+        outputStream.writeInt(entries.size());
+        for (Map.Entry<Path, Long> entry : entries.entrySet()) {
+            outputStream.writeUTF(sourceIndex.root.relativize(entry.getKey()).toString());
+            outputStream.writeLong(entry.getValue());
+        }
+    }
+
+    private static class SourceIndex {
+
+        private final ILibrarySource source;
+        private final Path root;
+        private final Map<Path, Long> images;
+        private final Map<Path, Long> directories;
+        // The images and subdirectories by their parent directory, so that a change only visits its own directory.
+        private final Map<Path, Set<Path>> imagesByDirectory;
+        private final Map<Path, Set<Path>> subdirectories;
+
+        private SourceIndex(ILibrarySource source) {
+            this.source = source;
+            root = source.getRoot();
+            // The images are read by other threads, everything else only by the index thread.
+            images = new ConcurrentHashMap<>();
+            directories = new HashMap<>();
+            imagesByDirectory = new HashMap<>();
+            subdirectories = new HashMap<>();
+        }
+
+        private boolean isWatchable() {
+            return root.getFileSystem() == FileSystems.getDefault();
+        }
+    }
+
+    private record WatchedDirectory(SourceIndex sourceIndex, Path directory) {
+    }
+}
@@ -0,0 +1,99 @@
+package org.interactunes.screensaver.library;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Helpers for creating and combining {@link ILibrarySource}s.
+ */
+public final class LibrarySources {
+
+    private static final Set<String> IMAGE_EXTENSIONS = Set.of("jpg", "jpeg", "png", "gif", "bmp");
+    private static final Set<String> ARCHIVE_EXTENSIONS = Set.of("zip", "jar");
+
+    private static final Logger logger = Logger.getLogger(LibrarySources.class.getName());
+
+    private LibrarySources() {
+    }
+
+    /**
+     * Checks whether the file name has the extension of an image format that can be decoded.
+     *
+     * @param path The file.
+     * @return true if the file looks like an image.
+     */
+    public static boolean isImageFile(Path path) {
+        return IMAGE_EXTENSIONS.contains(getExtension(path));
+    }
+
+    /**
+     * Creates library sources for a list of locations separated by {@link File#pathSeparator}. Zip and JAR files
+     * become archive sources and everything else directory sources. Locations that cannot be opened are skipped.
+     *
+     * @param locations The locations.
+     * @return The sources.
+     */
+    public static List<ILibrarySource> fromLocations(String locations) {
+        List<ILibrarySource> sources = new ArrayList<>();
+        for (String location : locations.split(File.pathSeparator)) {
+            if (location.isBlank()) {
+                continue;
+            }
+            Path path = Path.of(location.trim());
+            try {
+                if (Files.isRegularFile(path) && ARCHIVE_EXTENSIONS.contains(getExtension(path))) {
+                    sources.add(new ArchiveLibrarySource(path));
+                } else if (Files.isDirectory(path)) {
+                    sources.add(new DirectoryLibrarySource(path));
+                } else {
+                    logger.log(Level.WARNING, () -> "Library location " + path + " is neither a directory nor an archive.");
+                }
+            } catch (IOException e) {
+                logger.log(Level.WARNING, () -> "Failed to open library location " + path + ". Error: " + e.getMessage());
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Lazily concatenates the images of several sources. A source is only opened once the images of the previous
+     * sources have been consumed.
+     *
+     * @param sources The sources.
+     * @return The image files of all sources. The stream must be closed.
+     */
+    public static Stream<Path> concat(List<? extends ILibrarySource> sources) {
+        List<Stream<Path>> opened = new ArrayList<>();
+        return sources.stream()
+                .flatMap(source -> {
+                    try {
+                        Stream<Path> images = source.streamImages();
+                        opened.add(images);
+                        return images;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .onClose(() -> opened.forEach(Stream::close));
+    }
+
+    private static String getExtension(Path path) {
+        Path fileName = path.getFileName();
+        if (fileName == null) {
+            return "";
+        }
+        String name = fileName.toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
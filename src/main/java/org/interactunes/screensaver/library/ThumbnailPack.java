@@ -0,0 +1,265 @@
+package org.interactunes.screensaver.library;
+
+import lombok.Getter;
+import org.interactunes.screensaver.utils.IDisposable;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A read-only, memory-mapped pack of pre-scaled thumbnails built by {@link ThumbnailPackWriter}. Getting a thumbnail
+ * copies its raw pixels out of the mapping into an image, so showing a cover needs neither a directory listing nor a
+ * decode. The file is mapped in segments that are only mapped when first used, so packs larger than a single mapping
+ * (and larger than the heap) are fine.
+ * <p>
+ * Thread-safe once opened.
+ */
+public class ThumbnailPack implements IDisposable {
+
+    private final FileChannel channel;
+    private final long segmentSize;
+    private final int[] sizes;
+    private final long[] offsets;
+    private final long[] lastModifiedTimes;
+    private final String[] names;
+    private final Map<String, Integer> indexesByName;
+    private final long indexOffset;
+    private final MappedByteBuffer[] segments;
+
+    /**
+     * The timestamp of the sources the pack was built from.
+     */
+    @Getter
+    private final long sourceModified;
+
+    private ThumbnailPack(FileChannel channel, long segmentSize) throws IOException {
+        this.channel = channel;
+        this.segmentSize = segmentSize;
+
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES * 3);
+        readFully(header, 0);
+        if (header.getInt() != ThumbnailPackFormat.MAGIC) {
+            throw new IOException("Not a thumbnail pack");
+        }
+        int version = header.getInt();
+        if (version != ThumbnailPackFormat.VERSION) {
+            throw new IOException("Unsupported thumbnail pack version " + version);
+        }
+        int sizeCount = header.getInt();
+        if (sizeCount < 1 || sizeCount > 64) {
+            throw new IOException("Corrupt thumbnail pack header");
+        }
+
+        header = ByteBuffer.allocate(ThumbnailPackFormat.headerSize(sizeCount) - Integer.BYTES * 3);
+        readFully(header, Integer.BYTES * 3);
+        sizes = new int[sizeCount];
+        for (int i = 0; i < sizeCount; i++) {
+            sizes[i] = header.getInt();
+        }
+        int entryCount = header.getInt();
+        sourceModified = header.getLong();
+        indexOffset = header.getLong();
+        if (entryCount < 0 || indexOffset < ThumbnailPackFormat.headerSize(sizeCount) || indexOffset > channel.size()) {
+            throw new IOException("Corrupt thumbnail pack header");
+        }
+
+        offsets = new long[entryCount];
+        lastModifiedTimes = new long[entryCount];
+        names = new String[entryCount];
+        indexesByName = new HashMap<>();
+        long entryBytes = ThumbnailPackFormat.entryBytes(sizes);
+        DataInputStream index = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(indexOffset)), 1 << 16));
+        for (int i = 0; i < entryCount; i++) {
+            offsets[i] = index.readLong();
+            lastModifiedTimes[i] = index.readLong();
+            names[i] = index.readUTF();
+            indexesByName.put(names[i], i);
+            if (offsets[i] < 0 || offsets[i] + entryBytes > indexOffset ||
+                    offsets[i] / segmentSize != (offsets[i] + entryBytes - 1) / segmentSize) {
+                throw new IOException("Corrupt thumbnail pack index");
+            }
+        }
+        segments = new MappedByteBuffer[(int) ((indexOffset + segmentSize - 1) / segmentSize)];
+    }
+
+    /**
+     * Opens a thumbnail pack.
+     *
+     * @param packFile The pack file.
+     * @return The pack.
+     * @throws IOException If the file cannot be read or is not a valid pack.
+     */
+    public static ThumbnailPack open(Path packFile) throws IOException {
+        return open(packFile, ThumbnailPackFormat.DEFAULT_SEGMENT_SIZE);
+    }
+
+    static ThumbnailPack open(Path packFile, long segmentSize) throws IOException {
+        FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ);
+        try {
+            return new ThumbnailPack(channel, segmentSize);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of thumbnails in the pack.
+     *
+     * @return The number of thumbnails.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Gets the sizes the thumbnails are stored at, smallest first.
+     *
+     * @return The sizes.
+     */
+    public int[] getSizes() {
+        return sizes.clone();
+    }
+
+    /**
+     * Gets the name of the source file of a thumbnail.
+     *
+     * @param index The index of the thumbnail.
+     * @return The name.
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Gets the last modified time of the source file of a thumbnail when the pack was built.
+     *
+     * @param index The index of the thumbnail.
+     * @return The last modified time in milliseconds since the epoch.
+     */
+    public long getLastModified(int index) {
+        return lastModifiedTimes[index];
+    }
+
+    /**
+     * Gets the index of the thumbnail of a source file.
+     *
+     * @param name The name of the source file.
+     * @return The index, or -1 if the file is not in the pack.
+     */
+    public int indexOf(String name) {
+        return indexesByName.getOrDefault(name, -1);
+    }
+
+    long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Gets the stored size that is best for displaying a thumbnail at the target size: the smallest size that is at
+     * least the target size, or the largest size if none is.
+     *
+     * @param targetSize The size the thumbnail will be displayed at.
+     * @return The stored size.
+     */
+    public int getBestSize(int targetSize) {
+        for (int size : sizes) {
+            if (size >= targetSize) {
+                return size;
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    /**
+     * Gets whether the largest stored size is at least the target size, so that the thumbnails can be displayed at it
+     * without being blown up.
+     *
+     * @param targetSize The size the thumbnails will be displayed at.
+     * @return True if the thumbnails are large enough.
+     */
+    public boolean covers(int targetSize) {
+        return sizes[sizes.length - 1] >= targetSize;
+    }
+
+    /**
+     * Gets a thumbnail at the stored size that is best for the target size.
+     *
+     * @param index      The index of the thumbnail.
+     * @param targetSize The size the thumbnail will be displayed at.
+     * @return The thumbnail, a square of the stored size.
+     * @throws IOException If the pack cannot be mapped.
+     */
+    public BufferedImage getImage(int index, int targetSize) throws IOException {
+        int size = getBestSize(targetSize);
+        long offset = offsets[index];
+        for (int storedSize : sizes) {
+            if (storedSize == size) {
+                break;
+            }
+            offset += ThumbnailPackFormat.thumbnailBytes(storedSize);
+        }
+
+        ByteBuffer segment = getSegment((int) (offset / segmentSize));
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        segment.get((int) (offset % segmentSize), pixels);
+        return image;
+    }
+
+    /**
+     * Copies the raw pixel data of all thumbnails of an entry, so that it can be carried over to a new pack.
+     *
+     * @param index       The index of the thumbnail.
+     * @param destination The array to copy to, at least {@link ThumbnailPackFormat#entryBytes(int[])} long.
+     * @throws IOException If the pack cannot be mapped.
+     */
+    void readEntry(int index, byte[] destination) throws IOException {
+        long offset = offsets[index];
+        ByteBuffer segment = getSegment((int) (offset / segmentSize));
+        segment.get((int) (offset % segmentSize), destination, 0, (int) ThumbnailPackFormat.entryBytes(sizes));
+    }
+
+    @Override
+    public void dispose() {
+        // Mappings are released by the garbage collector; closing the channel prevents new ones.
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private ByteBuffer getSegment(int segmentIndex) throws IOException {
+        synchronized (segments) {
+            MappedByteBuffer segment = segments[segmentIndex];
+            if (segment == null) {
+                long start = segmentIndex * segmentSize;
+                long length = Math.min(segmentSize, indexOffset - start);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                segments[segmentIndex] = segment;
+            }
+            // Absolute gets on a shared buffer are safe, but a duplicate keeps callers from touching its position.
+            return segment.duplicate();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated thumbnail pack");
+            }
+        }
+        buffer.flip();
+    }
+}
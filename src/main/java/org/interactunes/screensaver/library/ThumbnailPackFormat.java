@@ -0,0 +1,39 @@
+package org.interactunes.screensaver.library;
+
+/**
+ * Layout constants of the thumbnail pack file shared by {@link ThumbnailPackWriter} and {@link ThumbnailPack}.
+ * <p>
+ * A pack starts with a header ({@code magic, version, sizeCount, sizes[sizeCount], entryCount, sourceModified,
+ * indexOffset}), followed by the pixel data of every entry and then the index. The pixel data of an entry holds one
+ * square thumbnail per size, smallest first, as raw BGR bytes that can be copied straight into a
+ * {@link java.awt.image.BufferedImage#TYPE_3BYTE_BGR} raster. The data of an entry never crosses a segment boundary,
+ * so every entry can be read from a single mapped segment. Every index record holds the offset of the pixel data,
+ * the last modified time of the source file and its name. Updates append to the pack, so it may also hold entries and
+ * indexes that the current index no longer refers to.
+ */
+final class ThumbnailPackFormat {
+
+    static final int MAGIC = 0x4954504B; // "ITPK"
+    static final int VERSION = 3;
+    static final int BYTES_PER_PIXEL = 3;
+    static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private ThumbnailPackFormat() {
+    }
+
+    static int headerSize(int sizeCount) {
+        return Integer.BYTES * (4 + sizeCount) + Long.BYTES * 2;
+    }
+
+    static long thumbnailBytes(int size) {
+        return (long) size * size * BYTES_PER_PIXEL;
+    }
+
+    static long entryBytes(int[] sizes) {
+        long bytes = 0;
+        for (int size : sizes) {
+            bytes += thumbnailBytes(size);
+        }
+        return bytes;
+    }
+}
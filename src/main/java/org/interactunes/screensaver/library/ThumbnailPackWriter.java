@@ -0,0 +1,422 @@
+package org.interactunes.screensaver.library;
+
+import org.interactunes.screensaver.images.ImageDecoder;
+import org.interactunes.screensaver.images.ImageScaler;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds and updates thumbnail packs from image files. Every image is decoded and scaled once to each of the pack
+ * sizes and the pixels are streamed to the pack, so memory use does not grow with the size of the library. Images
+ * that would grow the pack beyond its maximum size are left out. A new pack is written to a temporary file and moved into place when complete. An update appends the
+ * changed entries and a new index to the existing pack and only then switches the header over to them, so readers
+ * never see a partial pack and readers of the previous state can keep using it.
+ *
+ * @see ThumbnailPack
+ */
+public class ThumbnailPackWriter {
+
+    private final Logger logger = Logger.getLogger(ThumbnailPackWriter.class.getName());
+
+    private final int[] sizes;
+    private final long segmentSize;
+    private final long maxBytes;
+    private final long entryBytes;
+    private final ImageScaler imageScaler;
+
+    /**
+     * Creates a new thumbnail pack writer for packs of any size.
+     *
+     * @param sizes The sizes of the square thumbnails stored for every image.
+     */
+    public ThumbnailPackWriter(int... sizes) {
+        this(sizes, Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new thumbnail pack writer.
+     *
+     * @param sizes    The sizes of the square thumbnails stored for every image.
+     * @param maxBytes The maximum size of a pack. Images beyond it are left out.
+     */
+    public ThumbnailPackWriter(int[] sizes, long maxBytes) {
+        this(sizes, ThumbnailPackFormat.DEFAULT_SEGMENT_SIZE, maxBytes);
+    }
+
+    ThumbnailPackWriter(int[] sizes, long segmentSize, long maxBytes) {
+        if (sizes.length == 0) {
+            throw new IllegalArgumentException("At least one size is required");
+        }
+        this.sizes = sizes.clone();
+        Arrays.sort(this.sizes);
+        if (this.sizes[0] < 1) {
+            throw new IllegalArgumentException("Sizes must be at least 1");
+        }
+        entryBytes = ThumbnailPackFormat.entryBytes(this.sizes);
+        if (entryBytes > segmentSize) {
+            throw new IllegalArgumentException("The thumbnails of an entry do not fit into a segment");
+        }
+        this.segmentSize = segmentSize;
+        this.maxBytes = maxBytes;
+        // A private scaler without a cache, so that building a pack neither abandons nor evicts the scales of the grid
+        // and does not keep thumbnails that are only written once.
+        imageScaler = new ImageScaler(0);
+    }
+
+    /**
+     * Writes a pack of the given image files. Files that cannot be decoded are skipped.
+     *
+     * @param packFile       The pack file to write. An existing pack is replaced once the new pack is complete.
+     * @param sources        The image files.
+     * @param sourceModified A timestamp of the sources that readers can compare to find out if the pack is stale.
+     * @return The number of images written to the pack.
+     * @throws IOException If the pack cannot be written.
+     */
+    public int write(Path packFile, List<Path> sources, long sourceModified) throws IOException {
+        return write(packFile, sources, sourceModified, null);
+    }
+
+    /**
+     * Writes a pack of the given image files, carrying over the thumbnails of a previous pack. Only files that are not
+     * in the previous pack with the same last modified time are decoded, but every file is checked for changes, so this
+     * is meant for when the changes since the previous pack are not known. Files that cannot be decoded are skipped.
+     *
+     * @param packFile       The pack file to write. An existing pack is replaced once the new pack is complete.
+     * @param sources        The image files.
+     * @param sourceModified A timestamp of the sources that readers can compare to find out if the pack is stale.
+     * @param previous       The previous pack, or null to decode all files.
+     * @return The number of images written to the pack.
+     * @throws IOException If the pack cannot be written.
+     * @see #update
+     */
+    public int write(Path packFile, List<Path> sources, long sourceModified, ThumbnailPack previous) throws IOException {
+        Map<String, Integer> previousEntries = new HashMap<>();
+        if (previous != null && Arrays.equals(previous.getSizes(), sizes)) {
+            for (int i = 0; i < previous.size(); i++) {
+                previousEntries.put(previous.getName(i), i);
+            }
+        }
+
+        int[] reusedCount = new int[1];
+        byte[] reusedEntry = previousEntries.isEmpty() ? null : new byte[(int) entryBytes];
+        int entryCount = writeNew(packFile, sourceModified, output -> {
+            for (Path source : sources) {
+                if (output.isFull()) {
+                    output.skippedCount++;
+                    continue;
+                }
+                long lastModified;
+                try {
+                    lastModified = Files.getLastModifiedTime(source).toMillis();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, () -> "Skipping " + source + ". Error: " + e.getMessage());
+                    continue;
+                }
+
+                Integer previousIndex = previousEntries.get(source.toString());
+                boolean reused = previousIndex != null && previous.getLastModified(previousIndex) == lastModified &&
+                        readPreviousEntry(previous, previousIndex, reusedEntry);
+                byte[] entry = reused ? reusedEntry : createThumbnails(source);
+                if (entry == null) {
+                    continue;
+                }
+                if (reused) {
+                    reusedCount[0]++;
+                }
+                output.add(source.toString(), lastModified, entry);
+            }
+        });
+        logger.log(Level.INFO, () -> "Wrote " + entryCount + " thumbnails to " + packFile + ", " + reusedCount[0] +
+                " of them carried over from the previous pack.");
+        return entryCount;
+    }
+
+    /**
+     * Updates a pack in place for the files that were added, changed or removed since it was written. Only the added
+     * and changed files are decoded and appended, the entries of all other files stay where they are, and none of the
+     * other files are checked for changes. Once more than half of the pack is taken up by the stale entries and
+     * indexes an update leaves behind, the pack is compacted by writing a new one, still without decoding the
+     * unchanged files. Files that cannot be decoded or do not fit into the pack are left out.
+     *
+     * @param packFile       The pack file, which must be the file the current pack was opened from.
+     * @param current        The current pack.
+     * @param updated        The files that were added or changed.
+     * @param removed        The files that were removed.
+     * @param sourceModified A timestamp of the sources that readers can compare to find out if the pack is stale.
+     * @return The number of images in the updated pack.
+     * @throws IOException If the pack cannot be updated, in which case it is left as it was.
+     */
+    public int update(Path packFile, ThumbnailPack current, Collection<Path> updated, Collection<Path> removed,
+                      long sourceModified) throws IOException {
+        if (!Arrays.equals(current.getSizes(), sizes)) {
+            throw new IllegalArgumentException("The pack was written with other sizes");
+        }
+        Set<String> dropped = new HashSet<>();
+        updated.forEach(path -> dropped.add(path.toString()));
+        removed.forEach(path -> dropped.add(path.toString()));
+        List<Integer> kept = new ArrayList<>();
+        for (int i = 0; i < current.size(); i++) {
+            if (!dropped.contains(current.getName(i))) {
+                kept.add(i);
+            }
+        }
+
+        long keptBytes = kept.size() * entryBytes;
+        long staleBytes = Files.size(packFile) - ThumbnailPackFormat.headerSize(sizes.length) - keptBytes;
+        if (staleBytes > keptBytes) {
+            byte[] keptEntry = new byte[(int) entryBytes];
+            int entryCount = writeNew(packFile, sourceModified, output -> {
+                for (int index : kept) {
+                    current.readEntry(index, keptEntry);
+                    output.add(current.getName(index), current.getLastModified(index), keptEntry);
+                }
+                addSources(output, updated);
+            });
+            logger.log(Level.INFO, () -> "Compacted " + packFile + " to " + entryCount + " thumbnails.");
+            return entryCount;
+        }
+
+        long end = Files.size(packFile);
+        PackOutput output = new PackOutput(Files.newOutputStream(packFile, StandardOpenOption.APPEND), end);
+        try (output) {
+            for (int index : kept) {
+                output.addExisting(current.getName(index), current.getLastModified(index), current.getOffset(index));
+            }
+            addSources(output, updated);
+            output.writeIndex();
+        }
+        // The appended data has to be on disk before the header points at it. Until then, the previous header and index
+        // are untouched and the appended bytes are ignored.
+        writeHeader(packFile, output.size(), sourceModified, output.indexOffset);
+        logSkipped(packFile, output);
+        int entryCount = output.size();
+        logger.log(Level.INFO, () -> "Updated " + packFile + " to " + entryCount + " thumbnails, " +
+                (entryCount - kept.size()) + " of them appended.");
+        return entryCount;
+    }
+
+    private int writeNew(Path packFile, long sourceModified, EntrySupplier entries) throws IOException {
+        Path directory = packFile.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, packFile.getFileName().toString(), ".tmp");
+        try {
+            PackOutput output = new PackOutput(Files.newOutputStream(tempFile), 0);
+            try (output) {
+                // The entry count and the index offset are patched in once they are known.
+                output.write(createHeader(0, sourceModified, 0));
+                entries.addTo(output);
+                output.writeIndex();
+            }
+            writeHeader(tempFile, output.size(), sourceModified, output.indexOffset);
+            Files.move(tempFile, packFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logSkipped(packFile, output);
+            return output.size();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void addSources(PackOutput output, Collection<Path> sources) throws IOException {
+        for (Path source : sources) {
+            if (output.isFull()) {
+                output.skippedCount++;
+                continue;
+            }
+            long lastModified;
+            try {
+                lastModified = Files.getLastModifiedTime(source).toMillis();
+            } catch (IOException e) {
+                // Removed again since the change was reported.
+                continue;
+            }
+            byte[] entry = createThumbnails(source);
+            if (entry != null) {
+                output.add(source.toString(), lastModified, entry);
+            }
+        }
+    }
+
+    private void logSkipped(Path packFile, PackOutput output) {
+        if (output.skippedCount > 0) {
+            logger.log(Level.INFO, () -> output.skippedCount + " images did not fit into " + packFile +
+                    " and are decoded from their files.");
+        }
+    }
+
+    private void writeHeader(Path file, int entryCount, long sourceModified, long indexOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+            channel.write(ByteBuffer.wrap(createHeader(entryCount, sourceModified, indexOffset)), 0);
+            channel.force(true);
+        }
+    }
+
+    private boolean readPreviousEntry(ThumbnailPack previous, int index, byte[] destination) {
+        try {
+            previous.readEntry(index, destination);
+            return true;
+        } catch (IOException e) {
+            // E.g. the previous pack was closed meanwhile; decoding the file again is always possible.
+            return false;
+        }
+    }
+
+    private byte[] createHeader(int entryCount, long sourceModified, long indexOffset) {
+        ByteBuffer header = ByteBuffer.allocate(ThumbnailPackFormat.headerSize(sizes.length));
+        header.putInt(ThumbnailPackFormat.MAGIC);
+        header.putInt(ThumbnailPackFormat.VERSION);
+        header.putInt(sizes.length);
+        for (int size : sizes) {
+            header.putInt(size);
+        }
+        header.putInt(entryCount);
+        header.putLong(sourceModified);
+        header.putLong(indexOffset);
+        return header.array();
+    }
+
+    /**
+     * Creates the thumbnails of an image at every size and concatenates their pixels, smallest first.
+     */
+    private byte[] createThumbnails(Path source) {
+        BufferedImage image;
+        try {
+            image = ImageDecoder.getInstance().decode(source, sizes[sizes.length - 1]);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Skipping " + source + ". Error: " + e.getMessage());
+            return null;
+        }
+        if (image == null) {
+            logger.log(Level.WARNING, () -> "Skipping " + source + ", the format is not supported.");
+            return null;
+        }
+
+        byte[] entry = new byte[(int) entryBytes];
+        int offset = 0;
+        for (int size : sizes) {
+            BufferedImage thumbnail = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = thumbnail.createGraphics();
+            try {
+                graphics.drawImage(imageScaler.getScaledImage(image, size), 0, 0, null);
+            } finally {
+                graphics.dispose();
+            }
+            byte[] pixels = ((DataBufferByte) thumbnail.getRaster().getDataBuffer()).getData();
+            System.arraycopy(pixels, 0, entry, offset, pixels.length);
+            offset += pixels.length;
+        }
+        return entry;
+    }
+
+    private interface EntrySupplier {
+
+        void addTo(PackOutput output) throws IOException;
+    }
+
+    /**
+     * Streams entries to a pack and collects their index records.
+     */
+    private final class PackOutput implements Closeable {
+
+        private final DataOutputStream outputStream;
+        private final List<Long> offsets;
+        private final List<Long> lastModifiedTimes;
+        private final List<String> names;
+        private long position;
+        private long indexOffset;
+        private int skippedCount;
+
+        private PackOutput(OutputStream outputStream, long position) {
+            this.outputStream = new DataOutputStream(new BufferedOutputStream(outputStream, 1 << 16));
+            this.position = position;
+            offsets = new ArrayList<>();
+            lastModifiedTimes = new ArrayList<>();
+            names = new ArrayList<>();
+        }
+
+        private int size() {
+            return offsets.size();
+        }
+
+        private void write(byte[] bytes) throws IOException {
+            outputStream.write(bytes);
+            position += bytes.length;
+        }
+
+        /**
+         * Gets whether the next entry would grow the pixel data beyond the maximum size.
+         */
+        private boolean isFull() {
+            return entryStart() + entryBytes > maxBytes;
+        }
+
+        private void add(String name, long lastModified, byte[] entry) throws IOException {
+            if (isFull()) {
+                skippedCount++;
+                return;
+            }
+            long start = entryStart();
+            pad(outputStream, start - position);
+            position = start;
+            addExisting(name, lastModified, position);
+            write(entry);
+        }
+
+        private void addExisting(String name, long lastModified, long offset) {
+            offsets.add(offset);
+            lastModifiedTimes.add(lastModified);
+            names.add(name);
+        }
+
+        private long entryStart() {
+            long segmentEnd = (position / segmentSize + 1) * segmentSize;
+            return position + entryBytes > segmentEnd ? segmentEnd : position;
+        }
+
+        private void writeIndex() throws IOException {
+            indexOffset = position;
+            for (int i = 0; i < offsets.size(); i++) {
+                outputStream.writeLong(offsets.get(i));
+                outputStream.writeLong(lastModifiedTimes.get(i));
+                outputStream.writeUTF(names.get(i));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            outputStream.close();
+        }
+    }
+
+    private static void pad(DataOutputStream outputStream, long bytes) throws IOException {
+        byte[] zeros = new byte[8192];
+        while (bytes > 0) {
+            int count = (int) Math.min(zeros.length, bytes);
+            outputStream.write(zeros, 0, count);
+            bytes -= count;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.interactunes.screensaver.logging;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A handler that hands records over to a background thread, which passes them on to its target handlers in batches,
+ * e.g. the log frame and a rolling file. Logging never blocks on the targets: the calling thread only enqueues the
+ * record, and if the queue is full the record is dropped and counted instead.
+ * <p>
+ * Repeats of the same warning or error within a window are held back and later summarized in a single record, so a
+ * failure that happens on every request, such as a network outage, shows up once per window instead of flooding the
+ * targets. Targets are flushed once per batch.
+ */
+public class AsyncLogHandler extends Handler {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int MAX_TRACKED_MESSAGES = 1024;
+    private static final long SWEEP_INTERVAL_MILLIS = 500;
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+    private static final Level RATE_LIMITED_LEVEL = Level.WARNING;
+
+    private final BlockingQueue<LogRecord> queue;
+    private final List<Handler> targets;
+    private final LogRateLimiter rateLimiter;
+    private final LongAdder droppedRecords;
+    private final LongAdder suppressedRecords;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new handler and starts its background thread.
+     *
+     * @param capacity     The maximum number of records waiting to be passed on.
+     * @param repeatWindow The time to hold back repeats of a warning or error for.
+     */
+    public AsyncLogHandler(int capacity, Duration repeatWindow) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        targets = new CopyOnWriteArrayList<>();
+        rateLimiter = new LogRateLimiter(repeatWindow.toMillis(), MAX_TRACKED_MESSAGES);
+        droppedRecords = new LongAdder();
+        suppressedRecords = new LongAdder();
+        dispatcher = new Thread(this::dispatch, "log-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Adds a handler to pass records on to. The handler is only called from the background thread.
+     *
+     * @param target The handler.
+     */
+    public void addTarget(Handler target) {
+        targets.add(target);
+    }
+
+    /**
+     * Removes a handler added with {@link #addTarget(Handler)}, without closing it.
+     *
+     * @param target The handler.
+     */
+    public void removeTarget(Handler target) {
+        targets.remove(target);
+    }
+
+    /**
+     * Gets the number of records dropped because the queue was full.
+     *
+     * @return The number of dropped records.
+     */
+    public long getDroppedCount() {
+        return droppedRecords.sum();
+    }
+
+    /**
+     * Gets the number of repeated records held back.
+     *
+     * @return The number of held back records.
+     */
+    public long getSuppressedCount() {
+        return suppressedRecords.sum();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        if (record.getLevel().intValue() >= RATE_LIMITED_LEVEL.intValue() &&
+                !rateLimiter.tryAcquire(record, record.getMillis())) {
+            suppressedRecords.increment();
+            return;
+        }
+        if (!queue.offer(record)) {
+            droppedRecords.increment();
+        }
+    }
+
+    /**
+     * Flushes the targets. Records still waiting in the queue are not waited for.
+     */
+    @Override
+    public void flush() {
+        for (Handler target : targets) {
+            target.flush();
+        }
+    }
+
+    /**
+     * Passes the records in the queue and the pending summaries on, then closes the targets. Records published
+     * afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(CLOSE_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Handler target : targets) {
+            target.close();
+        }
+    }
+
+    private void dispatch() {
+        List<LogRecord> batch = new ArrayList<>(BATCH_SIZE);
+        long lastSweepMillis = System.currentTimeMillis();
+        long reportedDrops = 0;
+        while (!closed || !queue.isEmpty()) {
+            try {
+                LogRecord record = queue.poll(SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (record != null) {
+                    batch.add(record);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by close, after which the loop only drains what is left in the queue.
+            }
+
+            long nowMillis = System.currentTimeMillis();
+            if (nowMillis - lastSweepMillis >= SWEEP_INTERVAL_MILLIS) {
+                rateLimiter.sweep(nowMillis);
+                lastSweepMillis = nowMillis;
+            }
+            addSummaries(batch);
+            long drops = droppedRecords.sum();
+            if (drops > reportedDrops) {
+                LogRecord dropReport = new LogRecord(Level.WARNING, "Dropped " + (drops - reportedDrops) +
+                        " log records, the log queue was full.");
+                dropReport.setLoggerName(AsyncLogHandler.class.getName());
+                batch.add(dropReport);
+                reportedDrops = drops;
+            }
+            deliver(batch);
+            batch.clear();
+        }
+
+        rateLimiter.sweep(Long.MAX_VALUE);
+        addSummaries(batch);
+        deliver(batch);
+    }
+
+    private void addSummaries(List<LogRecord> batch) {
+        LogRecord summary;
+        while ((summary = rateLimiter.pollSummary()) != null) {
+            batch.add(summary);
+        }
+    }
+
+    private void deliver(List<LogRecord> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        for (Handler target : targets) {
+            try {
+                for (LogRecord record : batch) {
+                    target.publish(record);
+                }
+                target.flush();
+            } catch (RuntimeException e) {
+                reportError("Log target " + target.getClass().getSimpleName() + " failed.", e,
+                        ErrorManager.WRITE_FAILURE);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.interactunes.screensaver.logging;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.logging.Level;
+
+/**
+ * A single entry of the log shown in the app.
+ *
+ * @param sequence   The position of the event in the {@link LogRingBuffer} it was appended to.
+ * @param timeMillis The time the event was logged, in milliseconds since the epoch.
+ * @param level      The level of the event.
+ * @param source     The name of the logger or component that logged the event, or null.
+ * @param message    The message.
+ */
+public record LogEvent(long sequence, long timeMillis, Level level, String source, String message) {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    /**
+     * Formats the event as a single line with the time, the level and the message.
+     *
+     * @return The formatted event.
+     */
+    @Override
+    public String toString() {
+        LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(timeMillis), ZoneId.systemDefault());
+        return TIME_FORMAT.format(time) + " " + level.getName() + " " + message;
+    }
+}
@@ -0,0 +1,120 @@
+package org.interactunes.screensaver.logging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.LogRecord;
+
+/**
+ * Lets the first of a series of identical log records through and holds back the repeats that follow within a window.
+ * Records are identical when they have the same level, logger and unformatted message. Once a window has passed, a
+ * single summary record with the number of held back repeats is queued instead of the repeats.
+ */
+class LogRateLimiter {
+
+    private final long windowMillis;
+    private final int maxTrackedMessages;
+    private final Map<String, Window> windows;
+    private final ConcurrentLinkedQueue<LogRecord> summaries;
+
+    /**
+     * Creates a new rate limiter.
+     *
+     * @param windowMillis       The time to hold back repeats of a record for, in milliseconds.
+     * @param maxTrackedMessages The maximum number of distinct messages to track at once. Records with messages beyond
+     *                           that are always let through.
+     */
+    LogRateLimiter(long windowMillis, int maxTrackedMessages) {
+        this.windowMillis = windowMillis;
+        this.maxTrackedMessages = maxTrackedMessages;
+        windows = new ConcurrentHashMap<>();
+        summaries = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Checks if a record should be logged. Safe to call from any thread.
+     *
+     * @param record    The record.
+     * @param nowMillis The current time, in milliseconds.
+     * @return True if the record should be logged, false if it is a repeat that is held back.
+     */
+    boolean tryAcquire(LogRecord record, long nowMillis) {
+        String key = keyOf(record);
+        if (windows.size() >= maxTrackedMessages && !windows.containsKey(key)) {
+            return true;
+        }
+        boolean[] acquired = new boolean[1];
+        windows.compute(key, (k, window) -> {
+            if (window != null && nowMillis - window.startMillis < windowMillis) {
+                window.repeats++;
+                window.lastRepeat = record;
+                return window;
+            }
+            if (window != null) {
+                summarize(window);
+            }
+            acquired[0] = true;
+            return new Window(nowMillis);
+        });
+        return acquired[0];
+    }
+
+    /**
+     * Queues the summaries of the windows that have passed and stops tracking their messages.
+     *
+     * @param nowMillis The current time, in milliseconds.
+     */
+    void sweep(long nowMillis) {
+        for (String key : windows.keySet()) {
+            windows.computeIfPresent(key, (k, window) -> {
+                if (nowMillis - window.startMillis < windowMillis) {
+                    return window;
+                }
+                summarize(window);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Takes the next queued summary record.
+     *
+     * @return The summary, or null if there is none.
+     */
+    LogRecord pollSummary() {
+        return summaries.poll();
+    }
+
+    private void summarize(Window window) {
+        if (window.repeats == 0) {
+            return;
+        }
+        LogRecord repeat = window.lastRepeat;
+        LogRecord summary = new LogRecord(repeat.getLevel(), repeat.getMessage() + " (repeated " + window.repeats +
+                (window.repeats == 1 ? " more time" : " more times") + " within " + formatWindow() + ")");
+        summary.setLoggerName(repeat.getLoggerName());
+        summary.setParameters(repeat.getParameters());
+        summary.setResourceBundle(repeat.getResourceBundle());
+        summary.setInstant(repeat.getInstant());
+        summaries.add(summary);
+    }
+
+    private String formatWindow() {
+        return windowMillis % 1000 == 0 ? windowMillis / 1000 + "s" : windowMillis + "ms";
+    }
+
+    private static String keyOf(LogRecord record) {
+        return record.getLevel().getName() + '\0' + record.getLoggerName() + '\0' + record.getMessage();
+    }
+
+    // Only touched inside the compute functions of the map, which run under the lock of the key.
+    private static final class Window {
+        private final long startMillis;
+        private int repeats;
+        private LogRecord lastRepeat;
+
+        private Window(long startMillis) {
+            this.startMillis = startMillis;
+        }
+    }
+}
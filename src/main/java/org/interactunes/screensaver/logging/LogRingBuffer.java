@@ -0,0 +1,97 @@
+package org.interactunes.screensaver.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+
+/**
+ * A fixed-capacity log of the most recent {@link LogEvent}s that any number of threads can append to without locking.
+ * Once the log is full, every append overwrites the oldest event.
+ * <p>
+ * An append claims the next sequence number with a single atomic increment and publishes the event, which carries its
+ * sequence number, with a single write to the slot it maps to. A reader checks that the event in a slot carries the
+ * sequence it is looking for, so it never mistakes an event that overwrote the slot, or a slot that has not been
+ * written yet, for the one it asked for. Neither appending nor reading depends on the capacity.
+ */
+public class LogRingBuffer {
+
+    private final AtomicReferenceArray<LogEvent> slots;
+    private final AtomicLong nextSequence;
+    private final int mask;
+
+    /**
+     * Creates a new empty ring buffer.
+     *
+     * @param capacity The minimum number of events to keep, rounded up to a power of two.
+     */
+    public LogRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<>(size);
+        nextSequence = new AtomicLong();
+        mask = size - 1;
+    }
+
+    /**
+     * Appends an event logged now. Safe to call from any thread.
+     *
+     * @param level   The level.
+     * @param source  The name of the logger or component, or null.
+     * @param message The message.
+     * @return The event.
+     */
+    public LogEvent append(Level level, String source, String message) {
+        return append(System.currentTimeMillis(), level, source, message);
+    }
+
+    /**
+     * Appends an event. Safe to call from any thread.
+     *
+     * @param timeMillis The time the event was logged, in milliseconds since the epoch.
+     * @param level      The level.
+     * @param source     The name of the logger or component, or null.
+     * @param message    The message.
+     * @return The event.
+     */
+    public LogEvent append(long timeMillis, Level level, String source, String message) {
+        long sequence = nextSequence.getAndIncrement();
+        LogEvent event = new LogEvent(sequence, timeMillis, level, source, message);
+        slots.set((int) sequence & mask, event);
+        return event;
+    }
+
+    /**
+     * Gets the event with a sequence number.
+     *
+     * @param sequence The sequence number.
+     * @return The event, or null if it has not been published yet or has already been overwritten.
+     */
+    public LogEvent get(long sequence) {
+        LogEvent event = slots.get((int) sequence & mask);
+        return event != null && event.sequence() == sequence ? event : null;
+    }
+
+    /**
+     * Gets the sequence number the next append will claim, which is the number of events appended so far. Events
+     * below it may still be in the middle of being published.
+     *
+     * @return The next sequence number.
+     */
+    public long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Gets the number of events the buffer keeps.
+     *
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,49 @@
+package org.interactunes.screensaver.logging;
+
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * A handler that appends the records it is given to a {@link LogRingBuffer}. Flushing the handler notifies the reader
+ * of the ring, so behind an {@link AsyncLogHandler} the reader is notified once per batch rather than once per record.
+ */
+public class RingBufferHandler extends Handler {
+
+    private final LogRingBuffer ring;
+    private final Runnable flushListener;
+
+    /**
+     * Creates a new ring buffer handler.
+     *
+     * @param ring          The ring buffer to append to.
+     * @param flushListener Called when the handler is flushed, e.g. to refresh a view of the ring.
+     */
+    public RingBufferHandler(LogRingBuffer ring, Runnable flushListener) {
+        this.ring = ring;
+        this.flushListener = flushListener;
+        setFormatter(new SimpleFormatter());
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        String message = getFormatter().formatMessage(record);
+        if (record.getThrown() != null) {
+            message += " " + record.getThrown();
+        }
+        ring.append(record.getMillis(), record.getLevel(), record.getLoggerName(), message);
+    }
+
+    @Override
+    public void flush() {
+        flushListener.run();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+}
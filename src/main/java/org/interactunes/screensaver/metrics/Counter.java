@@ -0,0 +1,40 @@
+package org.interactunes.screensaver.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count, such as the number of cache misses. Increments from many threads do not contend,
+ * since they are spread over the cells of a {@link LongAdder}.
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    /**
+     * Adds one to the count.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount The amount to add, which should not be negative.
+     */
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    /**
+     * Gets the count.
+     *
+     * @return The count.
+     */
+    public long get() {
+        return count.sum();
+    }
+}
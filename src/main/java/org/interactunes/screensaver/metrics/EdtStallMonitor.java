@@ -0,0 +1,66 @@
+package org.interactunes.screensaver.metrics;
+
+import org.interactunes.screensaver.utils.IDisposable;
+
+import javax.swing.*;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how responsive the event dispatch thread is by posting a probe to it at a fixed interval and recording how
+ * long the probe waits before it runs. A probe that waits longer than the stall threshold means the EDT was busy with
+ * something else for at least that long, e.g. blocking I/O or an expensive repaint, and is counted as a stall.
+ * <p>
+ * At most one probe is queued at a time, so a long stall is recorded once instead of as a pile of probes.
+ */
+public class EdtStallMonitor implements IDisposable {
+
+    private final ScheduledExecutorService executor;
+    private final LatencyHistogram latency;
+    private final Counter stalls;
+    private final long stallThresholdNanos;
+    private final AtomicBoolean probePending;
+
+    /**
+     * Creates a new monitor and starts probing.
+     *
+     * @param registry       The registry to record into, as {@code ui.edt.latency} and {@code ui.edt.stalls}.
+     * @param interval       The time between probes.
+     * @param stallThreshold The wait after which a probe counts as a stall.
+     */
+    public EdtStallMonitor(MetricsRegistry registry, Duration interval, Duration stallThreshold) {
+        latency = registry.histogram("ui.edt.latency");
+        stalls = registry.counter("ui.edt.stalls");
+        stallThresholdNanos = stallThreshold.toNanos();
+        probePending = new AtomicBoolean();
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-stall-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::probe, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void probe() {
+        if (!probePending.compareAndSet(false, true)) {
+            return;
+        }
+        long posted = System.nanoTime();
+        SwingUtilities.invokeLater(() -> {
+            long waited = System.nanoTime() - posted;
+            latency.record(waited);
+            if (waited >= stallThresholdNanos) {
+                stalls.increment();
+            }
+            probePending.set(false);
+        });
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
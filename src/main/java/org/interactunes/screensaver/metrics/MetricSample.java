@@ -0,0 +1,35 @@
+package org.interactunes.screensaver.metrics;
+
+import java.util.Map;
+
+/**
+ * The values of a single metric at the time of a {@link MetricsRegistry#snapshot()}. Counters have a {@code count},
+ * gauges a {@code value}, and histograms a {@code count} along with the {@code mean}, {@code p50}, {@code p90},
+ * {@code p99}, {@code p999} and {@code max} durations in milliseconds.
+ *
+ * @param name   The name of the metric.
+ * @param type   The type of the metric.
+ * @param values The values by key, in a fixed order per type.
+ */
+public record MetricSample(String name, MetricType type, Map<String, Double> values) {
+
+    /**
+     * The kinds of metrics kept by the registry.
+     */
+    public enum MetricType {
+        COUNTER,
+        GAUGE,
+        HISTOGRAM
+    }
+
+    /**
+     * Gets a value of the sample.
+     *
+     * @param key The key of the value.
+     * @return The value, or NaN if the sample has no value with the key.
+     */
+    public double get(String key) {
+        Double value = values.get(key);
+        return value != null ? value : Double.NaN;
+    }
+}
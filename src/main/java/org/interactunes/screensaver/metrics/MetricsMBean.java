@@ -0,0 +1,89 @@
+package org.interactunes.screensaver.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the metrics of a {@link MetricsRegistry} as read-only JMX attributes. Every value of a sample becomes an
+ * attribute named after the metric and the key, e.g. {@code image.decode.p99}. The attributes are read from a fresh
+ * snapshot each time, so metrics created after the MBean was registered show up once a JMX client reloads the info.
+ */
+class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        for (MetricSample sample : registry.snapshot()) {
+            for (Map.Entry<String, Double> value : sample.values().entrySet()) {
+                if (attribute.equals(attributeName(sample, value.getKey()))) {
+                    return value.getValue();
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        List<String> requested = List.of(attributes);
+        AttributeList list = new AttributeList();
+        for (MetricSample sample : registry.snapshot()) {
+            for (Map.Entry<String, Double> value : sample.values().entrySet()) {
+                String name = attributeName(sample, value.getKey());
+                if (requested.contains(name)) {
+                    list.add(new Attribute(name, value.getValue()));
+                }
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (MetricSample sample : registry.snapshot()) {
+            for (String key : sample.values().keySet()) {
+                String description = sample.type() == MetricSample.MetricType.HISTOGRAM && !key.equals("count")
+                        ? key + " of " + sample.name() + " in milliseconds"
+                        : key + " of " + sample.name();
+                attributes.add(new MBeanAttributeInfo(attributeName(sample, key), Double.class.getName(), description,
+                        true, false, false));
+            }
+        }
+        return new MBeanInfo(MetricsMBean.class.getName(), "Metrics of the InteracTunes screen saver",
+                attributes.toArray(new MBeanAttributeInfo[0]), null, new MBeanOperationInfo[0], null);
+    }
+
+    private static String attributeName(MetricSample sample, String key) {
+        return sample.name() + "." + key;
+    }
+}
@@ -0,0 +1,140 @@
+package org.interactunes.screensaver.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A registry of named counters, gauges and latency histograms, which the stages of the pipeline (searches, downloads,
+ * decodes, scales, the image change timer and the EDT) record into. Metrics are created on first use, so a stage only
+ * has to hold on to the metric it records into; looking one up by name on every record works too, but costs a map
+ * lookup.
+ * <p>
+ * The current values can be read with {@link #snapshot()}, written to a file periodically with a
+ * {@link MetricsSnapshotWriter}, or exposed to JMX tools such as JConsole with {@link #registerMBean()}.
+ */
+public class MetricsRegistry {
+
+    static final String MBEAN_NAME = "org.interactunes.screensaver:type=Metrics";
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static MetricsRegistry instance;
+
+    private final Logger logger = Logger.getLogger(MetricsRegistry.class.getName());
+
+    private final Map<String, Counter> counters;
+    private final Map<String, DoubleSupplier> gauges;
+    private final Map<String, LatencyHistogram> histograms;
+
+    /**
+     * Creates a new empty registry.
+     */
+    public MetricsRegistry() {
+        counters = new ConcurrentHashMap<>();
+        gauges = new ConcurrentHashMap<>();
+        histograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the registry shared by the whole app, creating it on first use.
+     *
+     * @return The shared registry.
+     */
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    /**
+     * Gets the counter with the name, creating it if it does not exist.
+     *
+     * @param name The name, e.g. {@code discogs.search.failures}.
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, ignored -> new Counter());
+    }
+
+    /**
+     * Gets the latency histogram with the name, creating it if it does not exist.
+     *
+     * @param name The name, e.g. {@code image.decode}.
+     * @return The histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, ignored -> new LatencyHistogram());
+    }
+
+    /**
+     * Registers a gauge, replacing a gauge registered under the same name. The supplier is called whenever a snapshot
+     * is taken, from whichever thread takes it.
+     *
+     * @param name     The name, e.g. {@code cache.misses}.
+     * @param supplier Supplies the current value.
+     */
+    public void gauge(String name, DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Takes a snapshot of the current values of every metric.
+     *
+     * @return The samples, ordered by name.
+     */
+    public List<MetricSample> snapshot() {
+        List<MetricSample> samples = new ArrayList<>();
+        counters.forEach((name, counter) -> samples.add(new MetricSample(name, MetricSample.MetricType.COUNTER,
+                Map.of("count", (double) counter.get()))));
+        gauges.forEach((name, supplier) -> {
+            double value;
+            try {
+                value = supplier.getAsDouble();
+            } catch (RuntimeException e) {
+                value = Double.NaN;
+            }
+            samples.add(new MetricSample(name, MetricSample.MetricType.GAUGE, Map.of("value", value)));
+        });
+        histograms.forEach((name, histogram) -> {
+            Map<String, Double> values = new LinkedHashMap<>();
+            values.put("count", (double) histogram.getCount());
+            values.put("mean", histogram.getMeanNanos() / NANOS_PER_MILLI);
+            values.put("p50", histogram.getPercentileNanos(50) / NANOS_PER_MILLI);
+            values.put("p90", histogram.getPercentileNanos(90) / NANOS_PER_MILLI);
+            values.put("p99", histogram.getPercentileNanos(99) / NANOS_PER_MILLI);
+            values.put("p999", histogram.getPercentileNanos(99.9) / NANOS_PER_MILLI);
+            values.put("max", histogram.getMaxNanos() / NANOS_PER_MILLI);
+            samples.add(new MetricSample(name, MetricSample.MetricType.HISTOGRAM, values));
+        });
+        samples.sort(Comparator.comparing(MetricSample::name).thenComparing(MetricSample::type));
+        return samples;
+    }
+
+    /**
+     * Exposes the metrics as the attributes of an MBean named {@value #MBEAN_NAME} on the platform MBean server. Does
+     * nothing if the MBean is registered already.
+     */
+    public void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new MetricsMBean(this), new ObjectName(MBEAN_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // Registered by an earlier call.
+        } catch (JMException e) {
+            logger.log(Level.WARNING, () -> "Failed to register the metrics MBean. Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.interactunes.screensaver.metrics;
+
+import org.interactunes.screensaver.utils.IDisposable;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Periodically writes a snapshot of a {@link MetricsRegistry} to a JSON file, and a last one when disposed. The file is
+ * replaced atomically, so a reader never sees a partially written snapshot.
+ */
+public class MetricsSnapshotWriter implements IDisposable {
+
+    private final Logger logger = Logger.getLogger(MetricsSnapshotWriter.class.getName());
+
+    private final MetricsRegistry registry;
+    private final Path file;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Creates a new snapshot writer and schedules the first snapshot after one interval.
+     *
+     * @param registry The registry.
+     * @param file     The file to write the snapshots to.
+     * @param interval The time between snapshots.
+     */
+    public MetricsSnapshotWriter(MetricsRegistry registry, Path file, Duration interval) {
+        this.registry = registry;
+        this.file = file;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::writeQuietly, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a snapshot of the registry to the file right away.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    public void write() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temporaryFile, toJson(registry.snapshot(), Instant.now()).toString(2), StandardCharsets.UTF_8);
+        try {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Converts samples to a JSON object with the time of the snapshot and an object per metric, keyed by name, that
+     * holds the type and the values of the metric.
+     *
+     * @param samples The samples.
+     * @param time    The time the samples were taken.
+     * @return The JSON object.
+     */
+    public static JSONObject toJson(List<MetricSample> samples, Instant time) {
+        JSONObject metrics = new JSONObject();
+        for (MetricSample sample : samples) {
+            JSONObject metric = new JSONObject();
+            metric.put("type", sample.type().name().toLowerCase(Locale.ROOT));
+            // JSON has no NaN, so gauges that failed to read are left without a value.
+            sample.values().forEach((key, value) -> {
+                if (Double.isFinite(value)) {
+                    metric.put(key, value);
+                }
+            });
+            metrics.put(sample.name(), metric);
+        }
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("timestamp", time.toString());
+        snapshot.put("metrics", metrics);
+        return snapshot;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+        writeQuietly();
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to write metrics to " + file + ". Error: " + e.getMessage());
+        }
+    }
+}
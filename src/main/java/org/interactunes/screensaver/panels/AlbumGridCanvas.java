@@ -0,0 +1,252 @@
+package org.interactunes.screensaver.panels;
+
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.images.PixelStore;
+import org.interactunes.screensaver.images.PrefetchedImage;
+import org.interactunes.screensaver.images.StoredImage;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single component that paints the whole album grid. Unlike a grid of {@link AlbumImageCell}s, it does not create a
+ * panel, label and icon per cell and does not need a layout pass when the grid changes. The cells paint the scaled
+ * images directly and only repaint their own bounds when their image changes. The scaled pixels are kept in the
+ * {@link PixelStore} while they are displayed.
+ */
+public class AlbumGridCanvas extends JComponent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int cellGap;
+
+    private List<Cell> cells;
+    private int rowCount;
+
+    /**
+     * Creates a new album grid canvas.
+     *
+     * @param cellGap The gap between the cells in pixels.
+     */
+    public AlbumGridCanvas(int cellGap) {
+        this.cellGap = cellGap;
+        cells = new ArrayList<>();
+        rowCount = 1;
+        setOpaque(true);
+        setBackground(Color.BLACK);
+    }
+
+    /**
+     * Replaces the cells of the grid with cells displaying the given images.
+     *
+     * @param images    The images to display, in row-major order.
+     * @param rowCount  The number of rows and columns of the grid.
+     * @param imageSize The initial size of the images.
+     * @return The new cells.
+     */
+    public List<IAlbumCell> setImages(List<Image> images, int rowCount, int imageSize) {
+        this.rowCount = rowCount;
+        cells = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            Cell cell = new Cell(i, images.get(i), imageSize);
+            cells.add(cell);
+        }
+        repaint();
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * Changes the number of rows and columns of the grid, keeping the cells that still fit into it and their scaled
+     * images. The cells beyond the new grid are released, and cells displaying the given images are added after the
+     * kept cells. An added cell only displays its image right away if its scaled copy has the given size; otherwise it
+     * stays empty until it is resized or its scale is published.
+     *
+     * @param rowCount    The number of rows and columns of the grid.
+     * @param addedImages The images of the added cells.
+     * @param imageSize   The size of the images in the added cells.
+     * @return The cells of the grid.
+     */
+    public List<IAlbumCell> setRowCount(int rowCount, List<PrefetchedImage> addedImages, int imageSize) {
+        this.rowCount = rowCount;
+        int cellCount = rowCount * rowCount;
+        while (cells.size() > cellCount) {
+            cells.remove(cells.size() - 1).release();
+        }
+        for (PrefetchedImage addedImage : addedImages) {
+            if (cells.size() >= cellCount) {
+                break;
+            }
+            cells.add(new Cell(cells.size(), addedImage, imageSize));
+        }
+        repaint();
+        return new ArrayList<>(cells);
+    }
+
+    /**
+     * Gets the bounds of the cell at the given index.
+     *
+     * @param index The index of the cell in row-major order.
+     * @return The bounds of the cell.
+     */
+    public Rectangle getCellBounds(int index) {
+        int cellWidth = (getWidth() - cellGap * (rowCount - 1)) / rowCount;
+        int cellHeight = (getHeight() - cellGap * (rowCount - 1)) / rowCount;
+        int row = index / rowCount;
+        int column = index % rowCount;
+        return new Rectangle(column * (cellWidth + cellGap), row * (cellHeight + cellGap), cellWidth, cellHeight);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        if (clip != null) {
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        } else {
+            g.fillRect(0, 0, getWidth(), getHeight());
+        }
+
+        for (Cell cell : cells) {
+            Rectangle bounds = getCellBounds(cell.index);
+            if (clip == null || clip.intersects(bounds)) {
+                cell.paint(g, bounds);
+            }
+        }
+    }
+
+    private class Cell implements IAlbumCell {
+
+        private final int index;
+
+        private Image image;
+        private int imageSize;
+        // The scaled pixels, or the heap image if they did not fit into the pixel store.
+        private StoredImage storedImage;
+        private Image scaledImage;
+        private int scaledSize;
+        private boolean released;
+
+        private Cell(int index, Image image, int imageSize) {
+            this.index = index;
+            this.image = image;
+            this.imageSize = imageSize;
+            updateImage();
+        }
+
+        private Cell(int index, PrefetchedImage image, int imageSize) {
+            this.index = index;
+            this.image = image.original();
+            this.imageSize = imageSize;
+            if (image.scaled() != null && image.scaledSize() == imageSize) {
+                setScaled(image.scaled());
+            }
+        }
+
+        @Override
+        public Image getImage() {
+            return image;
+        }
+
+        @Override
+        public int getImageSize() {
+            return imageSize;
+        }
+
+        @Override
+        public void resize(int cellWidth, int cellHeight) {
+            imageSize = Math.min(cellWidth, cellHeight);
+            updateImage();
+        }
+
+        @Override
+        public void setImage(Image image) {
+            this.image = image;
+            updateImage();
+        }
+
+        @Override
+        public void setImage(Image image, Image scaledImage) {
+            this.image = image;
+            if (scaledImage != null && scaledImage.getWidth(null) == imageSize && scaledImage.getHeight(null) == imageSize) {
+                setScaled(scaledImage);
+            } else {
+                updateImage();
+            }
+        }
+
+        @Override
+        public void showPlaceholder(int imageSize) {
+            // The whole canvas is repainted by the resize itself, so no dirty region is needed here.
+            this.imageSize = imageSize;
+        }
+
+        @Override
+        public void setScaledImage(Image sourceImage, Image scaledImage) {
+            if (sourceImage == image && scaledImage != null && scaledImage.getWidth(null) == imageSize) {
+                setScaled(scaledImage);
+            } else {
+                updateImage();
+            }
+        }
+
+        private void updateImage() {
+            Image scaledImage = ImageScaler.getInstance().getScaledImage(image, imageSize);
+            if (scaledImage == null) {
+                // The requested size changed while scaling; the cell will be resized again with the new size.
+                return;
+            }
+            setScaled(scaledImage);
+        }
+
+        @Override
+        public void release() {
+            // Scales that are still being published to a replaced cell are dropped instead of leaking their pixels.
+            released = true;
+            releasePixels();
+        }
+
+        private void releasePixels() {
+            if (storedImage != null) {
+                storedImage.release();
+                storedImage = null;
+            }
+            scaledImage = null;
+        }
+
+        private void setScaled(Image scaledImage) {
+            if (released) {
+                return;
+            }
+            releasePixels();
+            storedImage = scaledImage instanceof BufferedImage bufferedImage ?
+                    PixelStore.getInstance().store(bufferedImage) : null;
+            this.scaledImage = storedImage == null ? scaledImage : null;
+            scaledSize = scaledImage.getWidth(null);
+            repaint(getCellBounds(index));
+        }
+
+        private void paint(Graphics g, Rectangle bounds) {
+            if (storedImage == null && scaledImage == null) {
+                return;
+            }
+            Graphics cellGraphics = g.create(bounds.x, bounds.y, bounds.width, bounds.height);
+            try {
+                int x = (bounds.width - imageSize) / 2;
+                int y = (bounds.height - imageSize) / 2;
+                // Stretched as a placeholder until the high-quality scale is published if the sizes differ.
+                if (storedImage != null) {
+                    storedImage.paint(cellGraphics, x, y, imageSize, imageSize);
+                } else if (scaledSize == imageSize) {
+                    cellGraphics.drawImage(scaledImage, x, y, null);
+                } else {
+                    cellGraphics.drawImage(scaledImage, x, y, imageSize, imageSize, null);
+                }
+            } finally {
+                cellGraphics.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.interactunes.screensaver.panels;
+
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.utils.IDisposable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces bursts of resize events of the album grid. Every resize event immediately stretches the images that are
+ * already displayed, which is cheap, and restarts a settle timer. Once the size has not changed for the settle delay,
+ * all images are rescaled in high quality on worker threads and the results are published to the cells together in a
+ * single EDT update. Rescales that are superseded by a newer resize are dropped.
+ * <p>
+ * All methods must be called on the EDT.
+ */
+public class AlbumGridResizeCoordinator implements IDisposable {
+
+    private final Supplier<List<IAlbumCell>> cellsSupplier;
+    private final Timer settleTimer;
+    private final ExecutorService executor;
+    private final AtomicInteger generation;
+
+    private int pendingSize;
+
+    /**
+     * Creates a new resize coordinator.
+     *
+     * @param cellsSupplier The supplier of the cells currently in the grid.
+     * @param settleDelayMs The time the size has to stay the same before the images are rescaled in high quality.
+     */
+    public AlbumGridResizeCoordinator(Supplier<List<IAlbumCell>> cellsSupplier, int settleDelayMs) {
+        this.cellsSupplier = cellsSupplier;
+        generation = new AtomicInteger();
+
+        settleTimer = new Timer(settleDelayMs, e -> rescale());
+        settleTimer.setRepeats(false);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "grid-rescale-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Handles a resize of the grid. Shows placeholders at the new size right away and schedules the high-quality
+     * rescale.
+     *
+     * @param imageSize The new size of the images in the cells.
+     */
+    public void resize(int imageSize) {
+        if (imageSize <= 0) {
+            return;
+        }
+        generation.incrementAndGet();
+        pendingSize = imageSize;
+        ImageScaler.getInstance().setRequestedSize(imageSize);
+        cellsSupplier.get().forEach(cell -> cell.showPlaceholder(imageSize));
+        settleTimer.restart();
+    }
+
+    /**
+     * Handles a single change of the grid size, such as when cells are added or removed, by stretching the images
+     * that are already displayed and starting the high-quality rescale right away instead of waiting for the size to
+     * settle.
+     *
+     * @param imageSize The new size of the images in the cells.
+     */
+    public void resizeNow(int imageSize) {
+        if (imageSize <= 0) {
+            return;
+        }
+        resize(imageSize);
+        settleTimer.stop();
+        rescale();
+    }
+
+    @Override
+    public void dispose() {
+        settleTimer.stop();
+        executor.shutdownNow();
+    }
+
+    private void rescale() {
+        int rescaleGeneration = generation.get();
+        int imageSize = pendingSize;
+
+        List<IAlbumCell> cells = new ArrayList<>(cellsSupplier.get());
+        List<Image> sourceImages = new ArrayList<>();
+        List<CompletableFuture<Image>> scaledImages = new ArrayList<>();
+        for (IAlbumCell cell : cells) {
+            Image sourceImage = cell.getImage();
+            sourceImages.add(sourceImage);
+            scaledImages.add(CompletableFuture.<Image>supplyAsync(() -> {
+                if (rescaleGeneration != generation.get()) {
+                    return null;
+                }
+                return ImageScaler.getInstance().getScaledImage(sourceImage, imageSize);
+            }, executor).exceptionally(e -> null));
+        }
+
+        CompletableFuture.allOf(scaledImages.toArray(CompletableFuture[]::new))
+                .thenRun(() -> SwingUtilities.invokeLater(() -> {
+                    if (rescaleGeneration != generation.get()) {
+                        return;
+                    }
+                    for (int i = 0; i < cells.size(); i++) {
+                        cells.get(i).setScaledImage(sourceImages.get(i), scaledImages.get(i).join());
+                    }
+                }));
+    }
+}
@@ -1,14 +1,20 @@
 package org.interactunes.screensaver.panels;
 
 import lombok.Getter;
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.images.PixelStore;
+import org.interactunes.screensaver.images.PrefetchedImage;
+import org.interactunes.screensaver.images.StoredImage;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.image.BufferedImage;
 
 /**
- * A cell for displaying album images.
+ * A cell for displaying album images. Each cell is made of its own panel and label. The scaled pixels are kept in the
+ * {@link PixelStore} while they are displayed.
  */
-public class AlbumImageCell {
+public class AlbumImageCell implements IAlbumCell {
 
     public static final int DEFAULT_INIT_SIZE = 400;
 
@@ -16,8 +22,14 @@ public class AlbumImageCell {
     @Getter
     private final JPanel panel;
 
+    @Getter
     private Image image;
+    @Getter
     private int imageSize;
+    // The scaled pixels, or the heap image if they did not fit into the pixel store.
+    private StoredImage storedImage;
+    private Image scaledImage;
+    private boolean released;
 
     /**
      * Creates a new album image cell.
@@ -35,6 +47,25 @@ public class AlbumImageCell {
      * @param imageSize The size of the image.
      */
     public AlbumImageCell(Image image, int imageSize) {
+        this(image, imageSize, true);
+    }
+
+    /**
+     * Creates a new album image cell from an image that may already be scaled. The cell only displays the image right
+     * away if its scaled copy has the given size; otherwise it stays empty until it is resized or its scale is
+     * published with {@link #setScaledImage(Image, Image)}.
+     *
+     * @param image     The image to display.
+     * @param imageSize The size of the image.
+     */
+    public AlbumImageCell(PrefetchedImage image, int imageSize) {
+        this(image.original(), imageSize, false);
+        if (image.scaled() != null && image.scaledSize() == imageSize) {
+            setScaledIcon(image.scaled());
+        }
+    }
+
+    private AlbumImageCell(Image image, int imageSize, boolean scale) {
         this.image = image;
         this.imageSize = imageSize;
 
@@ -45,40 +76,113 @@ public class AlbumImageCell {
         albumImageLabel.setHorizontalAlignment(SwingConstants.CENTER);
         albumImageLabel.setVerticalAlignment(SwingConstants.CENTER);
 
-        Image scaledImage = image.getScaledInstance(imageSize, imageSize, Image.SCALE_SMOOTH);
-        ImageIcon icon = new ImageIcon(scaledImage);
-        albumImageLabel.setIcon(icon);
+        if (scale) {
+            updateImage();
+        }
 
         panel.add(albumImageLabel);
     }
 
-    /**
-     * Resizes the cell.
-     *
-     * @param cellWidth  The width of the cell.
-     * @param cellHeight The height of the cell.
-     */
+    @Override
     public void resize(int cellWidth, int cellHeight) {
         imageSize = Math.min(cellWidth, cellHeight);
-        Image scaledImage = image.getScaledInstance(imageSize, imageSize, Image.SCALE_SMOOTH);
-        ImageIcon icon = new ImageIcon(scaledImage);
-        albumImageLabel.setIcon(icon);
+        updateImage();
         panel.setBackground(Color.BLACK);
     }
 
-    /**
-     * Sets the image to display.
-     *
-     * @param image The image to display.
-     */
+    @Override
     public void setImage(Image image) {
         this.image = image;
         updateImage();
     }
 
+    @Override
+    public void setImage(Image image, Image scaledImage) {
+        this.image = image;
+        if (scaledImage != null && scaledImage.getWidth(null) == imageSize && scaledImage.getHeight(null) == imageSize) {
+            setScaledIcon(scaledImage);
+        } else {
+            updateImage();
+        }
+    }
+
+    @Override
+    public void showPlaceholder(int imageSize) {
+        this.imageSize = imageSize;
+        if (storedImage != null || scaledImage != null) {
+            albumImageLabel.setIcon(new ScaledImageIcon(storedImage, scaledImage, imageSize));
+        }
+        panel.setBackground(Color.BLACK);
+    }
+
+    @Override
+    public void setScaledImage(Image sourceImage, Image scaledImage) {
+        if (sourceImage == image && scaledImage != null && scaledImage.getWidth(null) == imageSize) {
+            setScaledIcon(scaledImage);
+        } else {
+            updateImage();
+        }
+    }
+
     private void updateImage() {
-        Image scaledImage = image.getScaledInstance(imageSize, imageSize, Image.SCALE_SMOOTH);
-        ImageIcon icon = new ImageIcon(scaledImage);
-        albumImageLabel.setIcon(icon);
+        Image scaledImage = ImageScaler.getInstance().getScaledImage(image, imageSize);
+        if (scaledImage == null) {
+            // The requested size changed while scaling; the cell will be resized again with the new size.
+            return;
+        }
+        setScaledIcon(scaledImage);
+    }
+
+    @Override
+    public void release() {
+        // Scales that are still being published to a replaced cell are dropped instead of leaking their pixels.
+        released = true;
+        albumImageLabel.setIcon(null);
+        releasePixels();
+    }
+
+    private void releasePixels() {
+        if (storedImage != null) {
+            storedImage.release();
+            storedImage = null;
+        }
+        scaledImage = null;
+    }
+
+    private void setScaledIcon(Image scaledImage) {
+        if (released) {
+            return;
+        }
+        releasePixels();
+        storedImage = scaledImage instanceof BufferedImage bufferedImage ?
+                PixelStore.getInstance().store(bufferedImage) : null;
+        this.scaledImage = storedImage == null ? scaledImage : null;
+        albumImageLabel.setIcon(new ScaledImageIcon(storedImage, this.scaledImage, scaledImage.getWidth(null)));
+    }
+
+    /**
+     * An icon that paints the scaled pixels of the cell, stretched with the default (nearest neighbour) interpolation
+     * while it is a placeholder for a different size.
+     */
+    private record ScaledImageIcon(StoredImage storedImage, Image image, int size) implements Icon {
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (storedImage != null) {
+                storedImage.paint(g, x, y, size, size);
+            } else {
+                g.drawImage(image, x, y, size, size, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return size;
+        }
     }
 }
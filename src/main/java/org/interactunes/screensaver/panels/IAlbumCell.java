@@ -0,0 +1,70 @@
+package org.interactunes.screensaver.panels;
+
+import java.awt.*;
+
+/**
+ * A cell of the album grid that displays a single album image.
+ */
+public interface IAlbumCell {
+
+    /**
+     * Gets the image the cell displays, unscaled.
+     *
+     * @return The image.
+     */
+    Image getImage();
+
+    /**
+     * Gets the width and height the image is displayed at.
+     *
+     * @return The image size.
+     */
+    int getImageSize();
+
+    /**
+     * Resizes the cell.
+     *
+     * @param cellWidth  The width of the cell.
+     * @param cellHeight The height of the cell.
+     */
+    void resize(int cellWidth, int cellHeight);
+
+    /**
+     * Sets the image to display.
+     *
+     * @param image The image to display.
+     */
+    void setImage(Image image);
+
+    /**
+     * Sets the image to display along with a copy of it that has already been scaled. The scaled copy is used as-is if
+     * it matches the current size of the cell, otherwise the image is scaled again.
+     *
+     * @param image       The image to display.
+     * @param scaledImage The image already scaled to a square, or null.
+     */
+    void setImage(Image image, Image scaledImage);
+
+    /**
+     * Shows the image at a new size by stretching the currently displayed scaled image. This is cheap enough to do on
+     * every resize event; the high-quality scale is published later with {@link #setScaledImage(Image, Image)}.
+     *
+     * @param imageSize The new size of the image.
+     */
+    void showPlaceholder(int imageSize);
+
+    /**
+     * Publishes a high-quality scale of the image that was computed elsewhere. If the image of the cell has been
+     * replaced or the cell has been resized since the scale was started, the cell is rescaled instead.
+     *
+     * @param sourceImage The image the scale was computed from.
+     * @param scaledImage The scaled image, or null if it could not be computed.
+     */
+    void setScaledImage(Image sourceImage, Image scaledImage);
+
+    /**
+     * Returns the off-heap pixels of the displayed image to the {@link org.interactunes.screensaver.images.PixelStore}.
+     * Must be called once the cell has been replaced; the cell displays nothing afterwards.
+     */
+    void release();
+}
@@ -0,0 +1,52 @@
+package org.interactunes.screensaver.services;
+
+import lombok.Getter;
+import org.interactunes.screensaver.utils.BlockingIoExecutor;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the calls of a blocking {@link IAlbumCoverArtService} on a {@link BlockingIoExecutor}. Cancelling a returned
+ * future interrupts the call, which aborts the requests it is waiting for.
+ */
+public class AsyncAlbumCoverArtService implements IAsyncAlbumCoverArtService {
+
+    /**
+     * The blocking service the calls are made to.
+     */
+    @Getter
+    private final IAlbumCoverArtService service;
+    private final BlockingIoExecutor executor;
+
+    /**
+     * Creates a new asynchronous service that runs on the shared executor.
+     *
+     * @param service The blocking service.
+     */
+    public AsyncAlbumCoverArtService(IAlbumCoverArtService service) {
+        this(service, BlockingIoExecutor.getInstance());
+    }
+
+    /**
+     * Creates a new asynchronous service.
+     *
+     * @param service  The blocking service.
+     * @param executor The executor to run the calls on.
+     */
+    public AsyncAlbumCoverArtService(IAlbumCoverArtService service, BlockingIoExecutor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Image> getRandomAlbumCoverArtAsync() {
+        return executor.supply(service::getRandomAlbumCoverArt);
+    }
+
+    @Override
+    public CompletableFuture<List<Image>> getAlbumCoverArtAsync(int maxResults) {
+        return executor.supply(() -> service.getAlbumCoverArt(maxResults));
+    }
+}
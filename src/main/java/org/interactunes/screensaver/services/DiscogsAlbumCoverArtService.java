@@ -2,69 +2,262 @@ package org.interactunes.screensaver.services;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.http.HostStats;
+import org.interactunes.screensaver.http.HttpStatusException;
+import org.interactunes.screensaver.http.HttpTransport;
+import org.interactunes.screensaver.http.ParallelImageDownloader;
+import org.interactunes.screensaver.http.RequestPriority;
+import org.interactunes.screensaver.http.RequestScheduler;
+import org.interactunes.screensaver.metrics.Counter;
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
+import org.interactunes.screensaver.utils.BloomFilter;
+import org.interactunes.screensaver.utils.CancellationScope;
 import org.interactunes.screensaver.utils.DotEnvInstance;
-import org.json.JSONObject;
+import org.interactunes.screensaver.utils.IndexSampler;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.time.Duration;
 import java.util.List;
-import java.util.Queue;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The service for fetching album cover art via the Discogs API.
+ * The service for fetching album cover art via the Discogs API. Image URLs from the search API are kept in a queue
+ * that is refilled in the background whenever it drops below a low-watermark, so callers never wait for a search.
+ * <p>
+ * Refills walk through the result pages of the query with a cursor instead of fetching the first page over and over.
+ * URLs that were already queued for the query are filtered out, and once every page has been seen the cursor starts
+ * over from the first page.
+ * <p>
+ * Requests to the API and the image host go through {@link RequestScheduler}s, so they stay within the rate limit of
+ * the key and images about to be shown are fetched before prefetched ones.
+ * <p>
+ * Every change of the search query starts a new generation of loads. The searches and image downloads of the previous
+ * generation are cancelled, including requests still waiting for the rate limit, and their results are dropped, so
+ * when the query changes several times in a row only the last query uses bandwidth.
+ * <p>
+ * The API is reached at {@code DISCOGS_API_URL} if it is set, e.g. to point the service at a
+ * {@link org.interactunes.screensaver.http.StubServer}. The key and secret are only sent if they are configured.
  */
 public class DiscogsAlbumCoverArtService implements IAlbumCoverArtService {
 
-    private static final String BASE_URL = "https://api.discogs.com/database/search";
-    private static final String API_KEY = DotEnvInstance.get("DISCOGS_API_KEY");
-    private static final String API_SECRET = DotEnvInstance.get("DISCOGS_API_SECRET");
+    private static final String API_HOST = "api.discogs.com";
+    private static final String IMAGE_HOST = "i.discogs.com";
+    private static final String DEFAULT_API_URL = "https://" + API_HOST;
+    private static final String API_URL_KEY = "DISCOGS_API_URL";
+    private static final String SEARCH_PATH = "/database/search";
+    private static final String API_KEY = DotEnvInstance.getOptional("DISCOGS_API_KEY", null);
+    private static final String API_SECRET = DotEnvInstance.getOptional("DISCOGS_API_SECRET", null);
     private static final int MAX_RESULTS_RANDOM = 100;
     private static final int MAX_RESULTS_SCALAR = 4;
+    private static final int MAX_PARALLEL_DOWNLOADS = 8;
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration BULK_DOWNLOAD_DEADLINE = Duration.ofSeconds(15);
+    private static final int DEFAULT_LOW_WATERMARK = MAX_RESULTS_RANDOM / 4;
+    private static final int RESULTS_PER_PAGE = MAX_RESULTS_RANDOM * MAX_RESULTS_SCALAR;
+    private static final int MAX_PAGES_PER_REFILL = 3;
+    private static final int SEEN_URLS_EXPECTED_ENTRIES = 50_000;
+    private static final double SEEN_URLS_FALSE_POSITIVE_PROBABILITY = 0.01;
+    // Authenticated requests are limited to 60 per minute until the responses say otherwise.
+    private static final double API_REQUESTS_PER_SECOND = 1;
+    private static final int API_BURST = 5;
+    private static final double IMAGE_REQUESTS_PER_SECOND = 10;
+    private static final int IMAGE_BURST = MAX_PARALLEL_DOWNLOADS * 2;
+    private static final int MAX_RETRIES = 3;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
 
     private final Logger logger;
+    private final String apiUrl;
+    private final ParallelImageDownloader imageDownloader;
+    private final BlockingQueue<String> loadedUrls;
+    private final ExecutorService refillExecutor;
+    private final AtomicBoolean refilling;
+    private final Object generationLock;
+    private final LatencyHistogram searchLatency;
+    private final Counter searchFailures;
+
+    // The page cursor, the seen URLs and the sampler are only touched by the refill thread.
+    private final BloomFilter seenUrls;
+    private final IndexSampler sampler;
+    private String cursorQuery;
+    private int nextPage;
+    private int pageCount;
 
-    private Queue<String> loadedUrls;
     @Getter
     @NonNull
-    private String searchQuery = "";
+    private volatile String searchQuery = "";
+    /**
+     * The generation of the loads, which changes with every change of the search query.
+     */
+    @Getter
+    private volatile int generation;
+    // The searches and downloads of the current generation. Only replaced while holding the generation lock.
+    private volatile CancellationScope loads;
+    /**
+     * The number of queued URLs below which the queue is refilled in the background.
+     */
+    @Getter
+    @Setter
+    private volatile int lowWatermark = DEFAULT_LOW_WATERMARK;
 
     /**
-     * Creates a new Discogs album cover art service.
+     * Creates a new Discogs album cover art service for the configured API URL. The URL queue starts filling in the
+     * background.
      */
     public DiscogsAlbumCoverArtService() {
+        this(DotEnvInstance.getOptional(API_URL_KEY, DEFAULT_API_URL));
+    }
+
+    /**
+     * Creates a new Discogs album cover art service using the shared cover art cache. The URL queue starts filling in
+     * the background.
+     *
+     * @param apiUrl The base URL of the API, without a trailing slash, e.g. {@code https://api.discogs.com}.
+     */
+    public DiscogsAlbumCoverArtService(@NonNull String apiUrl) {
+        this(apiUrl, CoverArtCache.getInstance());
+    }
+
+    /**
+     * Creates a new Discogs album cover art service. The URL queue starts filling in the background.
+     *
+     * @param apiUrl        The base URL of the API, without a trailing slash, e.g. {@code https://api.discogs.com}.
+     * @param coverArtCache The cache the downloaded covers are looked up in and stored to.
+     */
+    public DiscogsAlbumCoverArtService(@NonNull String apiUrl, @NonNull CoverArtCache coverArtCache) {
         logger = Logger.getLogger(DiscogsAlbumCoverArtService.class.getName());
-        loadedUrls = new LinkedList<>();
-        reloadQueueWithUrlsFromAPI();
+        this.apiUrl = apiUrl;
+        HttpTransport transport = HttpTransport.getInstance();
+        String apiHost = HostStats.hostOf(apiUrl);
+        transport.addScheduler(apiHost, () -> new RequestScheduler(apiHost, API_REQUESTS_PER_SECOND, API_BURST,
+                MAX_RETRIES, BASE_BACKOFF, MAX_BACKOFF));
+        transport.addScheduler(IMAGE_HOST, () -> new RequestScheduler(IMAGE_HOST, IMAGE_REQUESTS_PER_SECOND,
+                IMAGE_BURST, MAX_RETRIES, BASE_BACKOFF, MAX_BACKOFF));
+        imageDownloader = new ParallelImageDownloader(MAX_PARALLEL_DOWNLOADS, DOWNLOAD_TIMEOUT, coverArtCache);
+        loadedUrls = new LinkedBlockingQueue<>();
+        refilling = new AtomicBoolean();
+        generationLock = new Object();
+        loads = new CancellationScope();
+        searchLatency = MetricsRegistry.getInstance().histogram("discogs.search");
+        searchFailures = MetricsRegistry.getInstance().counter("discogs.search.failures");
+        refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "discogs-url-refill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        seenUrls = new BloomFilter(SEEN_URLS_EXPECTED_ENTRIES, SEEN_URLS_FALSE_POSITIVE_PROBABILITY);
+        sampler = new IndexSampler();
+        nextPage = 1;
+        pageCount = DiscogsSearchPage.UNKNOWN_PAGE_COUNT;
+        requestRefill();
     }
 
-    private boolean reloadQueueWithUrlsFromAPI() {
-        try {
-            loadedUrls = getAlbumCoverArtUrlsFromAPI(loadedUrls);
-            return true;
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
-            return false;
+    /**
+     * Starts a background refill of the URL queue unless one is already running.
+     */
+    private void requestRefill() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        refillExecutor.execute(() -> {
+            try {
+                refillQueueWithUrlsFromAPI();
+            } finally {
+                refilling.set(false);
+            }
+        });
+    }
+
+    private void refillQueueWithUrlsFromAPI() {
+        // If the query changes while searching, the searches are cancelled and the search is repeated for the new query.
+        while (true) {
+            String query;
+            int refillGeneration;
+            CancellationScope scope;
+            synchronized (generationLock) {
+                query = searchQuery;
+                refillGeneration = generation;
+                scope = loads;
+            }
+
+            List<String> urls;
+            try {
+                urls = getUnseenAlbumCoverArtUrlsFromAPI(query, scope);
+            } catch (CancellationException e) {
+                // Pages of the cursor were abandoned, so the cursor starts over the next time the query is searched.
+                cursorQuery = null;
+                urls = List.of();
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, () -> "Failed to get album cover art. Error: " + e.getMessage());
+                urls = List.of();
+            }
+
+            synchronized (generationLock) {
+                if (refillGeneration == generation) {
+                    loadedUrls.addAll(urls);
+                    return;
+                }
+            }
         }
     }
 
     /**
-     * Set the search query.
+     * Set the search query. The queued URLs of the previous query are dropped, the searches and downloads still in
+     * flight for it are cancelled, and the queue is refilled in the background.
      *
      * @param searchQuery The search query.
      */
     public void setSearchQuery(@NonNull String searchQuery) {
-        if (this.searchQuery.equals(searchQuery)) {
-            return;
+        CancellationScope staleLoads;
+        synchronized (generationLock) {
+            if (this.searchQuery.equals(searchQuery)) {
+                return;
+            }
+            this.searchQuery = searchQuery;
+            generation++;
+            loadedUrls.clear();
+            staleLoads = loads;
+            loads = new CancellationScope();
+        }
+        staleLoads.cancel();
+        requestRefill();
+    }
+
+    /**
+     * Cancels the searches and downloads in flight without changing the query, e.g. because the app no longer shows
+     * covers from this service. The queued URLs are kept for later.
+     */
+    public void cancelPendingLoads() {
+        CancellationScope staleLoads;
+        synchronized (generationLock) {
+            staleLoads = loads;
+            loads = new CancellationScope();
         }
-        this.searchQuery = searchQuery;
-        reloadQueueWithUrlsFromAPI();
+        staleLoads.cancel();
+    }
+
+    /**
+     * Gets the number of image URLs currently queued.
+     *
+     * @return The number of queued URLs.
+     */
+    public int getQueuedUrlCount() {
+        return loadedUrls.size();
     }
 
     /**
@@ -75,132 +268,200 @@ public class DiscogsAlbumCoverArtService implements IAlbumCoverArtService {
      * @return The album cover art or null if no album cover art is found.
      */
     public Image getRandomAlbumCoverArt() {
-        if (loadedUrls.isEmpty()) {
-            boolean response = reloadQueueWithUrlsFromAPI();
-            if (!response) {
-                logger.log(Level.WARNING, "Failed to reload url queue from API.");
-                return null;
-            }
+        // The scope is taken before the URL, so a URL of a previous query cannot be downloaded in a later scope.
+        CancellationScope scope = loads;
+        List<String> urls = getAlbumCoverArtUrls(1);
+        if (urls.isEmpty()) {
+            return null;
         }
         try {
-            String url = loadedUrls.poll();
-            if (url == null) {
-                logger.log(Level.WARNING, "Image url polled from queue is null.");
-                return null;
-            }
-            return ImageIO.read(new URL(url));
+            // Random covers only feed the prefetch buffer, so they yield to images that are about to be shown.
+            return imageDownloader.download(urls.get(0), RequestPriority.PREFETCH, scope);
+        } catch (CancellationException e) {
+            logger.log(Level.FINE, "Dropped a cover of a previous query.");
+            return null;
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
+            logger.log(Level.SEVERE, () -> "Failed to get album cover art. Error: " + e.getMessage());
             return null;
         }
     }
 
     /**
-     * Gets the album cover art URLs for the search query.
+     * Gets the album cover art URLs for the search query. Never waits for a search: if fewer URLs are queued than
+     * requested, only the queued URLs are returned. A background refill is started when the queue drops below the
+     * low-watermark.
      *
      * @param maxResults The maximum number of results to fetch.
      * @return The album cover art URLs.
      */
     public List<String> getAlbumCoverArtUrls(int maxResults) {
         List<String> imageUrls = new ArrayList<>();
-        while (imageUrls.size() < maxResults) {
-            if (loadedUrls.isEmpty()) {
-                boolean response = reloadQueueWithUrlsFromAPI();
-                if (!response) {
-                    logger.log(Level.WARNING, "Failed to reload url queue from API.");
-                    break;
-                }
-            }
-            String url = loadedUrls.poll();
-            if (url == null) {
-                logger.log(Level.WARNING, "Image url polled from queue is null.");
-                break;
-            }
-            imageUrls.add(url);
+        loadedUrls.drainTo(imageUrls, maxResults);
+        if (imageUrls.size() < maxResults) {
+            logger.log(Level.WARNING, () -> "Only " + imageUrls.size() + " of " + maxResults + " image urls were queued.");
+        }
+        if (loadedUrls.size() < lowWatermark) {
+            requestRefill();
         }
         return imageUrls;
     }
 
     /**
-     * Gets the album cover art URLs for the search query.
+     * Fetches the next pages of the search query and returns the URLs that have not been queued for the query before.
+     * Several pages are fetched concurrently when the queue has run dry, otherwise a single page is enough to stay
+     * ahead of the consumers.
+     * <p>
+     * The cursor only moves past pages that were fetched, so a page that failed is fetched again by the next refill.
+     * A page that comes back empty or is not found marks the end of the results, so the next refill starts over even
+     * if the response never reported the number of pages.
      *
-     * @param oldUrls The old URLs which will be returned if the new URLs cannot be fetched.
-     * @return The new album cover art URLs if there is no exception, otherwise the old URLs.
+     * @param searchQuery The search query.
+     * @param scope       The scope the searches belong to.
+     * @return The unseen album cover art URLs in random order.
+     * @throws CancellationException If the scope is cancelled while searching.
+     * @throws Exception             If all page fetches fail.
      */
-    private Queue<String> getAlbumCoverArtUrlsFromAPI(Queue<String> oldUrls) throws Exception {
-        Queue<String> newUrls = new LinkedList<>();
-        HttpURLConnection connection = getConnection(searchQuery);
-        InputStream inputStream = connection.getInputStream();
-        try (inputStream) {
-            Scanner scanner = new Scanner(inputStream).useDelimiter("\\A");
-            String jsonResponse = scanner.hasNext() ? scanner.next() : "";
-
-            JSONObject jsonObject = new JSONObject(jsonResponse);
-            List<Object> releaseObjs = jsonObject.getJSONArray("results").toList();
-            Collections.shuffle(releaseObjs);
-            logger.log(Level.INFO, "Found " + releaseObjs.size() + " results.");
-
-            for (int i = 0; i < Math.min(MAX_RESULTS_RANDOM, releaseObjs.size()); i++) {
-                Object releaseObj = releaseObjs.get(i);
-                try {
-                    // Suppressing unchecked cast warning because the JSON object is cast to a map.
-                    @SuppressWarnings("unchecked") Map<String, Object> release = (Map<String, Object>) releaseObj;
-
-                    String imageUrl = (String) release.get("cover_image");
-                    if (imageUrl != null && !imageUrl.isBlank()) {
-                        newUrls.add(imageUrl);
-                    }
-
-                    if (newUrls.size() >= MAX_RESULTS_RANDOM) {
-                        break;
-                    }
-                } catch (ClassCastException e) {
-                    logger.log(Level.WARNING, "Invalid release object: " + e.getMessage());
+    private List<String> getUnseenAlbumCoverArtUrlsFromAPI(String searchQuery, CancellationScope scope) throws Exception {
+        if (!searchQuery.equals(cursorQuery)) {
+            cursorQuery = searchQuery;
+            restartCursor();
+        } else if (pageCount != DiscogsSearchPage.UNKNOWN_PAGE_COUNT && nextPage > pageCount) {
+            logger.log(Level.INFO, () -> "All " + pageCount + " result pages have been seen, starting over.");
+            restartCursor();
+        }
+
+        int pagesToFetch = loadedUrls.isEmpty() ? MAX_PAGES_PER_REFILL : 1;
+        if (pageCount != DiscogsSearchPage.UNKNOWN_PAGE_COUNT) {
+            pagesToFetch = Math.min(pagesToFetch, pageCount - nextPage + 1);
+        }
+        int firstPage = nextPage;
+        List<CompletableFuture<DiscogsSearchPage>> futures = new ArrayList<>(pagesToFetch);
+        for (int i = 0; i < pagesToFetch; i++) {
+            futures.add(getSearchPageFromAPI(searchQuery, firstPage + i, scope));
+        }
+
+        List<String> newUrls = new ArrayList<>();
+        Exception failure = null;
+        int fetchedPages = 0;
+        // The pages fetched without a gap from the first one, which the cursor can move past.
+        int contiguousPages = 0;
+        int endPage = Integer.MAX_VALUE;
+        for (int i = 0; i < futures.size(); i++) {
+            DiscogsSearchPage page;
+            try {
+                page = futures.get(i).join();
+            } catch (CompletionException e) {
+                failure = e.getCause() instanceof Exception cause ? cause : e;
+                if (failure instanceof HttpStatusException statusException && statusException.getStatusCode() == 404) {
+                    endPage = Math.min(endPage, firstPage + i);
                 }
+                continue;
             }
-
-            logger.log(Level.INFO, "Found " + newUrls.size() + " image URLs.");
-            return newUrls;
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
-            return oldUrls;
-        } finally {
-            connection.disconnect();
+            fetchedPages++;
+            if (contiguousPages == i) {
+                contiguousPages++;
+            }
+            if (page.pageCount() != DiscogsSearchPage.UNKNOWN_PAGE_COUNT) {
+                pageCount = page.pageCount();
+            } else if (page.coverImageUrls().isEmpty()) {
+                endPage = Math.min(endPage, firstPage + i);
+            }
+            for (String url : page.coverImageUrls()) {
+                if (seenUrls.add(url)) {
+                    newUrls.add(url);
+                }
+            }
+        }
+        if (scope.isCancelled()) {
+            throw new CancellationException("The search query changed");
+        }
+        nextPage = firstPage + contiguousPages;
+        if (endPage != Integer.MAX_VALUE) {
+            // The results end before this page, so the next refill starts over.
+            pageCount = endPage - 1;
+            nextPage = Math.max(nextPage, endPage);
+        }
+        if (fetchedPages == 0 && failure != null) {
+            throw failure;
         }
+        // Every URL of the refill is queued, so the whole batch is shuffled.
+        sampler.shuffle(newUrls);
+        int pagesWithResults = fetchedPages;
+        logger.log(Level.INFO, () -> "Found " + newUrls.size() + " new image URLs on " + pagesWithResults + " pages.");
+        return newUrls;
     }
 
+    private void restartCursor() {
+        nextPage = 1;
+        pageCount = DiscogsSearchPage.UNKNOWN_PAGE_COUNT;
+        seenUrls.clear();
+    }
+
+    /**
+     * Gets a page of album cover art URLs for the search query from the search API asynchronously.
+     *
+     * @param searchQuery The search query.
+     * @param page        The page number, starting at 1.
+     * @param scope       The scope the search belongs to.
+     * @return The future search page, which fails if the search fails or is cancelled.
+     */
+    private CompletableFuture<DiscogsSearchPage> getSearchPageFromAPI(String searchQuery, int page,
+                                                                      CancellationScope scope) {
+        // Search results rarely change between refills, so the response is revalidated with its ETag rather than
+        // downloaded again. Only the cover image URLs are needed, so they are pulled out without building a JSON tree.
+        String url = getSearchUrl(searchQuery, page);
+        long start = System.nanoTime();
+        CompletableFuture<byte[]> response = scope.track(
+                HttpTransport.getInstance().getRevalidatedAsync(url, RequestPriority.PREFETCH));
+        // The latency includes the time spent waiting for the rate limit, which is what a refill waits for.
+        response.whenComplete((body, error) -> {
+            if (response.isCancelled()) {
+                return;
+            }
+            if (error != null) {
+                searchFailures.increment();
+            } else {
+                searchLatency.recordSince(start);
+            }
+        });
+        return response.thenApply(body -> {
+            try {
+                return DiscogsSearchResponseReader.readPage(new ByteArrayInputStream(body));
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The images are downloaded concurrently. Images that fail to download or do not finish before the bulk download
+     * deadline are skipped, so fewer than {@code maxResults} images may be returned.
+     */
     @Override
     public List<Image> getAlbumCoverArt(int maxResults) {
+        CancellationScope scope = loads;
         List<String> urls = getAlbumCoverArtUrls(maxResults);
-        List<Image> images = new ArrayList<>();
-        for (String url : urls) {
-            try {
-                images.add(ImageIO.read(new URL(url)));
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
-            }
-        }
-        return images;
+        List<Image> images = imageDownloader.downloadAll(urls, BULK_DOWNLOAD_DEADLINE, scope);
+        // Covers of a previous query are dropped rather than shown.
+        return scope.isCancelled() ? new ArrayList<>() : images;
     }
 
     /**
-     * Get the input stream for the search query.
+     * Get the search API URL for a page of the search query.
      *
      * @param searchQuery The search query.
-     * @return The input stream.
-     * @throws IOException If an I/O error occurs.
+     * @param page        The page number, starting at 1.
+     * @return The URL.
      */
-    private static HttpURLConnection getConnection(String searchQuery) throws Exception {
+    private String getSearchUrl(String searchQuery, int page) {
         searchQuery = searchQuery.replaceAll("\\s+", "");
 
-        String query = "q=" + searchQuery + "&per_page=" + (DiscogsAlbumCoverArtService.MAX_RESULTS_RANDOM * MAX_RESULTS_SCALAR) + "&key=" + API_KEY + "&secret=" + API_SECRET;
-        String urlString = BASE_URL + "?" + query;
-        URL url = new URL(urlString);
-
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setRequestProperty("User-Agent", "InteracTunesScreenSaver/1.0");
-
-        return connection;
+        String query = "q=" + searchQuery + "&per_page=" + RESULTS_PER_PAGE + "&page=" + page;
+        if (API_KEY != null && API_SECRET != null) {
+            query += "&key=" + API_KEY + "&secret=" + API_SECRET;
+        }
+        return apiUrl + SEARCH_PATH + "?" + query;
     }
 }
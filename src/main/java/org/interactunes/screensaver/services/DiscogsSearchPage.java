@@ -0,0 +1,15 @@
+package org.interactunes.screensaver.services;
+
+import java.util.List;
+
+/**
+ * A page of Discogs database search results, reduced to what the service needs.
+ *
+ * @param coverImageUrls The non-blank cover image URLs of the results on the page.
+ * @param pageCount      The total number of pages for the query, or {@link #UNKNOWN_PAGE_COUNT} if the response did not
+ *                       contain pagination.
+ */
+public record DiscogsSearchPage(List<String> coverImageUrls, int pageCount) {
+
+    public static final int UNKNOWN_PAGE_COUNT = -1;
+}
@@ -0,0 +1,373 @@
+package org.interactunes.screensaver.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts the cover image URLs and the page count from a Discogs database search response in a single streaming
+ * pass. Unlike building a full JSON tree, only the {@code cover_image} values of the {@code results} array and the
+ * {@code pages} value of the {@code pagination} object are materialized; keys are compared character by character and
+ * every other value is skipped without allocating.
+ * <p>
+ * Instances are not thread-safe and are meant to be used for a single response.
+ */
+public class DiscogsSearchResponseReader {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final String RESULTS_KEY = "results";
+    private static final String COVER_IMAGE_KEY = "cover_image";
+    private static final String PAGINATION_KEY = "pagination";
+    private static final String PAGES_KEY = "pages";
+
+    private final Reader reader;
+    private final char[] buffer;
+    private final StringBuilder valueBuilder;
+
+    private int position;
+    private int limit;
+    private long offset;
+
+    /**
+     * Creates a new reader for the response.
+     *
+     * @param inputStream The UTF-8 encoded response body.
+     */
+    public DiscogsSearchResponseReader(InputStream inputStream) {
+        reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        buffer = new char[BUFFER_SIZE];
+        valueBuilder = new StringBuilder();
+    }
+
+    /**
+     * Reads the non-blank cover image URLs of all results, in the order they appear in the response.
+     *
+     * @param inputStream The UTF-8 encoded response body.
+     * @return The cover image URLs.
+     * @throws IOException If the stream cannot be read or is not valid JSON.
+     */
+    public static List<String> readCoverImageUrls(InputStream inputStream) throws IOException {
+        return readPage(inputStream).coverImageUrls();
+    }
+
+    /**
+     * Reads the non-blank cover image URLs of all results and the total number of pages.
+     *
+     * @param inputStream The UTF-8 encoded response body.
+     * @return The search page.
+     * @throws IOException If the stream cannot be read or is not valid JSON.
+     */
+    public static DiscogsSearchPage readPage(InputStream inputStream) throws IOException {
+        return new DiscogsSearchResponseReader(inputStream).readPage();
+    }
+
+    /**
+     * Reads the non-blank cover image URLs of all results and the total number of pages.
+     *
+     * @return The search page.
+     * @throws IOException If the stream cannot be read or is not valid JSON.
+     */
+    public DiscogsSearchPage readPage() throws IOException {
+        List<String> urls = new ArrayList<>();
+        int pageCount = DiscogsSearchPage.UNKNOWN_PAGE_COUNT;
+        expect('{');
+        if (peekNonWhitespace() == '}') {
+            read();
+            return new DiscogsSearchPage(urls, pageCount);
+        }
+        do {
+            expect('"');
+            int keyIndex = readKeyAndMatch(RESULTS_KEY, PAGINATION_KEY);
+            expect(':');
+            if (keyIndex == 0 && peekNonWhitespace() == '[') {
+                readResults(urls);
+            } else if (keyIndex == 1 && peekNonWhitespace() == '{') {
+                pageCount = readPagination();
+            } else {
+                skipValue();
+            }
+        } while (readSeparator('}'));
+        return new DiscogsSearchPage(urls, pageCount);
+    }
+
+    private int readPagination() throws IOException {
+        int pageCount = DiscogsSearchPage.UNKNOWN_PAGE_COUNT;
+        expect('{');
+        if (peekNonWhitespace() == '}') {
+            read();
+            return pageCount;
+        }
+        do {
+            expect('"');
+            boolean isPages = readKeyAndMatch(PAGES_KEY);
+            expect(':');
+            char first = peekNonWhitespace();
+            if (isPages && first >= '0' && first <= '9') {
+                pageCount = readNonNegativeInt();
+            } else {
+                skipValue();
+            }
+        } while (readSeparator('}'));
+        return pageCount;
+    }
+
+    private int readNonNegativeInt() throws IOException {
+        long value = 0;
+        while (true) {
+            char c = peek();
+            if (c < '0' || c > '9') {
+                break;
+            }
+            read();
+            value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+        }
+        // Tolerate a fraction or exponent by skipping the rest of the number.
+        char c = peek();
+        if (c == '.' || c == 'e' || c == 'E') {
+            skipLiteral();
+        }
+        return (int) value;
+    }
+
+    private void readResults(List<String> urls) throws IOException {
+        expect('[');
+        if (peekNonWhitespace() == ']') {
+            read();
+            return;
+        }
+        do {
+            if (peekNonWhitespace() == '{') {
+                readResult(urls);
+            } else {
+                skipValue();
+            }
+        } while (readSeparator(']'));
+    }
+
+    private void readResult(List<String> urls) throws IOException {
+        expect('{');
+        if (peekNonWhitespace() == '}') {
+            read();
+            return;
+        }
+        do {
+            expect('"');
+            boolean isCoverImage = readKeyAndMatch(COVER_IMAGE_KEY);
+            expect(':');
+            if (isCoverImage && peekNonWhitespace() == '"') {
+                read();
+                String url = readString();
+                if (!url.isBlank()) {
+                    urls.add(url);
+                }
+            } else {
+                skipValue();
+            }
+        } while (readSeparator('}'));
+    }
+
+    /**
+     * Reads a key whose opening quote has been consumed and compares it to the expected key without building it.
+     */
+    private boolean readKeyAndMatch(String expected) throws IOException {
+        return readKeyAndMatch(expected, null) == 0;
+    }
+
+    /**
+     * Reads a key whose opening quote has been consumed and compares it to two expected keys without building it.
+     *
+     * @return 0 if the key matches the first key, 1 if it matches the second key, -1 otherwise.
+     */
+    private int readKeyAndMatch(String first, String second) throws IOException {
+        int index = 0;
+        boolean matchesFirst = true;
+        boolean matchesSecond = second != null;
+        while (true) {
+            char c = read();
+            if (c == '"') {
+                if (matchesFirst && index == first.length()) {
+                    return 0;
+                }
+                return matchesSecond && index == second.length() ? 1 : -1;
+            }
+            if (c == '\\') {
+                c = readEscape();
+            }
+            if (matchesFirst && (index >= first.length() || first.charAt(index) != c)) {
+                matchesFirst = false;
+            }
+            if (matchesSecond && (index >= second.length() || second.charAt(index) != c)) {
+                matchesSecond = false;
+            }
+            index++;
+        }
+    }
+
+    /**
+     * Reads a string whose opening quote has been consumed.
+     */
+    private String readString() throws IOException {
+        valueBuilder.setLength(0);
+        while (true) {
+            char c = read();
+            if (c == '"') {
+                return valueBuilder.toString();
+            }
+            valueBuilder.append(c == '\\' ? readEscape() : c);
+        }
+    }
+
+    private char readEscape() throws IOException {
+        char c = read();
+        switch (c) {
+            case '"', '\\', '/' -> {
+                return c;
+            }
+            case 'b' -> {
+                return '\b';
+            }
+            case 'f' -> {
+                return '\f';
+            }
+            case 'n' -> {
+                return '\n';
+            }
+            case 'r' -> {
+                return '\r';
+            }
+            case 't' -> {
+                return '\t';
+            }
+            case 'u' -> {
+                int codeUnit = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw malformed("Invalid unicode escape");
+                    }
+                    codeUnit = (codeUnit << 4) | digit;
+                }
+                return (char) codeUnit;
+            }
+            default -> throw malformed("Invalid escape character '" + c + "'");
+        }
+    }
+
+    /**
+     * Skips the next value of any type. Nested objects and arrays are skipped iteratively by tracking the depth.
+     */
+    private void skipValue() throws IOException {
+        char first = peekNonWhitespace();
+        if (first == '"') {
+            read();
+            skipString();
+            return;
+        }
+        if (first != '{' && first != '[') {
+            skipLiteral();
+            return;
+        }
+
+        int depth = 0;
+        do {
+            char c = read();
+            switch (c) {
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                case '"' -> skipString();
+                default -> {
+                }
+            }
+        } while (depth > 0);
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            char c = read();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                read();
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        // Numbers, booleans and null end at the next structural character or whitespace.
+        boolean empty = true;
+        while (true) {
+            char c = peek();
+            if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                if (empty) {
+                    throw malformed("Expected a value");
+                }
+                return;
+            }
+            read();
+            empty = false;
+        }
+    }
+
+    /**
+     * Reads either a comma, in which case another member follows, or the closing character.
+     */
+    private boolean readSeparator(char closing) throws IOException {
+        char c = readNonWhitespace();
+        if (c == ',') {
+            return true;
+        }
+        if (c == closing) {
+            return false;
+        }
+        throw malformed("Expected ',' or '" + closing + "' but found '" + c + "'");
+    }
+
+    private void expect(char expected) throws IOException {
+        char c = readNonWhitespace();
+        if (c != expected) {
+            throw malformed("Expected '" + expected + "' but found '" + c + "'");
+        }
+    }
+
+    private char readNonWhitespace() throws IOException {
+        peekNonWhitespace();
+        return read();
+    }
+
+    private char peekNonWhitespace() throws IOException {
+        char c = peek();
+        while (Character.isWhitespace(c)) {
+            read();
+            c = peek();
+        }
+        return c;
+    }
+
+    private char read() throws IOException {
+        char c = peek();
+        position++;
+        offset++;
+        return c;
+    }
+
+    private char peek() throws IOException {
+        if (position >= limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                throw malformed("Unexpected end of input");
+            }
+        }
+        return buffer[position];
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed search response at offset " + offset + ": " + message);
+    }
+}
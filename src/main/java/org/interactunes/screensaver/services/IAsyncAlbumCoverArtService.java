@@ -0,0 +1,28 @@
+package org.interactunes.screensaver.services;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The service for getting album cover art without blocking the calling thread. Cancelling a returned future aborts
+ * the work behind it.
+ */
+public interface IAsyncAlbumCoverArtService {
+
+    /**
+     * Fetches a random album cover art from the service.
+     *
+     * @return The future album cover art, which may complete with null if no cover art is found.
+     */
+    CompletableFuture<Image> getRandomAlbumCoverArtAsync();
+
+    /**
+     * Fetches a list of album cover art from the service. The service may return up to {@code maxResults} images.
+     *
+     * @param maxResults The maximum number of images.
+     * @return The future list of album cover art.
+     */
+    CompletableFuture<List<Image>> getAlbumCoverArtAsync(int maxResults);
+
+}
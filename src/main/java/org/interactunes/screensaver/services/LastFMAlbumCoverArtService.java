@@ -1,19 +1,22 @@
 package org.interactunes.screensaver.services;
 
 import lombok.Setter;
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.http.HttpTransport;
+import org.interactunes.screensaver.http.ParallelImageDownloader;
+import org.interactunes.screensaver.metrics.Counter;
+import org.interactunes.screensaver.metrics.LatencyHistogram;
+import org.interactunes.screensaver.metrics.MetricsRegistry;
 import org.interactunes.screensaver.utils.DotEnvInstance;
+import org.interactunes.screensaver.utils.IndexSampler;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -22,17 +25,57 @@ import java.util.logging.Logger;
  * The service for fetching album cover art via the LastFM API. Sadly, the API is kind of disappointing as a lot
  * of queries (even those that one would think to be very popular) cannot return an image url. As such , the
  * {@link DiscogsAlbumCoverArtService} class is preferable.
+ * <p>
+ * The API is reached at {@code LASTFM_API_URL} if it is set, e.g. to point the service at a
+ * {@link org.interactunes.screensaver.http.StubServer}.
  */
 @Setter
 public class LastFMAlbumCoverArtService implements IAlbumCoverArtService {
 
-    private static final String API_KEY = DotEnvInstance.get("LASTFM_API_KEY");
-    private static final int MAX_RESULTS_RANDOM = 100;
+    private static final String DEFAULT_API_URL = "https://ws.audioscrobbler.com";
+    private static final String API_URL_KEY = "LASTFM_API_URL";
+    private static final String API_KEY = DotEnvInstance.getOptional("LASTFM_API_KEY", null);
+    private static final int MAX_PARALLEL_DOWNLOADS = 4;
+    private static final Duration DOWNLOAD_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration BULK_DOWNLOAD_DEADLINE = Duration.ofSeconds(15);
 
     private final Logger logger = Logger.getLogger(LastFMAlbumCoverArtService.class.getName());
+    // The service is called from the prefetch workers as well as the EDT, so every thread draws with its own sampler.
+    private final ThreadLocal<IndexSampler> samplers = ThreadLocal.withInitial(IndexSampler::new);
+    private final ParallelImageDownloader imageDownloader;
+    private final String apiUrl;
+    private final LatencyHistogram searchLatency = MetricsRegistry.getInstance().histogram("lastfm.search");
+    private final Counter searchFailures = MetricsRegistry.getInstance().counter("lastfm.search.failures");
 
     private String searchQuery;
 
+    /**
+     * Creates a new LastFM album cover art service for the configured API URL.
+     */
+    public LastFMAlbumCoverArtService() {
+        this(DotEnvInstance.getOptional(API_URL_KEY, DEFAULT_API_URL));
+    }
+
+    /**
+     * Creates a new LastFM album cover art service.
+     *
+     * @param apiUrl The base URL of the API, without a trailing slash, e.g. {@code https://ws.audioscrobbler.com}.
+     */
+    public LastFMAlbumCoverArtService(String apiUrl) {
+        this(apiUrl, CoverArtCache.getInstance());
+    }
+
+    /**
+     * Creates a new LastFM album cover art service.
+     *
+     * @param apiUrl        The base URL of the API, without a trailing slash, e.g. {@code https://ws.audioscrobbler.com}.
+     * @param coverArtCache The cache to look the covers up in before downloading them.
+     */
+    public LastFMAlbumCoverArtService(String apiUrl, CoverArtCache coverArtCache) {
+        this.apiUrl = apiUrl;
+        imageDownloader = new ParallelImageDownloader(MAX_PARALLEL_DOWNLOADS, DOWNLOAD_TIMEOUT, coverArtCache);
+    }
+
     /**
      * {@inheritDoc}
      * <p>
@@ -41,75 +84,91 @@ public class LastFMAlbumCoverArtService implements IAlbumCoverArtService {
      * @return The album cover art or null if no album cover art is found.
      */
     public Image getRandomAlbumCoverArt() {
-        List<Image> albumCoverArt = getAlbumCoverArt(MAX_RESULTS_RANDOM);
+        List<Image> albumCoverArt = getAlbumCoverArt(1);
         return albumCoverArt.isEmpty() ? null : albumCoverArt.get(0);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The covers are downloaded in parallel, and covers that are not downloaded within the deadline are left out.
+     */
     @Override
     public List<Image> getAlbumCoverArt(int maxResults) {
+        return imageDownloader.downloadAll(getAlbumCoverArtUrls(maxResults), BULK_DOWNLOAD_DEADLINE);
+    }
+
+    /**
+     * Gets the URLs of the largest covers of up to {@code maxResults} random albums that match the search query.
+     * Albums without a cover are skipped.
+     *
+     * @param maxResults The maximum number of URLs.
+     * @return The URLs.
+     */
+    private List<String> getAlbumCoverArtUrls(int maxResults) {
+        List<String> urls = new ArrayList<>();
+        JSONObject results;
         try {
-            JSONObject results = getJsonObject(searchQuery);
-            if (results == null) {
-                logger.log(Level.INFO, "Results are null");
-                return new ArrayList<>();
-            }
+            results = getJsonObject(searchQuery);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, () -> "Error while attempting to get album cover art: " + e.getMessage());
+            return urls;
+        }
+        if (results == null) {
+            logger.log(Level.INFO, "Results are null");
+            return urls;
+        }
 
-            List<Object> albumMatches = results.getJSONObject("albummatches").getJSONArray("album").toList();
-            Collections.shuffle(albumMatches);
-
-            List<Image> images = new ArrayList<>();
-
-            for (int i = 0; i < Math.min(maxResults, albumMatches.size()); i++) {
-                try {
-                    Object obj = albumMatches.get(i);
-                    if (!(obj instanceof JSONObject albumMatch)) {
-                        logger.log(Level.INFO, "Object is not JSONObject: " + obj);
-                        continue;
-                    }
-
-                    JSONArray imageJSONArray = albumMatch.getJSONArray("image");
-                    if (imageJSONArray == null || imageJSONArray.isEmpty()) {
-                        logger.log(Level.INFO, "Images is null or empty");
-                        continue;
-                    }
-                    JSONObject largestImage = imageJSONArray.getJSONObject(imageJSONArray.length() - 1);
-                    String imagePath = largestImage.getString("#text");
-                    if (imagePath == null || imagePath.isBlank()) {
-                        logger.log(Level.INFO, "Image path is null or blank");
-                        continue;
-                    }
-
-                    Image image = ImageIO.read(new URL(imagePath));
-                    images.add(image);
-                } catch (Exception e) {
-                    logger.log(Level.WARNING, "Error while iterating JSON results. Error is caught, continuing to iterate. Error: " + e.getMessage());
+        // Only the first maxResults of a random order are needed, so they are drawn instead of shuffling every match.
+        JSONArray albumMatches = results.getJSONObject("albummatches").getJSONArray("album");
+        IndexSampler sampler = samplers.get();
+        sampler.reset(albumMatches.length());
+
+        while (urls.size() < maxResults && sampler.hasNext()) {
+            try {
+                Object obj = albumMatches.get(sampler.next());
+                if (!(obj instanceof JSONObject albumMatch)) {
+                    logger.log(Level.INFO, () -> "Object is not JSONObject: " + obj);
+                    continue;
                 }
-            }
 
-            return images;
-        } catch (IOException e) {
-            logger.log(Level.SEVERE, "Error while attempting to get album cover art: " + e.getMessage());
+                JSONArray imageJSONArray = albumMatch.getJSONArray("image");
+                if (imageJSONArray == null || imageJSONArray.isEmpty()) {
+                    logger.log(Level.INFO, "Images is null or empty");
+                    continue;
+                }
+                JSONObject largestImage = imageJSONArray.getJSONObject(imageJSONArray.length() - 1);
+                String imagePath = largestImage.getString("#text");
+                if (imagePath == null || imagePath.isBlank()) {
+                    logger.log(Level.INFO, "Image path is null or blank");
+                    continue;
+                }
+
+                urls.add(imagePath);
+            } catch (Exception e) {
+                logger.log(Level.WARNING, () -> "Error while iterating JSON results. Error is caught, continuing to iterate. Error: " + e.getMessage());
+            }
         }
-        return new ArrayList<>();
+        return urls;
     }
 
-    private static JSONObject getJsonObject(String searchQuery) throws IOException {
+    private JSONObject getJsonObject(String searchQuery) throws IOException {
         searchQuery = searchQuery.replaceAll("\\s+", "");
-        String apiUrl = "https://ws.audioscrobbler.com/2.0/?method=album.search&album=" + searchQuery + "&api_key=" + API_KEY + "&format=json";
-        URL url = new URL(apiUrl);
-
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            response.append(line);
+        String searchUrl = apiUrl + "/2.0/?method=album.search&album=" + searchQuery + "&format=json";
+        if (API_KEY != null) {
+            searchUrl += "&api_key=" + API_KEY;
+        }
+        long start = System.nanoTime();
+        byte[] response;
+        try {
+            response = HttpTransport.getInstance().getRevalidated(searchUrl);
+        } catch (IOException e) {
+            searchFailures.increment();
+            throw e;
         }
-        reader.close();
+        searchLatency.recordSince(start);
 
-        JSONObject jsonResponse = new JSONObject(response.toString());
+        JSONObject jsonResponse = new JSONObject(new String(response, StandardCharsets.UTF_8));
         return jsonResponse.getJSONObject("results");
     }
 }
@@ -1,64 +1,309 @@
 package org.interactunes.screensaver.services;
 
-import org.interactunes.screensaver.utils.UtilMethods;
+import org.interactunes.screensaver.images.ImageDecoder;
+import org.interactunes.screensaver.images.ImageScaler;
+import org.interactunes.screensaver.library.ClasspathLibrarySource;
+import org.interactunes.screensaver.library.ILibraryIndexListener;
+import org.interactunes.screensaver.library.ILibrarySource;
+import org.interactunes.screensaver.library.LibraryIndex;
+import org.interactunes.screensaver.library.LibrarySources;
+import org.interactunes.screensaver.library.ThumbnailPack;
+import org.interactunes.screensaver.library.ThumbnailPackWriter;
+import org.interactunes.screensaver.utils.DotEnvInstance;
+import org.interactunes.screensaver.utils.IndexSampler;
 
-import javax.imageio.ImageIO;
 import java.awt.*;
-import java.io.File;
-import java.net.URL;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Queue;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * The service for fetching album cover art from the local file system.
+ * The service for fetching album cover art from local {@link ILibrarySource}s. By default the albums bundled as
+ * classpath resources are used, which also works when running from a JAR; the {@code LOCAL_LIBRARY_PATHS} variable
+ * replaces them with external directories and zip archives.
+ * <p>
+ * The images are tracked by a {@link LibraryIndex}, which is loaded from a snapshot on start and follows the changes to
+ * the library while running, so the library is neither listed again when every cover has been shown nor on every
+ * start. The images are also packed into a {@link ThumbnailPack} of pre-scaled thumbnails, and from then on covers are
+ * served from the memory-mapped pack without decoding anything. When the index changes, only the changed images are
+ * decoded and patched into the pack. The pack is limited to {@code LOCAL_THUMBNAIL_PACK_MAX_MB}; the images that do not
+ * fit, and all images while the cells are larger than the largest thumbnail, are decoded from their files instead.
  */
 public class LocalAlbumCoverArtService implements IAlbumCoverArtService {
 
     private static final String ALBUMS_FOLDER_PATH = "images/albums";
+    private static final String LIBRARY_PATHS_KEY = "LOCAL_LIBRARY_PATHS";
+    private static final String PACK_MAX_MB_KEY = "LOCAL_THUMBNAIL_PACK_MAX_MB";
+    // About 1000 covers at 2 MB each.
+    private static final long DEFAULT_PACK_MAX_MB = 2048;
+    private static final Path DEFAULT_CACHE_FOLDER = Path.of(System.getProperty("user.home"), ".interactunes", "cache", "library");
+    private static final String THUMBNAIL_PACK_FILE_NAME = "albums.pack";
+    private static final String INDEX_FILE_NAME = "albums.index";
+    // The cells of the default 3x3 grid are 360px on a 1080p screen and 720px on a 4K one; smaller cells scale down.
+    private static final int[] THUMBNAIL_SIZES = {400, 720};
+    private static final long FIRST_IMAGE_TIMEOUT_MS = 5000;
+    private static final long PACK_UPDATE_DELAY_MS = 10000;
 
     private final Logger logger;
-    private final Queue<String> queue;
+    private final Path thumbnailPackFile;
+    private final long packMaxBytes;
+    private final LibraryIndex index;
+    private final ScheduledExecutorService packExecutor;
+    private final IndexSampler sampler;
+
+    // Guarded by this.
+    private final List<Path> remainingPaths;
+    private final Set<Path> updatedPaths;
+    private final Set<Path> removedPaths;
+    private boolean indexLoaded;
+    private ScheduledFuture<?> packUpdate;
+
+    private volatile ThumbnailPack thumbnailPack;
 
     /**
-     * Creates a new local album cover art service.
+     * Creates a new local album cover art service reading the configured library sources.
      */
     public LocalAlbumCoverArtService() {
+        this(createConfiguredSources());
+    }
+
+    /**
+     * Creates a new local album cover art service that keeps its index and thumbnail pack in
+     * {@code ~/.interactunes/cache/library}. The index of the sources starts loading in the background.
+     *
+     * @param sources The library sources.
+     */
+    public LocalAlbumCoverArtService(List<ILibrarySource> sources) {
+        this(sources, DEFAULT_CACHE_FOLDER);
+    }
+
+    /**
+     * Creates a new local album cover art service. The index of the sources starts loading in the background.
+     *
+     * @param sources     The library sources.
+     * @param cacheFolder The folder the index snapshot and the thumbnail pack are kept in.
+     */
+    public LocalAlbumCoverArtService(List<ILibrarySource> sources, Path cacheFolder) {
         logger = Logger.getLogger(LocalAlbumCoverArtService.class.getName());
-        queue = new LinkedList<>();
-        reloadQueueWithLocalPaths();
+        thumbnailPackFile = cacheFolder.resolve(THUMBNAIL_PACK_FILE_NAME);
+        packMaxBytes = readPackMaxMegabytes() * 1024 * 1024;
+        sampler = new IndexSampler();
+        remainingPaths = new ArrayList<>();
+        updatedPaths = new HashSet<>();
+        removedPaths = new HashSet<>();
+        packExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "local-library-pack");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        index = new LibraryIndex(sources, cacheFolder.resolve(INDEX_FILE_NAME), new IndexListener());
+        index.start();
     }
 
-    private void reloadQueueWithLocalPaths() {
-        queue.clear();
-        getAlbumCoverArtPaths(queue);
+    private static List<ILibrarySource> createConfiguredSources() {
+        Logger logger = Logger.getLogger(LocalAlbumCoverArtService.class.getName());
+        String locations = DotEnvInstance.getOptional(LIBRARY_PATHS_KEY);
+        if (locations != null && !locations.isBlank()) {
+            List<ILibrarySource> sources = LibrarySources.fromLocations(locations);
+            if (!sources.isEmpty()) {
+                return sources;
+            }
+            logger.log(Level.WARNING, "None of the configured library locations could be opened, using the bundled albums.");
+        }
+        try {
+            return List.of(new ClasspathLibrarySource(ALBUMS_FOLDER_PATH, LocalAlbumCoverArtService.class.getClassLoader()));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, () -> "Error accessing albums folder: " + e.getMessage());
+            return List.of();
+        }
     }
 
-    private void getAlbumCoverArtPaths(Collection<String> collection) {
+    /**
+     * Opens the thumbnail pack if it matches the index, otherwise updates it.
+     */
+    private void loadThumbnailPack() {
+        if (index.size() == 0 || openThumbnailPack(index.getStamp())) {
+            return;
+        }
+        updateThumbnailPack();
+    }
+
+    /**
+     * Brings the thumbnail pack up to date with the index. The current pack is patched with the images that changed
+     * since it was written; without a current pack, or if patching it fails, a new pack of the images in the index is
+     * written, carrying over the thumbnails of the current pack.
+     */
+    private void updateThumbnailPack() {
+        Set<Path> updated;
+        Set<Path> removed;
+        long stamp;
+        synchronized (this) {
+            // Taken together with the stamp, so that changes reported meanwhile are left for the next update.
+            updated = new HashSet<>(updatedPaths);
+            removed = new HashSet<>(removedPaths);
+            updatedPaths.clear();
+            removedPaths.clear();
+            stamp = index.getStamp();
+        }
+        ThumbnailPack previous = thumbnailPack;
+        if (previous != null && previous.getSourceModified() == stamp) {
+            return;
+        }
+        ThumbnailPackWriter writer = new ThumbnailPackWriter(THUMBNAIL_SIZES, packMaxBytes);
+        if (previous != null) {
+            try {
+                writer.update(thumbnailPackFile, previous, updated, removed, stamp);
+                if (openThumbnailPack(stamp)) {
+                    previous.dispose();
+                    return;
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                logger.log(Level.WARNING, () -> "Failed to update album thumbnail pack, writing a new one. Error: " + e.getMessage());
+            }
+        }
+        List<Path> paths = index.getImages();
+        if (paths.isEmpty()) {
+            return;
+        }
         try {
-            URL albumsFolderUrl = getClass().getClassLoader().getResource(ALBUMS_FOLDER_PATH);
-            if (albumsFolderUrl == null) {
-                logger.log(Level.SEVERE, "Albums folder not found.");
-                return;
+            writer.write(thumbnailPackFile, paths, stamp, previous);
+            if (openThumbnailPack(stamp) && previous != null) {
+                previous.dispose();
             }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to build album thumbnail pack, decoding images directly. Error: " + e.getMessage());
+            synchronized (this) {
+                // Kept for the next update. A path that is both updated and removed meanwhile is left out of the pack.
+                updatedPaths.addAll(updated);
+                removedPaths.addAll(removed);
+            }
+        }
+    }
 
-            File albumsFolder = new File(albumsFolderUrl.toURI());
-            File[] albumFiles = albumsFolder.listFiles();
-            if (albumFiles == null || albumFiles.length == 0) {
-                logger.log(Level.SEVERE, "No album images found in the folder.");
-                return;
+    /**
+     * Updates the thumbnail pack once the library has not changed for a while, so that copying many files into the
+     * library results in a single update.
+     */
+    private synchronized void schedulePackUpdate() {
+        if (packUpdate != null) {
+            packUpdate.cancel(false);
+        }
+        packUpdate = packExecutor.schedule(this::updateThumbnailPack, PACK_UPDATE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean openThumbnailPack(long stamp) {
+        ThumbnailPack pack;
+        try {
+            pack = ThumbnailPack.open(thumbnailPackFile);
+        } catch (NoSuchFileException e) {
+            logger.log(Level.INFO, "No album thumbnail pack yet.");
+            return false;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to open album thumbnail pack. Error: " + e.getMessage());
+            return false;
+        }
+        if (pack.getSourceModified() != stamp || pack.size() == 0) {
+            logger.log(Level.INFO, "Album thumbnail pack is stale.");
+            pack.dispose();
+            return false;
+        }
+
+        synchronized (this) {
+            thumbnailPack = pack;
+            notifyAll();
+        }
+        logger.log(Level.INFO, () -> "Serving " + pack.size() + " album images from the thumbnail pack.");
+        return true;
+    }
+
+    /**
+     * Takes a random path that has not been served since the index was last gone through, starting over once all have
+     * been served. While the index is being loaded, waits for it to find a path. Synchronized since the service is
+     * called from the prefetch worker threads as well as the EDT.
+     *
+     * @return The next path or null if no paths are found.
+     */
+    private synchronized Path nextPath() {
+        if (remainingPaths.isEmpty() && indexLoaded) {
+            remainingPaths.addAll(index.getImages());
+        }
+
+        long deadline = System.currentTimeMillis() + FIRST_IMAGE_TIMEOUT_MS;
+        while (remainingPaths.isEmpty() && !indexLoaded) {
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                break;
+            }
+            try {
+                wait(remainingMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
             }
-            UtilMethods.shuffleArray(albumFiles);
-            for (File albumFile : albumFiles) {
-                collection.add(albumFile.getAbsolutePath());
+        }
+        if (remainingPaths.isEmpty()) {
+            return null;
+        }
+
+        // Swap the picked path with the last one, so that removing it does not shift the list.
+        int picked = sampler.nextInt(remainingPaths.size());
+        Path last = remainingPaths.remove(remainingPaths.size() - 1);
+        if (picked == remainingPaths.size()) {
+            return last;
+        }
+        return remainingPaths.set(picked, last);
+    }
+
+    private Image getPackImage(ThumbnailPack pack, int entry) {
+        try {
+            return pack.getImage(entry, ImageScaler.getInstance().getRequestedSize());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, () -> "Failed to read album thumbnail pack, decoding images directly. Error: " + e.getMessage());
+            synchronized (this) {
+                // The pack may have been replaced by an update meanwhile, which is still good to use.
+                if (thumbnailPack == pack) {
+                    thumbnailPack = null;
+                    pack.dispose();
+                }
             }
+            return null;
+        }
+    }
 
-            logger.log(Level.INFO, "Fetched " + collection.size() + " album images.");
-        } catch (Exception e) {
-            logger.log(Level.SEVERE, "Error accessing albums folder: " + e.getMessage());
+    /**
+     * Gets the image of the next path, from the thumbnail pack if it holds the image at a large enough size and
+     * otherwise by decoding the file.
+     *
+     * @return The image or null if no image is found.
+     * @throws IOException If the next file cannot be decoded.
+     */
+    private Image nextImage() throws IOException {
+        Path path = nextPath();
+        if (path == null) {
+            return null;
+        }
+        ThumbnailPack pack = thumbnailPack;
+        if (pack != null && pack.covers(ImageScaler.getInstance().getRequestedSize())) {
+            int entry = pack.indexOf(path.toString());
+            Image image = entry >= 0 ? getPackImage(pack, entry) : null;
+            if (image != null) {
+                return image;
+            }
+        }
+        Image image = decode(path);
+        if (image == null) {
+            logger.log(Level.WARNING, () -> "Error reading album image: " + path);
         }
+        return image;
     }
 
     /**
@@ -70,18 +315,14 @@ public class LocalAlbumCoverArtService implements IAlbumCoverArtService {
      */
     @Override
     public Image getRandomAlbumCoverArt() {
-        if (queue.isEmpty()) {
-            reloadQueueWithLocalPaths();
-        }
-        String path = queue.poll();
-        if (path == null) {
-            logger.log(Level.WARNING, "No album cover art found.");
-            return null;
-        }
         try {
-            return ImageIO.read(new File(path));
+            Image image = nextImage();
+            if (image == null) {
+                logger.log(Level.WARNING, "No album cover art found.");
+            }
+            return image;
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
+            logger.log(Level.SEVERE, () -> "Failed to get album cover art. Error: " + e.getMessage());
             return null;
         }
     }
@@ -90,28 +331,91 @@ public class LocalAlbumCoverArtService implements IAlbumCoverArtService {
     public List<Image> getAlbumCoverArt(int maxResults) {
         List<Image> images = new ArrayList<>();
 
-        while (images.size() < maxResults) {
-            if (queue.isEmpty()) {
-                reloadQueueWithLocalPaths();
-            }
-            String path = queue.poll();
-            if (path == null) {
-                logger.log(Level.WARNING, "No album cover art found for path.");
-                break;
-            }
+        // Give up after as many failures as images were asked for, so that a library of broken files cannot spin.
+        int failures = 0;
+        while (images.size() < maxResults && failures <= maxResults) {
             try {
-                Image image = ImageIO.read(new File(path));
-                if (image == null) {
-                    logger.log(Level.WARNING, "Error reading album image: " + path);
-                    continue;
+                Image image = nextImage();
+                if (image != null) {
+                    images.add(image);
+                } else if (!hasImages()) {
+                    logger.log(Level.WARNING, "No album cover art found for path.");
+                    break;
+                } else {
+                    failures++;
                 }
-                images.add(image);
             } catch (Exception e) {
-                logger.log(Level.SEVERE, "Failed to get album cover art. Error: " + e.getMessage());
+                logger.log(Level.SEVERE, () -> "Failed to get album cover art. Error: " + e.getMessage());
+                failures++;
             }
         }
 
         return images;
     }
-}
 
+    private boolean hasImages() {
+        return index.size() > 0;
+    }
+
+    private class IndexListener implements ILibraryIndexListener {
+
+        @Override
+        public void imageAdded(Path image) {
+            synchronized (LocalAlbumCoverArtService.this) {
+                remainingPaths.add(image);
+                LocalAlbumCoverArtService.this.notifyAll();
+                if (indexLoaded) {
+                    updatedPaths.add(image);
+                    removedPaths.remove(image);
+                    schedulePackUpdate();
+                }
+            }
+        }
+
+        @Override
+        public void imageRemoved(Path image) {
+            synchronized (LocalAlbumCoverArtService.this) {
+                remainingPaths.remove(image);
+                updatedPaths.remove(image);
+                removedPaths.add(image);
+                schedulePackUpdate();
+            }
+        }
+
+        @Override
+        public void imageChanged(Path image) {
+            synchronized (LocalAlbumCoverArtService.this) {
+                updatedPaths.add(image);
+                schedulePackUpdate();
+            }
+        }
+
+        @Override
+        public void indexLoaded() {
+            synchronized (LocalAlbumCoverArtService.this) {
+                indexLoaded = true;
+                LocalAlbumCoverArtService.this.notifyAll();
+            }
+            packExecutor.execute(LocalAlbumCoverArtService.this::loadThumbnailPack);
+        }
+    }
+
+    private static long readPackMaxMegabytes() {
+        String maxMegabytes = DotEnvInstance.getOptional(PACK_MAX_MB_KEY, null);
+        if (maxMegabytes == null || maxMegabytes.isBlank()) {
+            return DEFAULT_PACK_MAX_MB;
+        }
+        try {
+            return Long.parseLong(maxMegabytes.trim());
+        } catch (NumberFormatException e) {
+            Logger.getLogger(LocalAlbumCoverArtService.class.getName()).log(Level.WARNING,
+                    () -> "Invalid " + PACK_MAX_MB_KEY + " " + maxMegabytes + ", using the default size.");
+            return DEFAULT_PACK_MAX_MB;
+        }
+    }
+
+    private static Image decode(Path path) throws IOException {
+        // Decode just large enough for the grid; the cells do the precise final scale.
+        return ImageDecoder.getInstance().decode(path, ImageScaler.getInstance().getRequestedSize());
+    }
+}
@@ -0,0 +1,127 @@
+package org.interactunes.screensaver.utils;
+
+import lombok.Getter;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the blocking work of the services, such as waiting for downloads and reading and decoding files, off the EDT.
+ * On a runtime with virtual threads every task gets a virtual thread of its own, so hundreds of tasks waiting on I/O
+ * cost almost nothing in platform threads. Otherwise the tasks run on a cached pool of daemon threads, which grows
+ * with the number of tasks waiting at once and shrinks again when they are idle.
+ * <p>
+ * Unlike {@link CompletableFuture#supplyAsync}, cancelling a future returned by {@link #supply(Callable)} interrupts
+ * the task, which aborts the requests it is waiting for.
+ */
+public class BlockingIoExecutor {
+
+    private static final Logger logger = Logger.getLogger(BlockingIoExecutor.class.getName());
+
+    private static BlockingIoExecutor instance;
+
+    private final ExecutorService executor;
+
+    /**
+     * Whether the tasks run on virtual threads.
+     */
+    @Getter
+    private final boolean virtual;
+
+    /**
+     * Creates a new executor that runs its tasks on virtual threads if the runtime supports them.
+     */
+    public BlockingIoExecutor() {
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        virtual = virtualExecutor != null;
+        if (virtual) {
+            executor = virtualExecutor;
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "blocking-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the executor shared by the services, creating it on first use.
+     *
+     * @return The shared executor.
+     */
+    public static synchronized BlockingIoExecutor getInstance() {
+        if (instance == null) {
+            instance = new BlockingIoExecutor();
+        }
+        return instance;
+    }
+
+    /**
+     * Runs a blocking task in the background. Cancelling the returned future interrupts the task if it is running and
+     * keeps it from starting otherwise.
+     *
+     * @param task The task.
+     * @param <T>  The type of the result.
+     * @return The future result of the task.
+     */
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        return supply(task, executor);
+    }
+
+    /**
+     * Runs a blocking task on an executor, such as a bounded pool. Cancelling the returned future interrupts the task
+     * if it is running and keeps it from starting otherwise.
+     *
+     * @param task     The task.
+     * @param executor The executor to run the task on.
+     * @param <T>      The type of the result.
+     * @return The future result of the task.
+     */
+    public static <T> CompletableFuture<T> supply(Callable<T> task, Executor executor) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        FutureTask<Void> work = new FutureTask<>(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+            return null;
+        });
+        // Cancelling a CompletableFuture does not reach the code completing it, so the cancellation is passed on.
+        result.whenComplete((ignored, error) -> {
+            if (result.isCancelled()) {
+                work.cancel(true);
+            }
+        });
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        // Looked up reflectively, as the app is built for a runtime that may predate virtual threads.
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.INFO, () -> "Virtual threads are not available, using platform threads. Error: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package org.interactunes.screensaver.utils;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size Bloom filter of strings. It answers whether a string has possibly been added before, using a few bits
+ * per entry instead of storing the strings. False positives are possible and become more likely as the filter fills
+ * up; false negatives are not.
+ * <p>
+ * Not thread-safe.
+ */
+public class BloomFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    private int size;
+
+    /**
+     * Creates a new Bloom filter sized for the expected number of entries and false positive probability.
+     *
+     * @param expectedEntries          The number of entries the filter is expected to hold.
+     * @param falsePositiveProbability The acceptable probability of a false positive at that number of entries.
+     */
+    public BloomFilter(int expectedEntries, double falsePositiveProbability) {
+        if (expectedEntries < 1) {
+            throw new IllegalArgumentException("Expected entries must be at least 1");
+        }
+        if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+            throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+        }
+        double optimalBits = -expectedEntries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        bitCount = (int) Math.max(64, Math.min(Integer.MAX_VALUE - 63, Math.ceil(optimalBits)));
+        hashCount = (int) Math.max(1, Math.round((double) bitCount / expectedEntries * Math.log(2)));
+        bits = new long[(bitCount + 63) / 64];
+    }
+
+    /**
+     * Adds the value to the filter.
+     *
+     * @param value The value.
+     * @return true if the value was definitely not in the filter before, false if it possibly was.
+     */
+    public boolean add(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        boolean added = false;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            long mask = 1L << bit;
+            if ((bits[bit >>> 6] & mask) == 0) {
+                bits[bit >>> 6] |= mask;
+                added = true;
+            }
+        }
+        if (added) {
+            size++;
+        }
+        return added;
+    }
+
+    /**
+     * Checks whether the value has possibly been added to the filter.
+     *
+     * @param value The value.
+     * @return false if the value has definitely not been added, true if it possibly has.
+     */
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of values added to the filter that were definitely new when they were added.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes all values from the filter.
+     */
+    public void clear() {
+        Arrays.fill(bits, 0);
+        size = 0;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units followed by a finalizer, so that the upper and lower halves can be used
+     * as two independent hashes for double hashing.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,77 @@
+package org.interactunes.screensaver.utils;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Groups the futures of a piece of work, such as filling the album grid, so that they can be cancelled together when
+ * the work is superseded. Futures are forgotten once they complete, and a future added after the scope was cancelled
+ * is cancelled right away, so a stage that starts late cannot escape the cancellation.
+ */
+public class CancellationScope implements IDisposable {
+
+    private final Set<CompletableFuture<?>> futures;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new scope.
+     */
+    public CancellationScope() {
+        futures = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Adds a future to the scope.
+     *
+     * @param future The future.
+     * @param <T>    The type of the result.
+     * @return The same future.
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        if (cancelled) {
+            future.cancel(true);
+            return future;
+        }
+        futures.add(future);
+        future.whenComplete((ignored, error) -> futures.remove(future));
+        // The scope may have been cancelled between the check and the add.
+        if (cancelled) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Cancels every future in the scope that has not completed yet, and every future added later.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (CompletableFuture<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Checks if the scope has been cancelled. Results of a cancelled scope should be dropped.
+     *
+     * @return True if the scope has been cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Gets the number of futures in the scope that have not completed yet.
+     *
+     * @return The number of pending futures.
+     */
+    public int getPendingCount() {
+        return futures.size();
+    }
+
+    @Override
+    public void dispose() {
+        cancel();
+    }
+}
@@ -1,6 +1,7 @@
 package org.interactunes.screensaver.utils;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import io.github.cdimascio.dotenv.DotenvException;
 
 /**
  * A singleton class for the Dotenv instance.
@@ -19,6 +20,33 @@ public class DotEnvInstance {
         return getInstance().get(key);
     }
 
+    /**
+     * Gets the value of an optional key. Unlike {@link #get(String)}, this also works without a .env file, in which
+     * case only the environment variables are consulted.
+     *
+     * @param key The key.
+     * @return The value of the key or null if it is not set.
+     */
+    public static String getOptional(String key) {
+        try {
+            return getInstance().get(key);
+        } catch (DotenvException e) {
+            return System.getenv(key);
+        }
+    }
+
+    /**
+     * Gets the value of an optional key, falling back to a default value if it is not set or blank.
+     *
+     * @param key          The key.
+     * @param defaultValue The value to use if the key is not set or blank.
+     * @return The value of the key or the default value.
+     */
+    public static String getOptional(String key, String defaultValue) {
+        String value = getOptional(key);
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
     /**
      * Gets the Dotenv instance.
      *
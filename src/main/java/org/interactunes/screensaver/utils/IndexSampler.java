@@ -0,0 +1,141 @@
+package org.interactunes.screensaver.utils;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Draws indexes uniformly at random without replacement, one at a time, with a partial Fisher-Yates shuffle. Drawing
+ * {@code k} of {@code n} indexes takes {@code O(k)} steps instead of shuffling all {@code n} up front, and since the
+ * indexes are kept in a reused primitive array, drawing does not allocate.
+ * <p>
+ * The pool of indexes is only refilled when the number of indexes changes. Starting over with the same number skips
+ * the refill, since a partial shuffle of any arrangement of the indexes is just as uniform as one of the sorted
+ * indexes.
+ * <p>
+ * Not thread-safe.
+ */
+public class IndexSampler {
+
+    private final SplittableRandom random;
+
+    private int[] pool;
+    private int size;
+    private int drawn;
+
+    /**
+     * Creates a new index sampler with a random seed.
+     */
+    public IndexSampler() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Creates a new index sampler with a fixed seed, which draws the same sequence every time.
+     *
+     * @param seed The seed.
+     */
+    public IndexSampler(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private IndexSampler(SplittableRandom random) {
+        this.random = random;
+        pool = new int[0];
+    }
+
+    /**
+     * Starts drawing from the indexes {@code 0} to {@code size - 1}, all of which can be drawn again.
+     *
+     * @param size The number of indexes.
+     */
+    public void reset(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative");
+        }
+        if (size != this.size) {
+            if (pool.length < size) {
+                pool = new int[size];
+            }
+            for (int i = 0; i < size; i++) {
+                pool[i] = i;
+            }
+            this.size = size;
+        }
+        drawn = 0;
+    }
+
+    /**
+     * Gets the number of indexes that can be drawn from the pool.
+     *
+     * @return The number of indexes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether there are indexes left that have not been drawn since the last {@link #reset(int)}.
+     *
+     * @return true if another index can be drawn.
+     */
+    public boolean hasNext() {
+        return drawn < size;
+    }
+
+    /**
+     * Draws an index that has not been drawn since the last {@link #reset(int)}.
+     *
+     * @return The index.
+     * @throws IllegalStateException If all indexes have been drawn.
+     */
+    public int next() {
+        if (drawn >= size) {
+            throw new IllegalStateException("All " + size + " indexes have been drawn");
+        }
+        int picked = drawn + random.nextInt(size - drawn);
+        int index = pool[picked];
+        pool[picked] = pool[drawn];
+        pool[drawn] = index;
+        drawn++;
+        return index;
+    }
+
+    /**
+     * Draws distinct indexes below the size into the destination, starting over from a full pool.
+     *
+     * @param size        The number of indexes to draw from.
+     * @param destination The array to write the indexes to.
+     * @return The number of indexes drawn, the smaller of the size and the length of the destination.
+     */
+    public int sample(int size, int[] destination) {
+        reset(size);
+        int count = Math.min(size, destination.length);
+        for (int i = 0; i < count; i++) {
+            destination[i] = next();
+        }
+        return count;
+    }
+
+    /**
+     * Shuffles the list in place with a Fisher-Yates shuffle.
+     *
+     * @param list The list, which should support fast random access.
+     * @param <T>  The type of the elements.
+     */
+    public <T> void shuffle(List<T> list) {
+        for (int i = list.size() - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            list.set(i, list.set(j, list.get(i)));
+        }
+    }
+
+    /**
+     * Gets a random integer below the bound.
+     *
+     * @param bound The exclusive upper bound, which must be positive.
+     * @return The integer.
+     */
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
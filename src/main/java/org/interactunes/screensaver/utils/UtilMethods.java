@@ -1,7 +1,6 @@
 package org.interactunes.screensaver.utils;
 
 import java.awt.*;
-import java.util.Random;
 
 /**
  * Utility methods for the application.
@@ -20,19 +19,4 @@ public class UtilMethods {
         return Math.round(pt / ((float) 72 / ppi));
     }
 
-    /**
-     * Shuffles the array.
-     * @param array the array
-     * @param <T> the type
-     */
-    public static <T> void shuffleArray(T[] array) {
-        Random rand = new Random(System.currentTimeMillis());
-        for (int i = 0; i < array.length; i++) {
-            int randomIndexToSwap = rand.nextInt(array.length);
-            T temp = array[randomIndexToSwap];
-            array[randomIndexToSwap] = array[i];
-            array[i] = temp;
-        }
-    }
-
 }
@@ -0,0 +1,136 @@
+package org.interactunes.screensaver.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoverArtCacheTest {
+
+    @TempDir
+    Path cacheDirectory;
+
+    private AtomicInteger fetchCount;
+    private CoverArtCache.ByteFetcher fetcher;
+
+    @BeforeEach
+    public void setUp() {
+        fetchCount = new AtomicInteger();
+        fetcher = url -> {
+            fetchCount.incrementAndGet();
+            return createPng(16);
+        };
+    }
+
+    @Test
+    public void testRepeatedLookupsAreServedFromMemory() throws IOException {
+        CoverArtCache cache = new CoverArtCache(cacheDirectory, 1024 * 1024, 1024 * 1024);
+
+        BufferedImage first = cache.get("https://example.com/a.png", fetcher);
+        BufferedImage second = cache.get("https://example.com/a.png", fetcher);
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(1, fetchCount.get());
+        assertEquals(1, cache.getStats().getMisses());
+        assertEquals(1, cache.getStats().getMemoryHits());
+    }
+
+    @Test
+    public void testDiskCacheSurvivesRestart() throws IOException {
+        new CoverArtCache(cacheDirectory, 1024 * 1024, 1024 * 1024).get("https://example.com/a.png", fetcher);
+
+        CoverArtCache restarted = new CoverArtCache(cacheDirectory, 1024 * 1024, 1024 * 1024);
+        BufferedImage image = restarted.get("https://example.com/a.png", fetcher);
+
+        assertNotNull(image);
+        assertEquals(1, fetchCount.get());
+        assertEquals(1, restarted.getStats().getDiskHits());
+        assertEquals(0, restarted.getStats().getMisses());
+    }
+
+    @Test
+    public void testMemoryCacheEvictsLeastRecentlyUsed() throws IOException {
+        // A 16x16 RGB image takes 768 bytes, so only two fit into the budget.
+        CoverArtCache cache = new CoverArtCache(null, 2 * 768, 0);
+
+        cache.get("a", fetcher);
+        cache.get("b", fetcher);
+        cache.get("a", fetcher);
+        cache.get("c", fetcher);
+        cache.get("a", fetcher);
+        cache.get("b", fetcher);
+
+        assertEquals(4, fetchCount.get());
+        assertEquals(2, cache.getStats().getMemoryHits());
+        assertEquals(2, cache.getStats().getMemoryEvictions());
+    }
+
+    @Test
+    public void testDiskCacheEvictsWhenOverBudget() throws IOException {
+        long fileSize = createPng(16).length;
+        CacheStats stats = new CacheStats();
+        DiskByteCache diskCache = new DiskByteCache(cacheDirectory, 2 * fileSize, stats);
+
+        diskCache.put("a", createPng(16));
+        diskCache.put("b", createPng(16));
+        diskCache.get("a");
+        diskCache.put("c", createPng(16));
+
+        assertEquals(2, diskCache.size());
+        assertEquals(1, stats.getDiskEvictions());
+        assertNotNull(diskCache.get("a"));
+        assertNull(diskCache.get("b"));
+        assertNotNull(diskCache.get("c"));
+    }
+
+    @Test
+    public void testFailedDiskWritesLeaveNoTemporaryFiles() throws IOException {
+        DiskByteCache diskCache = new DiskByteCache(cacheDirectory, 1024 * 1024, new CacheStats());
+        diskCache.put("a", createPng(16));
+        Path file;
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        // A non-empty directory in place of the entry cannot be replaced, so the move fails.
+        Files.delete(file);
+        Files.createDirectory(file);
+        Files.createFile(file.resolve("blocker"));
+
+        diskCache.put("a", createPng(16));
+
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            assertTrue(files.noneMatch(path -> path.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testUndecodableResponsesAreNotCached() throws IOException {
+        CoverArtCache cache = new CoverArtCache(cacheDirectory, 1024 * 1024, 1024 * 1024);
+        CoverArtCache.ByteFetcher errorPageFetcher = url -> {
+            fetchCount.incrementAndGet();
+            return "<html>Not found</html>".getBytes();
+        };
+
+        assertNull(cache.get("https://example.com/missing.png", errorPageFetcher));
+        assertNull(cache.get("https://example.com/missing.png", errorPageFetcher));
+        assertEquals(2, fetchCount.get());
+    }
+
+    private static byte[] createPng(int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
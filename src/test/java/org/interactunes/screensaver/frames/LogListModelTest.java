@@ -0,0 +1,130 @@
+package org.interactunes.screensaver.frames;
+
+import org.interactunes.screensaver.logging.LogEvent;
+import org.interactunes.screensaver.logging.LogRingBuffer;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogListModelTest {
+
+    @Test
+    public void testShowsTheNewestEventsOfTheRing() throws Exception {
+        LogRingBuffer ring = new LogRingBuffer(4);
+        LogListModel model = new LogListModel(ring);
+        List<String> changes = new ArrayList<>();
+        model.addListDataListener(new RecordingListener(changes));
+
+        ring.append(Level.INFO, null, "a");
+        ring.append(Level.INFO, null, "b");
+        SwingUtilities.invokeAndWait(model::refresh);
+        assertEquals(List.of("a", "b"), messages(model));
+        assertEquals(List.of("added 0-1"), changes);
+
+        // Duplicate messages are separate events, and the oldest ones drop out once the ring wraps around.
+        ring.append(Level.INFO, null, "b");
+        changes.clear();
+        SwingUtilities.invokeAndWait(model::refresh);
+        assertEquals(List.of("a", "b", "b"), messages(model));
+        assertEquals(List.of("added 2-2"), changes);
+        for (String message : List.of("b", "c", "d")) {
+            ring.append(Level.INFO, null, message);
+        }
+        changes.clear();
+        SwingUtilities.invokeAndWait(model::refresh);
+        assertEquals(List.of("b", "b", "c", "d"), messages(model));
+        assertEquals(List.of("removed 0-1", "added 1-3"), changes);
+
+        // A burst larger than the ring replaces everything.
+        for (int i = 0; i < 10; i++) {
+            ring.append(Level.INFO, null, "burst " + i);
+        }
+        changes.clear();
+        SwingUtilities.invokeAndWait(model::refresh);
+        assertEquals(List.of("burst 6", "burst 7", "burst 8", "burst 9"), messages(model));
+        assertEquals(List.of("removed 0-3", "added 0-3"), changes);
+    }
+
+    @Test
+    public void testCoalescesRefreshRequests() throws Exception {
+        LogRingBuffer ring = new LogRingBuffer(1024);
+        LogListModel model = new LogListModel(ring);
+        AtomicInteger additions = new AtomicInteger();
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                additions.incrementAndGet();
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+            }
+        });
+
+        // Hold the EDT while logging, as a busy EDT would, so that every request lands in the same frame.
+        SwingUtilities.invokeAndWait(() -> {
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    ring.append(Level.INFO, null, "event " + i);
+                    model.requestRefresh();
+                }
+            });
+            producer.start();
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            int[] size = new int[1];
+            SwingUtilities.invokeAndWait(() -> size[0] = model.getSize());
+            if (size[0] == 500) {
+                break;
+            }
+            Thread.sleep(5);
+        }
+        assertEquals(500, model.getSize());
+        assertEquals(1, additions.get());
+    }
+
+    private static List<String> messages(LogListModel model) {
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < model.getSize(); i++) {
+            LogEvent event = model.getElementAt(i);
+            messages.add(event.message());
+        }
+        return messages;
+    }
+
+    private record RecordingListener(List<String> changes) implements ListDataListener {
+
+        @Override
+        public void intervalAdded(ListDataEvent e) {
+            changes.add("added " + e.getIndex0() + "-" + e.getIndex1());
+        }
+
+        @Override
+        public void intervalRemoved(ListDataEvent e) {
+            changes.add("removed " + e.getIndex0() + "-" + e.getIndex1());
+        }
+
+        @Override
+        public void contentsChanged(ListDataEvent e) {
+            changes.add("changed");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.interactunes.screensaver.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpRecordingTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testKeyIgnoresHostParameterOrderAndCredentials() {
+        String key = HttpRecording.keyOf("https://api.discogs.com/database/search?q=Rush&per_page=400&page=1&key=k&secret=s");
+        assertEquals("/database/search?page=1&per_page=400&q=Rush", key);
+        assertEquals(key, HttpRecording.keyOf("/database/search?secret=t&page=1&q=Rush&key=j&per_page=400"));
+        assertEquals("/2.0/?album=Rush&method=album.search",
+                HttpRecording.keyOf("http://127.0.0.1:8080/2.0/?method=album.search&album=Rush&api_key=k"));
+        assertEquals("/", HttpRecording.keyOf("https://i.discogs.com"));
+    }
+
+    @Test
+    public void testSaveAndLoadRoundTrip() throws Exception {
+        HttpRecording recording = new HttpRecording();
+        byte[] image = {(byte) 0xff, (byte) 0xd8, 0, 1, 2};
+        recording.record("https://api.discogs.com/database/search?q=Rush&key=k&secret=s", 200, "application/json",
+                "{}".getBytes(StandardCharsets.UTF_8));
+        recording.record("https://i.discogs.com/a/cover.jpeg", 200, null, image);
+        recording.save(tempDir);
+
+        // Credentials must not end up on disk.
+        assertFalse(Files.readString(tempDir.resolve("index.json")).contains("secret"));
+
+        HttpRecording loaded = HttpRecording.load(tempDir);
+        assertEquals(2, loaded.size());
+        assertEquals(Set.of("https://api.discogs.com", "https://i.discogs.com"), loaded.getOrigins());
+        HttpRecording.RecordedResponse search = loaded.find("/database/search?q=Rush");
+        assertEquals("https://api.discogs.com/database/search?q=Rush", search.url());
+        assertEquals("application/json", search.contentType());
+        assertArrayEquals(image, loaded.find("/a/cover.jpeg").body());
+        assertNull(loaded.find("/a/cover.jpeg").contentType());
+    }
+
+    @Test
+    public void testTransportRecordsResponsesForReplay() throws Exception {
+        HttpRecording original = new HttpRecording();
+        original.record("http://origin/covers?page=1", 200, "application/json",
+                "[\"http://origin/a.png\"]".getBytes(StandardCharsets.UTF_8));
+        StubServer source = new StubServer(original);
+        HttpTransport transport = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), 1024 * 1024);
+        HttpRecording recorded = new HttpRecording();
+        transport.setRecording(recorded);
+        try {
+            transport.get(source.getBaseUrl() + "/covers?page=1");
+            // The revalidated response is recorded too, both when it is first fetched and when it is not modified.
+            transport.getRevalidated(source.getBaseUrl() + "/covers?page=1");
+            assertThrows(HttpStatusException.class, () -> transport.get(source.getBaseUrl() + "/missing"));
+        } finally {
+            source.dispose();
+        }
+
+        assertEquals(1, recorded.size());
+        assertEquals(List.of(source.getBaseUrl()), List.copyOf(recorded.getOrigins()));
+        recorded.save(tempDir);
+
+        StubServer replay = new StubServer(HttpRecording.load(tempDir));
+        try {
+            byte[] body = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(2), 0)
+                    .get(replay.getBaseUrl() + "/covers?page=1");
+            assertEquals("[\"http://origin/a.png\"]", new String(body, StandardCharsets.UTF_8));
+        } finally {
+            replay.dispose();
+        }
+    }
+}
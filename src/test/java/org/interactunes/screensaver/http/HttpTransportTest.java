@@ -0,0 +1,167 @@
+package org.interactunes.screensaver.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTransportTest {
+
+    private static final String ETAG = "\"v1\"";
+    private static final byte[] BODY = "{\"results\": []}".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private HttpTransport transport;
+    private String baseUrl;
+    private AtomicInteger fullResponses;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        fullResponses = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/gzip", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                respond(exchange, 200, gzip(BODY));
+            } else {
+                respond(exchange, 200, BODY);
+            }
+        });
+        server.createContext("/etag", exchange -> {
+            if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            respond(exchange, 200, BODY);
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, BODY);
+        });
+        server.createContext("/hang", exchange -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        transport = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(5), 1024 * 1024);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testDecompressesGzipResponses() throws IOException {
+        assertArrayEquals(BODY, transport.get(baseUrl + "/gzip"));
+
+        // The bytes are counted as transferred, i.e. compressed.
+        HostStats stats = transport.getHostStats(HostStats.hostOf(baseUrl));
+        assertEquals(1, stats.getRequests());
+        assertTrue(stats.getBytesReceived() > 0 && stats.getBytesReceived() < BODY.length,
+                "Received " + stats.getBytesReceived() + " bytes");
+    }
+
+    @Test
+    public void testRevalidatesWithETag() throws IOException {
+        assertArrayEquals(BODY, transport.getRevalidated(baseUrl + "/etag"));
+        assertArrayEquals(BODY, transport.getRevalidated(baseUrl + "/etag"));
+        assertArrayEquals(BODY, transport.getRevalidated(baseUrl + "/etag"));
+
+        assertEquals(1, fullResponses.get());
+        HostStats stats = transport.getHostStats(HostStats.hostOf(baseUrl));
+        assertEquals(3, stats.getRequests());
+        assertEquals(2, stats.getNotModified());
+        assertEquals(BODY.length, stats.getBytesReceived());
+    }
+
+    @Test
+    public void testPlainRequestsAreNotConditional() throws IOException {
+        transport.get(baseUrl + "/etag");
+        transport.get(baseUrl + "/etag");
+        assertEquals(2, fullResponses.get());
+    }
+
+    @Test
+    public void testAsyncRequestsRunConcurrently() {
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            futures.add(transport.getAsync(baseUrl + "/slow?i=" + i, Duration.ofSeconds(5), RequestPriority.VISIBLE));
+        }
+        futures.forEach(future -> assertArrayEquals(BODY, future.join()));
+        long elapsed = System.currentTimeMillis() - start;
+
+        // Sequential requests would take at least 8 * 200ms.
+        assertTrue(elapsed < 1200, "Requests took " + elapsed + "ms");
+        HostStats stats = transport.getHostStats(HostStats.hostOf(baseUrl));
+        assertEquals(8, stats.getRequests());
+        assertTrue(stats.getMeanLatencyMillis() >= 200, "Mean latency " + stats.getMeanLatencyMillis() + "ms");
+    }
+
+    @Test
+    public void testErrorStatusThrows() {
+        HttpStatusException exception = assertThrows(HttpStatusException.class, () -> transport.get(baseUrl + "/missing"));
+        assertEquals(404, exception.getStatusCode());
+        assertEquals(1, transport.getHostStats(HostStats.hostOf(baseUrl)).getFailures());
+    }
+
+    @Test
+    public void testTimeoutThrows() {
+        long start = System.currentTimeMillis();
+        assertThrows(HttpTimeoutException.class, () -> transport.get(baseUrl + "/hang", Duration.ofMillis(300)));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 3000, "Timeout was not honoured, took " + elapsed + "ms");
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+}
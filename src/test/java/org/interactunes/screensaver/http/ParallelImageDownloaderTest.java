@@ -0,0 +1,113 @@
+package org.interactunes.screensaver.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelImageDownloaderTest {
+
+    private static final long SLOW_DELAY_MS = 300;
+
+    private HttpServer server;
+    private ParallelImageDownloader imageDownloader;
+    private String baseUrl;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        byte[] png = createPng();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(SLOW_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, png.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(png);
+            }
+        });
+        server.createContext("/hang", exchange -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        imageDownloader = new ParallelImageDownloader(8, Duration.ofSeconds(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        imageDownloader.dispose();
+        server.stop(0);
+    }
+
+    @Test
+    public void testDownloadsRunConcurrently() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            urls.add(baseUrl + "/slow?i=" + i);
+        }
+
+        long start = System.currentTimeMillis();
+        List<Image> images = imageDownloader.downloadAll(urls, Duration.ofSeconds(5));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(8, images.size());
+        // Sequential downloads would take at least 8 * SLOW_DELAY_MS.
+        assertTrue(elapsed < 4 * SLOW_DELAY_MS, "Downloads took " + elapsed + "ms");
+    }
+
+    @Test
+    public void testReturnsFinishedImagesAtDeadline() {
+        List<String> urls = List.of(baseUrl + "/slow", baseUrl + "/hang", baseUrl + "/slow?i=1");
+
+        long start = System.currentTimeMillis();
+        List<Image> images = imageDownloader.downloadAll(urls, Duration.ofSeconds(1));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertEquals(2, images.size());
+        assertTrue(elapsed < 3000, "Deadline was not honoured, took " + elapsed + "ms");
+    }
+
+    @Test
+    public void testFailedDownloadsAreSkipped() {
+        List<String> urls = List.of(baseUrl + "/missing", baseUrl + "/slow");
+        List<Image> images = imageDownloader.downloadAll(urls, Duration.ofSeconds(5));
+        assertEquals(1, images.size());
+    }
+
+    private static byte[] createPng() throws IOException {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", outputStream);
+        return outputStream.toByteArray();
+    }
+}
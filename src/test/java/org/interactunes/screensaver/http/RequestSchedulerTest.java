@@ -0,0 +1,223 @@
+package org.interactunes.screensaver.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestSchedulerTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int SERVER_LIMIT = 5;
+    private static final long SERVER_WINDOW_MS = 1000;
+
+    private HttpServer server;
+    private HttpTransport transport;
+    private String baseUrl;
+    private List<Long> acceptedTimes;
+    private List<String> arrivalOrder;
+    private AtomicInteger throttled;
+    private AtomicInteger flakyFailuresLeft;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        acceptedTimes = Collections.synchronizedList(new ArrayList<>());
+        arrivalOrder = Collections.synchronizedList(new ArrayList<>());
+        throttled = new AtomicInteger();
+        flakyFailuresLeft = new AtomicInteger();
+
+        server = HttpServer.create(new InetSocketAddress(HOST, 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        // Allows SERVER_LIMIT requests per sliding window and reports the allowance like Discogs does.
+        server.createContext("/limited", exchange -> {
+            arrivalOrder.add(exchange.getRequestURI().getQuery());
+            long now = System.currentTimeMillis();
+            int remaining;
+            synchronized (acceptedTimes) {
+                acceptedTimes.removeIf(time -> time <= now - SERVER_WINDOW_MS);
+                if (acceptedTimes.size() >= SERVER_LIMIT) {
+                    throttled.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    exchange.sendResponseHeaders(429, -1);
+                    exchange.close();
+                    return;
+                }
+                acceptedTimes.add(now);
+                remaining = SERVER_LIMIT - acceptedTimes.size();
+            }
+            exchange.getResponseHeaders().set("X-Discogs-Ratelimit", String.valueOf(SERVER_LIMIT));
+            exchange.getResponseHeaders().set("X-Discogs-Ratelimit-Remaining", String.valueOf(remaining));
+            respond(exchange, 200);
+        });
+        server.createContext("/flaky", exchange -> {
+            arrivalOrder.add(exchange.getRequestURI().getQuery());
+            if (flakyFailuresLeft.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            respond(exchange, 200);
+        });
+        server.start();
+
+        baseUrl = "http://" + HOST + ":" + server.getAddress().getPort();
+        transport = new HttpTransport(Duration.ofSeconds(2), Duration.ofSeconds(5), 1024 * 1024);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transport.removeScheduler(HostStats.hostOf(baseUrl));
+        server.stop(0);
+    }
+
+    @Test
+    public void testRemovedSchedulerIsReplaced() {
+        RequestScheduler removed = addScheduler(10, 1, 0);
+        transport.removeScheduler(HostStats.hostOf(baseUrl));
+
+        RequestScheduler added = addScheduler(10, 1, 0);
+        assertNotSame(removed, added);
+        assertArrayEquals("ok".getBytes(),
+                transport.getAsync(baseUrl + "/limited?i=0", Duration.ofSeconds(5), RequestPriority.VISIBLE).join());
+    }
+
+    @Test
+    public void testPacesRequestsToStayWithinLimit() {
+        RequestScheduler scheduler = addScheduler(SERVER_LIMIT, 2, 0);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(transport.getAsync(baseUrl + "/limited?i=" + i, Duration.ofSeconds(5), RequestPriority.VISIBLE));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertEquals(0, throttled.get());
+        // The burst is held back from the reported limit.
+        assertEquals(SERVER_LIMIT - 2, scheduler.getRequestsPerSecond(), 1e-9);
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testRetriesThrottledRequests() {
+        // Without pacing the burst exceeds the limit, so some requests are throttled and have to be retried.
+        RequestScheduler scheduler = addScheduler(1000, 10, 3);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(transport.getAsync(baseUrl + "/limited?i=" + i, Duration.ofSeconds(5), RequestPriority.VISIBLE));
+        }
+        futures.forEach(CompletableFuture::join);
+
+        assertTrue(throttled.get() > 0);
+        assertEquals(throttled.get(), scheduler.getRetries());
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testRetriesServerErrorsWithBackoff() throws IOException {
+        RequestScheduler scheduler = addScheduler(100, 10, 3);
+        flakyFailuresLeft.set(2);
+
+        transport.get(baseUrl + "/flaky", Duration.ofSeconds(5), RequestPriority.VISIBLE);
+
+        assertEquals(2, scheduler.getRetries());
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        RequestScheduler scheduler = addScheduler(100, 10, 2);
+        flakyFailuresLeft.set(10);
+
+        HttpStatusException exception = assertThrows(HttpStatusException.class,
+                () -> transport.get(baseUrl + "/flaky", Duration.ofSeconds(5), RequestPriority.VISIBLE));
+
+        assertEquals(503, exception.getStatusCode());
+        assertEquals(2, scheduler.getRetries());
+        assertEquals(7, flakyFailuresLeft.get());
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testVisibleRequestsOvertakePrefetch() {
+        RequestScheduler scheduler = addScheduler(10, 1, 0);
+
+        List<CompletableFuture<byte[]>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(transport.getAsync(baseUrl + "/flaky?prefetch" + i, Duration.ofSeconds(5), RequestPriority.PREFETCH));
+        }
+        futures.add(transport.getAsync(baseUrl + "/flaky?visible", Duration.ofSeconds(5), RequestPriority.VISIBLE));
+        futures.forEach(CompletableFuture::join);
+
+        // The first prefetch may already have been sent when the visible request arrived, but no other.
+        int visibleIndex = arrivalOrder.indexOf("visible");
+        assertTrue(visibleIndex >= 0 && visibleIndex <= 1, "Arrival order: " + arrivalOrder);
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testCancelledRequestsAreNotSent() {
+        RequestScheduler scheduler = addScheduler(2, 1, 0);
+
+        CompletableFuture<byte[]> first = transport.getAsync(baseUrl + "/flaky?first", Duration.ofSeconds(5), RequestPriority.VISIBLE);
+        CompletableFuture<byte[]> cancelled = transport.getAsync(baseUrl + "/flaky?cancelled", Duration.ofSeconds(5), RequestPriority.VISIBLE);
+        cancelled.cancel(true);
+        CompletableFuture<byte[]> last = transport.getAsync(baseUrl + "/flaky?last", Duration.ofSeconds(5), RequestPriority.VISIBLE);
+        first.join();
+        last.join();
+
+        assertEquals(List.of("first", "last"), arrivalOrder);
+        scheduler.dispose();
+    }
+
+    @Test
+    public void testCancellingAbortsTheAttemptInFlight() throws InterruptedException {
+        RequestScheduler scheduler = new RequestScheduler("test", 100, 10, 3, Duration.ofMillis(50),
+                Duration.ofMillis(200));
+        CompletableFuture<HttpResponse<byte[]>> attempt = new CompletableFuture<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<HttpResponse<byte[]>> result = scheduler.schedule(RequestPriority.VISIBLE, () -> {
+            started.countDown();
+            return attempt;
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(1, scheduler.getInFlightCount());
+
+        result.cancel(true);
+        assertTrue(attempt.isCancelled());
+        assertEquals(0, scheduler.getInFlightCount());
+        scheduler.dispose();
+    }
+
+    private RequestScheduler addScheduler(double requestsPerSecond, int burst, int maxRetries) {
+        RequestScheduler scheduler = new RequestScheduler("test", requestsPerSecond, burst, maxRetries,
+                Duration.ofMillis(50), Duration.ofMillis(200));
+        scheduler.setRateLimitWindow(Duration.ofMillis(SERVER_WINDOW_MS));
+        return transport.addScheduler(HostStats.hostOf(baseUrl), () -> scheduler);
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        byte[] body = "ok".getBytes();
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+}
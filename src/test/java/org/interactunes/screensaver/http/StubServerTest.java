@@ -0,0 +1,118 @@
+package org.interactunes.screensaver.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StubServerTest {
+
+    private static final byte[] SEARCH = "{\"results\": [{\"cover_image\": \"https://i.discogs.com/a/cover.jpeg\"}, {\"cover_image\": \"https:\\/\\/i.discogs.com\\/b.jpeg\"}]}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<StubServer> servers = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        servers.forEach(StubServer::dispose);
+    }
+
+    @Test
+    public void testServesRecordingWithRewrittenOrigins() throws Exception {
+        HttpRecording recording = new HttpRecording();
+        recording.record("https://api.discogs.com/database/search?q=Rush&page=1&key=k&secret=s", 200,
+                "application/json", SEARCH);
+        StubServer server = start(recording);
+        server.rewriteOrigin("https://i.discogs.com", "http://images.test");
+
+        HttpResponse<String> response = get(server.getBaseUrl() + "/database/search?page=1&key=other&q=Rush");
+        assertEquals(200, response.statusCode());
+        assertEquals("application/json", response.headers().firstValue("Content-Type").orElse(null));
+        assertEquals("{\"results\": [{\"cover_image\": \"http://images.test/a/cover.jpeg\"}, {\"cover_image\": \"http:\\/\\/images.test\\/b.jpeg\"}]}",
+                response.body());
+
+        assertEquals(404, get(server.getBaseUrl() + "/database/search?q=Rush&page=2").statusCode());
+    }
+
+    @Test
+    public void testServesFallbackImagesForUnrecordedImages() throws Exception {
+        StubServer server = start(new HttpRecording());
+        byte[] first = {(byte) 0xff, (byte) 0xd8, 1};
+        byte[] second = {(byte) 0x89, 'P', 'N', 'G'};
+        server.setFallbackImages(List.of(first, second));
+
+        HttpResponse<byte[]> image = getBytes(server.getBaseUrl() + "/a/cover.jpeg");
+        assertEquals(200, image.statusCode());
+        assertArrayEquals(image.body(), getBytes(server.getBaseUrl() + "/a/cover.jpeg").body());
+        assertEquals(404, get(server.getBaseUrl() + "/a/notes.txt").statusCode());
+    }
+
+    @Test
+    public void testInjectsLatencyAndErrors() throws Exception {
+        HttpRecording recording = new HttpRecording();
+        recording.record("http://host/ok", 200, "text/plain", "ok".getBytes(StandardCharsets.UTF_8));
+        StubServer server = start(recording);
+        server.setLatency(Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        assertEquals(200, get(server.getBaseUrl() + "/ok").statusCode());
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+
+        server.setLatency(Duration.ZERO);
+        server.setErrorRate(0.5);
+        int errors = 0;
+        for (int i = 0; i < 200; i++) {
+            if (get(server.getBaseUrl() + "/ok").statusCode() == 503) {
+                errors++;
+            }
+        }
+        assertEquals(errors, server.getInjectedErrorCount());
+        assertTrue(errors > 60 && errors < 140, errors + " of 200 requests failed");
+    }
+
+    @Test
+    public void testThrottlesLikeTheDiscogsApi() throws Exception {
+        HttpRecording recording = new HttpRecording();
+        recording.record("http://host/ok", 200, "text/plain", "ok".getBytes(StandardCharsets.UTF_8));
+        StubServer server = start(recording);
+        server.setRateLimit(3, Duration.ofSeconds(2));
+
+        for (int i = 0; i < 3; i++) {
+            HttpResponse<String> response = get(server.getBaseUrl() + "/ok");
+            assertEquals(200, response.statusCode());
+            assertEquals("3", response.headers().firstValue("X-Discogs-Ratelimit").orElse(null));
+            assertEquals(Integer.toString(2 - i), response.headers().firstValue("X-Discogs-Ratelimit-Remaining").orElse(null));
+        }
+        HttpResponse<String> throttled = get(server.getBaseUrl() + "/ok");
+        assertEquals(429, throttled.statusCode());
+        int retryAfter = Integer.parseInt(throttled.headers().firstValue("Retry-After").orElseThrow());
+        assertTrue(retryAfter >= 1 && retryAfter <= 2, "Retry-After " + retryAfter);
+        assertEquals(1, server.getThrottledRequestCount());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    private StubServer start(HttpRecording recording) throws IOException {
+        StubServer server = new StubServer(recording);
+        servers.add(server);
+        return server;
+    }
+
+    private HttpResponse<String> get(String url) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<byte[]> getBytes(String url) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,155 @@
+package org.interactunes.screensaver.images;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDecoderTest {
+
+    @Test
+    public void testSubsamplesLargeImagesToTargetSize() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        byte[] jpeg = encode(createImage(1600, 1200), "jpg");
+
+        BufferedImage image = imageDecoder.decode(jpeg, 200);
+
+        // 1200 / 200 = 6, so every sixth row and column is decoded.
+        assertEquals(267, image.getWidth());
+        assertEquals(200, image.getHeight());
+    }
+
+    @Test
+    public void testDecodesSmallImagesAtFullResolution() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        BufferedImage image = imageDecoder.decode(encode(createImage(300, 250), "png"), 400);
+
+        assertEquals(300, image.getWidth());
+        assertEquals(250, image.getHeight());
+    }
+
+    @Test
+    public void testDecodesAtFullResolutionWithoutTargetSize() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        BufferedImage image = imageDecoder.decode(encode(createImage(800, 600), "jpg"), 0);
+
+        assertEquals(800, image.getWidth());
+        assertEquals(600, image.getHeight());
+    }
+
+    @Test
+    public void testReusedReadersDecodeMixedFormats() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        byte[] jpeg = encode(createImage(400, 400), "jpg");
+        byte[] png = encode(createImage(600, 600), "png");
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, imageDecoder.decode(jpeg, 200).getWidth());
+            assertEquals(200, imageDecoder.decode(png, 200).getWidth());
+        }
+    }
+
+    @Test
+    public void testInterruptedDecodeIsAbandoned() throws IOException {
+        ImageDecoder imageDecoder = new ImageDecoder();
+        byte[] jpeg = encode(createImage(400, 400), "jpg");
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> imageDecoder.decode(jpeg, 100));
+        } finally {
+            Thread.interrupted();
+        }
+        // The reader is still usable once the thread is no longer interrupted.
+        assertEquals(400, imageDecoder.decode(jpeg, 0).getWidth());
+    }
+
+    @Test
+    public void testUnsupportedFormatReturnsNull() throws IOException {
+        assertNull(new ImageDecoder().decode("<html>Not an image</html>".getBytes(), 200));
+    }
+
+    @Test
+    public void testSubsampling() {
+        assertEquals(1, ImageDecoder.getSubsampling(1000, 1000, 0));
+        assertEquals(1, ImageDecoder.getSubsampling(300, 300, 400));
+        assertEquals(2, ImageDecoder.getSubsampling(1000, 800, 400));
+        assertEquals(6, ImageDecoder.getSubsampling(1600, 1200, 200));
+    }
+
+    @Test
+    public void testClosesDecodedFiles(@TempDir Path tempDir) throws IOException {
+        Assumptions.assumeTrue(ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean);
+        UnixOperatingSystemMXBean osBean = (UnixOperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        ImageDecoder imageDecoder = new ImageDecoder();
+        Path file = tempDir.resolve("cover.jpg");
+        Files.write(file, encode(createImage(64, 64), "jpg"));
+        imageDecoder.decode(file, 32);
+
+        long before = osBean.getOpenFileDescriptorCount();
+        for (int i = 0; i < 200; i++) {
+            assertNotNull(imageDecoder.decode(file, 32));
+        }
+
+        // Some slack for descriptors opened by other threads meanwhile.
+        assertTrue(osBean.getOpenFileDescriptorCount() - before < 20,
+                "Open file descriptors went from " + before + " to " + osBean.getOpenFileDescriptorCount());
+    }
+
+    @Test
+    public void testAllocatesLessThanFullDecode() throws IOException {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        ImageDecoder imageDecoder = new ImageDecoder();
+        byte[] jpeg = encode(createImage(2400, 2400), "jpg");
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up both paths so that class loading and reader creation do not count towards the measurement.
+        for (int i = 0; i < 3; i++) {
+            imageDecoder.decode(jpeg, 300);
+            ImageIO.read(new ByteArrayInputStream(jpeg));
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        imageDecoder.decode(jpeg, 300);
+        long subsampledBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        ImageIO.read(new ByteArrayInputStream(jpeg));
+        long fullBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // Less than a raster of the image at a quarter of its width and height.
+        assertTrue(subsampledBytes < 600 * 600 * 4, "Subsampled decode allocated " + subsampledBytes + " bytes");
+        assertTrue(subsampledBytes * 4 < fullBytes, "Subsampled decode allocated " + subsampledBytes + " bytes, full decode " + fullBytes);
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.RED, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(image, format, outputStream);
+        return outputStream.toByteArray();
+    }
+}
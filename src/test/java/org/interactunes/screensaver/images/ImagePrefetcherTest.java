@@ -0,0 +1,110 @@
+package org.interactunes.screensaver.images;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImagePrefetcherTest {
+
+    private ImagePrefetcher imagePrefetcher;
+
+    @AfterEach
+    public void tearDown() {
+        if (imagePrefetcher != null) {
+            imagePrefetcher.dispose();
+        }
+    }
+
+    @Test
+    public void testBufferIsFilledUpToDepthWithScaledImages() throws InterruptedException {
+        AtomicInteger fetchCount = new AtomicInteger();
+        imagePrefetcher = new ImagePrefetcher(() -> {
+            fetchCount.incrementAndGet();
+            return new BufferedImage(64, 32, BufferedImage.TYPE_INT_RGB);
+        }, 3, 2, 16);
+        imagePrefetcher.start();
+
+        awaitSize(3);
+        Thread.sleep(100);
+        assertEquals(3, imagePrefetcher.size());
+        // Each worker may hold at most one fetched image while waiting for a free slot.
+        assertTrue(fetchCount.get() <= 5);
+
+        PrefetchedImage prefetchedImage = imagePrefetcher.poll();
+        assertNotNull(prefetchedImage);
+        assertEquals(16, prefetchedImage.scaledSize());
+        assertEquals(16, prefetchedImage.scaled().getWidth(null));
+        assertEquals(16, prefetchedImage.scaled().getHeight(null));
+        assertEquals(64, prefetchedImage.original().getWidth(null));
+
+        awaitSize(3);
+    }
+
+    @Test
+    public void testPollDoesNotBlockWhenEmpty() {
+        imagePrefetcher = new ImagePrefetcher(() -> null, 2, 1, 16);
+        imagePrefetcher.start();
+        assertNull(imagePrefetcher.poll());
+    }
+
+    @Test
+    public void testSetDepthDropsExcessImages() throws InterruptedException {
+        imagePrefetcher = new ImagePrefetcher(() -> new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), 4, 1, 4);
+        imagePrefetcher.start();
+        awaitSize(4);
+
+        imagePrefetcher.setDepth(2);
+        assertEquals(2, imagePrefetcher.size());
+        assertEquals(2, imagePrefetcher.getDepth());
+    }
+
+    @Test
+    public void testInvalidateDropsImagesOfThePreviousSource() throws InterruptedException {
+        // The width of the images tells the sources apart. The first image of the old source is held back until the
+        // source has changed, as a slow download would be.
+        AtomicInteger sourceWidth = new AtomicInteger(10);
+        CountDownLatch fetching = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        imagePrefetcher = new ImagePrefetcher(() -> {
+            int width = sourceWidth.get();
+            if (width == 10) {
+                fetching.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return new BufferedImage(width, 8, BufferedImage.TYPE_INT_RGB);
+        }, 2, 1, 4);
+        imagePrefetcher.start();
+        assertTrue(fetching.await(5, TimeUnit.SECONDS));
+
+        int generation = imagePrefetcher.getGeneration();
+        imagePrefetcher.invalidate();
+        sourceWidth.set(20);
+        release.countDown();
+        assertEquals(generation + 1, imagePrefetcher.getGeneration());
+
+        awaitSize(2);
+        for (int i = 0; i < 2; i++) {
+            assertEquals(20, imagePrefetcher.poll().original().getWidth(null));
+        }
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (imagePrefetcher.size() < size) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for the prefetch buffer to fill");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.interactunes.screensaver.images;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageScalerTest {
+
+    @Test
+    public void testDownscalesToSquare() {
+        ImageScaler imageScaler = new ImageScaler();
+        BufferedImage image = createImage(1200, 900);
+
+        BufferedImage scaled = imageScaler.getScaledImage(image, 150);
+
+        assertEquals(150, scaled.getWidth());
+        assertEquals(150, scaled.getHeight());
+    }
+
+    @Test
+    public void testUpscalesToSquare() {
+        ImageScaler imageScaler = new ImageScaler();
+        BufferedImage scaled = imageScaler.getScaledImage(createImage(100, 80), 400);
+
+        assertEquals(400, scaled.getWidth());
+        assertEquals(400, scaled.getHeight());
+    }
+
+    @Test
+    public void testRepeatedSizesAreCached() {
+        ImageScaler imageScaler = new ImageScaler();
+        BufferedImage image = createImage(600, 600);
+
+        BufferedImage first = imageScaler.getScaledImage(image, 200);
+        BufferedImage second = imageScaler.getScaledImage(image, 300);
+
+        assertSame(first, imageScaler.getScaledImage(image, 200));
+        assertSame(second, imageScaler.getScaledImage(image, 300));
+        assertNotSame(first, imageScaler.getScaledImage(createImage(600, 600), 200));
+    }
+
+    @Test
+    public void testCachedImagesOutliveTheirUsers() {
+        ImageScaler imageScaler = new ImageScaler();
+        BufferedImage image = createImage(600, 600);
+        int firstIdentity = System.identityHashCode(imageScaler.getScaledImage(image, 200));
+
+        // Nothing else refers to the scaled image, as when the grid has copied it into the pixel store.
+        System.gc();
+
+        assertEquals(firstIdentity, System.identityHashCode(imageScaler.getScaledImage(image, 200)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedImagesAreEvicted() {
+        // Room for two 100x100 images.
+        ImageScaler imageScaler = new ImageScaler(2 * 100 * 100 * Integer.BYTES);
+        BufferedImage first = createImage(300, 300);
+        BufferedImage second = createImage(300, 300);
+        BufferedImage third = createImage(300, 300);
+
+        BufferedImage firstScaled = imageScaler.getScaledImage(first, 100);
+        BufferedImage secondScaled = imageScaler.getScaledImage(second, 100);
+        assertSame(firstScaled, imageScaler.getScaledImage(first, 100));
+        imageScaler.getScaledImage(third, 100);
+
+        assertSame(firstScaled, imageScaler.getScaledImage(first, 100));
+        assertNotSame(secondScaled, imageScaler.getScaledImage(second, 100));
+    }
+
+    @Test
+    public void testCachesNothingWithoutRoom() {
+        ImageScaler imageScaler = new ImageScaler(0);
+        BufferedImage image = createImage(300, 300);
+
+        assertNotSame(imageScaler.getScaledImage(image, 100), imageScaler.getScaledImage(image, 100));
+    }
+
+    @Test
+    public void testKeepsColorOfUniformImage() {
+        ImageScaler imageScaler = new ImageScaler();
+        BufferedImage image = createImage(512, 512);
+
+        BufferedImage scaled = imageScaler.getScaledImage(image, 64);
+
+        assertEquals(Color.RED.getRGB(), scaled.getRGB(32, 32));
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,149 @@
+package org.interactunes.screensaver.images;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PixelStoreTest {
+
+    @Test
+    public void testPixelsRoundTrip() {
+        PixelStore pixelStore = new PixelStore(1024 * 1024);
+        BufferedImage image = createImage(100, 80);
+
+        StoredImage storedImage = pixelStore.store(image);
+        assertNotNull(storedImage);
+        assertEquals(100, storedImage.getWidth());
+        assertEquals(80, storedImage.getHeight());
+        BufferedImage copy = storedImage.toBufferedImage();
+        for (int y = 0; y < 80; y += 7) {
+            for (int x = 0; x < 100; x += 9) {
+                assertEquals(image.getRGB(x, y), copy.getRGB(x, y));
+            }
+        }
+
+        BufferedImage painted = new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = painted.createGraphics();
+        try {
+            storedImage.paint(graphics, 0, 0, 100, 80);
+        } finally {
+            graphics.dispose();
+        }
+        assertEquals(image.getRGB(42, 17), painted.getRGB(42, 17));
+    }
+
+    @Test
+    public void testReleasedSlabsAreReused() {
+        PixelStore pixelStore = new PixelStore(1024 * 1024);
+        StoredImage first = pixelStore.store(createImage(200, 200));
+        long reservedBytes = pixelStore.getReservedBytes();
+        assertEquals(reservedBytes, pixelStore.getUsedBytes());
+
+        first.release();
+        first.release();
+        assertTrue(first.isReleased());
+        assertNull(first.toBufferedImage());
+        assertEquals(0, pixelStore.getUsedBytes());
+
+        // An image of a slightly different size falls into the same class.
+        StoredImage second = pixelStore.store(createImage(199, 200));
+        assertNotNull(second);
+        assertEquals(reservedBytes, pixelStore.getReservedBytes());
+        assertEquals(reservedBytes, pixelStore.getUsedBytes());
+    }
+
+    @Test
+    public void testBudgetIsNeverExceeded() {
+        long budgetBytes = 1024 * 1024;
+        PixelStore pixelStore = new PixelStore(budgetBytes);
+        // 320 KB per image, so three fit into the budget.
+        StoredImage[] images = new StoredImage[4];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = pixelStore.store(createImage(256, 320));
+        }
+        assertNotNull(images[2]);
+        assertNull(images[3]);
+        assertEquals(1, pixelStore.getRejectedCount());
+        assertTrue(pixelStore.getReservedBytes() <= budgetBytes);
+
+        // Pooled slabs of another class are dropped to make room for a new class.
+        images[0].release();
+        images[1].release();
+        assertNotNull(pixelStore.store(createImage(400, 400)));
+        assertTrue(pixelStore.getReservedBytes() <= budgetBytes);
+    }
+
+    @Test
+    public void testSurfacesCountAgainstBudget() {
+        long budgetBytes = 1024 * 1024;
+        PixelStore pixelStore = new PixelStore(budgetBytes);
+        // 320 KB per slab and per surface.
+        StoredImage first = pixelStore.store(createImage(256, 320));
+        StoredImage second = pixelStore.store(createImage(256, 320));
+        long surfaceBytes = 256 * 320 * Integer.BYTES;
+
+        assertTrue(pixelStore.reserveSurface(first, surfaceBytes));
+        assertEquals(surfaceBytes, pixelStore.getSurfaceBytes());
+        // Only one of the two surfaces fits next to the slabs, and surfaces do not replace each other.
+        assertFalse(pixelStore.reserveSurface(second, surfaceBytes));
+        assertTrue(pixelStore.holdsSurface(first));
+        assertFalse(pixelStore.holdsSurface(second));
+        assertEquals(surfaceBytes, pixelStore.getSurfaceBytes());
+        assertTrue(pixelStore.getReservedBytes() + pixelStore.getSurfaceBytes() <= budgetBytes);
+
+        // A new slab takes precedence over the surfaces.
+        assertNotNull(pixelStore.store(createImage(256, 320)));
+        assertFalse(pixelStore.holdsSurface(first));
+        assertEquals(0, pixelStore.getSurfaceBytes());
+
+        // A surface larger than the whole budget never fits.
+        assertFalse(pixelStore.reserveSurface(first, budgetBytes));
+    }
+
+    @Test
+    public void testReleasingImageReleasesSurface() {
+        PixelStore pixelStore = new PixelStore(1024 * 1024);
+        StoredImage storedImage = pixelStore.store(createImage(100, 100));
+        assertTrue(pixelStore.reserveSurface(storedImage, 100 * 100 * Integer.BYTES));
+
+        storedImage.release();
+
+        assertFalse(pixelStore.holdsSurface(storedImage));
+        assertEquals(0, pixelStore.getSurfaceBytes());
+    }
+
+    @Test
+    public void testNoSurfaceWithoutAcceleration() {
+        PixelStore pixelStore = new PixelStore(1024 * 1024);
+        StoredImage storedImage = pixelStore.store(createImage(100, 100));
+        // Images are never accelerated as a destination, so the pixels are painted from the heap view.
+        Graphics2D graphics = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB).createGraphics();
+        try {
+            assertNull(pixelStore.createSurface(storedImage, graphics.getDeviceConfiguration()));
+        } finally {
+            graphics.dispose();
+        }
+        assertEquals(0, pixelStore.getSurfaceBytes());
+    }
+
+    @Test
+    public void testSlabCapacities() {
+        assertEquals(64 * 1024, PixelStore.slabCapacity(1));
+        assertEquals(1024 * 1024, PixelStore.slabCapacity(1024 * 1024));
+        assertEquals(1280 * 1024, PixelStore.slabCapacity(1024 * 1024 + 1));
+        assertEquals(2048 * 1024, PixelStore.slabCapacity(1792 * 1024 + 1));
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | (x + y) % 256);
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,244 @@
+package org.interactunes.screensaver.library;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibraryIndexTest {
+
+    private static final long EVENT_TIMEOUT_SECONDS = 20;
+
+    @TempDir
+    Path tempDir;
+
+    private final List<LibraryIndex> indexes = new ArrayList<>();
+
+    @AfterEach
+    public void tearDown() {
+        indexes.forEach(LibraryIndex::dispose);
+    }
+
+    @Test
+    public void testScansWithoutSnapshotAndSavesOne() throws Exception {
+        Path root = tempDir.resolve("library");
+        createFile(root.resolve("a.png"));
+        createFile(root.resolve("artist/album/cover.jpg"));
+        createFile(root.resolve("artist/notes.txt"));
+        Path snapshot = tempDir.resolve("albums.index");
+
+        RecordingListener listener = new RecordingListener();
+        LibraryIndex index = start(root, snapshot, listener);
+        listener.awaitLoaded();
+
+        assertEquals(Set.of("a.png", "cover.jpg"), fileNames(index.getImages()));
+        assertEquals(Set.of("added:a.png", "added:cover.jpg"), Set.copyOf(listener.drain()));
+        index.dispose();
+        awaitFile(snapshot);
+    }
+
+    @Test
+    public void testLoadsSnapshotInsteadOfScanning() throws Exception {
+        Path root = tempDir.resolve("library");
+        Path album = root.resolve("album");
+        createFile(album.resolve("a.png"));
+        Path other = root.resolve("other");
+        createFile(other.resolve("b.png"));
+        Path snapshot = tempDir.resolve("albums.index");
+
+        RecordingListener firstListener = new RecordingListener();
+        LibraryIndex first = start(root, snapshot, firstListener);
+        firstListener.awaitLoaded();
+        first.dispose();
+        awaitFile(snapshot);
+
+        // Sneak a file into a directory without changing its time; only a full scan would find it.
+        FileTime albumModified = Files.getLastModifiedTime(album);
+        createFile(album.resolve("hidden.png"));
+        Files.setLastModifiedTime(album, albumModified);
+        // A directory whose time changed is listed again.
+        createFile(other.resolve("c.png"));
+        Files.setLastModifiedTime(other, FileTime.fromMillis(Files.getLastModifiedTime(other).toMillis() + 10000));
+
+        RecordingListener listener = new RecordingListener();
+        LibraryIndex second = start(root, snapshot, listener);
+        listener.awaitLoaded();
+        List<String> events = new ArrayList<>();
+        String event;
+        do {
+            event = listener.poll();
+            events.add(event);
+        } while (event != null && !event.equals("added:c.png"));
+        assertEquals(List.of("added:a.png", "added:b.png", "added:c.png"), events.stream().sorted().toList());
+        assertEquals(Set.of("a.png", "b.png", "c.png"), fileNames(second.getImages()));
+    }
+
+    @Test
+    public void testFollowsChangesWhileRunning() throws Exception {
+        Path root = tempDir.resolve("library");
+        Path existing = root.resolve("a.png");
+        createFile(existing);
+
+        RecordingListener listener = new RecordingListener();
+        LibraryIndex index = start(root, tempDir.resolve("albums.index"), listener);
+        listener.awaitLoaded();
+        assertEquals(List.of("added:a.png"), listener.drain());
+        long stamp = index.getStamp();
+
+        // Writing the new files may also report them as changed, so only the expected events are awaited.
+        createFile(root.resolve("b.png"));
+        listener.await("added:b.png");
+        assertNotEquals(stamp, index.getStamp());
+
+        // A whole directory moved into the library.
+        Path staged = tempDir.resolve("staged");
+        createFile(staged.resolve("deep/c.png"));
+        Files.move(staged, root.resolve("moved"));
+        listener.await("added:c.png");
+
+        Files.setLastModifiedTime(existing, FileTime.fromMillis(Files.getLastModifiedTime(existing).toMillis() + 10000));
+        listener.await("changed:a.png");
+
+        Files.delete(root.resolve("moved/deep/c.png"));
+        listener.await("removed:c.png");
+        assertEquals(Set.of("a.png", "b.png"), fileNames(index.getImages()));
+    }
+
+    @Test
+    public void testRemovesOnlyTheDeletedTree() throws Exception {
+        Path root = tempDir.resolve("library");
+        Path album = root.resolve("album");
+        createFile(album.resolve("a.png"));
+        createFile(album.resolve("disc2/b.png"));
+        createFile(root.resolve("album-live/c.png"));
+        createFile(root.resolve("album-live/disc2/d.png"));
+        Path snapshot = tempDir.resolve("albums.index");
+
+        RecordingListener firstListener = new RecordingListener();
+        LibraryIndex first = start(root, snapshot, firstListener);
+        firstListener.awaitLoaded();
+        first.dispose();
+        awaitFile(snapshot);
+
+        Files.delete(album.resolve("disc2/b.png"));
+        Files.delete(album.resolve("disc2"));
+        Files.delete(album.resolve("a.png"));
+        Files.delete(album);
+
+        RecordingListener listener = new RecordingListener();
+        LibraryIndex second = start(root, snapshot, listener);
+        listener.awaitLoaded();
+        List<String> events = new ArrayList<>();
+        while (events.size() < 2) {
+            String event = listener.poll();
+            assertNotNull(event);
+            if (event.startsWith("removed:")) {
+                events.add(event);
+            }
+        }
+        assertEquals(List.of("removed:a.png", "removed:b.png"), events.stream().sorted().toList());
+        assertEquals(Set.of("c.png", "d.png"), fileNames(second.getImages()));
+    }
+
+    @Test
+    public void testStampDoesNotDependOnOrder() throws Exception {
+        Path root = tempDir.resolve("library");
+        for (int i = 0; i < 20; i++) {
+            createFile(root.resolve("album" + i + "/cover.png"));
+        }
+        RecordingListener firstListener = new RecordingListener();
+        LibraryIndex first = start(root, tempDir.resolve("first.index"), firstListener);
+        RecordingListener secondListener = new RecordingListener();
+        LibraryIndex second = start(root, tempDir.resolve("second.index"), secondListener);
+        firstListener.awaitLoaded();
+        secondListener.awaitLoaded();
+        assertEquals(first.getStamp(), second.getStamp());
+        assertNotEquals(0, first.getStamp());
+    }
+
+    private LibraryIndex start(Path root, Path snapshot, ILibraryIndexListener listener) {
+        LibraryIndex index = new LibraryIndex(List.of(new DirectoryLibrarySource(root)), snapshot, listener);
+        indexes.add(index);
+        index.start();
+        return index;
+    }
+
+    private static void awaitFile(Path file) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(EVENT_TIMEOUT_SECONDS);
+        while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(Files.exists(file), "The snapshot was not saved");
+    }
+
+    private static Set<String> fileNames(List<Path> paths) {
+        return paths.stream().map(path -> path.getFileName().toString()).collect(Collectors.toSet());
+    }
+
+    private static void createFile(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, "image");
+    }
+
+    private static class RecordingListener implements ILibraryIndexListener {
+
+        private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch loaded = new CountDownLatch(1);
+
+        @Override
+        public void imageAdded(Path image) {
+            events.add("added:" + image.getFileName());
+        }
+
+        @Override
+        public void imageRemoved(Path image) {
+            events.add("removed:" + image.getFileName());
+        }
+
+        @Override
+        public void imageChanged(Path image) {
+            events.add("changed:" + image.getFileName());
+        }
+
+        @Override
+        public void indexLoaded() {
+            loaded.countDown();
+        }
+
+        private void awaitLoaded() throws InterruptedException {
+            assertTrue(loaded.await(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS), "The index was not loaded");
+        }
+
+        private String poll() throws InterruptedException {
+            return events.poll(EVENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        private void await(String expected) throws InterruptedException {
+            String event;
+            do {
+                event = poll();
+            } while (event != null && !event.equals(expected));
+            assertEquals(expected, event);
+        }
+
+        private List<String> drain() {
+            List<String> drained = new ArrayList<>();
+            events.drainTo(drained);
+            return drained;
+        }
+    }
+}
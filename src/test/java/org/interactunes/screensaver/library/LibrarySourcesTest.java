@@ -0,0 +1,160 @@
+package org.interactunes.screensaver.library;
+
+import org.interactunes.screensaver.images.ImageDecoder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LibrarySourcesTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testDirectorySourceFindsNestedImages() throws IOException {
+        Path root = tempDir.resolve("library");
+        writeImage(root.resolve("a.png"));
+        writeImage(root.resolve("artist/album/cover.PNG"));
+        writeImage(root.resolve("artist/other.jpg"));
+        Files.writeString(root.resolve("artist/notes.txt"), "not an image");
+
+        DirectoryLibrarySource source = new DirectoryLibrarySource(root);
+        assertEquals(Set.of("a.png", "cover.PNG", "other.jpg"), fileNames(source));
+        assertEquals(Files.getLastModifiedTime(root).toMillis(), source.getLastModified());
+    }
+
+    @Test
+    public void testArchiveSourceReadsImagesWithoutExtracting() throws IOException {
+        Path archive = tempDir.resolve("library.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(zip, "covers/one.png", imageBytes());
+            writeEntry(zip, "covers/deeper/two.png", imageBytes());
+            writeEntry(zip, "readme.txt", "text".getBytes());
+        }
+
+        ArchiveLibrarySource source = new ArchiveLibrarySource(archive);
+        try {
+            assertEquals(Set.of("one.png", "two.png"), fileNames(source));
+            try (Stream<Path> images = source.streamImages()) {
+                Path image = images.findFirst().orElseThrow();
+                assertNotNull(ImageDecoder.getInstance().decode(image, 4));
+            }
+        } finally {
+            source.dispose();
+        }
+    }
+
+    @Test
+    public void testStreamIsLazy() throws IOException {
+        Path root = tempDir.resolve("library");
+        for (int i = 0; i < 50; i++) {
+            writeImage(root.resolve("folder" + i).resolve("cover.png"));
+        }
+
+        try (Stream<Path> images = new DirectoryLibrarySource(root).streamImages()) {
+            // The walk stops at the first match instead of listing the whole tree up front.
+            Optional<Path> first = images.findFirst();
+            assertTrue(first.isPresent());
+        }
+    }
+
+    @Test
+    public void testFromLocations() throws IOException {
+        Path directory = tempDir.resolve("dir");
+        writeImage(directory.resolve("a.png"));
+        Path archive = tempDir.resolve("covers.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            writeEntry(zip, "b.png", imageBytes());
+        }
+        String locations = String.join(File.pathSeparator, directory.toString(), archive.toString(),
+                tempDir.resolve("missing").toString(), "");
+
+        List<ILibrarySource> sources = LibrarySources.fromLocations(locations);
+        try {
+            assertEquals(2, sources.size());
+            assertInstanceOf(DirectoryLibrarySource.class, sources.get(0));
+            assertInstanceOf(ArchiveLibrarySource.class, sources.get(1));
+            try (Stream<Path> images = LibrarySources.concat(sources)) {
+                assertEquals(List.of("a.png", "b.png"), images.map(path -> path.getFileName().toString()).toList());
+            }
+        } finally {
+            sources.forEach(ILibrarySource::dispose);
+        }
+    }
+
+    @Test
+    public void testClasspathSourceFindsBundledAlbums() throws IOException {
+        ClasspathLibrarySource source = new ClasspathLibrarySource("images/albums", getClass().getClassLoader());
+        try (Stream<Path> images = source.streamImages()) {
+            assertTrue(images.findAny().isPresent());
+        } finally {
+            source.dispose();
+        }
+        assertThrows(IOException.class, () -> new ClasspathLibrarySource("images/missing", getClass().getClassLoader()));
+    }
+
+    @Test
+    public void testClasspathSourceReadsFromJar() throws IOException {
+        Path jar = tempDir.resolve("albums.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            // Like the JAR task, include the directory entries so that the folder resolves as a resource.
+            writeEntry(zip, "images/", new byte[0]);
+            writeEntry(zip, "images/albums/", new byte[0]);
+            writeEntry(zip, "images/albums/one.png", imageBytes());
+            writeEntry(zip, "images/albums/two.png", imageBytes());
+        }
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            ClasspathLibrarySource source = new ClasspathLibrarySource("images/albums", classLoader);
+            try {
+                assertEquals(Set.of("one.png", "two.png"), fileNames(source));
+                assertEquals(Files.getLastModifiedTime(jar).toMillis(), source.getLastModified());
+            } finally {
+                source.dispose();
+            }
+        }
+    }
+
+    private static Set<String> fileNames(ILibrarySource source) throws IOException {
+        try (Stream<Path> images = source.streamImages()) {
+            return images.map(path -> path.getFileName().toString()).collect(Collectors.toSet());
+        }
+    }
+
+    private static void writeImage(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, imageBytes());
+    }
+
+    private static byte[] imageBytes() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB), "png", outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static void writeEntry(ZipOutputStream zip, String name, byte[] bytes) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        OutputStream outputStream = zip;
+        outputStream.write(bytes);
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,287 @@
+package org.interactunes.screensaver.library;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThumbnailPackTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testRoundTripsThumbnails() throws IOException {
+        List<Path> sources = List.of(
+                writeImage("red.png", 400, 300, Color.RED),
+                writeImage("green.jpg", 200, 500, Color.GREEN),
+                writeImage("blue.png", 64, 64, Color.BLUE));
+        Path packFile = tempDir.resolve("albums.pack");
+
+        int written = new ThumbnailPackWriter(160, 80).write(packFile, sources, 42);
+
+        assertEquals(3, written);
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(3, pack.size());
+            assertEquals(42, pack.getSourceModified());
+            assertArrayEquals(new int[]{80, 160}, pack.getSizes());
+            assertEquals(sources.get(1).toString(), pack.getName(1));
+            assertEquals(Files.getLastModifiedTime(sources.get(1)).toMillis(), pack.getLastModified(1));
+
+            BufferedImage red = pack.getImage(0, 150);
+            assertEquals(160, red.getWidth());
+            assertEquals(160, red.getHeight());
+            assertColorNear(Color.RED, red.getRGB(80, 80));
+
+            BufferedImage green = pack.getImage(1, 50);
+            assertEquals(80, green.getWidth());
+            assertColorNear(Color.GREEN, green.getRGB(40, 40));
+
+            // Larger than every stored size, so the largest is used.
+            assertFalse(pack.covers(400));
+            assertTrue(pack.covers(160));
+            BufferedImage blue = pack.getImage(2, 400);
+            assertEquals(160, blue.getWidth());
+            assertColorNear(Color.BLUE, blue.getRGB(10, 150));
+        } finally {
+            pack.dispose();
+        }
+    }
+
+    @Test
+    public void testSkipsUndecodableFiles() throws IOException {
+        Path broken = tempDir.resolve("broken.jpg");
+        Files.writeString(broken, "not an image");
+        List<Path> sources = List.of(broken, writeImage("red.png", 100, 100, Color.RED));
+        Path packFile = tempDir.resolve("albums.pack");
+
+        assertEquals(1, new ThumbnailPackWriter(32).write(packFile, sources, 0));
+
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(1, pack.size());
+            assertColorNear(Color.RED, pack.getImage(0, 32).getRGB(16, 16));
+        } finally {
+            pack.dispose();
+        }
+    }
+
+    @Test
+    public void testCarriesOverUnchangedThumbnails() throws IOException {
+        Path red = writeImage("red.png", 100, 100, Color.RED);
+        Path green = writeImage("green.png", 100, 100, Color.GREEN);
+        Path packFile = tempDir.resolve("albums.pack");
+        new ThumbnailPackWriter(32).write(packFile, List.of(red, green), 1);
+
+        // Break the red file but keep its time, so it can only be in the new pack if its thumbnail is carried over.
+        FileTime redModified = Files.getLastModifiedTime(red);
+        Files.writeString(red, "not an image");
+        Files.setLastModifiedTime(red, redModified);
+        // A changed file has to be decoded again.
+        writeImage("green.png", 100, 100, Color.BLUE);
+        Files.setLastModifiedTime(green, FileTime.fromMillis(Files.getLastModifiedTime(green).toMillis() + 10000));
+        Path added = writeImage("white.png", 100, 100, Color.WHITE);
+
+        ThumbnailPack previous = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(3, new ThumbnailPackWriter(32).write(packFile, List.of(red, green, added), 2, previous));
+        } finally {
+            previous.dispose();
+        }
+
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(2, pack.getSourceModified());
+            assertColorNear(Color.RED, pack.getImage(0, 32).getRGB(16, 16));
+            assertColorNear(Color.BLUE, pack.getImage(1, 32).getRGB(16, 16));
+            assertColorNear(Color.WHITE, pack.getImage(2, 32).getRGB(16, 16));
+        } finally {
+            pack.dispose();
+        }
+    }
+
+    @Test
+    public void testUpdatesPackInPlace() throws IOException {
+        Path red = writeImage("red.png", 100, 100, Color.RED);
+        Path green = writeImage("green.png", 100, 100, Color.GREEN);
+        Path black = writeImage("black.png", 100, 100, Color.BLACK);
+        List<Path> sources = new ArrayList<>(List.of(red, green, black));
+        // Enough unchanged entries that the pack is not compacted.
+        for (int i = 0; i < 3; i++) {
+            sources.add(writeImage("gray-" + i + ".png", 100, 100, Color.GRAY));
+        }
+        Path packFile = tempDir.resolve("albums.pack");
+        new ThumbnailPackWriter(32).write(packFile, sources, 1);
+
+        // An unchanged file is neither decoded nor checked, so breaking it does not matter.
+        Files.writeString(black, "not an image");
+        writeImage("green.png", 100, 100, Color.BLUE);
+        Path added = writeImage("white.png", 100, 100, Color.WHITE);
+
+        ThumbnailPack previous = ThumbnailPack.open(packFile);
+        ThumbnailPack pack = null;
+        try {
+            long previousSize = Files.size(packFile);
+            assertEquals(6, new ThumbnailPackWriter(32).update(packFile, previous, List.of(green, added), List.of(red), 2));
+            assertTrue(Files.size(packFile) > previousSize);
+
+            pack = ThumbnailPack.open(packFile);
+            assertEquals(2, pack.getSourceModified());
+            assertEquals(6, pack.size());
+            assertEquals(-1, indexOf(pack, red));
+            assertEquals(previous.getOffset(indexOf(previous, black)), pack.getOffset(indexOf(pack, black)));
+            assertColorNear(Color.BLACK, pack.getImage(indexOf(pack, black), 32).getRGB(16, 16));
+            assertColorNear(Color.BLUE, pack.getImage(indexOf(pack, green), 32).getRGB(16, 16));
+            assertColorNear(Color.WHITE, pack.getImage(indexOf(pack, added), 32).getRGB(16, 16));
+
+            // The previous state stays readable until it is closed.
+            assertColorNear(Color.GREEN, previous.getImage(indexOf(previous, green), 32).getRGB(16, 16));
+        } finally {
+            previous.dispose();
+            if (pack != null) {
+                pack.dispose();
+            }
+        }
+    }
+
+    @Test
+    public void testCompactsStalePack() throws IOException {
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sources.add(writeImage("cover-" + i + ".png", 100, 100, new Color(i * 60, 0, 0)));
+        }
+        Path packFile = tempDir.resolve("albums.pack");
+        new ThumbnailPackWriter(32).write(packFile, sources, 1);
+        long fullSize = Files.size(packFile);
+
+        ThumbnailPack previous = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(1, new ThumbnailPackWriter(32).update(packFile, previous, List.of(), sources.subList(0, 3), 2));
+        } finally {
+            previous.dispose();
+        }
+
+        assertTrue(Files.size(packFile) < fullSize);
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(1, pack.size());
+            assertEquals(sources.get(3).toString(), pack.getName(0));
+            assertColorNear(new Color(180, 0, 0), pack.getImage(0, 32).getRGB(16, 16));
+        } finally {
+            pack.dispose();
+        }
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+
+    @Test
+    public void testLeavesOutImagesBeyondMaximumSize() throws IOException {
+        // Each entry takes 16*16*3 = 768 bytes, so two entries fit into 2000 bytes after the header.
+        List<Path> sources = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            sources.add(writeImage("cover-" + i + ".png", 40, 40, new Color(i * 60, 0, 0)));
+        }
+        Path packFile = tempDir.resolve("albums.pack");
+
+        assertEquals(2, new ThumbnailPackWriter(new int[]{16}, 2000).write(packFile, sources, 0));
+
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(2, pack.size());
+            assertEquals(0, pack.indexOf(sources.get(0).toString()));
+            assertEquals(-1, pack.indexOf(sources.get(2).toString()));
+            assertColorNear(new Color(60, 0, 0), pack.getImage(1, 16).getRGB(8, 8));
+        } finally {
+            pack.dispose();
+        }
+    }
+
+    @Test
+    public void testEntriesDoNotCrossSegments() throws IOException {
+        // Each entry takes 8*8*3 + 16*16*3 = 960 bytes, so only two fit into a 2000 byte segment.
+        List<Path> sources = new ArrayList<>();
+        List<Color> colors = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Color color = new Color(i * 20, 255 - i * 20, (i * 70) % 256);
+            colors.add(color);
+            sources.add(writeImage("cover-" + i + ".png", 40, 40, color));
+        }
+        Path packFile = tempDir.resolve("albums.pack");
+
+        new ThumbnailPackWriter(new int[]{8, 16}, 2000, Long.MAX_VALUE).write(packFile, sources, 0);
+
+        ThumbnailPack pack = ThumbnailPack.open(packFile, 2000);
+        try {
+            assertEquals(12, pack.size());
+            for (int i = 0; i < 12; i++) {
+                assertColorNear(colors.get(i), pack.getImage(i, 16).getRGB(8, 8));
+                assertColorNear(colors.get(i), pack.getImage(i, 8).getRGB(4, 4));
+            }
+        } finally {
+            pack.dispose();
+        }
+    }
+
+    @Test
+    public void testRejectsInvalidPacks() throws IOException {
+        Path packFile = tempDir.resolve("invalid.pack");
+        Files.write(packFile, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThrows(IOException.class, () -> ThumbnailPack.open(packFile));
+
+        Files.write(packFile, new byte[0]);
+        assertThrows(IOException.class, () -> ThumbnailPack.open(packFile));
+    }
+
+    @Test
+    public void testReplacesExistingPack() throws IOException {
+        Path packFile = tempDir.resolve("albums.pack");
+        new ThumbnailPackWriter(16).write(packFile, List.of(writeImage("a.png", 20, 20, Color.RED)), 1);
+        new ThumbnailPackWriter(16).write(packFile, List.of(writeImage("b.png", 20, 20, Color.BLUE),
+                writeImage("c.png", 20, 20, Color.GREEN)), 2);
+
+        ThumbnailPack pack = ThumbnailPack.open(packFile);
+        try {
+            assertEquals(2, pack.size());
+            assertEquals(2, pack.getSourceModified());
+        } finally {
+            pack.dispose();
+        }
+        try (var files = Files.list(tempDir)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+
+    private Path writeImage(String name, int width, int height, Color color) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        Path file = tempDir.resolve(name);
+        ImageIO.write(image, name.endsWith(".png") ? "png" : "jpg", file.toFile());
+        return file;
+    }
+
+    private static int indexOf(ThumbnailPack pack, Path source) {
+        return pack.indexOf(source.toString());
+    }
+
+    private static void assertColorNear(Color expected, int actualRgb) {
+        Color actual = new Color(actualRgb);
+        int distance = Math.abs(expected.getRed() - actual.getRed()) + Math.abs(expected.getGreen() - actual.getGreen()) +
+                Math.abs(expected.getBlue() - actual.getBlue());
+        assertTrue(distance < 30, "Expected " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,166 @@
+package org.interactunes.screensaver.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncLogHandlerTest {
+
+    private static final Pattern DROP_REPORT = Pattern.compile("Dropped (\\d+) log records, the log queue was full\\.");
+
+    @Test
+    public void testPassesRecordsOnInBatches() {
+        AsyncLogHandler handler = new AsyncLogHandler(1024, Duration.ofSeconds(10));
+        LogRingBuffer ring = new LogRingBuffer(1024);
+        AtomicInteger flushes = new AtomicInteger();
+        handler.addTarget(new RingBufferHandler(ring, flushes::incrementAndGet));
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        try {
+            for (int i = 0; i < 500; i++) {
+                logger.log(Level.INFO, "Event {0}", i);
+            }
+        } finally {
+            handler.close();
+        }
+
+        assertEquals(500, ring.getNextSequence());
+        for (int i = 0; i < 500; i++) {
+            assertEquals("Event " + i, ring.get(i).message());
+        }
+        assertTrue(flushes.get() < 500, "Flushed " + flushes.get() + " times");
+    }
+
+    @Test
+    public void testSummarizesRepeatedWarnings() {
+        AsyncLogHandler handler = new AsyncLogHandler(1024, Duration.ofSeconds(10));
+        CollectingHandler target = new CollectingHandler(null);
+        handler.addTarget(target);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                logger.log(Level.WARNING, "Falling back to other service.");
+                logger.log(Level.INFO, "Loaded album images.");
+            }
+            logger.log(Level.WARNING, "Another failure.");
+        } finally {
+            handler.close();
+        }
+
+        List<String> warnings = new ArrayList<>();
+        int infos = 0;
+        for (LogRecord record : target.getRecords()) {
+            if (record.getLevel() == Level.WARNING) {
+                warnings.add(record.getMessage());
+            } else {
+                infos++;
+            }
+        }
+        // Only warnings and errors are rate limited.
+        assertEquals(1000, infos);
+        assertEquals(List.of("Falling back to other service.", "Another failure.",
+                "Falling back to other service. (repeated 999 more times within 10s)"), warnings);
+        assertEquals(999, handler.getSuppressedCount());
+    }
+
+    @Test
+    public void testRepeatsAreLoggedAgainOnceTheWindowHasPassed() {
+        LogRateLimiter rateLimiter = new LogRateLimiter(100, 16);
+        LogRecord record = new LogRecord(Level.SEVERE, "Failed to get album cover art.");
+
+        assertTrue(rateLimiter.tryAcquire(record, 1000));
+        assertFalse(rateLimiter.tryAcquire(record, 1050));
+        assertFalse(rateLimiter.tryAcquire(record, 1099));
+        assertNull(rateLimiter.pollSummary());
+        assertTrue(rateLimiter.tryAcquire(record, 1100));
+        assertEquals("Failed to get album cover art. (repeated 2 more times within 100ms)",
+                rateLimiter.pollSummary().getMessage());
+
+        // A window without repeats passes without a summary.
+        rateLimiter.sweep(1200);
+        assertNull(rateLimiter.pollSummary());
+        assertTrue(rateLimiter.tryAcquire(record, 1200));
+    }
+
+    @Test
+    public void testDropsRecordsInsteadOfBlocking() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AsyncLogHandler handler = new AsyncLogHandler(16, Duration.ofSeconds(10));
+        CollectingHandler target = new CollectingHandler(release);
+        handler.addTarget(target);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000; i++) {
+                handler.publish(new LogRecord(Level.INFO, "Event " + i));
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+            assertTrue(handler.getDroppedCount() > 0);
+        } finally {
+            release.countDown();
+            handler.close();
+        }
+
+        long delivered = 0;
+        long reportedDrops = 0;
+        for (LogRecord record : target.getRecords()) {
+            Matcher matcher = DROP_REPORT.matcher(record.getMessage());
+            if (matcher.matches()) {
+                reportedDrops += Long.parseLong(matcher.group(1));
+            } else {
+                delivered++;
+            }
+        }
+        assertEquals(handler.getDroppedCount(), reportedDrops);
+        assertEquals(1000, delivered + reportedDrops);
+    }
+
+    private static class CollectingHandler extends Handler {
+
+        private final List<LogRecord> records = new ArrayList<>();
+        private final CountDownLatch release;
+
+        private CollectingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            records.add(record);
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private synchronized List<LogRecord> getRecords() {
+            return new ArrayList<>(records);
+        }
+    }
+}
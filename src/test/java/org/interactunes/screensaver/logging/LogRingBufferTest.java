@@ -0,0 +1,101 @@
+package org.interactunes.screensaver.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogRingBufferTest {
+
+    @Test
+    public void testRoundsCapacityUpToPowerOfTwo() {
+        assertEquals(1, new LogRingBuffer(1).getCapacity());
+        assertEquals(16, new LogRingBuffer(16).getCapacity());
+        assertEquals(32, new LogRingBuffer(17).getCapacity());
+        assertThrows(IllegalArgumentException.class, () -> new LogRingBuffer(0));
+    }
+
+    @Test
+    public void testOverwritesOldestEvents() {
+        LogRingBuffer ring = new LogRingBuffer(4);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, ring.append(Level.INFO, "test", "event " + i).sequence());
+        }
+        assertEquals(10, ring.getNextSequence());
+        for (int i = 0; i < 6; i++) {
+            assertNull(ring.get(i), "Event " + i + " should have been overwritten");
+        }
+        for (int i = 6; i < 10; i++) {
+            assertEquals("event " + i, ring.get(i).message());
+        }
+        assertNull(ring.get(10));
+    }
+
+    @Test
+    public void testConcurrentAppendsAreNotLost() throws Exception {
+        int producers = 8;
+        int eventsPerProducer = 10_000;
+        LogRingBuffer ring = new LogRingBuffer(producers * eventsPerProducer);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch startLine = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[producers];
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                futures[p] = executor.submit(() -> {
+                    startLine.await();
+                    for (int i = 0; i < eventsPerProducer; i++) {
+                        ring.append(Level.FINE, "producer", producer + ":" + i);
+                    }
+                    return null;
+                });
+            }
+            startLine.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<String> messages = new HashSet<>();
+        for (long sequence = 0; sequence < ring.getNextSequence(); sequence++) {
+            LogEvent event = ring.get(sequence);
+            assertNotNull(event, "Missing event " + sequence);
+            assertEquals(sequence, event.sequence());
+            messages.add(event.message());
+        }
+        assertEquals(producers * eventsPerProducer, messages.size());
+    }
+
+    @Test
+    public void testAppendCostDoesNotGrowWithCapacity() {
+        LogRingBuffer small = new LogRingBuffer(16);
+        LogRingBuffer large = new LogRingBuffer(1 << 20);
+        int events = 2_000_000;
+        // Warm up both so that compilation does not count towards the measurement.
+        appendAll(small, events);
+        appendAll(large, events);
+
+        long smallNanos = appendAll(small, events);
+        long largeNanos = appendAll(large, events);
+        // The large ring touches more memory, but nothing scales with the capacity like removing from a list does.
+        assertTrue(largeNanos < smallNanos * 10, "Large ring took " + largeNanos + "ns, small ring " + smallNanos + "ns");
+    }
+
+    private static long appendAll(LogRingBuffer ring, int events) {
+        long start = System.nanoTime();
+        for (int i = 0; i < events; i++) {
+            ring.append(0, Level.INFO, null, "message");
+        }
+        return System.nanoTime() - start;
+    }
+}
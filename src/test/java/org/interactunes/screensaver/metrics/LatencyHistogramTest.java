@@ -0,0 +1,92 @@
+package org.interactunes.screensaver.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsKeepRelativePrecision() {
+        long[] values = {0, 1, 63, 64, 65, 127, 128, 1000, 123_456, 5_000_000_000L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        int previousIndex = -1;
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(index >= previousIndex, "Buckets must grow with the value");
+            previousIndex = index;
+            long midpoint = LatencyHistogram.bucketMidpoint(index);
+            assertTrue(Math.abs(midpoint - value) <= value / 32.0, value + " was bucketed as " + midpoint);
+        }
+        // Values below 64 are exact.
+        for (int value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.bucketMidpoint(LatencyHistogram.bucketIndex(value)));
+        }
+    }
+
+    @Test
+    public void testPercentilesMatchSortedValues() {
+        SplittableRandom random = new SplittableRandom(11);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish latencies between roughly 100us and 1s.
+            values[i] = (long) Math.exp(random.nextDouble(Math.log(100_000), Math.log(1_000_000_000)));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMaxNanos());
+        assertEquals(Arrays.stream(values).average().orElseThrow(), histogram.getMeanNanos(), 1);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long actual = histogram.getPercentileNanos(percentile);
+            assertEquals(expected, actual, expected / 32.0, "p" + percentile);
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(99));
+        histogram.record(-5);
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(1, histogram.getCount());
+    }
+
+    @Test
+    public void testConcurrentRecordsAreNotLost() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        int recordsPerThread = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                long value = (t + 1) * 1000L;
+                futures[t] = executor.submit(() -> {
+                    for (int i = 0; i < recordsPerThread; i++) {
+                        histogram.record(value);
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals((long) threads * recordsPerThread, histogram.getCount());
+        assertEquals(threads * 1000L, histogram.getMaxNanos());
+        assertEquals(4500, histogram.getMeanNanos(), 1e-6);
+    }
+}
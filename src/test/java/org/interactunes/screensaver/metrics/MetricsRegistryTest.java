@@ -0,0 +1,94 @@
+package org.interactunes.screensaver.metrics;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsRegistryTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testSnapshotContainsEveryMetric() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("b.counter").add(3);
+        assertSame(registry.counter("b.counter"), registry.counter("b.counter"));
+        registry.gauge("c.gauge", () -> 1.5);
+        registry.gauge("d.broken", () -> {
+            throw new IllegalStateException();
+        });
+        LatencyHistogram histogram = registry.histogram("a.histogram");
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(4));
+
+        List<MetricSample> samples = registry.snapshot();
+        assertEquals(List.of("a.histogram", "b.counter", "c.gauge", "d.broken"),
+                samples.stream().map(MetricSample::name).toList());
+        MetricSample histogramSample = samples.get(0);
+        assertEquals(MetricSample.MetricType.HISTOGRAM, histogramSample.type());
+        assertEquals(2, histogramSample.get("count"));
+        assertEquals(3, histogramSample.get("mean"), 1e-9);
+        assertEquals(4, histogramSample.get("max"), 1e-9);
+        assertEquals(2, histogramSample.get("p50"), 2 / 32.0);
+        assertEquals(3, samples.get(1).get("count"));
+        assertEquals(1.5, samples.get(2).get("value"));
+        assertTrue(Double.isNaN(samples.get(3).get("value")));
+    }
+
+    @Test
+    public void testWritesSnapshotFile() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("cache.misses").increment();
+        registry.gauge("broken", () -> Double.NaN);
+        Path file = tempDir.resolve("metrics/snapshot.json");
+        MetricsSnapshotWriter writer = new MetricsSnapshotWriter(registry, file, Duration.ofMillis(50));
+        try {
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            writer.dispose();
+        }
+
+        JSONObject snapshot = new JSONObject(Files.readString(file));
+        assertTrue(snapshot.has("timestamp"));
+        JSONObject misses = snapshot.getJSONObject("metrics").getJSONObject("cache.misses");
+        assertEquals("counter", misses.getString("type"));
+        assertEquals(1, misses.getDouble("count"));
+        assertFalse(snapshot.getJSONObject("metrics").getJSONObject("broken").has("value"));
+        assertFalse(Files.exists(tempDir.resolve("metrics/snapshot.json.tmp")));
+    }
+
+    @Test
+    public void testExposesMetricsAsMBeanAttributes() throws Exception {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.registerMBean();
+        registry.registerMBean();
+        registry.counter("test.mbean.counter").add(7);
+        registry.histogram("test.mbean.histogram").record(TimeUnit.MILLISECONDS.toNanos(10));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MetricsRegistry.MBEAN_NAME);
+        assertEquals(7.0, server.getAttribute(name, "test.mbean.counter.count"));
+        assertEquals(10.0, (Double) server.getAttribute(name, "test.mbean.histogram.max"), 1e-9);
+        List<String> attributes = Arrays.stream(server.getMBeanInfo(name).getAttributes())
+                .map(MBeanAttributeInfo::getName)
+                .toList();
+        assertTrue(attributes.contains("test.mbean.histogram.p99"));
+    }
+}
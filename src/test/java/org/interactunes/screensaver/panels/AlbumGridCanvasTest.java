@@ -0,0 +1,49 @@
+package org.interactunes.screensaver.panels;
+
+import org.interactunes.screensaver.images.PrefetchedImage;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AlbumGridCanvasTest {
+
+    @Test
+    public void testChangingRowCountKeepsCells() {
+        AlbumGridCanvas canvas = new AlbumGridCanvas(2);
+        List<Image> images = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            images.add(createImage(Color.RED));
+        }
+        List<IAlbumCell> cells = canvas.setImages(images, 2, 32);
+
+        List<PrefetchedImage> addedImages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            addedImages.add(new PrefetchedImage(createImage(Color.BLUE), null, 0));
+        }
+        List<IAlbumCell> grownCells = canvas.setRowCount(3, addedImages, 20);
+
+        assertEquals(9, grownCells.size());
+        assertEquals(cells, grownCells.subList(0, 4));
+        assertSame(addedImages.get(4).original(), grownCells.get(8).getImage());
+        assertEquals(20, grownCells.get(8).getImageSize());
+
+        List<IAlbumCell> shrunkCells = canvas.setRowCount(1, List.of(), 60);
+
+        assertEquals(List.of(cells.get(0)), shrunkCells);
+        assertEquals(32, shrunkCells.get(0).getImageSize());
+    }
+
+    private static BufferedImage createImage(Color color) {
+        BufferedImage image = new BufferedImage(40, 40, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, 40, 40);
+        graphics.dispose();
+        return image;
+    }
+}
@@ -1,30 +1,204 @@
 package org.interactunes.screensaver.services;
 
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.http.HostStats;
+import org.interactunes.screensaver.http.HttpRecording;
+import org.interactunes.screensaver.http.HttpTransport;
+import org.interactunes.screensaver.http.RequestScheduler;
+import org.interactunes.screensaver.http.StubServer;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
+/**
+ * Runs the service against a stub of the search API, which replays a recorded search response, and a stub of the
+ * image host, which serves the bundled covers.
+ */
 public class DiscogsAlbumCoverArtServiceTest {
 
+    private static final String SEARCH_RESPONSE = "/discogs/search-response.json";
+    private static final String IMAGE_ORIGIN = "https://i.discogs.com";
+    private static final List<String> QUERIES = List.of("PinkFloyd", "LedZeppelin", "Rush", "TheBeatles");
+    private static final List<String> COVERS = List.of("/images/albums/Coldplay - Parachutes.jpeg",
+            "/images/albums/2Pac - Greatest hits.jpeg", "/images/albums/Caligula's Horse - Bloom.jpeg");
+
+    @TempDir
+    Path cacheDirectory;
+
+    private StubServer apiServer;
+    private StubServer imageServer;
     private DiscogsAlbumCoverArtService albumCoverArtService;
 
     @BeforeEach
-    public void setUp() {
-        albumCoverArtService = new DiscogsAlbumCoverArtService();
+    public void setUp() throws IOException {
+        HttpRecording searches = new HttpRecording();
+        byte[] searchResponse = readResource(SEARCH_RESPONSE);
+        for (String query : QUERIES) {
+            searches.record("https://api.discogs.com/database/search?q=" + query + "&per_page=400&page=1", 200,
+                    "application/json", searchResponse);
+        }
+        apiServer = new StubServer(searches);
+        imageServer = new StubServer(new HttpRecording());
+        List<byte[]> covers = new ArrayList<>();
+        for (String cover : COVERS) {
+            covers.add(readResource(cover));
+        }
+        imageServer.setFallbackImages(covers);
+        apiServer.rewriteOrigin(IMAGE_ORIGIN, imageServer.getBaseUrl());
+
+        // The stub ports change with every run, so the real cache would only fill up with covers that never come up again.
+        CoverArtCache coverArtCache = new CoverArtCache(cacheDirectory, 64L * 1024 * 1024, 64L * 1024 * 1024);
+        albumCoverArtService = new DiscogsAlbumCoverArtService(apiServer.getBaseUrl(), coverArtCache);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        // The transport is shared by the whole JVM, so the schedulers of the stub hosts must not outlive the test.
+        HttpTransport.getInstance().removeScheduler(HostStats.hostOf(apiServer.getBaseUrl()));
+        HttpTransport.getInstance().removeScheduler(HostStats.hostOf(imageServer.getBaseUrl()));
+        apiServer.dispose();
+        imageServer.dispose();
     }
 
     @Test
     public void testGetAlbumCoverArt() {
-        List<String> queries = List.of("PinkFloyd", "LedZeppelin", "Rush", "TheBeatles");
-        queries.forEach(query -> {
+        QUERIES.forEach(query -> {
             albumCoverArtService.setSearchQuery(query);
+            awaitQueuedUrls(5);
             List<Image> coverArt = albumCoverArtService.getAlbumCoverArt(5);
             assertEquals(5, coverArt.size());
         });
     }
 
+    @Test
+    public void testGridRefreshThroughputWithLatency() {
+        // A 4x4 grid refreshed over image requests that each take 50-100ms. The downloads run in parallel, so a refresh
+        // takes a few round trips rather than one per cell.
+        int cells = 16;
+        int refreshes = 5;
+        imageServer.setLatency(Duration.ofMillis(50));
+        imageServer.setLatencyJitter(Duration.ofMillis(50));
+        albumCoverArtService.setSearchQuery(QUERIES.get(0));
+
+        List<Long> refreshMillis = new ArrayList<>();
+        for (int i = 0; i < refreshes; i++) {
+            awaitQueuedUrls(cells);
+            long start = System.nanoTime();
+            List<Image> coverArt = albumCoverArtService.getAlbumCoverArt(cells);
+            refreshMillis.add((System.nanoTime() - start) / 1_000_000);
+            assertEquals(cells, coverArt.size());
+        }
+
+        long slowest = refreshMillis.stream().mapToLong(Long::longValue).max().orElseThrow();
+        assertTrue(slowest < cells * 50, "The refreshes took " + refreshMillis + "ms");
+        assertTrue(imageServer.getRequestCount() >= cells * refreshes);
+    }
+
+    @Test
+    public void testRecoversFromServerErrors() {
+        // The search API fails almost a third of the requests, so the scheduler has to back off and retry.
+        apiServer.setErrorRate(0.3);
+        apiServer.setSeed(7);
+        for (String query : QUERIES) {
+            albumCoverArtService.setSearchQuery(query);
+            awaitQueuedUrls(5);
+            assertEquals(5, albumCoverArtService.getAlbumCoverArt(5).size(), "No covers for " + query);
+        }
+        // Every query was served despite the failures, so the failed requests must have been retried.
+        assertTrue(apiServer.getInjectedErrorCount() > 0);
+        assertTrue(apiServer.getRequestCount() > apiServer.getInjectedErrorCount());
+    }
+
+    @Test
+    public void testQueryChangeAbortsDownloadsOfThePreviousQuery() throws Exception {
+        albumCoverArtService.setSearchQuery(QUERIES.get(0));
+        awaitQueuedUrls(5);
+        imageServer.setLatency(Duration.ofSeconds(5));
+
+        long start = System.nanoTime();
+        CompletableFuture<List<Image>> staleCovers =
+                CompletableFuture.supplyAsync(() -> albumCoverArtService.getAlbumCoverArt(5));
+        Thread.sleep(200);
+        int generation = albumCoverArtService.getGeneration();
+        albumCoverArtService.setSearchQuery(QUERIES.get(1));
+
+        // The downloads are abandoned instead of waited for, and their covers are not handed out.
+        assertTrue(staleCovers.get(2, TimeUnit.SECONDS).isEmpty());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 2000, "The stale downloads took " + elapsedMillis + "ms");
+        assertEquals(generation + 1, albumCoverArtService.getGeneration());
+    }
+
+    @Test
+    public void testQueryChangeAbortsScheduledDownloads() throws Exception {
+        // The real image host is paced by a scheduler, so the downloads go through one here as well.
+        String imageHost = HostStats.hostOf(imageServer.getBaseUrl());
+        RequestScheduler scheduler = HttpTransport.getInstance().addScheduler(imageHost,
+                () -> new RequestScheduler(imageHost, 100, 10, 0, Duration.ofMillis(50), Duration.ofMillis(200)));
+        albumCoverArtService.setSearchQuery(QUERIES.get(0));
+        awaitQueuedUrls(5);
+        imageServer.setLatency(Duration.ofSeconds(5));
+
+        CompletableFuture<List<Image>> staleCovers =
+                CompletableFuture.supplyAsync(() -> albumCoverArtService.getAlbumCoverArt(5));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getInFlightCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(scheduler.getInFlightCount() > 0, "No download was sent");
+        albumCoverArtService.setSearchQuery(QUERIES.get(1));
+
+        // The requests already sent are aborted rather than answered seconds later.
+        assertTrue(staleCovers.get(2, TimeUnit.SECONDS).isEmpty());
+        deadline = System.currentTimeMillis() + 1000;
+        while (scheduler.getInFlightCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void testStartsOverWhenThePagesRunOut() {
+        // The response reports 25 pages, but only the first one is recorded, so the second one is not found.
+        albumCoverArtService.setSearchQuery(QUERIES.get(0));
+        awaitQueuedUrls(5);
+        List<String> firstPass = albumCoverArtService.getAlbumCoverArtUrls(Integer.MAX_VALUE);
+        assertFalse(firstPass.isEmpty());
+
+        // Draining the queue starts a refill, which starts over at the first page instead of searching past the end.
+        awaitQueuedUrls(firstPass.size());
+        assertEquals(firstPass.size(), albumCoverArtService.getQueuedUrlCount());
+    }
+
+    private void awaitQueuedUrls(int count) {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (albumCoverArtService.getQueuedUrlCount() < count && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = DiscogsAlbumCoverArtServiceTest.class.getResourceAsStream(name)) {
+            assertNotNull(inputStream, "Missing test resource " + name);
+            return inputStream.readAllBytes();
+        }
+    }
 }
@@ -0,0 +1,144 @@
+package org.interactunes.screensaver.services;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiscogsSearchResponseReaderTest {
+
+    private static final String SEARCH_RESPONSE = "/discogs/search-response.json";
+    private static final String EDGE_CASES_RESPONSE = "/discogs/search-response-edge-cases.json";
+
+    @Test
+    public void testMatchesTreeParserOnRecordedResponse() throws IOException {
+        byte[] response = readResource(SEARCH_RESPONSE);
+
+        List<String> streamed = DiscogsSearchResponseReader.readCoverImageUrls(new ByteArrayInputStream(response));
+        List<String> parsed = readCoverImageUrlsWithTreeParser(new ByteArrayInputStream(response));
+
+        assertFalse(streamed.isEmpty());
+        assertEquals(parsed, streamed);
+    }
+
+    @Test
+    public void testMatchesTreeParserOnEdgeCases() throws IOException {
+        byte[] response = readResource(EDGE_CASES_RESPONSE);
+
+        List<String> streamed = DiscogsSearchResponseReader.readCoverImageUrls(new ByteArrayInputStream(response));
+
+        assertEquals(List.of(
+                "https://i.discogs.com/escaped/slashes.jpeg",
+                "https://i.discogs.com/caf\u00e9.jpeg",
+                "https://i.discogs.com/nested-sibling.jpeg",
+                "https://i.discogs.com/last.jpeg"), streamed);
+        assertEquals(readCoverImageUrlsWithTreeParser(new ByteArrayInputStream(response)), streamed);
+    }
+
+    @Test
+    public void testReadsPageCount() throws IOException {
+        assertEquals(25, DiscogsSearchResponseReader.readPage(new ByteArrayInputStream(readResource(SEARCH_RESPONSE))).pageCount());
+        assertEquals(1, DiscogsSearchResponseReader.readPage(new ByteArrayInputStream(readResource(EDGE_CASES_RESPONSE))).pageCount());
+
+        // The pagination may come after the results and carry other numeric members.
+        DiscogsSearchPage page = DiscogsSearchResponseReader.readPage(toStream(
+                "{\"results\": [{\"cover_image\": \"a\"}], \"pagination\": {\"per_page\": 1e2, \"pages\": 7, \"items\": 700}}"));
+        assertEquals(List.of("a"), page.coverImageUrls());
+        assertEquals(7, page.pageCount());
+    }
+
+    @Test
+    public void testMissingPaginationReturnsUnknownPageCount() throws IOException {
+        DiscogsSearchPage page = DiscogsSearchResponseReader.readPage(toStream("{\"results\": [], \"pagination\": {\"pages\": null}}"));
+        assertEquals(DiscogsSearchPage.UNKNOWN_PAGE_COUNT, page.pageCount());
+        assertEquals(DiscogsSearchPage.UNKNOWN_PAGE_COUNT, DiscogsSearchResponseReader.readPage(toStream("{}")).pageCount());
+    }
+
+    @Test
+    public void testMissingResultsReturnsEmptyList() throws IOException {
+        String response = "{\"pagination\": {\"page\": 1}, \"message\": \"nothing here\"}";
+        assertTrue(DiscogsSearchResponseReader.readCoverImageUrls(toStream(response)).isEmpty());
+    }
+
+    @Test
+    public void testMalformedResponseThrows() {
+        assertThrows(IOException.class, () -> DiscogsSearchResponseReader.readCoverImageUrls(toStream("{\"results\": [{\"cover_image\": \"x\"")));
+        assertThrows(IOException.class, () -> DiscogsSearchResponseReader.readCoverImageUrls(toStream("<html>Too Many Requests</html>")));
+        assertThrows(IOException.class, () -> DiscogsSearchResponseReader.readCoverImageUrls(toStream("")));
+    }
+
+    @Test
+    public void testAllocatesLessThanTreeParser() throws IOException {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        byte[] response = readResource(SEARCH_RESPONSE);
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up both parsers so that class loading does not count towards the measurement.
+        for (int i = 0; i < 5; i++) {
+            DiscogsSearchResponseReader.readCoverImageUrls(new ByteArrayInputStream(response));
+            readCoverImageUrlsWithTreeParser(new ByteArrayInputStream(response));
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        DiscogsSearchResponseReader.readCoverImageUrls(new ByteArrayInputStream(response));
+        long streamedBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        before = threadBean.getThreadAllocatedBytes(threadId);
+        readCoverImageUrlsWithTreeParser(new ByteArrayInputStream(response));
+        long parsedBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // The urls are the only thing kept, so the reader allocates less than the response itself.
+        assertTrue(streamedBytes < response.length, "Streaming allocated " + streamedBytes + " bytes for a " +
+                response.length + " byte response");
+        assertTrue(streamedBytes * 4 < parsedBytes, "Streaming allocated " + streamedBytes + " bytes, tree parser " + parsedBytes);
+    }
+
+    /**
+     * The extraction the service used before streaming: read the whole body, build the JSON tree, convert the results to
+     * maps and pick the cover image.
+     */
+    private static List<String> readCoverImageUrlsWithTreeParser(InputStream inputStream) {
+        Scanner scanner = new Scanner(inputStream, StandardCharsets.UTF_8).useDelimiter("\\A");
+        String jsonResponse = scanner.hasNext() ? scanner.next() : "";
+
+        JSONObject jsonObject = new JSONObject(jsonResponse);
+        JSONArray results = jsonObject.optJSONArray("results");
+        List<String> urls = new ArrayList<>();
+        if (results == null) {
+            return urls;
+        }
+        for (Object releaseObj : results.toList()) {
+            if (releaseObj instanceof Map<?, ?> release && release.get("cover_image") instanceof String imageUrl &&
+                    !imageUrl.isBlank()) {
+                urls.add(imageUrl);
+            }
+        }
+        return urls;
+    }
+
+    private static InputStream toStream(String response) {
+        return new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readResource(String name) throws IOException {
+        try (InputStream inputStream = DiscogsSearchResponseReaderTest.class.getResourceAsStream(name)) {
+            assertNotNull(inputStream, "Missing test resource " + name);
+            return inputStream.readAllBytes();
+        }
+    }
+}
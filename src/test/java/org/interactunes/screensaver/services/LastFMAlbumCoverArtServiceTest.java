@@ -0,0 +1,105 @@
+package org.interactunes.screensaver.services;
+
+import org.interactunes.screensaver.cache.CoverArtCache;
+import org.interactunes.screensaver.http.HostStats;
+import org.interactunes.screensaver.http.HttpRecording;
+import org.interactunes.screensaver.http.HttpTransport;
+import org.interactunes.screensaver.http.StubServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the service against a stub of the search API, which answers with albums of which every other one has no cover,
+ * and a stub of the image host, which serves a bundled cover.
+ */
+public class LastFMAlbumCoverArtServiceTest {
+
+    private static final String IMAGE_ORIGIN = "https://lastfm.freetls.fastly.net";
+    private static final String QUERY = "Parachutes";
+    private static final String COVER = "/images/albums/Coldplay - Parachutes.jpeg";
+    private static final int ALBUM_COUNT = 10;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private StubServer apiServer;
+    private StubServer imageServer;
+    private LastFMAlbumCoverArtService albumCoverArtService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        HttpRecording searches = new HttpRecording();
+        searches.record("https://ws.audioscrobbler.com/2.0/?method=album.search&album=" + QUERY + "&format=json", 200,
+                "application/json", createSearchResponse().getBytes(StandardCharsets.UTF_8));
+        apiServer = new StubServer(searches);
+        imageServer = new StubServer(new HttpRecording());
+        try (InputStream inputStream = getClass().getResourceAsStream(COVER)) {
+            assertNotNull(inputStream, "Missing test resource " + COVER);
+            imageServer.setFallbackImages(List.of(inputStream.readAllBytes()));
+        }
+        apiServer.rewriteOrigin(IMAGE_ORIGIN, imageServer.getBaseUrl());
+
+        CoverArtCache coverArtCache = new CoverArtCache(cacheDirectory, 64L * 1024 * 1024, 64L * 1024 * 1024);
+        albumCoverArtService = new LastFMAlbumCoverArtService(apiServer.getBaseUrl(), coverArtCache);
+        albumCoverArtService.setSearchQuery(QUERY);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        HttpTransport.getInstance().removeScheduler(HostStats.hostOf(apiServer.getBaseUrl()));
+        HttpTransport.getInstance().removeScheduler(HostStats.hostOf(imageServer.getBaseUrl()));
+        apiServer.dispose();
+        imageServer.dispose();
+    }
+
+    @Test
+    public void testGetAlbumCoverArt() {
+        List<Image> coverArt = albumCoverArtService.getAlbumCoverArt(3);
+
+        assertEquals(3, coverArt.size());
+        for (Image image : coverArt) {
+            assertNotNull(image);
+        }
+    }
+
+    @Test
+    public void testSkipsAlbumsWithoutCover() {
+        // Only half of the albums have a cover.
+        assertEquals(ALBUM_COUNT / 2, albumCoverArtService.getAlbumCoverArt(ALBUM_COUNT).size());
+    }
+
+    @Test
+    public void testGetRandomAlbumCoverArt() {
+        assertNotNull(albumCoverArtService.getRandomAlbumCoverArt());
+        // The single cover is downloaded, not every match of the search.
+        assertTrue(imageServer.getRequestCount() <= 1);
+    }
+
+    private static String createSearchResponse() {
+        JSONArray albums = new JSONArray();
+        for (int i = 0; i < ALBUM_COUNT; i++) {
+            String url = i % 2 == 0 ? IMAGE_ORIGIN + "/i/u/300x300/" + i + ".jpg" : "";
+            albums.put(new JSONObject()
+                    .put("name", "Album " + i)
+                    .put("image", new JSONArray()
+                            .put(new JSONObject().put("#text", "").put("size", "small"))
+                            .put(new JSONObject().put("#text", url).put("size", "extralarge"))));
+        }
+        return new JSONObject()
+                .put("results", new JSONObject().put("albummatches", new JSONObject().put("album", albums)))
+                .toString();
+    }
+}
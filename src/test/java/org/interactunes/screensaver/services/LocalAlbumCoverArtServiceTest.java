@@ -1,20 +1,30 @@
 package org.interactunes.screensaver.services;
 
+import org.interactunes.screensaver.library.ClasspathLibrarySource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class LocalAlbumCoverArtServiceTest {
 
+    @TempDir
+    Path cacheFolder;
+
     private LocalAlbumCoverArtService albumCoverArtService;
 
     @BeforeEach
-    public void setUp() {
-        albumCoverArtService = new LocalAlbumCoverArtService();
+    public void setUp() throws IOException {
+        ClasspathLibrarySource albums = new ClasspathLibrarySource("images/albums", getClass().getClassLoader());
+        albumCoverArtService = new LocalAlbumCoverArtService(List.of(albums), cacheFolder);
     }
 
     @Test
@@ -24,5 +34,16 @@ public class LocalAlbumCoverArtServiceTest {
             assertEquals(5, coverArt.size());
         }
     }
-}
 
+    @Test
+    public void testKeepsIndexAndPackInCacheFolder() throws InterruptedException {
+        Path packFile = cacheFolder.resolve("albums.pack");
+        Path indexFile = cacheFolder.resolve("albums.index");
+        long deadline = System.currentTimeMillis() + 30_000;
+        while ((!Files.exists(packFile) || !Files.exists(indexFile)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(packFile), "The thumbnail pack was not written");
+        assertTrue(Files.exists(indexFile), "The index snapshot was not written");
+    }
+}
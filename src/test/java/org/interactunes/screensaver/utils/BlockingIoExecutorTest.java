@@ -0,0 +1,72 @@
+package org.interactunes.screensaver.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockingIoExecutorTest {
+
+    @Test
+    public void testRunsTasksOffTheCallingThread() throws Exception {
+        BlockingIoExecutor executor = new BlockingIoExecutor();
+        Thread caller = Thread.currentThread();
+
+        assertNotSame(caller, executor.supply(Thread::currentThread).get(5, TimeUnit.SECONDS));
+        CompletableFuture<Object> failing = executor.supply(() -> {
+            throw new IllegalStateException("Broken");
+        });
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    @Test
+    public void testCancellingInterruptsTheTask() throws Exception {
+        BlockingIoExecutor executor = new BlockingIoExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Void> future = executor.supply(() -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS), "The task was not interrupted");
+        assertThrows(CancellationException.class, future::join);
+    }
+
+    @Test
+    public void testManyBlockingTasksRunAtOnce() throws Exception {
+        BlockingIoExecutor executor = new BlockingIoExecutor();
+        int taskCount = 300;
+        CountDownLatch allStarted = new CountDownLatch(taskCount);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < taskCount; i++) {
+            futures.add(executor.supply(() -> {
+                // Every task waits for all others, as downloads waiting on slow responses would.
+                allStarted.countDown();
+                if (!allStarted.await(10, TimeUnit.SECONDS)) {
+                    failure.set("Not all tasks ran at once");
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        assertNull(failure.get());
+    }
+}
@@ -0,0 +1,60 @@
+package org.interactunes.screensaver.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testAddedValuesAreAlwaysContained() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("https://i.discogs.com/" + i + ".jpeg");
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("https://i.discogs.com/" + i + ".jpeg"));
+        }
+    }
+
+    @Test
+    public void testAddReportsDuplicates() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        assertTrue(filter.add("a"));
+        assertFalse(filter.add("a"));
+        assertTrue(filter.add("b"));
+        assertEquals(2, filter.size());
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("seen-" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("unseen-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "False positives: " + falsePositives);
+    }
+
+    @Test
+    public void testClear() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.add("a");
+        filter.clear();
+        assertFalse(filter.mightContain("a"));
+        assertEquals(0, filter.size());
+        assertTrue(filter.add("a"));
+    }
+
+    @Test
+    public void testRejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
@@ -0,0 +1,36 @@
+package org.interactunes.screensaver.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CancellationScopeTest {
+
+    @Test
+    public void testCancelsPendingFutures() {
+        CancellationScope scope = new CancellationScope();
+        CompletableFuture<String> completed = scope.track(new CompletableFuture<>());
+        CompletableFuture<String> pending = scope.track(new CompletableFuture<>());
+        completed.complete("done");
+        assertEquals(1, scope.getPendingCount());
+
+        scope.cancel();
+        assertTrue(scope.isCancelled());
+        assertTrue(pending.isCancelled());
+        assertFalse(completed.isCancelled());
+        assertEquals(0, scope.getPendingCount());
+    }
+
+    @Test
+    public void testCancelsFuturesAddedAfterCancellation() {
+        CancellationScope scope = new CancellationScope();
+        scope.cancel();
+
+        // A later stage of a load, such as a fallback, cannot escape the cancellation.
+        CompletableFuture<String> late = scope.track(new CompletableFuture<>());
+        assertTrue(late.isCancelled());
+        assertEquals(0, scope.getPendingCount());
+    }
+}
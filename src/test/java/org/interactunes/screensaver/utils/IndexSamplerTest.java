@@ -0,0 +1,175 @@
+package org.interactunes.screensaver.utils;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexSamplerTest {
+
+    // Critical values of the chi-squared distribution at a significance level of 0.001. With fixed seeds the tests are
+    // deterministic; the threshold only has to separate a uniform sampler from a biased one.
+    private static final double CHI_SQUARED_9_DOF = 27.88;
+    private static final double CHI_SQUARED_119_DOF = 173.6;
+
+    @Test
+    public void testDrawsEveryIndexOnce() {
+        IndexSampler sampler = new IndexSampler(1);
+        for (int size : new int[]{0, 1, 7, 100, 3}) {
+            sampler.reset(size);
+            Set<Integer> drawn = new HashSet<>();
+            while (sampler.hasNext()) {
+                int index = sampler.next();
+                assertTrue(index >= 0 && index < size);
+                assertTrue(drawn.add(index), "Index " + index + " was drawn twice");
+            }
+            assertEquals(size, drawn.size());
+            assertThrows(IllegalStateException.class, sampler::next);
+        }
+    }
+
+    @Test
+    public void testSampleIsLimitedBySizeAndDestination() {
+        IndexSampler sampler = new IndexSampler(2);
+        int[] destination = new int[5];
+        assertEquals(5, sampler.sample(20, destination));
+        assertEquals(5, Arrays.stream(destination).distinct().count());
+        assertEquals(3, sampler.sample(3, destination));
+        assertEquals(Set.of(0, 1, 2), Set.of(destination[0], destination[1], destination[2]));
+    }
+
+    @Test
+    public void testSameSeedDrawsSameSequence() {
+        IndexSampler first = new IndexSampler(42);
+        IndexSampler second = new IndexSampler(42);
+        int[] firstDraws = new int[50];
+        int[] secondDraws = new int[50];
+        first.sample(1000, firstDraws);
+        second.sample(1000, secondDraws);
+        assertArrayEquals(firstDraws, secondDraws);
+    }
+
+    @Test
+    public void testFirstDrawIsUniform() {
+        // Reuses the pool between rounds, so this also covers starting over from a shuffled arrangement.
+        IndexSampler sampler = new IndexSampler(3);
+        int size = 10;
+        int rounds = 100_000;
+        long[] counts = new long[size];
+        for (int i = 0; i < rounds; i++) {
+            sampler.reset(size);
+            counts[sampler.next()]++;
+        }
+        double chiSquared = chiSquared(counts, (double) rounds / size);
+        assertTrue(chiSquared < CHI_SQUARED_9_DOF, "Chi-squared " + chiSquared);
+    }
+
+    @Test
+    public void testPermutationsAreUniform() {
+        IndexSampler sampler = new IndexSampler(4);
+        int rounds = 120_000;
+        Map<String, Integer> counts = new HashMap<>();
+        List<Integer> list = new ArrayList<>(List.of(0, 1, 2, 3, 4));
+        for (int i = 0; i < rounds; i++) {
+            sampler.shuffle(list);
+            counts.merge(list.toString(), 1, Integer::sum);
+        }
+        assertEquals(120, counts.size());
+        double chiSquared = chiSquared(counts.values().stream().mapToLong(Integer::longValue).toArray(), rounds / 120.0);
+        assertTrue(chiSquared < CHI_SQUARED_119_DOF, "Chi-squared " + chiSquared);
+
+        // The same check on the shuffle this sampler replaced, which swaps every element with any index.
+        counts.clear();
+        IndexSampler random = new IndexSampler(4);
+        for (int i = 0; i < rounds; i++) {
+            Integer[] array = {0, 1, 2, 3, 4};
+            for (int j = 0; j < array.length; j++) {
+                int swap = random.nextInt(array.length);
+                Integer temp = array[swap];
+                array[swap] = array[j];
+                array[j] = temp;
+            }
+            counts.merge(Arrays.toString(array), 1, Integer::sum);
+        }
+        double biasedChiSquared = chiSquared(counts.values().stream().mapToLong(Integer::longValue).toArray(), rounds / 120.0);
+        assertTrue(biasedChiSquared > CHI_SQUARED_119_DOF, "Chi-squared of the biased shuffle " + biasedChiSquared);
+    }
+
+    @Test
+    public void testDrawingIsFasterAndAllocatesLessThanShuffling() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        int size = 10_000;
+        int needed = 16;
+        int rounds = 2000;
+        IndexSampler sampler = new IndexSampler(5);
+        List<Integer> boxed = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            boxed.add(i);
+        }
+        long threadId = Thread.currentThread().getId();
+
+        // Warm up both so that compilation and class loading do not count towards the measurement.
+        long sink = 0;
+        for (int i = 0; i < rounds; i++) {
+            sink += drawFirst(sampler, size, needed) + shuffleFirst(boxed, needed);
+        }
+
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += drawFirst(sampler, size, needed);
+        }
+        long drawNanos = System.nanoTime() - start;
+        long drawBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += shuffleFirst(boxed, needed);
+        }
+        long shuffleNanos = System.nanoTime() - start;
+
+        // Using the sums keeps the loops from being optimized away.
+        assertTrue(sink > 0);
+        assertTrue(drawBytes < 1024, "Drawing allocated " + drawBytes + " bytes");
+        assertTrue(drawNanos < shuffleNanos, "Drawing took " + drawNanos + "ns, shuffling " + shuffleNanos + "ns");
+    }
+
+    private static long drawFirst(IndexSampler sampler, int size, int needed) {
+        sampler.reset(size);
+        long sum = 0;
+        for (int i = 0; i < needed; i++) {
+            sum += sampler.next();
+        }
+        return sum;
+    }
+
+    private static long shuffleFirst(List<Integer> boxed, int needed) {
+        Collections.shuffle(boxed);
+        long sum = 0;
+        for (int i = 0; i < needed; i++) {
+            sum += boxed.get(i);
+        }
+        return sum;
+    }
+
+    private static double chiSquared(long[] counts, double expected) {
+        double chiSquared = 0;
+        for (long count : counts) {
+            chiSquared += (count - expected) * (count - expected) / expected;
+        }
+        return chiSquared;
+    }
+}